@@ -0,0 +1,89 @@
+package be.cardoeng.example.benchmarks;
+
+import be.cardoeng.example.ExampleApplication;
+import be.cardoeng.example.entities.Member;
+import be.cardoeng.example.enums.MemberStatus;
+import be.cardoeng.example.repositories.MemberRepository;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * <p class="en">Starts the application for the benchmarks, on an in-memory database filled with generated members.
+ * The cache is disabled, so the benchmarks measure the database.</p>
+ * <p class="fr">Démarre l'application pour les benchmarks, sur une base de données en mémoire remplie de membres
+ * générés. Le cache est désactivé, donc les benchmarks mesurent la base de données.</p>
+ */
+final class BenchmarkApplication {
+
+    /**
+     * <p class="en">The id of the first generated member (after the ones of
+     * {@link be.cardoeng.example.services.MemberSeedLoader}).</p>
+     * <p class="fr">L'id du premier membre généré (après ceux de
+     * {@link be.cardoeng.example.services.MemberSeedLoader}).</p>
+     */
+    static final int FIRST_ID = 1000;
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * <p class="en">Starts the application and generates the members (with ids from {@link #FIRST_ID}).</p>
+     * <p class="fr">Démarre l'application et génère les membres (avec des ids à partir de {@link #FIRST_ID}).</p>
+     * @param database <p class="en">The database to use: <code>h2</code> or <code>hsqldb</code>.</p>
+     * <p class="fr">La base de données à utiliser : <code>h2</code> ou <code>hsqldb</code>.</p>
+     * @param rows <p class="en">The number of members to generate.</p>
+     * <p class="fr">Le nombre de membres à générer.</p>
+     * @param web <p class="en">If the web server should be started (on a random port).</p>
+     * <p class="fr">Si le serveur web doit être démarré (sur un port aléatoire).</p>
+     * @return <p class="en">The context of the application.</p> <p class="fr">Le contexte de l'application.</p>
+     */
+    static ConfigurableApplicationContext start(String database, int rows, boolean web) {
+        String name = "bench" + System.nanoTime();
+        String url = switch (database) {
+            case "h2" -> "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1";
+            case "hsqldb" -> "jdbc:hsqldb:mem:" + name;
+            default -> throw new IllegalArgumentException("Unknown database " + database);
+        };
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ExampleApplication.class)
+                .web(web ? WebApplicationType.SERVLET : WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + url,
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.cache.type=none",
+                        "--members.rate-limit.enabled=false",
+                        "--server.port=0",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=warn");
+        MemberRepository repository = context.getBean(MemberRepository.class);
+        List<Member> chunk = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            chunk.add(member(FIRST_ID + i));
+            if (chunk.size() == 500) {
+                repository.insertAll(chunk);
+                chunk = new ArrayList<>();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            repository.insertAll(chunk);
+        }
+        return context;
+    }
+
+    /**
+     * <p class="en">Generates a member.</p>
+     * <p class="fr">Génère un membre.</p>
+     * @param id <p class="en">The id of the member.</p> <p class="fr">L'id du membre.</p>
+     * @return <p class="en">The member.</p> <p class="fr">Le membre.</p>
+     */
+    static Member member(int id) {
+        MemberStatus[] statuses = MemberStatus.values();
+        return new Member(id, "First" + id, "Last" + id, "First" + id + ".LAST@umons.ac.be",
+                statuses[id % statuses.length], new Date(1_000_000_000_000L + id * 86_400_000L),
+                id % 3 == 0 ? new Date(1_700_000_000_000L) : null);
+    }
+
+}
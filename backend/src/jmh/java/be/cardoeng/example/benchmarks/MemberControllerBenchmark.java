@@ -0,0 +1,189 @@
+package be.cardoeng.example.benchmarks;
+
+import be.cardoeng.example.entities.Member;
+import be.cardoeng.example.repositories.MemberRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * <p class="en">Benchmarks each method of {@link be.cardoeng.example.controllers.MemberController} end to end (filters,
+ * JSON and database) with {@link MockMvc}, on H2 with 100k members.</p>
+ * <p class="fr">Mesure chaque méthode de {@link be.cardoeng.example.controllers.MemberController} de bout en bout
+ * (filtres, JSON et base de données) avec {@link MockMvc}, sur H2 avec 100k membres.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MemberControllerBenchmark {
+
+    /**
+     * <p class="en">The number of members created by each request of {@link #newAndDeleteMembers}.</p>
+     * <p class="fr">Le nombre de membres créés par chaque requête de {@link #newAndDeleteMembers}.</p>
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * <p class="en">The number of members in the database.</p>
+     * <p class="fr">Le nombre de membres dans la base de données.</p>
+     */
+    @Param({"100000"})
+    private int rows;
+
+    /**
+     * <p class="en">The context of the application.</p>
+     * <p class="fr">Le contexte de l'application.</p>
+     */
+    private ConfigurableApplicationContext context;
+
+    /**
+     * <p class="en">The mock MVC to send the requests.</p>
+     * <p class="fr">Le mock MVC pour envoyer les requêtes.</p>
+     */
+    private MockMvc mockMvc;
+
+    /**
+     * <p class="en">The object mapper, to write the members to create.</p>
+     * <p class="fr">Le mappeur d'objets, pour écrire les membres à créer.</p>
+     */
+    private ObjectMapper objectMapper;
+
+    /**
+     * <p class="en">The repository, to delete the members created by a batch.</p>
+     * <p class="fr">Le dépôt, pour supprimer les membres créés par un lot.</p>
+     */
+    private MemberRepository repository;
+
+    /**
+     * <p class="en">The id of the next member created (after the generated ones).</p>
+     * <p class="fr">L'id du prochain membre créé (après ceux générés).</p>
+     */
+    private AtomicInteger nextId;
+
+    /**
+     * <p class="en">Starts the application and fills the database.</p>
+     * <p class="fr">Démarre l'application et remplit la base de données.</p>
+     */
+    @Setup
+    public void setup() {
+        context = BenchmarkApplication.start("h2", rows, true);
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+        objectMapper = context.getBean(ObjectMapper.class);
+        repository = context.getBean(MemberRepository.class);
+        nextId = new AtomicInteger(BenchmarkApplication.FIRST_ID + rows);
+    }
+
+    /**
+     * <p class="en">Stops the application.</p>
+     * <p class="fr">Arrête l'application.</p>
+     */
+    @TearDown
+    public void teardown() {
+        context.close();
+    }
+
+    /**
+     * <p class="en">Returns the id of a random generated member.</p>
+     * <p class="fr">Renvoie l'id d'un membre généré aléatoire.</p>
+     * @return <p class="en">The id.</p> <p class="fr">L'id.</p>
+     */
+    private int randomId() {
+        return BenchmarkApplication.FIRST_ID + ThreadLocalRandom.current().nextInt(rows);
+    }
+
+    @Benchmark
+    public int getMembers() throws Exception {
+        return mockMvc.perform(get("/api/members").param("after", String.valueOf(randomId())))
+                .andReturn().getResponse().getStatus();
+    }
+
+    @Benchmark
+    public int getMember() throws Exception {
+        return mockMvc.perform(get("/api/members/" + randomId())).andReturn().getResponse().getStatus();
+    }
+
+    @Benchmark
+    public int patchMember() throws Exception {
+        return mockMvc.perform(patch("/api/members/" + randomId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"status\":\"Professor\"}"))
+                .andReturn().getResponse().getStatus();
+    }
+
+    /**
+     * <p class="en">Creates then deletes a member (so the number of members does not change).</p>
+     * <p class="fr">Crée puis supprime un membre (pour que le nombre de membres ne change pas).</p>
+     * @return <p class="en">The status of the deletion.</p> <p class="fr">Le statut de la suppression.</p>
+     * @throws Exception <p class="en">If a request fails.</p> <p class="fr">Si une requête échoue.</p>
+     */
+    @Benchmark
+    public int newAndDeleteMember() throws Exception {
+        int id = nextId.getAndIncrement();
+        mockMvc.perform(post("/api/members")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(BenchmarkApplication.member(id))));
+        return mockMvc.perform(delete("/api/members/" + id)).andReturn().getResponse().getStatus();
+    }
+
+    /**
+     * <p class="en">Exports all the members (as NDJSON, streamed from the database).</p>
+     * <p class="fr">Exporte tous les membres (en NDJSON, diffusés depuis la base de données).</p>
+     * @return <p class="en">The size of the export.</p> <p class="fr">La taille de l'export.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Benchmark
+    public int exportMembers() throws Exception {
+        return mockMvc.perform(get("/api/members/export")).andReturn().getResponse().getContentAsByteArray().length;
+    }
+
+    /**
+     * <p class="en">Creates {@value #BATCH_SIZE} members with one batch request, then deletes them with the
+     * repository (so the number of members does not change).</p>
+     * <p class="fr">Crée {@value #BATCH_SIZE} membres avec une requête de lot, puis les supprime avec le dépôt (pour
+     * que le nombre de membres ne change pas).</p>
+     * @return <p class="en">The status of the creation.</p> <p class="fr">Le statut de la création.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Benchmark
+    public int newAndDeleteMembers() throws Exception {
+        int first = nextId.getAndAdd(BATCH_SIZE);
+        List<Member> members = IntStream.range(first, first + BATCH_SIZE).mapToObj(BenchmarkApplication::member)
+                .toList();
+        int status = mockMvc.perform(post("/api/members/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(members)))
+                .andReturn().getResponse().getStatus();
+        repository.deleteAllByIdInBatch(members.stream().map(Member::getId).toList());
+        return status;
+    }
+
+}
@@ -0,0 +1,86 @@
+package be.cardoeng.example.benchmarks;
+
+import be.cardoeng.example.entities.Member;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p class="en">Benchmarks the JSON (de)serialization of a {@link Member} and the merging of a PATCH into a member
+ * with <code>updateValue</code>.</p>
+ * <p class="fr">Mesure la (dé)sérialisation JSON d'un {@link Member} et la fusion d'un PATCH dans un membre avec
+ * <code>updateValue</code>.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemberJsonBenchmark {
+
+    /**
+     * <p class="en">The object mapper.</p>
+     * <p class="fr">Le mappeur d'objets.</p>
+     */
+    private ObjectMapper objectMapper;
+
+    /**
+     * <p class="en">The member to serialize.</p>
+     * <p class="fr">Le membre à sérialiser.</p>
+     */
+    private Member member;
+
+    /**
+     * <p class="en">The JSON of {@link #member}.</p>
+     * <p class="fr">Le JSON de {@link #member}.</p>
+     */
+    private String json;
+
+    /**
+     * <p class="en">A PATCH body, as received by the controller.</p>
+     * <p class="fr">Un corps de PATCH, tel que reçu par le contrôleur.</p>
+     */
+    private Map<String, Object> patch;
+
+    /**
+     * <p class="en">Prepares the data of the benchmarks.</p>
+     * <p class="fr">Prépare les données des benchmarks.</p>
+     */
+    @Setup
+    public void setup() {
+        objectMapper = JsonMapper.builder().build();
+        member = BenchmarkApplication.member(42);
+        json = objectMapper.writeValueAsString(member);
+        patch = Map.of("status", "Professor", "endDate", "2024-09-15T00:00:00.000+00:00");
+    }
+
+    @Benchmark
+    public String serialize() {
+        return objectMapper.writeValueAsString(member);
+    }
+
+    @Benchmark
+    public Member deserialize() {
+        return objectMapper.readValue(json, Member.class);
+    }
+
+    @Benchmark
+    public Member updateValue() {
+        // A new member each time, as the PATCH modifies it
+        return objectMapper.updateValue(BenchmarkApplication.member(42), patch);
+    }
+
+}
@@ -0,0 +1,121 @@
+package be.cardoeng.example.benchmarks;
+
+import be.cardoeng.example.entities.Member;
+import be.cardoeng.example.enums.MemberStatus;
+import be.cardoeng.example.repositories.MemberRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p class="en">Benchmarks {@link MemberRepository} on H2 and HSQLDB (in memory) with 1k, 100k and 1M members.</p>
+ * <p class="fr">Mesure {@link MemberRepository} sur H2 et HSQLDB (en mémoire) avec 1k, 100k et 1M membres.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MemberRepositoryBenchmark {
+
+    /**
+     * <p class="en">The database.</p>
+     * <p class="fr">La base de données.</p>
+     */
+    @Param({"h2", "hsqldb"})
+    private String database;
+
+    /**
+     * <p class="en">The number of members in the database.</p>
+     * <p class="fr">Le nombre de membres dans la base de données.</p>
+     */
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    /**
+     * <p class="en">The context of the application.</p>
+     * <p class="fr">Le contexte de l'application.</p>
+     */
+    private ConfigurableApplicationContext context;
+
+    /**
+     * <p class="en">The repository to benchmark.</p>
+     * <p class="fr">Le dépôt à mesurer.</p>
+     */
+    private MemberRepository repository;
+
+    /**
+     * <p class="en">The id of the next member saved (after the generated ones).</p>
+     * <p class="fr">L'id du prochain membre sauvegardé (après ceux générés).</p>
+     */
+    private AtomicInteger nextId;
+
+    /**
+     * <p class="en">Starts the application and fills the database.</p>
+     * <p class="fr">Démarre l'application et remplit la base de données.</p>
+     */
+    @Setup
+    public void setup() {
+        context = BenchmarkApplication.start(database, rows, false);
+        repository = context.getBean(MemberRepository.class);
+        nextId = new AtomicInteger(BenchmarkApplication.FIRST_ID + rows);
+    }
+
+    /**
+     * <p class="en">Stops the application.</p>
+     * <p class="fr">Arrête l'application.</p>
+     */
+    @TearDown
+    public void teardown() {
+        context.close();
+    }
+
+    /**
+     * <p class="en">Returns the id of a random generated member.</p>
+     * <p class="fr">Renvoie l'id d'un membre généré aléatoire.</p>
+     * @return <p class="en">The id.</p> <p class="fr">L'id.</p>
+     */
+    private int randomId() {
+        return BenchmarkApplication.FIRST_ID + ThreadLocalRandom.current().nextInt(rows);
+    }
+
+    @Benchmark
+    public Optional<Member> findById() {
+        return repository.findById(randomId());
+    }
+
+    @Benchmark
+    public List<Member> findAll() {
+        return repository.findAll();
+    }
+
+    @Benchmark
+    public List<Member> findPage() {
+        return repository.findPage(randomId(), MemberStatus.PhD, null, null, null, null, true, Limit.of(100));
+    }
+
+    @Benchmark
+    public Member save() {
+        // A new member (an existing one would need its current version)
+        return repository.save(BenchmarkApplication.member(nextId.getAndIncrement()));
+    }
+
+}
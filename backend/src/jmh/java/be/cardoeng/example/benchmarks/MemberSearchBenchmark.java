@@ -0,0 +1,83 @@
+package be.cardoeng.example.benchmarks;
+
+import be.cardoeng.example.entities.Member;
+import be.cardoeng.example.services.MemberSearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p class="en">Benchmarks {@link MemberSearchIndex} with 100k and 1M members: the searches of a type-ahead (a short
+ * prefix, several words with accents, no match) and the update of a member.</p>
+ * <p class="fr">Mesure {@link MemberSearchIndex} avec 100k et 1M membres : les recherches d'une saisie semi-automatique
+ * (un préfixe court, plusieurs mots avec des accents, aucune correspondance) et la mise à jour d'un membre.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemberSearchBenchmark {
+
+    /**
+     * <p class="en">The number of members in the index.</p>
+     * <p class="fr">Le nombre de membres dans l'index.</p>
+     */
+    @Param({"100000", "1000000"})
+    private int rows;
+
+    /**
+     * <p class="en">The index to benchmark.</p>
+     * <p class="fr">L'index à mesurer.</p>
+     */
+    private MemberSearchIndex index;
+
+    /**
+     * <p class="en">Fills the index with the generated members.</p>
+     * <p class="fr">Remplit l'index avec les membres générés.</p>
+     */
+    @Setup
+    public void setup() {
+        index = new MemberSearchIndex();
+        for (int i = 0; i < rows; i++) {
+            index.put(BenchmarkApplication.member(BenchmarkApplication.FIRST_ID + i));
+        }
+    }
+
+    @Benchmark
+    public List<Integer> searchPrefix() {
+        return index.search("fir", 20);
+    }
+
+    @Benchmark
+    public List<Integer> searchWords() {
+        return index.search("FÏRST12 lâst12", 20);
+    }
+
+    @Benchmark
+    public List<Integer> searchNoMatch() {
+        return index.search("zzz", 20);
+    }
+
+    @Benchmark
+    public void update() {
+        Member member = BenchmarkApplication.member(
+                BenchmarkApplication.FIRST_ID + ThreadLocalRandom.current().nextInt(rows));
+        member.setLastName("Renamed" + member.getId());
+        index.put(member);
+    }
+
+}
@@ -0,0 +1,106 @@
+package be.cardoeng.example.benchmarks;
+
+import be.cardoeng.example.configurations.WireFormatConfiguration;
+import be.cardoeng.example.entities.Member;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p class="en">Benchmarks the serialization of a list of 100k members in JSON, Smile and CBOR, with and without gzip
+ * (as done by <code>server.compression</code>). The number of bytes on the wire of each combination is printed by
+ * the setup.</p>
+ * <p class="fr">Mesure la sérialisation d'une liste de 100k membres en JSON, Smile et CBOR, avec et sans gzip (comme
+ * le fait <code>server.compression</code>). Le nombre d'octets transmis de chaque combinaison est affiché par la
+ * préparation.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MemberWireFormatBenchmark {
+
+    /**
+     * <p class="en">The number of members serialized.</p>
+     * <p class="fr">Le nombre de membres sérialisés.</p>
+     */
+    private static final int MEMBERS = 100_000;
+
+    /**
+     * <p class="en">The format.</p>
+     * <p class="fr">Le format.</p>
+     */
+    @Param({"json", "smile", "cbor"})
+    private String format;
+
+    /**
+     * <p class="en">If the output is compressed with gzip.</p>
+     * <p class="fr">Si la sortie est compressée avec gzip.</p>
+     */
+    @Param({"false", "true"})
+    private boolean gzip;
+
+    /**
+     * <p class="en">The writer of the list of members.</p>
+     * <p class="fr">Le rédacteur de la liste des membres.</p>
+     */
+    private ObjectWriter writer;
+
+    /**
+     * <p class="en">The members to serialize.</p>
+     * <p class="fr">Les membres à sérialiser.</p>
+     */
+    private Member[] members;
+
+    /**
+     * <p class="en">Prepares the members and prints the size of their serialization.</p>
+     * <p class="fr">Prépare les membres et affiche la taille de leur sérialisation.</p>
+     * @throws IOException <p class="en">If the serialization fails.</p>
+     * <p class="fr">Si la sérialisation échoue.</p>
+     */
+    @Setup
+    public void setup() throws IOException {
+        ObjectMapper mapper = switch (format) {
+            case "json" -> JsonMapper.builder().build();
+            case "smile" -> WireFormatConfiguration.smileMapper();
+            case "cbor" -> WireFormatConfiguration.cborMapper();
+            default -> throw new IllegalArgumentException("Unknown format " + format);
+        };
+        members = new Member[MEMBERS];
+        for (int i = 0; i < MEMBERS; i++) {
+            members[i] = BenchmarkApplication.member(BenchmarkApplication.FIRST_ID + i);
+        }
+        writer = mapper.writerFor(Member[].class);
+        System.out.printf("%n%s%s: %d bytes for %d members%n",
+                format, gzip ? "+gzip" : "", serialize().length, MEMBERS);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = gzip ? new GZIPOutputStream(bytes) : bytes) {
+            writer.writeValue(out, members);
+        }
+        return bytes.toByteArray();
+    }
+
+}
@@ -0,0 +1,24 @@
+package be.cardoeng.example.configurations;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * <p class="en">Enables the cache of the members (Caffeine, configured with the <code>spring.cache.*</code>
+ * properties). The cache advice wraps the transactional one, so the entries are evicted once the new values are
+ * committed.</p>
+ * <p class="fr">Active le cache des membres (Caffeine, configuré avec les propriétés <code>spring.cache.*</code>).
+ * Le conseil du cache englobe celui des transactions, donc les entrées sont évincées une fois les nouvelles valeurs
+ * validées.</p>
+ */
+@Configuration
+@EnableCaching(order = 0)
+public class CacheConfiguration {
+
+    /**
+     * <p class="en">The name of the cache of the members, by id.</p>
+     * <p class="fr">Le nom du cache des membres, par id.</p>
+     */
+    public static final String MEMBERS_CACHE = "members";
+
+}
@@ -0,0 +1,117 @@
+package be.cardoeng.example.configurations;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p class="en">A {@link DataSource} that lets at most a given number of threads hold a connection at the same time.
+ * With virtual threads there can be thousands of requests at once: they wait here, on a fair {@link Semaphore}
+ * (a virtual thread waiting on it releases its carrier thread), instead of inside the pool or the JDBC driver, where
+ * a <code>synchronized</code> block would pin their carrier thread. The limit is the size of the pool (see
+ * {@link VirtualThreadConfiguration}).</p>
+ * <p class="fr">Une {@link DataSource} qui laisse au plus un nombre donné de threads détenir une connexion en même
+ * temps. Avec les threads virtuels il peut y avoir des milliers de requêtes à la fois : elles attendent ici, sur un
+ * {@link Semaphore} équitable (un thread virtuel qui l'attend libère son thread porteur), au lieu d'attendre dans le
+ * pool ou le pilote JDBC, où un bloc <code>synchronized</code> épinglerait leur thread porteur. La limite est la
+ * taille du pool (voir {@link VirtualThreadConfiguration}).</p>
+ */
+public class ConnectionLimitingDataSource extends DelegatingDataSource {
+
+    /**
+     * <p class="en">The permits, one per connection that can be held.</p>
+     * <p class="fr">Les permis, un par connexion qui peut être détenue.</p>
+     */
+    private final Semaphore permits;
+
+    /**
+     * <p class="en">The maximum time to wait for a permit, in milliseconds.</p>
+     * <p class="fr">Le temps maximum d'attente d'un permis, en millisecondes.</p>
+     */
+    private final long timeout;
+
+    /**
+     * <p class="en">Creates the data source.</p>
+     * <p class="fr">Crée la source de données.</p>
+     * @param target <p class="en">The data source to limit.</p> <p class="fr">La source de données à limiter.</p>
+     * @param maxConnections <p class="en">The maximum number of connections held at the same time.</p>
+     * <p class="fr">Le nombre maximum de connexions détenues en même temps.</p>
+     * @param timeout <p class="en">The maximum time to wait for a connection, in milliseconds.</p>
+     * <p class="fr">Le temps maximum d'attente d'une connexion, en millisecondes.</p>
+     */
+    public ConnectionLimitingDataSource(DataSource target, int maxConnections, long timeout) {
+        super(target);
+        this.permits = new Semaphore(maxConnections, true);
+        this.timeout = timeout;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return releasingOnClose(super.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            return releasingOnClose(super.getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * <p class="en">Waits for a permit.</p>
+     * <p class="fr">Attend un permis.</p>
+     * @throws SQLException <p class="en">If no permit is available before the timeout.</p>
+     * <p class="fr">Si aucun permis n'est disponible avant l'expiration du délai.</p>
+     */
+    private void acquire() throws SQLException {
+        try {
+            if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("No connection available after " + timeout + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+        }
+    }
+
+    /**
+     * <p class="en">Wraps a connection so that its permit is released (once) when it is closed.</p>
+     * <p class="fr">Enveloppe une connexion pour que son permis soit libéré (une fois) quand elle est fermée.</p>
+     * @param connection <p class="en">The connection.</p> <p class="fr">La connexion.</p>
+     * @return <p class="en">The wrapped connection.</p> <p class="fr">La connexion enveloppée.</p>
+     */
+    private Connection releasingOnClose(Connection connection) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        if (method.getName().equals("close") && released.compareAndSet(false, true)) {
+                            permits.release();
+                        }
+                    }
+                });
+    }
+
+}
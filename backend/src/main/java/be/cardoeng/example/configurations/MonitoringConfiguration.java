@@ -0,0 +1,93 @@
+package be.cardoeng.example.configurations;
+
+import be.cardoeng.example.monitoring.SqlMetricsFilter;
+import be.cardoeng.example.monitoring.SqlStatistics;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * <p class="en">The configuration of the monitoring of the database cost of the requests: the data source is wrapped in
+ * a proxy reporting the statements to {@link SqlStatistics}, and {@link SqlMetricsFilter} publishes them per endpoint
+ * and checks their {@link be.cardoeng.example.monitoring.SqlBudget}. The rows read are only counted with
+ * <code>members.sql.count-rows</code> (off by default): the proxy then also wraps every result set and listens to all
+ * its calls, which costs on each row (a listener of the statements only sees the result sets, not their rows, and the
+ * Hibernate statistics are shared by all the requests). The statements slower than
+ * <code>members.sql.slow-query-threshold</code> are logged, and <code>members.sql.budget.strict</code> makes the
+ * requests over their budget fail instead of being only logged (for the tests). The other metrics (latency of the
+ * endpoints, Hikari pool, JVM memory and GC) are the ones of Spring Boot Actuator, all exposed on
+ * <code>/actuator/prometheus</code>.</p>
+ * <p class="fr">La configuration du suivi du coût en base de données des requêtes : la source de données est enveloppée
+ * dans un proxy signalant les requêtes SQL à {@link SqlStatistics}, et {@link SqlMetricsFilter} les publie par point de
+ * terminaison et vérifie leur {@link be.cardoeng.example.monitoring.SqlBudget}. Les lignes lues ne sont comptées
+ * qu'avec <code>members.sql.count-rows</code> (désactivé par défaut) : le proxy enveloppe alors aussi chaque ensemble
+ * de résultats et écoute tous ses appels, ce qui coûte à chaque ligne (un écouteur des requêtes SQL ne voit que les
+ * ensembles de résultats, pas leurs lignes, et les statistiques de Hibernate sont partagées par toutes les requêtes
+ * HTTP). Les requêtes SQL plus lentes que <code>members.sql.slow-query-threshold</code> sont journalisées, et
+ * <code>members.sql.budget.strict</code> fait échouer les requêtes au-delà de leur budget au lieu de seulement les
+ * journaliser (pour les tests). Les autres métriques (latence des points de terminaison, pool Hikari, mémoire et GC de
+ * la JVM) sont celles de Spring Boot Actuator, toutes exposées sur <code>/actuator/prometheus</code>.</p>
+ */
+@Configuration
+public class MonitoringConfiguration {
+
+    /**
+     * <p class="en">Wraps the data source in a proxy reporting to {@link SqlStatistics}.</p>
+     * <p class="fr">Enveloppe la source de données dans un proxy signalant à {@link SqlStatistics}.</p>
+     * @param environment <p class="en">The environment, to read the threshold of the slow statements and if the rows
+     * are counted.</p>
+     * <p class="fr">L'environnement, pour lire le seuil des requêtes SQL lentes et si les lignes sont comptées.</p>
+     * @return <p class="en">The post processor wrapping the data source.</p>
+     * <p class="fr">Le post-processeur enveloppant la source de données.</p>
+     */
+    @Bean
+    static BeanPostProcessor sqlStatisticsDataSourcePostProcessor(Environment environment) {
+        SqlStatistics statistics = new SqlStatistics(
+                environment.getProperty("members.sql.slow-query-threshold", Duration.class, Duration.ofMillis(100)));
+        boolean countRows = environment.getProperty("members.sql.count-rows", Boolean.class, false);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                    ProxyDataSourceBuilder builder = ProxyDataSourceBuilder.create(dataSource)
+                            .name(beanName)
+                            .listener(statistics);
+                    if (countRows) {
+                        builder.methodListener(statistics).proxyResultSet();
+                    }
+                    return builder.build();
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * <p class="en">Registers {@link SqlMetricsFilter} before the other filters, so it sees the whole request.</p>
+     * <p class="fr">Enregistre {@link SqlMetricsFilter} avant les autres filtres, pour qu'il voie toute la
+     * requête.</p>
+     * @param registry <p class="en">The registry of the metrics.</p> <p class="fr">Le registre des métriques.</p>
+     * @param environment <p class="en">The environment, to read the strict mode and if the rows are counted.</p>
+     * <p class="fr">L'environnement, pour lire le mode strict et si les lignes sont comptées.</p>
+     * @return <p class="en">The registration of the filter.</p> <p class="fr">L'enregistrement du filtre.</p>
+     */
+    @Bean
+    FilterRegistrationBean<SqlMetricsFilter> sqlMetricsFilter(MeterRegistry registry, Environment environment) {
+        FilterRegistrationBean<SqlMetricsFilter> registration = new FilterRegistrationBean<>(new SqlMetricsFilter(
+                registry, environment.getProperty("members.sql.budget.strict", Boolean.class, false),
+                environment.getProperty("members.sql.count-rows", Boolean.class, false)));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+
+}
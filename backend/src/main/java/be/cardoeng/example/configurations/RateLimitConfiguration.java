@@ -0,0 +1,54 @@
+package be.cardoeng.example.configurations;
+
+import be.cardoeng.example.throttling.RateLimitFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import java.util.List;
+
+/**
+ * <p class="en">The configuration of the rate limit of the members API, enabled by
+ * <code>members.rate-limit.enabled</code>. The limits of each client are <code>members.rate-limit.rate</code>
+ * requests per second and bursts of <code>members.rate-limit.burst</code> requests; the clients with one of the
+ * keys of <code>members.rate-limit.api-keys</code> have their own limits, the others are limited by IP address (see
+ * {@link RateLimitFilter}).</p>
+ * <p class="fr">La configuration de la limite de débit de l'API des membres, activée par
+ * <code>members.rate-limit.enabled</code>. Les limites de chaque client sont <code>members.rate-limit.rate</code>
+ * requêtes par seconde et des rafales de <code>members.rate-limit.burst</code> requêtes ; les clients avec une des
+ * clés de <code>members.rate-limit.api-keys</code> ont leurs propres limites, les autres sont limités par adresse IP
+ * (voir {@link RateLimitFilter}).</p>
+ */
+@Configuration
+@ConditionalOnProperty(name = "members.rate-limit.enabled", havingValue = "true")
+public class RateLimitConfiguration {
+
+    /**
+     * <p class="en">Registers {@link RateLimitFilter} in front of the members API, before the other filters so a
+     * rejected request costs as little as possible.</p>
+     * <p class="fr">Enregistre {@link RateLimitFilter} devant l'API des membres, avant les autres filtres pour
+     * qu'une requête rejetée coûte le moins possible.</p>
+     * @param environment <p class="en">The environment, to read the limits.</p>
+     * <p class="fr">L'environnement, pour lire les limites.</p>
+     * @param registry <p class="en">The registry of the metrics.</p> <p class="fr">Le registre des métriques.</p>
+     * @return <p class="en">The registration of the filter.</p> <p class="fr">L'enregistrement du filtre.</p>
+     */
+    @Bean
+    FilterRegistrationBean<RateLimitFilter> rateLimitFilter(Environment environment, MeterRegistry registry) {
+        RateLimitFilter filter = new RateLimitFilter(
+                environment.getProperty("members.rate-limit.rate", Double.class, 50.0),
+                environment.getProperty("members.rate-limit.burst", Integer.class, 100),
+                List.of(environment.getProperty("members.rate-limit.api-keys", String[].class, new String[0])),
+                environment.getProperty("members.rate-limit.max-clients", Long.class, 100_000L),
+                registry);
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/api/members/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+}
@@ -0,0 +1,83 @@
+package be.cardoeng.example.configurations;
+
+import be.cardoeng.example.routing.ReadYourWritesFilter;
+import be.cardoeng.example.routing.ReplicaRoutingDataSource;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p class="en">The configuration of the profile <code>replicas</code>, where the reads go to read replicas (see
+ * <code>application-replicas.properties</code>). The primary is the usual <code>spring.datasource</code>, the
+ * replicas are listed in <code>members.datasource.replicas.urls</code>: the data source of the application becomes a
+ * {@link ReplicaRoutingDataSource}, and {@link ReadYourWritesFilter} pins a client to the primary for
+ * <code>members.datasource.read-your-writes</code> after each of its modifications.</p>
+ * <p class="fr">La configuration du profil <code>replicas</code>, où les lectures vont à des répliques en lecture
+ * (voir <code>application-replicas.properties</code>). Le primaire est l'habituelle <code>spring.datasource</code>,
+ * les répliques sont listées dans <code>members.datasource.replicas.urls</code> : la source de données de
+ * l'application devient une {@link ReplicaRoutingDataSource}, et {@link ReadYourWritesFilter} épingle un client au
+ * primaire pendant <code>members.datasource.read-your-writes</code> après chacune de ses modifications.</p>
+ */
+@Configuration
+@Profile("replicas")
+public class ReplicaConfiguration {
+
+    /**
+     * <p class="en">Creates the data source routing between the primary and the replicas.</p>
+     * <p class="fr">Crée la source de données aiguillant entre le primaire et les répliques.</p>
+     * @param environment <p class="en">The environment, to read the URLs and the credentials.</p>
+     * <p class="fr">L'environnement, pour lire les URLs et les identifiants.</p>
+     * @return <p class="en">The data source.</p> <p class="fr">La source de données.</p>
+     */
+    @Bean
+    @Primary
+    ReplicaRoutingDataSource dataSource(Environment environment) {
+        DataSource primary = DataSourceBuilder.create()
+                .url(environment.getRequiredProperty("spring.datasource.url"))
+                .username(environment.getProperty("spring.datasource.username"))
+                .password(environment.getProperty("spring.datasource.password"))
+                .build();
+        String username = environment.getProperty("members.datasource.replicas.username",
+                environment.getProperty("spring.datasource.username", ""));
+        String password = environment.getProperty("members.datasource.replicas.password",
+                environment.getProperty("spring.datasource.password", ""));
+        List<DataSource> replicas = Arrays.stream(
+                        environment.getProperty("members.datasource.replicas.urls", String[].class, new String[0]))
+                .map(url -> (DataSource) DataSourceBuilder.create()
+                        .url(url)
+                        .username(username)
+                        .password(password)
+                        .build())
+                .toList();
+        return new ReplicaRoutingDataSource(primary, replicas);
+    }
+
+    /**
+     * <p class="en">Registers {@link ReadYourWritesFilter} on the API.</p>
+     * <p class="fr">Enregistre {@link ReadYourWritesFilter} sur l'API.</p>
+     * @param environment <p class="en">The environment, to read the duration of the window.</p>
+     * <p class="fr">L'environnement, pour lire la durée de la fenêtre.</p>
+     * @return <p class="en">The registration of the filter.</p> <p class="fr">L'enregistrement du filtre.</p>
+     */
+    @Bean
+    FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(Environment environment) {
+        Duration window = environment.getProperty("members.datasource.read-your-writes", Duration.class,
+                Duration.ofSeconds(5));
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(window));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+        return registration;
+    }
+
+}
@@ -0,0 +1,15 @@
+package be.cardoeng.example.configurations;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * <p class="en">Enables the background tasks (the methods annotated with
+ * {@link org.springframework.scheduling.annotation.Scheduled}).</p>
+ * <p class="fr">Active les tâches de fond (les méthodes annotées avec
+ * {@link org.springframework.scheduling.annotation.Scheduled}).</p>
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfiguration {
+}
@@ -0,0 +1,136 @@
+package be.cardoeng.example.configurations;
+
+import be.cardoeng.example.repositories.MemberRepository;
+import be.cardoeng.example.routing.ConsistentHashRing;
+import be.cardoeng.example.routing.ShardRoutingDataSource;
+import be.cardoeng.example.routing.ShardedMemberRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.cache.CacheManager;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p class="en">The configuration of the profile <code>shards</code>, where the members are spread over several
+ * databases (see <code>application-shards.properties</code>). The shards are listed in
+ * <code>members.datasource.shards.urls</code> (a new shard must be added at the end, the others keep their index);
+ * the data source of the application becomes a {@link ShardRoutingDataSource} and {@link MemberRepository} is wrapped
+ * in a {@link ShardedMemberRepository}, so the rest of the application is unchanged.</p>
+ * <p class="fr">La configuration du profil <code>shards</code>, où les membres sont répartis sur plusieurs bases de
+ * données (voir <code>application-shards.properties</code>). Les fragments sont listés dans
+ * <code>members.datasource.shards.urls</code> (un nouveau fragment doit être ajouté à la fin, les autres gardent leur
+ * index) ; la source de données de l'application devient une {@link ShardRoutingDataSource} et
+ * {@link MemberRepository} est enveloppé dans un {@link ShardedMemberRepository}, donc le reste de l'application est
+ * inchangé.</p>
+ */
+@Configuration
+@Profile("shards")
+public class ShardConfiguration {
+
+    /**
+     * <p class="en">Creates the data source of the shards.</p>
+     * <p class="fr">Crée la source de données des fragments.</p>
+     * @param environment <p class="en">The environment, to read the URLs and the credentials.</p>
+     * <p class="fr">L'environnement, pour lire les URLs et les identifiants.</p>
+     * @return <p class="en">The data source.</p> <p class="fr">La source de données.</p>
+     */
+    @Bean
+    @Primary
+    ShardRoutingDataSource dataSource(Environment environment) {
+        String username = environment.getProperty("spring.datasource.username", "");
+        String password = environment.getProperty("spring.datasource.password", "");
+        List<DataSource> shards = Arrays.stream(shardUrls(environment))
+                .map(url -> (DataSource) DataSourceBuilder.create()
+                        .url(url)
+                        .username(username)
+                        .password(password)
+                        .build())
+                .toList();
+        return new ShardRoutingDataSource(shards);
+    }
+
+    /**
+     * <p class="en">Wraps {@link MemberRepository} in a {@link ShardedMemberRepository}.</p>
+     * <p class="fr">Enveloppe {@link MemberRepository} dans un {@link ShardedMemberRepository}.</p>
+     * @param environment <p class="en">The environment, to read the number of shards and of threads querying them
+     * (<code>members.datasource.shards.query-threads</code>, by default the number of shards).</p>
+     * <p class="fr">L'environnement, pour lire le nombre de fragments et de threads les interrogeant
+     * (<code>members.datasource.shards.query-threads</code>, par défaut le nombre de fragments).</p>
+     * @param transactionManager <p class="en">The transaction manager.</p>
+     * <p class="fr">Le gestionnaire de transactions.</p>
+     * @param cacheManager <p class="en">The cache manager, to read the cache of the members before choosing a
+     * shard.</p>
+     * <p class="fr">Le gestionnaire de caches, pour lire le cache des membres avant de choisir un fragment.</p>
+     * @return <p class="en">The post processor wrapping the repository.</p>
+     * <p class="fr">Le post-processeur enveloppant le dépôt.</p>
+     */
+    @Bean
+    static BeanPostProcessor shardedMemberRepositoryPostProcessor(Environment environment,
+            ObjectProvider<PlatformTransactionManager> transactionManager, ObjectProvider<CacheManager> cacheManager) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof MemberRepository repository) {
+                    int shards = shardUrls(environment).length;
+                    int threads = environment.getProperty("members.datasource.shards.query-threads", Integer.class,
+                            shards);
+                    CacheManager caches = cacheManager.getIfAvailable();
+                    return new ShardedMemberRepository(repository, new ConsistentHashRing(shards),
+                            transactionManager.getObject(), threads,
+                            caches == null ? null : caches.getCache(CacheConfiguration.MEMBERS_CACHE));
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * <p class="en">Creates the tables on every shard when <code>members.datasource.shards.create-schema</code> is
+     * set (<code>spring.jpa.hibernate.ddl-auto</code> only reaches the first one).</p>
+     * <p class="fr">Crée les tables sur chaque fragment quand <code>members.datasource.shards.create-schema</code>
+     * est activé (<code>spring.jpa.hibernate.ddl-auto</code> n'atteint que le premier).</p>
+     * @param environment <p class="en">The environment.</p> <p class="fr">L'environnement.</p>
+     * @param entityManagerFactory <p class="en">The entity manager factory, knowing the schema.</p>
+     * <p class="fr">La fabrique de gestionnaires d'entités, connaissant le schéma.</p>
+     * @return <p class="en">The callback creating the tables, once the beans are created.</p>
+     * <p class="fr">Le rappel créant les tables, une fois les beans créés.</p>
+     */
+    @Bean
+    SmartInitializingSingleton shardSchemas(Environment environment, EntityManagerFactory entityManagerFactory) {
+        return () -> {
+            if (!environment.getProperty("members.datasource.shards.create-schema", Boolean.class, false)) {
+                return;
+            }
+            for (int shard = 0; shard < shardUrls(environment).length; shard++) {
+                ShardRoutingDataSource.setCurrentShard(shard);
+                try {
+                    entityManagerFactory.getSchemaManager().create(false);
+                } finally {
+                    ShardRoutingDataSource.setCurrentShard(null);
+                }
+            }
+        };
+    }
+
+    /**
+     * <p class="en">Returns the URLs of the shards.</p>
+     * <p class="fr">Renvoie les URLs des fragments.</p>
+     * @param environment <p class="en">The environment.</p> <p class="fr">L'environnement.</p>
+     * @return <p class="en">The URLs, by index.</p> <p class="fr">Les URLs, par index.</p>
+     */
+    private static String[] shardUrls(Environment environment) {
+        return environment.getRequiredProperty("members.datasource.shards.urls", String[].class);
+    }
+
+}
@@ -0,0 +1,51 @@
+package be.cardoeng.example.configurations;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * <p class="en">The configuration of the profile <code>virtual</code>, where the requests are served by virtual threads
+ * (see <code>application-virtual.properties</code>). As JDBC is blocking, the data source is wrapped in a
+ * {@link ConnectionLimitingDataSource} sized as the pool, so every connection of the pool can be used. The carrier
+ * threads a driver would pin while using a connection are not prevented here but found by the load test, which
+ * reports them with <code>-Djdk.tracePinnedThreads</code> (see the task <code>loadTest</code>).</p>
+ * <p class="fr">La configuration du profil <code>virtual</code>, où les requêtes sont servies par des threads
+ * virtuels (voir <code>application-virtual.properties</code>). Comme JDBC est bloquant, la source de données est
+ * enveloppée dans une {@link ConnectionLimitingDataSource} dimensionnée comme le pool, donc chaque connexion du pool
+ * peut être utilisée. Les threads porteurs qu'un pilote épinglerait en utilisant une connexion ne sont pas empêchés
+ * ici mais trouvés par le test de charge, qui les rapporte avec <code>-Djdk.tracePinnedThreads</code> (voir la tâche
+ * <code>loadTest</code>).</p>
+ */
+@Configuration
+@Profile("virtual")
+public class VirtualThreadConfiguration {
+
+    /**
+     * <p class="en">Wraps the data source in a {@link ConnectionLimitingDataSource}.</p>
+     * <p class="fr">Enveloppe la source de données dans une {@link ConnectionLimitingDataSource}.</p>
+     * @param environment <p class="en">The environment, to read the size of the pool.</p>
+     * <p class="fr">L'environnement, pour lire la taille du pool.</p>
+     * @return <p class="en">The post processor wrapping the data source.</p>
+     * <p class="fr">Le post-processeur enveloppant la source de données.</p>
+     */
+    @Bean
+    static BeanPostProcessor connectionLimitingDataSourcePostProcessor(Environment environment) {
+        int maxConnections = environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+        long timeout = environment.getProperty("spring.datasource.hikari.connection-timeout", Long.class, 30000L);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ConnectionLimitingDataSource)) {
+                    return new ConnectionLimitingDataSource(dataSource, maxConnections, timeout);
+                }
+                return bean;
+            }
+        };
+    }
+
+}
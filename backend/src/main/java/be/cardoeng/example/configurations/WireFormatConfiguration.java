@@ -0,0 +1,175 @@
+package be.cardoeng.example.configurations;
+
+import jakarta.annotation.Nullable;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverters;
+import org.springframework.http.converter.cbor.JacksonCborHttpMessageConverter;
+import org.springframework.http.converter.smile.JacksonSmileHttpMessageConverter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import tools.jackson.databind.cfg.DateTimeFeature;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p class="en">Adds the binary formats Smile (<code>application/x-jackson-smile</code>) and CBOR
+ * (<code>application/cbor</code>) to the formats of the API, next to JSON: the client chooses with the
+ * <code>Accept</code> (and <code>Content-Type</code>) header. They use the same Jackson annotations as JSON, but the
+ * dates are written as epoch milliseconds (a number instead of a string). The compression of the responses is
+ * configured with the <code>server.compression.*</code> properties. As the body of a response depends on the
+ * <code>Accept</code> header, the negotiated responses have a <code>Vary: Accept</code> header and their ETags end
+ * with the format ({@link #etagSuffix}), so a cache never serves one format for another.</p>
+ * <p class="fr">Ajoute les formats binaires Smile (<code>application/x-jackson-smile</code>) et CBOR
+ * (<code>application/cbor</code>) aux formats de l'API, à côté du JSON : le client choisit avec l'en-tête
+ * <code>Accept</code> (et <code>Content-Type</code>). Ils utilisent les mêmes annotations Jackson que le JSON, mais
+ * les dates sont écrites en millisecondes depuis l'époque (un nombre au lieu d'une chaîne). La compression des
+ * réponses est configurée avec les propriétés <code>server.compression.*</code>. Comme le corps d'une réponse dépend
+ * de l'en-tête <code>Accept</code>, les réponses négociées ont un en-tête <code>Vary: Accept</code> et leurs ETags
+ * finissent par le format ({@link #etagSuffix}), donc un cache ne sert jamais un format pour un autre.</p>
+ */
+@Configuration
+public class WireFormatConfiguration implements WebMvcConfigurer {
+
+    /**
+     * <p class="en">The media type of Smile.</p>
+     * <p class="fr">Le type de média de Smile.</p>
+     */
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+
+    /**
+     * <p class="en">The formats of the API, in the order of their converters, with the suffix they add to the ETags
+     * (none for JSON, so its ETags stay the versions).</p>
+     * <p class="fr">Les formats de l'API, dans l'ordre de leurs convertisseurs, avec le suffixe qu'ils ajoutent aux
+     * ETags (aucun pour le JSON, donc ses ETags restent les versions).</p>
+     */
+    private static final List<Map.Entry<MediaType, String>> FORMATS = List.of(
+            Map.entry(MediaType.APPLICATION_JSON, ""),
+            Map.entry(MediaType.parseMediaType(SMILE_VALUE), "-smile"),
+            Map.entry(MediaType.APPLICATION_CBOR, "-cbor"));
+
+    /**
+     * <p class="en">Creates the mapper of Smile.</p>
+     * <p class="fr">Crée le mappeur de Smile.</p>
+     * @return <p class="en">The mapper.</p> <p class="fr">Le mappeur.</p>
+     */
+    public static SmileMapper smileMapper() {
+        return SmileMapper.builder()
+                .enable(DateTimeFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+
+    /**
+     * <p class="en">Creates the mapper of CBOR.</p>
+     * <p class="fr">Crée le mappeur de CBOR.</p>
+     * @return <p class="en">The mapper.</p> <p class="fr">Le mappeur.</p>
+     */
+    public static CBORMapper cborMapper() {
+        return CBORMapper.builder()
+                .enable(DateTimeFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+
+    /**
+     * <p class="en">Returns the suffix of the ETags of the format negotiated for an <code>Accept</code> header: the
+     * accepted media types are taken from the most to the least preferred, and the first format compatible with one
+     * of them is chosen, like the converters do.</p>
+     * <p class="fr">Renvoie le suffixe des ETags du format négocié pour un en-tête <code>Accept</code> : les types de
+     * média acceptés sont pris du plus au moins préféré, et le premier format compatible avec l'un d'eux est choisi,
+     * comme le font les convertisseurs.</p>
+     * @param accept <p class="en">The <code>Accept</code> header (may be <code>null</code>).</p>
+     * <p class="fr">L'en-tête <code>Accept</code> (peut être <code>null</code>).</p>
+     * @return <p class="en">The suffix, empty for JSON (also when the header is missing or invalid).</p>
+     * <p class="fr">Le suffixe, vide pour le JSON (aussi quand l'en-tête est absent ou invalide).</p>
+     */
+    public static String etagSuffix(@Nullable String accept) {
+        if (accept == null || accept.isBlank()) {
+            return "";
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return "";
+        }
+        MimeTypeUtils.sortBySpecificity(accepted);
+        for (MediaType type : accepted) {
+            for (Map.Entry<MediaType, String> format : FORMATS) {
+                if (type.isCompatibleWith(format.getKey())) {
+                    return format.getValue();
+                }
+            }
+        }
+        return "";
+    }
+
+    /**
+     * <p class="en">Removes the suffix of the format from an ETag, to get back the version it was built from.</p>
+     * <p class="fr">Retire le suffixe du format d'un ETag, pour retrouver la version à partir de laquelle il a été
+     * construit.</p>
+     * @param etag <p class="en">The ETag, without its quotes.</p> <p class="fr">L'ETag, sans ses guillemets.</p>
+     * @return <p class="en">The ETag without the suffix.</p> <p class="fr">L'ETag sans le suffixe.</p>
+     */
+    public static String withoutEtagSuffix(String etag) {
+        for (Map.Entry<MediaType, String> format : FORMATS) {
+            if (!format.getValue().isEmpty() && etag.endsWith(format.getValue())) {
+                return etag.substring(0, etag.length() - format.getValue().length());
+            }
+        }
+        return etag;
+    }
+
+    /**
+     * <p class="en">Adds <code>Vary: Accept</code> to the responses of the handlers without a fixed media type
+     * (no <code>produces</code>), whose body is written in the format negotiated with the client. It is added before
+     * the handler, so the <code>304 Not Modified</code> responses have it too.</p>
+     * <p class="fr">Ajoute <code>Vary: Accept</code> aux réponses des gestionnaires sans type de média fixe (pas de
+     * <code>produces</code>), dont le corps est écrit dans le format négocié avec le client. Il est ajouté avant le
+     * gestionnaire, donc les réponses <code>304 Not Modified</code> l'ont aussi.</p>
+     * @param registry <p class="en">The registry of the interceptors.</p>
+     * <p class="fr">Le registre des intercepteurs.</p>
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                if (handler instanceof HandlerMethod method) {
+                    RequestMapping mapping = AnnotatedElementUtils.findMergedAnnotation(method.getMethod(),
+                            RequestMapping.class);
+                    if (mapping != null && mapping.produces().length == 0) {
+                        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+                    }
+                }
+                return true;
+            }
+        });
+    }
+
+    /**
+     * <p class="en">Registers the converters of Smile and CBOR at their usual place, after the one of JSON, so JSON
+     * stays the format of the clients accepting anything.</p>
+     * <p class="fr">Enregistre les convertisseurs de Smile et de CBOR à leur place habituelle, après celui du JSON,
+     * donc le JSON reste le format des clients acceptant n'importe quoi.</p>
+     * @param builder <p class="en">The builder of the converters.</p>
+     * <p class="fr">Le constructeur des convertisseurs.</p>
+     */
+    @Override
+    public void configureMessageConverters(HttpMessageConverters.ServerBuilder builder) {
+        builder.withSmileConverter(new JacksonSmileHttpMessageConverter(smileMapper()))
+                .withCborConverter(new JacksonCborHttpMessageConverter(cborMapper()));
+    }
+
+}
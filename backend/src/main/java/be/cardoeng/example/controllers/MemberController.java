@@ -1,32 +1,174 @@
 package be.cardoeng.example.controllers;
 
+import be.cardoeng.example.configurations.WireFormatConfiguration;
+import be.cardoeng.example.dtos.BatchResult;
+import be.cardoeng.example.dtos.MemberStats;
+import be.cardoeng.example.dtos.Operation;
+import be.cardoeng.example.entities.ArchivedMember;
 import be.cardoeng.example.entities.Member;
+import be.cardoeng.example.enums.BatchStatus;
+import be.cardoeng.example.enums.MemberStatus;
+import be.cardoeng.example.monitoring.SqlBudget;
 import be.cardoeng.example.repositories.MemberRepository;
+import be.cardoeng.example.repositories.MemberRepositoryCustom;
+import be.cardoeng.example.routing.ReplicaRoutingDataSource;
+import be.cardoeng.example.services.MemberChangeFeed;
+import be.cardoeng.example.services.MemberChangeTracker;
+import be.cardoeng.example.services.MemberSearchService;
+import be.cardoeng.example.services.MemberStatistics;
+import be.cardoeng.example.services.MemberWriteBehind;
+import be.cardoeng.example.throttling.SingleFlight;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.servlet.http.HttpServletResponse;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.MappingIterator;
 import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectWriter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
 
 /**
- * <p class="en">A simple REST controller to manage the members. The corresponding endpoint is `/api/members`</p>
- * <p class="fr">Un simple contrôleur REST pour gérer les membres. Le point de terminaison correspondant est `/api/members`</p>
+ * <p class="en">A simple REST controller to manage the members. The corresponding endpoint is `/api/members`. The
+ * members are exchanged in JSON, Smile or CBOR, depending on the <code>Accept</code> and <code>Content-Type</code>
+ * headers (see {@link be.cardoeng.example.configurations.WireFormatConfiguration}).</p>
+ * <p class="fr">Un simple contrôleur REST pour gérer les membres. Le point de terminaison correspondant est
+ * `/api/members`. Les membres sont échangés en JSON, Smile ou CBOR, selon les en-têtes <code>Accept</code> et
+ * <code>Content-Type</code> (voir {@link be.cardoeng.example.configurations.WireFormatConfiguration}).</p>
  */
 @RestController
 // @CrossOrigin(origins = "http://localhost:5173") // Allows requests from localhost:5173 (frontend debugging)
 @RequestMapping(path = "/api/members")
 public class MemberController {
 
+    /**
+     * <p class="en">The number of members returned by {@link #getMembers} when no limit is given.</p>
+     * <p class="fr">Le nombre de membres renvoyés par {@link #getMembers} quand aucune limite n'est donnée.</p>
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * <p class="en">The maximum number of members returned by {@link #getMembers}.</p>
+     * <p class="fr">Le nombre maximum de membres renvoyés par {@link #getMembers}.</p>
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * <p class="en">The header containing the cursor of the next page.</p>
+     * <p class="fr">L'en-tête contenant le curseur de la page suivante.</p>
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    /**
+     * <p class="en">The media type of the export (newline delimited JSON).</p>
+     * <p class="fr">Le type de média de l'export (JSON délimité par des retours à la ligne).</p>
+     */
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+
+    /**
+     * <p class="en">The number of members inserted per transaction by {@link #newMembers}. It matches
+     * <code>hibernate.jdbc.batch_size</code>.</p>
+     * <p class="fr">Le nombre de membres insérés par transaction par {@link #newMembers}. Il correspond à
+     * <code>hibernate.jdbc.batch_size</code>.</p>
+     */
+    public static final int BATCH_SIZE = 500;
+
+    /**
+     * <p class="en">The number of members returned by {@link #searchMembers} when no limit is given.</p>
+     * <p class="fr">Le nombre de membres renvoyés par {@link #searchMembers} quand aucune limite n'est donnée.</p>
+     */
+    public static final int DEFAULT_SEARCH_SIZE = 20;
+
+    /**
+     * <p class="en">The header of the preferences of the client (RFC 7240).</p>
+     * <p class="fr">L'en-tête des préférences du client (RFC 7240).</p>
+     */
+    public static final String PREFER_HEADER = "Prefer";
+
+    /**
+     * <p class="en">The header listing the preferences honored by the server (RFC 7240).</p>
+     * <p class="fr">L'en-tête listant les préférences honorées par le serveur (RFC 7240).</p>
+     */
+    public static final String PREFERENCE_APPLIED_HEADER = "Preference-Applied";
+
+    /**
+     * <p class="en">The preference asking for an asynchronous modification (queued in {@link MemberWriteBehind}).</p>
+     * <p class="fr">La préférence demandant une modification asynchrone (mise en file dans
+     * {@link MemberWriteBehind}).</p>
+     */
+    public static final String RESPOND_ASYNC = "respond-async";
+
     /**
      * <p class="en">The repository to use to manage the members.</p>
      * <p class="fr">Le dépôt à utiliser pour gérer les membres.</p>
      */
     private final MemberRepository repository;
 
+    /**
+     * <p class="en">The tracker of the changes of the members, giving the ETag of the list of members.</p>
+     * <p class="fr">Le suivi des changements des membres, donnant l'ETag de la liste des membres.</p>
+     */
+    private final MemberChangeTracker changeTracker;
+
+    /**
+     * <p class="en">The search of the members by name or email.</p>
+     * <p class="fr">La recherche des membres par nom ou email.</p>
+     */
+    private final MemberSearchService searchService;
+
+    /**
+     * <p class="en">The statistics of the members.</p>
+     * <p class="fr">Les statistiques des membres.</p>
+     */
+    private final MemberStatistics statistics;
+
+    /**
+     * <p class="en">The queue of the asynchronous modifications.</p>
+     * <p class="fr">La file des modifications asynchrones.</p>
+     */
+    private final MemberWriteBehind writeBehind;
+
+    /**
+     * <p class="en">The feed of the changes of the members.</p>
+     * <p class="fr">Le flux des changements des membres.</p>
+     */
+    private final MemberChangeFeed changeFeed;
+
+    /**
+     * <p class="en">The loads of the pages of {@link #getMembers} in progress, shared by the identical concurrent
+     * requests.</p>
+     * <p class="fr">Les chargements des pages de {@link #getMembers} en cours, partagés par les requêtes concurrentes
+     * identiques.</p>
+     */
+    private final SingleFlight<PageQuery, List<Member>> pages = new SingleFlight<>();
+
     /**
      * <p class="en">The object mapper to use to map the JSON to the {@link Member} object (and vice versa).</p>
      * <p class="fr">Le mappeur d'objets à utiliser pour mapper le JSON vers l'objet {@link Member} (et vice versa).</p>
@@ -34,110 +176,562 @@ public class MemberController {
     @Autowired
     private ObjectMapper objectMapper;
 
+    /**
+     * <p class="en">The entity manager, used to detach the members once exported.</p>
+     * <p class="fr">Le gestionnaire d'entités, utilisé pour détacher les membres une fois exportés.</p>
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
     /**
      * <p class="en">The constructor of the controller.</p>
      * <p class="fr">Le constructeur du contrôleur.</p>
      * @param repository <p class="en">The repository to use to manage the members.</p>
      * <p class="fr">Le dépôt à utiliser pour gérer les membres.</p>
+     * @param changeTracker <p class="en">The tracker of the changes of the members.</p>
+     * <p class="fr">Le suivi des changements des membres.</p>
+     * @param searchService <p class="en">The search of the members.</p> <p class="fr">La recherche des
+     * membres.</p>
+     * @param statistics <p class="en">The statistics of the members.</p> <p class="fr">Les statistiques des
+     * membres.</p>
+     * @param writeBehind <p class="en">The queue of the asynchronous modifications.</p>
+     * <p class="fr">La file des modifications asynchrones.</p>
+     * @param changeFeed <p class="en">The feed of the changes of the members.</p>
+     * <p class="fr">Le flux des changements des membres.</p>
      */
-    public MemberController(MemberRepository repository) {
+    public MemberController(MemberRepository repository, MemberChangeTracker changeTracker,
+            MemberSearchService searchService, MemberStatistics statistics, MemberWriteBehind writeBehind,
+            MemberChangeFeed changeFeed) {
         this.repository = repository;
+        this.changeTracker = changeTracker;
+        this.searchService = searchService;
+        this.statistics = statistics;
+        this.writeBehind = writeBehind;
+        this.changeFeed = changeFeed;
     }
 
     /**
-     * <p class="en">GetMapping (GET /api/members) that returns all the members we find. The status code should be
-     * 200 except in case of unexpected errors.</p>
-     * <p class="fr">GetMapping (GET /api/members) qui renvoie tous les membres que nous trouvons. Le code d'état
-     * devrait être 200 sauf en cas d'erreurs inattendues.</p>
+     * <p class="en">GetMapping (GET /api/members) that returns a page of the members we find, ordered by id. The
+     * pagination uses a cursor: when the page is full, the header <code>X-Next-Cursor</code> contains the value to give
+     * to <code>after</code> to get the next page. The ETag of the list is the version of the member table
+     * ({@link MemberChangeTracker}) followed by the format ({@link WireFormatConfiguration#etagSuffix}), weak as it
+     * only holds for one instance. The identical concurrent requests share a single query ({@link SingleFlight}). The
+     * status code should be 200, 304 (without loading the members) if the request has a matching
+     * <code>If-None-Match</code>, except in case of unexpected errors.</p>
+     * <p class="fr">GetMapping (GET /api/members) qui renvoie une page des membres que nous trouvons, triés par id. La
+     * pagination utilise un curseur : quand la page est pleine, l'en-tête <code>X-Next-Cursor</code> contient la valeur
+     * à donner à <code>after</code> pour obtenir la page suivante. L'ETag de la liste est la version de la table des
+     * membres ({@link MemberChangeTracker}) suivie du format ({@link WireFormatConfiguration#etagSuffix}), faible car
+     * il n'est valable que pour une instance. Les requêtes concurrentes identiques partagent une seule requête
+     * ({@link SingleFlight}). Le code d'état devrait être 200, 304 (sans charger les membres) si la requête a un
+     * <code>If-None-Match</code> correspondant, sauf en cas d'erreurs inattendues.</p>
+     * @param limit <p class="en">The maximum number of members to return (at most {@value #MAX_PAGE_SIZE}).</p>
+     * <p class="fr">Le nombre maximum de membres à renvoyer (au plus {@value #MAX_PAGE_SIZE}).</p>
+     * @param after <p class="en">The id of the last member of the previous page (optional).</p>
+     * <p class="fr">L'id du dernier membre de la page précédente (optionnel).</p>
+     * @param status <p class="en">Only keep the members with this status (optional).</p>
+     * <p class="fr">Ne garde que les membres avec ce statut (optionnel).</p>
+     * @param beginFrom <p class="en">Only keep the members who joined on or after this date (optional).</p>
+     * <p class="fr">Ne garde que les membres arrivés à cette date ou après (optionnel).</p>
+     * @param beginTo <p class="en">Only keep the members who joined on or before this date (optional).</p>
+     * <p class="fr">Ne garde que les membres arrivés à cette date ou avant (optionnel).</p>
+     * @param endFrom <p class="en">Only keep the members who left on or after this date (optional).</p>
+     * <p class="fr">Ne garde que les membres partis à cette date ou après (optionnel).</p>
+     * @param endTo <p class="en">Only keep the members who left on or before this date (optional).</p>
+     * <p class="fr">Ne garde que les membres partis à cette date ou avant (optionnel).</p>
+     * @param active <p class="en">Only keep the members without end date.</p>
+     * <p class="fr">Ne garde que les membres sans date de fin.</p>
+     * @param includeArchived <p class="en">Also return the archived members (see {@link ArchivedMember}), merged
+     * with the others by id. By default, only the members table is read.</p>
+     * <p class="fr">Renvoie aussi les membres archivés (voir {@link ArchivedMember}), fusionnés avec les autres par
+     * id. Par défaut, seule la table des membres est lue.</p>
+     * @param request <p class="en">The request, to check its <code>If-None-Match</code>.</p>
+     * <p class="fr">La requête, pour vérifier son <code>If-None-Match</code>.</p>
      * @return <p class="en">A {@link ResponseEntity} containing the list of members and the status code.</p>
      * <p class="fr">Un {@link ResponseEntity} contenant la liste des membres et le code d'état.</p>
      */
     @GetMapping(path = "")
-    public ResponseEntity<List<Member>> getMembers() {
-        return ResponseEntity.ok(repository.findAll());
+    @SqlBudget(2)
+    public ResponseEntity<List<Member>> getMembers(
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(required = false) Integer after,
+            @RequestParam(required = false) MemberStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date beginFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date beginTo,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date endFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date endTo,
+            @RequestParam(defaultValue = "false") boolean active,
+            @RequestParam(defaultValue = "false") boolean includeArchived,
+            WebRequest request) {
+        // The version is read before the members, so it can only be older than them (never newer)
+        String version = changeTracker.version();
+        String etag = "W/\"" + version + WireFormatConfiguration.etagSuffix(request.getHeader(HttpHeaders.ACCEPT))
+                + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        int size = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        int from = after == null ? Integer.MIN_VALUE : after;
+        // The version in the key keeps a request from sharing a load started before a change it has seen
+        PageQuery query = new PageQuery(version, ReplicaRoutingDataSource.isPinnedToPrimary(), from, status,
+                beginFrom, beginTo, endFrom, endTo, active, includeArchived, size);
+        // The archived members all have an end date, so the active members are only in the members table
+        List<Member> members = pages.run(query, () -> includeArchived && !active
+                ? findPageWithArchive(from, status, beginFrom, beginTo, endFrom, endTo, size)
+                : repository.findPage(from, status, beginFrom, beginTo, endFrom, endTo, active, Limit.of(size)));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache());
+        if (members.size() == size) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(members.getLast().getId()));
+        }
+        return response.body(members);
+    }
+
+    /**
+     * <p class="en">Returns a page of the members and of the archived members: the page of each table, merged in the
+     * order of the ids and cut to the limit. An id archived then created again is in both tables: the current member
+     * is kept.</p>
+     * <p class="fr">Renvoie une page des membres et des membres archivés : la page de chaque table, fusionnées dans
+     * l'ordre des ids et coupées à la limite. Un id archivé puis créé à nouveau est dans les deux tables : le membre
+     * actuel est gardé.</p>
+     * @param after <p class="en">The id of the last member of the previous page.</p>
+     * <p class="fr">L'id du dernier membre de la page précédente.</p>
+     * @param status <p class="en">The status of the members.</p> <p class="fr">Le statut des membres.</p>
+     * @param beginFrom <p class="en">The lower bound of the begin date.</p>
+     * <p class="fr">La borne inférieure de la date de début.</p>
+     * @param beginTo <p class="en">The upper bound of the begin date.</p>
+     * <p class="fr">La borne supérieure de la date de début.</p>
+     * @param endFrom <p class="en">The lower bound of the end date.</p>
+     * <p class="fr">La borne inférieure de la date de fin.</p>
+     * @param endTo <p class="en">The upper bound of the end date.</p>
+     * <p class="fr">La borne supérieure de la date de fin.</p>
+     * @param size <p class="en">The maximum number of members to return.</p>
+     * <p class="fr">Le nombre maximum de membres à renvoyer.</p>
+     * @return <p class="en">The members of the page.</p> <p class="fr">Les membres de la page.</p>
+     */
+    private List<Member> findPageWithArchive(int after, MemberStatus status, Date beginFrom, Date beginTo,
+            Date endFrom, Date endTo, int size) {
+        Map<Integer, Member> merged = new TreeMap<>();
+        // The bounds of the years let the database skip the partitions of the archive out of the range
+        repository.findArchivedPage(after, status, beginFrom, beginTo, endFrom, endTo,
+                        endFrom == null ? null : ArchivedMember.yearOf(endFrom),
+                        endTo == null ? null : ArchivedMember.yearOf(endTo), Limit.of(size))
+                .forEach(a -> merged.put(a.getId(), a.toMember()));
+        repository.findPage(after, status, beginFrom, beginTo, endFrom, endTo, false, Limit.of(size))
+                .forEach(m -> merged.put(m.getId(), m));
+        return merged.values().stream().limit(size).toList();
+    }
+
+    /**
+     * <p class="en">GetMapping (GET /api/members/search) that returns the members whose first name, last name or
+     * email contain words starting with the words of <code>q</code>, ignoring accents and case (e.g.
+     * <code>seb bo</code> finds Sébastien Bonte). The search uses the in-memory index of
+     * {@link MemberSearchService}, then loads the members found with a single query. The status code should be 200
+     * except in case of unexpected errors.</p>
+     * <p class="fr">GetMapping (GET /api/members/search) qui renvoie les membres dont le prénom, le nom ou l'email
+     * contiennent des mots commençant par les mots de <code>q</code>, en ignorant les accents et la casse (par
+     * exemple <code>seb bo</code> trouve Sébastien Bonte). La recherche utilise l'index en mémoire de
+     * {@link MemberSearchService}, puis charge les membres trouvés avec une seule requête. Le code d'état devrait
+     * être 200 sauf en cas d'erreurs inattendues.</p>
+     * @param q <p class="en">The words to search.</p> <p class="fr">Les mots à rechercher.</p>
+     * @param limit <p class="en">The maximum number of members to return (at most {@value #MAX_PAGE_SIZE}).</p>
+     * <p class="fr">Le nombre maximum de membres à renvoyer (au plus {@value #MAX_PAGE_SIZE}).</p>
+     * @param includeArchived <p class="en">Also search the archived members (see
+     * {@link MemberRepository#searchArchived}), returned after the others when the limit is not reached yet.</p>
+     * <p class="fr">Recherche aussi les membres archivés (voir {@link MemberRepository#searchArchived}), renvoyés
+     * après les autres quand la limite n'est pas encore atteinte.</p>
+     * @return <p class="en">A {@link ResponseEntity} containing the list of members and the status code.</p>
+     * <p class="fr">Un {@link ResponseEntity} contenant la liste des membres et le code d'état.</p>
+     */
+    @GetMapping(path = "/search")
+    @SqlBudget(2)
+    public ResponseEntity<List<Member>> searchMembers(@RequestParam String q,
+            @RequestParam(defaultValue = "" + DEFAULT_SEARCH_SIZE) int limit,
+            @RequestParam(defaultValue = "false") boolean includeArchived) {
+        int size = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        List<Member> members = searchService.search(q, size);
+        if (!includeArchived || members.size() == size) {
+            return ResponseEntity.ok(members);
+        }
+        List<Member> found = new ArrayList<>(members);
+        Set<Integer> ids = new HashSet<>(members.stream().map(Member::getId).toList());
+        for (ArchivedMember archived : repository.searchArchived(q, size - members.size())) {
+            if (ids.add(archived.getId())) {
+                found.add(archived.toMember());
+            }
+        }
+        return ResponseEntity.ok(found);
+    }
+
+    /**
+     * <p class="en">GetMapping (GET /api/members/stats) that returns the number of members per status, active
+     * (without end date) or departed, and per year of arrival. The statistics are served from the counters of
+     * {@link MemberStatistics}, without querying the database. The status code should be 200 except in case of
+     * unexpected errors.</p>
+     * <p class="fr">GetMapping (GET /api/members/stats) qui renvoie le nombre de membres par statut, actifs (sans
+     * date de fin) ou partis, et par année d'arrivée. Les statistiques sont servies depuis les compteurs de
+     * {@link MemberStatistics}, sans interroger la base de données. Le code d'état devrait être 200 sauf en cas
+     * d'erreurs inattendues.</p>
+     * @return <p class="en">A {@link ResponseEntity} containing the statistics and the status code.</p>
+     * <p class="fr">Un {@link ResponseEntity} contenant les statistiques et le code d'état.</p>
+     */
+    @GetMapping(path = "/stats")
+    @SqlBudget(0)
+    public ResponseEntity<MemberStats> getStats() {
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(statistics.stats());
+    }
+
+    /**
+     * <p class="en">GetMapping (GET /api/members/changes) that sends the changes of the members as Server-Sent Events,
+     * once they are committed: one event per creation, modification or deletion (named <code>Created</code>,
+     * <code>Updated</code> or <code>Deleted</code>), containing a {@link be.cardoeng.example.dtos.MemberChange}. A
+     * client reconnecting with <code>Last-Event-ID</code> first receives the changes it missed, or a
+     * <code>reset</code> event if it must reload the members (see {@link MemberChangeFeed}).</p>
+     * <p class="fr">GetMapping (GET /api/members/changes) qui envoie les changements des membres en Server-Sent
+     * Events, une fois validés : un événement par création, modification ou suppression (nommé <code>Created</code>,
+     * <code>Updated</code> ou <code>Deleted</code>), contenant un {@link be.cardoeng.example.dtos.MemberChange}. Un
+     * client se reconnectant avec <code>Last-Event-ID</code> reçoit d'abord les changements qu'il a manqués, ou un
+     * événement <code>reset</code> s'il doit recharger les membres (voir {@link MemberChangeFeed}).</p>
+     * @param lastEventId <p class="en">The id of the last event received by the client, if any.</p>
+     * <p class="fr">L'id du dernier événement reçu par le client, s'il y en a un.</p>
+     * @return <p class="en">The emitter of the events.</p> <p class="fr">L'émetteur des événements.</p>
+     */
+    @GetMapping(path = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getChanges(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return changeFeed.subscribe(lastEventId);
+    }
+
+    /**
+     * <p class="en">GetMapping (GET /api/members/export) that exports all the members as NDJSON (one JSON member
+     * per line). The members are streamed from the database to the response one by one and detached once written,
+     * so the memory used does not depend on the number of members. The status code should be 200 except in case of
+     * unexpected errors.</p>
+     * <p class="fr">GetMapping (GET /api/members/export) qui exporte tous les membres en NDJSON (un membre JSON par
+     * ligne). Les membres sont diffusés un par un de la base de données vers la réponse et détachés une fois écrits,
+     * donc la mémoire utilisée ne dépend pas du nombre de membres. Le code d'état devrait être 200 sauf en cas
+     * d'erreurs inattendues.</p>
+     * @param response <p class="en">The response to write the members to.</p>
+     * <p class="fr">La réponse dans laquelle écrire les membres.</p>
+     * @throws IOException <p class="en">If the response cannot be written.</p>
+     * <p class="fr">Si la réponse ne peut pas être écrite.</p>
+     */
+    @GetMapping(path = "/export", produces = NDJSON_VALUE)
+    @Transactional(readOnly = true)
+    public void exportMembers(HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON_VALUE);
+        ObjectWriter writer = objectMapper.writerFor(Member.class);
+        OutputStream out = response.getOutputStream();
+        try (Stream<Member> members = repository.streamAll()) {
+            for (Member m : (Iterable<Member>) members::iterator) {
+                out.write(writer.writeValueAsBytes(m));
+                out.write('\n');
+                entityManager.detach(m);
+            }
+        }
+        out.flush();
     }
 
     /**
      * <p class="en">PostMapping (POST /api/members) that creates a new member. The status code should be 201 if
      * the member is created and 409 if the member already exists (i.e. the id is already in the database). Use
-     * a PATCH request if you want to modify a member.</p>
+     * a PATCH request if you want to modify a member. With <code>Prefer: respond-async</code>, see
+     * {@link #accepted}.</p>
      * <p class="fr">PostMapping (POST /api/members) qui crée un nouveau membre. Le code d'état devrait être 201 si
      * le membre est créé et 409 si le membre existe déjà (c'est-à-dire que l'id est déjà dans la base de données). Utilisez
-     * une requête PATCH si vous voulez le modifier.</p>
+     * une requête PATCH si vous voulez le modifier. Avec <code>Prefer: respond-async</code>, voir
+     * {@link #accepted}.</p>
      * @param member <p class="en">The member to create.</p> <p class="fr">Le membre à créer.</p>
+     * @param prefer <p class="en">The preferences of the client (optional).</p>
+     * <p class="fr">Les préférences du client (optionnelles).</p>
      * @return <p class="en">A {@link ResponseEntity} containing the created member and the status code.</p>
      * <p class="fr">Un {@link ResponseEntity} contenant le membre créé et le code d'état.</p>
      */
     @PostMapping(path = "")
-    public ResponseEntity<Member> newMember(@RequestBody Member member) {
-        if (repository.existsById(member.getId())) {
+    @SqlBudget(2)
+    public ResponseEntity<?> newMember(@RequestBody Member member,
+            @RequestHeader(value = PREFER_HEADER, required = false) String prefer) {
+        if (respondAsync(prefer)) {
+            return accepted(writeBehind.create(member));
+        }
+        if (repository.insertAll(List.of(member)).getFirst().status() == BatchStatus.Conflict) {
             return ResponseEntity.status(HttpStatus.CONFLICT).build();
         }
-        return ResponseEntity.status(HttpStatus.CREATED).body(repository.save(member));
+        return ResponseEntity.status(HttpStatus.CREATED).body(member);
     }
 
     /**
-     * <p class="en">GetMapping (GET /api/members/{id}) that returns the member with the given id. The status code
-     * should be 200 if the member is found and 404 if the member is not found.</p>
-     * <p class="fr">GetMapping (GET /api/members/{id}) qui renvoie le membre avec l'id donné. Le code d'état
-     * devrait être 200 si le membre est trouvé et 404 si le membre n'est pas trouvé.</p>
+     * <p class="en">PostMapping (POST /api/members/batch) that creates many members at once. The body is either a
+     * JSON array of members or NDJSON (one member per line). The body is read as a stream and the members are
+     * inserted by chunks of {@value #BATCH_SIZE} (one query to find the existing ids and JDBC batched inserts per
+     * chunk), each chunk in its own transaction. The status code should be 200 with the result (created or
+     * conflict) of each member, in the same order, and 400 if the body cannot be parsed (the chunks before the
+     * error are kept).</p>
+     * <p class="fr">PostMapping (POST /api/members/batch) qui crée plusieurs membres à la fois. Le corps est soit un
+     * tableau JSON de membres, soit du NDJSON (un membre par ligne). Le corps est lu comme un flux et les membres sont
+     * insérés par morceaux de {@value #BATCH_SIZE} (une requête pour trouver les ids existants et des insertions par
+     * lots JDBC par morceau), chaque morceau dans sa propre transaction. Le code d'état devrait être 200 avec le
+     * résultat (créé ou conflit) de chaque membre, dans le même ordre, et 400 si le corps ne peut pas être lu (les
+     * morceaux avant l'erreur sont gardés).</p>
+     * @param body <p class="en">The body of the request.</p> <p class="fr">Le corps de la requête.</p>
+     * @return <p class="en">A {@link ResponseEntity} containing the result of each member and the status code.</p>
+     * <p class="fr">Un {@link ResponseEntity} contenant le résultat de chaque membre et le code d'état.</p>
+     */
+    @PostMapping(path = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON_VALUE})
+    public ResponseEntity<List<BatchResult>> newMembers(InputStream body) {
+        List<BatchResult> results = new ArrayList<>();
+        List<Member> chunk = new ArrayList<>(BATCH_SIZE);
+        try (MappingIterator<Member> members = objectMapper.readerFor(Member.class).readValues(body)) {
+            while (members.hasNextValue()) {
+                chunk.add(members.nextValue());
+                if (chunk.size() == BATCH_SIZE) {
+                    results.addAll(repository.insertAll(chunk));
+                    chunk.clear();
+                }
+            }
+        } catch (JacksonException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!chunk.isEmpty()) {
+            results.addAll(repository.insertAll(chunk));
+        }
+        return ResponseEntity.ok(results);
+    }
+
+    /**
+     * <p class="en">GetMapping (GET /api/members/{id}) that returns the member with the given id. The member is read
+     * through the cache of {@link MemberRepository#findById} and its ETag is its version followed by the format
+     * ({@link WireFormatConfiguration#etagSuffix}). The status code should be 200 if the member is found, 304 (only the
+     * version is read) if the request has a matching <code>If-None-Match</code> and 404 if the member is not found.</p>
+     * <p class="fr">GetMapping (GET /api/members/{id}) qui renvoie le membre avec l'id donné. Le membre est lu à
+     * travers le cache de {@link MemberRepository#findById} et son ETag est sa version suivie du format
+     * ({@link WireFormatConfiguration#etagSuffix}). Le code d'état devrait être 200 si le membre est trouvé, 304 (seule
+     * la version est lue) si la requête a un <code>If-None-Match</code> correspondant et 404 si le membre n'est pas
+     * trouvé.</p>
      * @param id <p class="en">The id of the member to find.</p> <p class="fr">L'id du membre à trouver.</p>
+     * @param request <p class="en">The request, to check its <code>If-None-Match</code>.</p>
+     * <p class="fr">La requête, pour vérifier son <code>If-None-Match</code>.</p>
      * @return <p class="en">A {@link ResponseEntity} containing the member and the status code.</p>
      * <p class="fr">Un {@link ResponseEntity} contenant le membre et le code d'état.</p>
      */
     @GetMapping(path = "/{id}")
-    public ResponseEntity<Member> getMember(@PathVariable int id) {
+    @SqlBudget(2)
+    public ResponseEntity<Member> getMember(@PathVariable int id, WebRequest request) {
+        String format = WireFormatConfiguration.etagSuffix(request.getHeader(HttpHeaders.ACCEPT));
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            Optional<Long> version = repository.findVersionById(id);
+            if (version.isPresent() && request.checkNotModified(version.get() + format)) {
+                return null;
+            }
+        }
         try {
             Member m = repository.findById(id).orElseThrow();
-            return ResponseEntity.ok(m);
+            return ResponseEntity.ok()
+                    .eTag(m.getVersion() + format)
+                    .cacheControl(CacheControl.noCache())
+                    .body(m);
         } catch (NoSuchElementException e) {
             return ResponseEntity.notFound().build();
         }
     }
 
     /**
-     * <p class="en">PatchMapping (PATCH /api/members/{id}) that modifies the member with the given id. The status
-     * code should be 200 if the member is modified and 404 if the member is not found. </p>
-     * <p class="fr">PatchMapping (PATCH /api/members/{id}) qui modifie le membre avec l'id donné. Le code d'état
-     * devrait être 200 si le membre est modifié et 404 si le membre n'est pas trouvé.</p>
+     * <p class="en">PatchMapping (PATCH /api/members/{id}) that modifies the member with the given id. Only the fields
+     * in {@link MemberRepositoryCustom#UPDATABLE_FIELDS} are modified: the member is read with a lock then written with
+     * a single UPDATE, and returned with its new ETag (without such fields, the member is only read, from the cache if
+     * possible). If the request has an <code>If-Match</code> header, the member is only modified if its version (ETag)
+     * still matches, so a concurrent modification is never lost. The status code should be 200 if the member is
+     * modified, 404 if the member is not found, 412 if the <code>If-Match</code> does not match and 409 if the member
+     * was modified concurrently. With <code>Prefer: respond-async</code>, see {@link #accepted}.</p>
+     * <p class="fr">PatchMapping (PATCH /api/members/{id}) qui modifie le membre avec l'id donné. Seuls les champs de
+     * {@link MemberRepositoryCustom#UPDATABLE_FIELDS} sont modifiés : le membre est lu avec un verrou puis écrit avec
+     * un seul UPDATE, et renvoyé avec son nouvel ETag (sans de tels champs, le membre est seulement lu, depuis le cache
+     * si possible). Si la requête a un en-tête <code>If-Match</code>, le membre n'est modifié que si sa version (ETag)
+     * correspond toujours, donc une modification concurrente n'est jamais perdue. Le code d'état devrait être 200 si le
+     * membre est modifié, 404 si le membre n'est pas trouvé, 412 si le <code>If-Match</code> ne correspond pas et 409
+     * si le membre a été modifié en même temps. Avec <code>Prefer: respond-async</code>, voir {@link #accepted}.</p>
      * @param id <p class="en">The id of the member to modify.</p> <p class="fr">L'id du membre à modifier.</p>
      * @param m <p class="en">The modifications to apply to the member.</p> <p class="fr">Les modifications à
      *         appliquer au membre.</p>
+     * @param ifMatch <p class="en">The ETag the member must have (optional).</p>
+     * <p class="fr">L'ETag que le membre doit avoir (optionnel).</p>
+     * @param prefer <p class="en">The preferences of the client (optional).</p>
+     * <p class="fr">Les préférences du client (optionnelles).</p>
+     * @param accept <p class="en">The formats accepted by the client, giving the one of the ETag (optional).</p>
+     * <p class="fr">Les formats acceptés par le client, donnant celui de l'ETag (optionnel).</p>
      * @return <p class="en">A {@link ResponseEntity} containing the modified member and the status code.</p>
      * <p class="fr">Un {@link ResponseEntity} contenant le membre modifié et le code d'état.</p>
      */
     @PatchMapping(path = "/{id}")
-    public ResponseEntity<Member> patchMember(@PathVariable int id, @RequestBody Map<String, Object> m) {
-        try {
-            if (m.containsKey("id"))
-                m.remove("id");
-            
-            Member member = repository.findById(id).orElseThrow();
-            objectMapper.updateValue(member, m);
-            return ResponseEntity.ok(repository.save(member));
-        } catch (NoSuchElementException e) {
+    @SqlBudget(2)
+    public ResponseEntity<?> patchMember(@PathVariable int id, @RequestBody Map<String, Object> m,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestHeader(value = PREFER_HEADER, required = false) String prefer,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        // Only keep the fields that can be modified (the id and unknown fields are ignored) with their real type
+        Map<String, Object> fields = new HashMap<>();
+        m.forEach((field, value) -> {
+            Class<?> type = MemberRepositoryCustom.UPDATABLE_FIELDS.get(field);
+            if (type != null) {
+                fields.put(field, value == null ? null : objectMapper.convertValue(value, type));
+            }
+        });
+        Long expectedVersion = parseIfMatch(ifMatch);
+        if (!fields.isEmpty() && respondAsync(prefer)) {
+            return accepted(writeBehind.patch(id, fields, expectedVersion));
+        }
+
+        if (fields.isEmpty()) {
+            // Nothing to modify: the member is returned as it is (from the cache if possible)
+            Optional<Member> member = repository.findById(id);
+            if (member.isPresent() && expectedVersion != null
+                    && expectedVersion.longValue() != member.get().getVersion()) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+            }
+            return member
+                    .map(found -> ResponseEntity.ok()
+                            .eTag(found.getVersion() + WireFormatConfiguration.etagSuffix(accept))
+                            .body(found))
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+        }
+        Optional<Member> member = repository.updateFields(id, fields, expectedVersion);
+        if (member.isPresent()) {
+            return ResponseEntity.ok()
+                    .eTag(member.get().getVersion() + WireFormatConfiguration.etagSuffix(accept))
+                    .body(member.get());
+        }
+        // Nothing was modified, find out why without loading the member
+        Optional<Long> version = repository.findVersionById(id);
+        if (version.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
+        if (expectedVersion != null && expectedVersion.longValue() != version.get()) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+        return ResponseEntity.status(HttpStatus.CONFLICT).build();
     }
 
     /**
-     * <p class="en">DeleteMapping (DELETE /api/members/{id}) that deletes the member with the given id. The status
-     * code should be 204 if the member is deleted and 404 if the member is not found.</p>
-     * <p class="fr">DeleteMapping (DELETE /api/members/{id}) qui supprime le membre avec l'id donné. Le code d'état
-     * devrait être 204 si le membre est supprimé et 404 si le membre n'est pas trouvé.</p>
+     * <p class="en">Returns the version given by an <code>If-Match</code> header.</p>
+     * <p class="fr">Renvoie la version donnée par un en-tête <code>If-Match</code>.</p>
+     * @param ifMatch <p class="en">The value of the header (may be <code>null</code>).</p>
+     * <p class="fr">La valeur de l'en-tête (peut être <code>null</code>).</p>
+     * @return <p class="en"><code>null</code> if any version matches (no header or <code>*</code>), -1 if no
+     * version can match (weak or invalid ETag), the version otherwise.</p>
+     * <p class="fr"><code>null</code> si toute version correspond (pas d'en-tête ou <code>*</code>), -1 si aucune
+     * version ne peut correspondre (ETag faible ou invalide), la version sinon.</p>
+     */
+    private static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String etag = ifMatch.trim();
+        if (etag.length() >= 2 && etag.startsWith("\"") && etag.endsWith("\"")) {
+            etag = etag.substring(1, etag.length() - 1);
+        }
+        try {
+            // The version is the same in all the formats
+            return Long.parseLong(WireFormatConfiguration.withoutEtagSuffix(etag));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * <p class="en">DeleteMapping (DELETE /api/members/{id}) that deletes the member with the given id: it is moved to
+     * the archive (see {@link MemberRepository#archiveById}), where it is still found with
+     * <code>includeArchived=true</code>. The status code should be 204 if the member is deleted and 404 if the member
+     * is not found.</p>
+     * <p class="fr">DeleteMapping (DELETE /api/members/{id}) qui supprime le membre avec l'id donné : il est déplacé
+     * vers l'archive (voir {@link MemberRepository#archiveById}), où il est encore trouvé avec
+     * <code>includeArchived=true</code>. Le code d'état devrait être 204 si le membre est supprimé et 404 si le membre
+     * n'est pas trouvé. Avec <code>Prefer: respond-async</code>, voir {@link #accepted}.</p>
      * @param id <p class="en">The id of the member to delete.</p> <p class="fr">L'id du membre à supprimer.</p>
+     * @param prefer <p class="en">The preferences of the client (optional).</p>
+     * <p class="fr">Les préférences du client (optionnelles).</p>
      * @return <p class="en">A {@link ResponseEntity} containing the status code.</p>
      * <p class="fr">Un {@link ResponseEntity} contenant le code d'état.</p>
      */
     @DeleteMapping(path = "/{id}")
-    public ResponseEntity<?> deleteMember(@PathVariable int id) {
-        try {
-            Member m = repository.findById(id).orElseThrow();
-            repository.delete(m);
-            return ResponseEntity.noContent().build();
-        } catch (NoSuchElementException e) {
+    // 4 statements, and the deletion of the previous archive of the same id if there is one
+    @SqlBudget(5)
+    public ResponseEntity<?> deleteMember(@PathVariable int id,
+            @RequestHeader(value = PREFER_HEADER, required = false) String prefer) {
+        if (respondAsync(prefer)) {
+            return accepted(writeBehind.delete(id));
+        }
+        if (repository.archiveById(id) == 0) {
             return ResponseEntity.notFound().build();
         }
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * <p class="en">Checks if the client prefers an asynchronous modification.</p>
+     * <p class="fr">Vérifie si le client préfère une modification asynchrone.</p>
+     * @param prefer <p class="en">The value of the <code>Prefer</code> header (may be <code>null</code>).</p>
+     * <p class="fr">La valeur de l'en-tête <code>Prefer</code> (peut être <code>null</code>).</p>
+     * @return <p class="en">If <code>respond-async</code> is one of the preferences.</p>
+     * <p class="fr">Si <code>respond-async</code> est une des préférences.</p>
+     */
+    private static boolean respondAsync(String prefer) {
+        if (prefer == null) {
+            return false;
+        }
+        for (String preference : prefer.split(",")) {
+            if (preference.trim().equalsIgnoreCase(RESPOND_ASYNC)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * <p class="en">Returns the response of a queued modification: 202 with the operation (its status is at
+     * <code>/api/operations/{id}</code>, given by the <code>Location</code> header), or 429 with a
+     * <code>Retry-After</code> if the queue of {@link MemberWriteBehind} is full (or stopped). The request returns
+     * before the modification is committed; the status code of the operation, once done, is the one the synchronous
+     * request would have returned.</p>
+     * <p class="fr">Renvoie la réponse d'une modification mise en file : 202 avec l'opération (son état est à
+     * <code>/api/operations/{id}</code>, donné par l'en-tête <code>Location</code>), ou 429 avec un
+     * <code>Retry-After</code> si la file de {@link MemberWriteBehind} est pleine (ou arrêtée). La requête revient
+     * avant que la modification ne soit validée ; le code d'état de l'opération, une fois terminée, est celui que la
+     * requête synchrone aurait renvoyé.</p>
+     * @param operation <p class="en">The operation, or empty if the queue is full or stopped.</p>
+     * <p class="fr">L'opération, ou vide si la file est pleine ou arrêtée.</p>
+     * @return <p class="en">A {@link ResponseEntity} containing the operation and the status code.</p>
+     * <p class="fr">Un {@link ResponseEntity} contenant l'opération et le code d'état.</p>
+     */
+    private static ResponseEntity<?> accepted(Optional<Operation> operation) {
+        if (operation.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create(OperationController.PATH + "/" + operation.get().id()))
+                .header(PREFERENCE_APPLIED_HEADER, RESPOND_ASYNC)
+                .body(operation.get());
+    }
+
+    /**
+     * <p class="en">Handles the optimistic locking failures (a member modified by someone else between its reading
+     * and its writing). The status code is 409.</p>
+     * <p class="fr">Gère les échecs du verrouillage optimiste (un membre modifié par quelqu'un d'autre entre sa
+     * lecture et son écriture). Le code d'état est 409.</p>
+     * @param e <p class="en">The failure.</p> <p class="fr">L'échec.</p>
+     * @return <p class="en">A {@link ResponseEntity} containing the status code.</p>
+     * <p class="fr">Un {@link ResponseEntity} contenant le code d'état.</p>
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<?> optimisticLockingFailure(OptimisticLockingFailureException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    /**
+     * <p class="en">The key of a page of {@link #getMembers}: the parameters of the query, the version of the member
+     * table read by the request and if the request reads from the primary.</p>
+     * <p class="fr">La clé d'une page de {@link #getMembers} : les paramètres de la requête, la version de la table
+     * des membres lue par la requête et si la requête lit depuis le primaire.</p>
+     */
+    private record PageQuery(String version, boolean primary, int after, MemberStatus status, Date beginFrom,
+            Date beginTo, Date endFrom, Date endTo, boolean active, boolean includeArchived, int size) {
     }
 
 }
@@ -0,0 +1,60 @@
+package be.cardoeng.example.controllers;
+
+import be.cardoeng.example.dtos.Operation;
+import be.cardoeng.example.services.MemberWriteBehind;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * <p class="en">A simple REST controller to follow the asynchronous modifications of the members. The corresponding
+ * endpoint is `/api/operations`</p>
+ * <p class="fr">Un simple contrôleur REST pour suivre les modifications asynchrones des membres. Le point de
+ * terminaison correspondant est `/api/operations`</p>
+ */
+@RestController
+@RequestMapping(path = OperationController.PATH)
+public class OperationController {
+
+    /**
+     * <p class="en">The path of the endpoint.</p>
+     * <p class="fr">Le chemin du point de terminaison.</p>
+     */
+    public static final String PATH = "/api/operations";
+
+    /**
+     * <p class="en">The queue of the asynchronous modifications.</p>
+     * <p class="fr">La file des modifications asynchrones.</p>
+     */
+    private final MemberWriteBehind writeBehind;
+
+    /**
+     * <p class="en">The constructor of the controller.</p>
+     * <p class="fr">Le constructeur du contrôleur.</p>
+     * @param writeBehind <p class="en">The queue of the asynchronous modifications.</p>
+     * <p class="fr">La file des modifications asynchrones.</p>
+     */
+    public OperationController(MemberWriteBehind writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    /**
+     * <p class="en">GetMapping (GET /api/operations/{id}) that returns the operation with the given id. The status
+     * code should be 200 if the operation is found and 404 if it is unknown or expired.</p>
+     * <p class="fr">GetMapping (GET /api/operations/{id}) qui renvoie l'opération avec l'id donné. Le code d'état
+     * devrait être 200 si l'opération est trouvée et 404 si elle est inconnue ou expirée.</p>
+     * @param id <p class="en">The id of the operation.</p> <p class="fr">L'id de l'opération.</p>
+     * @return <p class="en">A {@link ResponseEntity} containing the operation and the status code.</p>
+     * <p class="fr">Un {@link ResponseEntity} contenant l'opération et le code d'état.</p>
+     */
+    @GetMapping(path = "/{id}")
+    public ResponseEntity<Operation> getOperation(@PathVariable long id) {
+        return writeBehind.find(id)
+                .map(operation -> ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(operation))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+}
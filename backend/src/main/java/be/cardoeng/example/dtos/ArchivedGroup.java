@@ -0,0 +1,16 @@
+package be.cardoeng.example.dtos;
+
+import be.cardoeng.example.enums.MemberStatus;
+import jakarta.annotation.Nullable;
+
+/**
+ * <p class="en">The number of archived members with a status and a year of arrival, counted with a
+ * <code>GROUP BY</code> (see {@link be.cardoeng.example.repositories.MemberRepository#countArchivedByGroup}).</p>
+ * <p class="fr">Le nombre de membres archivés avec un statut et une année d'arrivée, compté avec un
+ * <code>GROUP BY</code> (voir {@link be.cardoeng.example.repositories.MemberRepository#countArchivedByGroup}).</p>
+ * @param status <p class="en">The status of the members.</p> <p class="fr">Le statut des membres.</p>
+ * @param beginYear <p class="en">The year of their begin date.</p> <p class="fr">L'année de leur date de début.</p>
+ * @param count <p class="en">The number of members.</p> <p class="fr">Le nombre de membres.</p>
+ */
+public record ArchivedGroup(@Nullable MemberStatus status, @Nullable Integer beginYear, long count) {
+}
@@ -0,0 +1,13 @@
+package be.cardoeng.example.dtos;
+
+import be.cardoeng.example.enums.BatchStatus;
+
+/**
+ * <p class="en">The result of the import of one member in a batch import.</p>
+ * <p class="fr">Le résultat de l'import d'un membre dans un import par lot.</p>
+ * @param id <p class="en">The id of the member.</p> <p class="fr">L'id du membre.</p>
+ * @param status <p class="en">If the member was created or was already in the database.</p>
+ * <p class="fr">Si le membre a été créé ou était déjà dans la base de données.</p>
+ */
+public record BatchResult(int id, BatchStatus status) {
+}
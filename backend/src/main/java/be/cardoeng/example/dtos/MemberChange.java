@@ -0,0 +1,19 @@
+package be.cardoeng.example.dtos;
+
+import be.cardoeng.example.entities.Member;
+import be.cardoeng.example.enums.ChangeType;
+import jakarta.annotation.Nullable;
+
+/**
+ * <p class="en">A committed change of a member, as sent by the change feed (GET /api/members/changes).</p>
+ * <p class="fr">Un changement validé d'un membre, tel qu'envoyé par le flux des changements
+ * (GET /api/members/changes).</p>
+ * @param sequence <p class="en">The number of the change (increasing, without gaps).</p>
+ * <p class="fr">Le numéro du changement (croissant, sans trous).</p>
+ * @param type <p class="en">The kind of change.</p> <p class="fr">Le type de changement.</p>
+ * @param id <p class="en">The id of the member.</p> <p class="fr">L'id du membre.</p>
+ * @param member <p class="en">The member after the change (<code>null</code> for a deletion).</p>
+ * <p class="fr">Le membre après le changement (<code>null</code> pour une suppression).</p>
+ */
+public record MemberChange(long sequence, ChangeType type, int id, @Nullable Member member) {
+}
@@ -0,0 +1,23 @@
+package be.cardoeng.example.dtos;
+
+import be.cardoeng.example.enums.MemberStatus;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * <p class="en">The statistics of the members.</p>
+ * <p class="fr">Les statistiques des membres.</p>
+ * @param total <p class="en">The number of members.</p> <p class="fr">Le nombre de membres.</p>
+ * @param byStatus <p class="en">The number of members per status (every status is present).</p>
+ * <p class="fr">Le nombre de membres par statut (chaque statut est présent).</p>
+ * @param active <p class="en">The number of members without end date.</p>
+ * <p class="fr">Le nombre de membres sans date de fin.</p>
+ * @param departed <p class="en">The number of members with an end date.</p>
+ * <p class="fr">Le nombre de membres avec une date de fin.</p>
+ * @param byBeginYear <p class="en">The number of members per year of their begin date.</p>
+ * <p class="fr">Le nombre de membres par année de leur date de début.</p>
+ */
+public record MemberStats(long total, Map<MemberStatus, Long> byStatus, long active, long departed,
+                          SortedMap<Integer, Long> byBeginYear) {
+}
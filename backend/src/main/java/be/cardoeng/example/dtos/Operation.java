@@ -0,0 +1,21 @@
+package be.cardoeng.example.dtos;
+
+import be.cardoeng.example.enums.ChangeType;
+import be.cardoeng.example.enums.OperationStatus;
+import jakarta.annotation.Nullable;
+
+/**
+ * <p class="en">An asynchronous modification of a member, queued by
+ * {@link be.cardoeng.example.services.MemberWriteBehind}.</p>
+ * <p class="fr">Une modification asynchrone d'un membre, mise en file par
+ * {@link be.cardoeng.example.services.MemberWriteBehind}.</p>
+ * @param id <p class="en">The id of the operation.</p> <p class="fr">L'id de l'opération.</p>
+ * @param type <p class="en">The kind of modification.</p> <p class="fr">Le type de modification.</p>
+ * @param memberId <p class="en">The id of the member.</p> <p class="fr">L'id du membre.</p>
+ * @param status <p class="en">The progress of the operation.</p> <p class="fr">L'avancement de l'opération.</p>
+ * @param code <p class="en">The status code the synchronous request would have returned (<code>null</code> while
+ * pending).</p> <p class="fr">Le code d'état que la requête synchrone aurait renvoyé (<code>null</code> tant qu'elle
+ * est en attente).</p>
+ */
+public record Operation(long id, ChangeType type, int memberId, OperationStatus status, @Nullable Integer code) {
+}
@@ -0,0 +1,171 @@
+package be.cardoeng.example.entities;
+
+import be.cardoeng.example.enums.MemberStatus;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * <p class="en">A departed member, moved out of the table of the members (the hot table, kept small) into the
+ * archive (see {@link be.cardoeng.example.repositories.MemberRepositoryCustom#archiveById}). The year of the end date
+ * is part of the primary key, so the table can be partitioned by it (see
+ * <code>db/archived-member-partitions.sql</code>): a query bounded on the end date only reads the partitions of its
+ * years. The words of the names and email are kept normalized in {@link #searchTokens}, so the archive can be
+ * searched without an in-memory index.</p>
+ * <p class="fr">Un membre parti, déplacé hors de la table des membres (la table chaude, gardée petite) vers
+ * l'archive (voir {@link be.cardoeng.example.repositories.MemberRepositoryCustom#archiveById}). L'année de la date de
+ * fin fait partie de la clé primaire, donc la table peut être partitionnée par elle (voir
+ * <code>db/archived-member-partitions.sql</code>) : une requête bornée sur la date de fin ne lit que les partitions de
+ * ses années. Les mots des noms et de l'email sont gardés normalisés dans {@link #searchTokens}, donc l'archive peut
+ * être recherchée sans index en mémoire.</p>
+ */
+@NoArgsConstructor
+@Getter
+@Setter
+@EqualsAndHashCode
+@Entity
+@IdClass(ArchivedMember.Key.class)
+@Table(indexes = {
+        @Index(name = "idx_archived_member_id", columnList = "id"),
+        @Index(name = "idx_archived_member_end_date_id", columnList = "end_date, id")
+})
+public class ArchivedMember {
+
+    /**
+     * <p class="en">The id of the member.</p>
+     * <p class="fr">L'id du membre.</p>
+     */
+    @Id private int id;
+    /**
+     * <p class="en">The year of the end date, the key of the partitions.</p>
+     * <p class="fr">L'année de la date de fin, la clé des partitions.</p>
+     */
+    @Id private int endYear;
+    /**
+     * <p class="en">The first name of the member.</p>
+     * <p class="fr">Le prénom du membre.</p>
+     */
+    private String firstName;
+    /**
+     * <p class="en">The last name of the member.</p>
+     * <p class="fr">Le nom de famille du membre.</p>
+     */
+    private String lastName;
+    /**
+     * <p class="en">The email of the member.</p>
+     * <p class="fr">L'email du membre.</p>
+     */
+    private String email;
+    /**
+     * <p class="en">The status of the member.</p>
+     * <p class="fr">Le statut du membre.</p>
+     */
+    private MemberStatus status;
+    /**
+     * <p class="en">The date of arrival of the member.</p>
+     * <p class="fr">La date d'arrivée du membre.</p>
+     */
+    private Date beginDate;
+    /**
+     * <p class="en">The date of departure of the member. It is never <code>null</code> in the archive.</p>
+     * <p class="fr">La date de départ du membre. Elle n'est jamais <code>null</code> dans l'archive.</p>
+     */
+    private Date endDate;
+    /**
+     * <p class="en">The version of the member when it was archived.</p>
+     * <p class="fr">La version du membre quand il a été archivé.</p>
+     */
+    private long version;
+    /**
+     * <p class="en">The normalized words of the names and email, each preceded by a space (e.g.
+     * <code>" sebastien bonte sbonte"</code>), so <code>LIKE '% word%'</code> finds the words starting with
+     * <code>word</code>.</p>
+     * <p class="fr">Les mots normalisés des noms et de l'email, chacun précédé d'une espace (par exemple
+     * <code>" sebastien bonte sbonte"</code>), donc <code>LIKE '% mot%'</code> trouve les mots commençant par
+     * <code>mot</code>.</p>
+     */
+    @Column(length = 1000)
+    private String searchTokens;
+
+    /**
+     * <p class="en">Creates the archive of a departed member.</p>
+     * <p class="fr">Crée l'archive d'un membre parti.</p>
+     * @param member <p class="en">The member, with an end date.</p> <p class="fr">Le membre, avec une date de
+     * fin.</p>
+     * @param tokens <p class="en">The normalized words of its names and email.</p>
+     * <p class="fr">Les mots normalisés de ses noms et de son email.</p>
+     */
+    public ArchivedMember(Member member, String[] tokens) {
+        this.id = member.getId();
+        this.endYear = yearOf(member.getEndDate());
+        this.firstName = member.getFirstName();
+        this.lastName = member.getLastName();
+        this.email = member.getEmail();
+        this.status = member.getStatus();
+        this.beginDate = member.getBeginDate();
+        this.endDate = member.getEndDate();
+        this.version = member.getVersion();
+        this.searchTokens = tokens.length == 0 ? "" : " " + String.join(" ", tokens);
+    }
+
+    /**
+     * <p class="en">Returns the member archived, as it was when it was archived.</p>
+     * <p class="fr">Renvoie le membre archivé, tel qu'il était quand il a été archivé.</p>
+     * @return <p class="en">The member (not managed).</p> <p class="fr">Le membre (non géré).</p>
+     */
+    public Member toMember() {
+        Member member = new Member(id, firstName, lastName, email, status, beginDate, endDate);
+        member.setVersion(version);
+        return member;
+    }
+
+    /**
+     * <p class="en">Returns the year of a date (in the time zone of the server), as stored in {@link #endYear}.</p>
+     * <p class="fr">Renvoie l'année d'une date (dans le fuseau horaire du serveur), telle que stockée dans
+     * {@link #endYear}.</p>
+     * @param date <p class="en">The date.</p> <p class="fr">La date.</p>
+     * @return <p class="en">The year.</p> <p class="fr">L'année.</p>
+     */
+    public static int yearOf(Date date) {
+        // Not toInstant(), which java.sql.Date does not support
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        return calendar.get(Calendar.YEAR);
+    }
+
+    /**
+     * <p class="en">The primary key of the archive.</p>
+     * <p class="fr">La clé primaire de l'archive.</p>
+     */
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Getter
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        /**
+         * <p class="en">The id of the member.</p>
+         * <p class="fr">L'id du membre.</p>
+         */
+        private int id;
+        /**
+         * <p class="en">The year of the end date.</p>
+         * <p class="fr">L'année de la date de fin.</p>
+         */
+        private int endYear;
+
+    }
+
+}
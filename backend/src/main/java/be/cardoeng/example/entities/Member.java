@@ -1,10 +1,18 @@
 package be.cardoeng.example.entities;
 
 import be.cardoeng.example.enums.MemberStatus;
+import be.cardoeng.example.events.MemberState;
 import jakarta.annotation.Nullable;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.Id;
-import lombok.AllArgsConstructor;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import jakarta.persistence.Version;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -12,15 +20,23 @@ import lombok.Setter;
 import java.util.Date;
 
 /**
- * <p class="en">A simple entity to represent a member.</p>
- * <p class="fr">Une simple entité pour représenter un membre.</p>
+ * <p class="en">A simple entity to represent a member. The indexes all end with the id so that the keyset pagination
+ * of {@link be.cardoeng.example.repositories.MemberRepository} can seek directly to the next page.</p>
+ * <p class="fr">Une simple entité pour représenter un membre. Les index se terminent tous par l'id afin que la
+ * pagination par clé de {@link be.cardoeng.example.repositories.MemberRepository} puisse aller directement à la page
+ * suivante.</p>
  */
 @NoArgsConstructor
-@AllArgsConstructor
 @Getter
 @Setter
 @EqualsAndHashCode
 @Entity
+@EntityListeners(MemberListener.class)
+@Table(indexes = {
+        @Index(name = "idx_member_status_id", columnList = "status, id"),
+        @Index(name = "idx_member_begin_date_id", columnList = "begin_date, id"),
+        @Index(name = "idx_member_end_date_id", columnList = "end_date, id")
+})
 public class Member {
 
     /**
@@ -59,7 +75,65 @@ public class Member {
      */
     @Nullable
     private Date endDate;
+    /**
+     * <p class="en">The version of the member, incremented by each modification. It is managed by Hibernate (it
+     * cannot be set through the API) and is used as the ETag of the member.</p>
+     * <p class="fr">La version du membre, incrémentée à chaque modification. Elle est gérée par Hibernate (elle ne
+     * peut pas être modifiée via l'API) et est utilisée comme ETag du membre.</p>
+     */
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @EqualsAndHashCode.Exclude
+    private long version;
+    /**
+     * <p class="en">The state of the member as last read from or written to the database (<code>null</code> if it
+     * never was), kept by {@link MemberListener} to give the previous state of a modification or a deletion.</p>
+     * <p class="fr">L'état du membre tel que lu depuis ou écrit dans la base de données la dernière fois
+     * (<code>null</code> s'il ne l'a jamais été), gardé par {@link MemberListener} pour donner l'état précédent d'une
+     * modification ou d'une suppression.</p>
+     */
+    @Transient
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @Setter(AccessLevel.PACKAGE)
+    @Nullable
+    private MemberState persistedState;
+
+    /**
+     * <p class="en">Creates a new member (with the initial version).</p>
+     * <p class="fr">Crée un nouveau membre (avec la version initiale).</p>
+     * @param id <p class="en">The id of the member.</p> <p class="fr">L'id du membre.</p>
+     * @param firstName <p class="en">The first name of the member.</p> <p class="fr">Le prénom du membre.</p>
+     * @param lastName <p class="en">The last name of the member.</p> <p class="fr">Le nom de famille du membre.</p>
+     * @param email <p class="en">The email of the member.</p> <p class="fr">L'email du membre.</p>
+     * @param status <p class="en">The status of the member.</p> <p class="fr">Le statut du membre.</p>
+     * @param beginDate <p class="en">The date when the member joined the team.</p>
+     * <p class="fr">La date à laquelle le membre a rejoint l'équipe.</p>
+     * @param endDate <p class="en">The date when the member left the team.</p>
+     * <p class="fr">La date à laquelle le membre a quitté l'équipe.</p>
+     */
+    public Member(int id, String firstName, String lastName, String email, MemberStatus status, Date beginDate,
+                  @Nullable Date endDate) {
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.email = email;
+        this.status = status;
+        this.beginDate = beginDate;
+        this.endDate = endDate;
+    }
 
-    
+    /**
+     * <p class="en">Returns a copy of the member, with the same version. The copy is never managed, so it can be
+     * shared (e.g. in a cache) without being modified by a persistence context.</p>
+     * <p class="fr">Renvoie une copie du membre, avec la même version. La copie n'est jamais gérée, donc elle peut
+     * être partagée (par exemple dans un cache) sans être modifiée par un contexte de persistance.</p>
+     * @return <p class="en">The copy.</p> <p class="fr">La copie.</p>
+     */
+    public Member copy() {
+        Member copy = new Member(id, firstName, lastName, email, status, beginDate, endDate);
+        copy.setVersion(version);
+        return copy;
+    }
 
 }
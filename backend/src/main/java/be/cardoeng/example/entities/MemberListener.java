@@ -0,0 +1,84 @@
+package be.cardoeng.example.entities;
+
+import be.cardoeng.example.enums.ChangeType;
+import be.cardoeng.example.events.MemberChangeEvent;
+import be.cardoeng.example.events.MemberState;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * <p class="en">The JPA listener of {@link Member}. It publishes a {@link MemberChangeEvent} for every insertion,
+ * modification and deletion of a member done through the entity manager, with the state of the member in the database
+ * before the change (remembered when it is read or written). The bulk queries of the repository publish their events
+ * themselves.</p>
+ * <p class="fr">L'écouteur JPA de {@link Member}. Il publie un {@link MemberChangeEvent} pour chaque insertion,
+ * modification et suppression d'un membre faite via le gestionnaire d'entités, avec l'état du membre dans la base de
+ * données avant le changement (retenu quand il est lu ou écrit). Les requêtes en masse du dépôt publient leurs
+ * événements elles-mêmes.</p>
+ */
+public class MemberListener {
+
+    /**
+     * <p class="en">The publisher of the events.</p>
+     * <p class="fr">Le diffuseur des événements.</p>
+     */
+    private final ApplicationEventPublisher publisher;
+
+    /**
+     * <p class="en">The constructor of the listener (called by Hibernate through Spring).</p>
+     * <p class="fr">Le constructeur de l'écouteur (appelé par Hibernate via Spring).</p>
+     * @param publisher <p class="en">The publisher of the events.</p> <p class="fr">Le diffuseur des
+     * événements.</p>
+     */
+    public MemberListener(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    /**
+     * <p class="en">Remembers the state of the given member, read from the database.</p>
+     * <p class="fr">Retient l'état du membre donné, lu depuis la base de données.</p>
+     * @param member <p class="en">The member read.</p> <p class="fr">Le membre lu.</p>
+     */
+    @PostLoad
+    public void loaded(Member member) {
+        member.setPersistedState(MemberState.of(member));
+    }
+
+    /**
+     * <p class="en">Reports the insertion of the given member.</p>
+     * <p class="fr">Signale l'insertion du membre donné.</p>
+     * @param member <p class="en">The member inserted.</p> <p class="fr">Le membre inséré.</p>
+     */
+    @PostPersist
+    public void created(Member member) {
+        member.setPersistedState(MemberState.of(member));
+        publisher.publishEvent(new MemberChangeEvent(ChangeType.Created, member.getId(), member, null));
+    }
+
+    /**
+     * <p class="en">Reports the modification of the given member.</p>
+     * <p class="fr">Signale la modification du membre donné.</p>
+     * @param member <p class="en">The member modified.</p> <p class="fr">Le membre modifié.</p>
+     */
+    @PostUpdate
+    public void updated(Member member) {
+        MemberState previous = member.getPersistedState();
+        member.setPersistedState(MemberState.of(member));
+        publisher.publishEvent(new MemberChangeEvent(ChangeType.Updated, member.getId(), member, previous));
+    }
+
+    /**
+     * <p class="en">Reports the deletion of the given member.</p>
+     * <p class="fr">Signale la suppression du membre donné.</p>
+     * @param member <p class="en">The member deleted.</p> <p class="fr">Le membre supprimé.</p>
+     */
+    @PostRemove
+    public void deleted(Member member) {
+        publisher.publishEvent(new MemberChangeEvent(ChangeType.Deleted, member.getId(), member,
+                member.getPersistedState()));
+    }
+
+}
@@ -0,0 +1,10 @@
+package be.cardoeng.example.enums;
+
+/**
+ * <p class="en">An enum to represent the outcome of a member in a batch import.</p>
+ * <p class="fr">Une énumération pour représenter le résultat d'un membre dans un import par lot.</p>
+ */
+public enum BatchStatus {
+    Created,
+    Conflict,
+}
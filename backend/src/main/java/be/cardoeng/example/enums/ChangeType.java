@@ -0,0 +1,11 @@
+package be.cardoeng.example.enums;
+
+/**
+ * <p class="en">An enum to represent the kind of change made to a member.</p>
+ * <p class="fr">Une énumération pour représenter le type de changement fait à un membre.</p>
+ */
+public enum ChangeType {
+    Created,
+    Updated,
+    Deleted,
+}
@@ -0,0 +1,11 @@
+package be.cardoeng.example.enums;
+
+/**
+ * <p class="en">An enum to represent the progress of an asynchronous operation.</p>
+ * <p class="fr">Une énumération pour représenter l'avancement d'une opération asynchrone.</p>
+ */
+public enum OperationStatus {
+    Pending,
+    Done,
+    Failed,
+}
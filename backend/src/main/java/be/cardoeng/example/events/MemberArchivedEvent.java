@@ -0,0 +1,19 @@
+package be.cardoeng.example.events;
+
+import be.cardoeng.example.entities.ArchivedMember;
+
+import java.util.List;
+
+/**
+ * <p class="en">The event published (through Spring) when members are moved to the archive, besides the
+ * {@link MemberChangeEvent} of their deletion from the table of the members. Like it, it is published inside the
+ * transaction of the move.</p>
+ * <p class="fr">L'événement publié (via Spring) quand des membres sont déplacés vers l'archive, en plus des
+ * {@link MemberChangeEvent} de leur suppression de la table des membres. Comme eux, il est publié dans la transaction
+ * du déplacement.</p>
+ * @param archived <p class="en">The members archived.</p> <p class="fr">Les membres archivés.</p>
+ * @param replaced <p class="en">The previous archives of the same ids, deleted.</p>
+ * <p class="fr">Les archives précédentes des mêmes ids, supprimées.</p>
+ */
+public record MemberArchivedEvent(List<ArchivedMember> archived, List<ArchivedMember> replaced) {
+}
@@ -0,0 +1,25 @@
+package be.cardoeng.example.events;
+
+import be.cardoeng.example.entities.Member;
+import be.cardoeng.example.enums.ChangeType;
+import jakarta.annotation.Nullable;
+
+/**
+ * <p class="en">The event published (through Spring) for each member inserted, modified or deleted. It is published
+ * inside the transaction of the change, so the listeners interested in the committed state only must use
+ * {@link org.springframework.transaction.event.TransactionalEventListener}.</p>
+ * <p class="fr">L'événement publié (via Spring) pour chaque membre inséré, modifié ou supprimé. Il est publié dans
+ * la transaction du changement, donc les écouteurs intéressés uniquement par l'état validé doivent utiliser
+ * {@link org.springframework.transaction.event.TransactionalEventListener}.</p>
+ * @param type <p class="en">The kind of change.</p> <p class="fr">Le type de changement.</p>
+ * @param id <p class="en">The id of the member.</p> <p class="fr">L'id du membre.</p>
+ * @param member <p class="en">The member after the change, or before it for a deletion (<code>null</code> if it is
+ * unknown).</p> <p class="fr">Le membre après le changement, ou avant pour une suppression (<code>null</code> s'il
+ * est inconnu).</p>
+ * @param previous <p class="en">The state of the member in the database before a modification or a deletion
+ * (<code>null</code> for an insertion, or if it is unknown).</p> <p class="fr">L'état du membre dans la base de
+ * données avant une modification ou une suppression (<code>null</code> pour une insertion, ou s'il est
+ * inconnu).</p>
+ */
+public record MemberChangeEvent(ChangeType type, int id, @Nullable Member member, @Nullable MemberState previous) {
+}
@@ -0,0 +1,34 @@
+package be.cardoeng.example.events;
+
+import be.cardoeng.example.entities.Member;
+import be.cardoeng.example.enums.MemberStatus;
+import jakarta.annotation.Nullable;
+
+import java.util.Date;
+
+/**
+ * <p class="en">The state of a member before a change, as given by a {@link MemberChangeEvent}: only the fields
+ * deciding where the member is counted in the statistics, so a modification or a deletion knows which counter to
+ * decrement.</p>
+ * <p class="fr">L'état d'un membre avant un changement, tel que donné par un {@link MemberChangeEvent} : seulement les
+ * champs décidant où le membre est compté dans les statistiques, donc une modification ou une suppression sait quel
+ * compteur décrémenter.</p>
+ * @param status <p class="en">The status of the member.</p> <p class="fr">Le statut du membre.</p>
+ * @param beginDate <p class="en">The date when the member joined the team.</p>
+ * <p class="fr">La date à laquelle le membre a rejoint l'équipe.</p>
+ * @param endDate <p class="en">The date when the member left the team.</p>
+ * <p class="fr">La date à laquelle le membre a quitté l'équipe.</p>
+ */
+public record MemberState(@Nullable MemberStatus status, @Nullable Date beginDate, @Nullable Date endDate) {
+
+    /**
+     * <p class="en">Returns the current state of a member.</p>
+     * <p class="fr">Renvoie l'état actuel d'un membre.</p>
+     * @param member <p class="en">The member.</p> <p class="fr">Le membre.</p>
+     * @return <p class="en">The state.</p> <p class="fr">L'état.</p>
+     */
+    public static MemberState of(Member member) {
+        return new MemberState(member.getStatus(), member.getBeginDate(), member.getEndDate());
+    }
+
+}
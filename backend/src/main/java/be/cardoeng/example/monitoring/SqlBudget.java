@@ -0,0 +1,37 @@
+package be.cardoeng.example.monitoring;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p class="en">The maximum number of SQL statements a request to the annotated endpoint should execute (as counted
+ * by {@link SqlStatistics}, a JDBC batch counting once). {@link SqlMetricsFilter} checks it at the end of each
+ * request: a request over its budget is counted in <code>http.server.requests.sql.budget.exceeded</code> and logged,
+ * or fails when <code>members.sql.budget.strict</code> is set (in the tests). Only the statements of the thread of
+ * the request are counted: with the <code>shards</code> profile, the shards queried in parallel by other threads are
+ * not.</p>
+ * <p class="fr">Le nombre maximum de requêtes SQL qu'une requête au point de terminaison annoté devrait exécuter
+ * (telles que comptées par {@link SqlStatistics}, un lot JDBC comptant une fois). {@link SqlMetricsFilter} le vérifie
+ * à la fin de chaque requête : une requête au-delà de son budget est comptée dans
+ * <code>http.server.requests.sql.budget.exceeded</code> et journalisée, ou échoue quand
+ * <code>members.sql.budget.strict</code> est activé (dans les tests). Seules les requêtes SQL du thread de la
+ * requête sont comptées : avec le profil <code>shards</code>, les fragments interrogés en parallèle par d'autres
+ * threads ne le sont pas.</p>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface SqlBudget {
+
+    /**
+     * <p class="en">The maximum number of statements.</p>
+     * <p class="fr">Le nombre maximum de requêtes SQL.</p>
+     * @return <p class="en">The maximum number of statements.</p> <p class="fr">Le nombre maximum de requêtes
+     * SQL.</p>
+     */
+    int value();
+
+}
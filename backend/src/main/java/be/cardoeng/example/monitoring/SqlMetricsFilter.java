@@ -0,0 +1,154 @@
+package be.cardoeng.example.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * <p class="en">Records, for each request, the number of SQL statements, the number of rows read and the SQL time
+ * counted by {@link SqlStatistics}, as the distribution summaries <code>http.server.requests.sql.statements</code>,
+ * <code>http.server.requests.sql.rows</code> and <code>http.server.requests.sql.time</code> (in milliseconds), with
+ * the same <code>method</code> and <code>uri</code> tags as <code>http.server.requests</code> (the rows only if they
+ * are counted, see {@link be.cardoeng.example.configurations.MonitoringConfiguration}). It also checks the
+ * {@link SqlBudget} of the endpoint: a request over it is counted in
+ * <code>http.server.requests.sql.budget.exceeded</code> and logged as a warning, or fails with an
+ * {@link IllegalStateException} in strict mode (so a test exceeding a budget fails).</p>
+ * <p class="fr">Enregistre, pour chaque requête, le nombre de requêtes SQL, le nombre de lignes lues et le temps SQL
+ * comptés par {@link SqlStatistics}, dans les distributions <code>http.server.requests.sql.statements</code>,
+ * <code>http.server.requests.sql.rows</code> et <code>http.server.requests.sql.time</code> (en millisecondes), avec
+ * les mêmes étiquettes <code>method</code> et <code>uri</code> que <code>http.server.requests</code> (les lignes
+ * seulement si elles sont comptées, voir {@link be.cardoeng.example.configurations.MonitoringConfiguration}). Il
+ * vérifie aussi
+ * le {@link SqlBudget} du point de terminaison : une requête au-delà est comptée dans
+ * <code>http.server.requests.sql.budget.exceeded</code> et journalisée comme avertissement, ou échoue avec une
+ * {@link IllegalStateException} en mode strict (donc un test dépassant un budget échoue).</p>
+ */
+public class SqlMetricsFilter extends OncePerRequestFilter {
+
+    /**
+     * <p class="en">The logger of the requests over their budget.</p>
+     * <p class="fr">Le journal des requêtes au-delà de leur budget.</p>
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SqlMetricsFilter.class);
+
+    /**
+     * <p class="en">The registry of the metrics.</p>
+     * <p class="fr">Le registre des métriques.</p>
+     */
+    private final MeterRegistry registry;
+
+    /**
+     * <p class="en">If a request over its budget fails.</p>
+     * <p class="fr">Si une requête au-delà de son budget échoue.</p>
+     */
+    private final boolean strict;
+
+    /**
+     * <p class="en">If the rows read are counted, and so recorded.</p>
+     * <p class="fr">Si les lignes lues sont comptées, et donc enregistrées.</p>
+     */
+    private final boolean countRows;
+
+    /**
+     * <p class="en">Creates the filter.</p>
+     * <p class="fr">Crée le filtre.</p>
+     * @param registry <p class="en">The registry of the metrics.</p> <p class="fr">Le registre des métriques.</p>
+     * @param strict <p class="en">If a request over its budget fails (once its response is written) instead of
+     * being only logged.</p>
+     * <p class="fr">Si une requête au-delà de son budget échoue (une fois sa réponse écrite) au lieu d'être
+     * seulement journalisée.</p>
+     * @param countRows <p class="en">If the rows read are counted by {@link SqlStatistics}.</p>
+     * <p class="fr">Si les lignes lues sont comptées par {@link SqlStatistics}.</p>
+     */
+    public SqlMetricsFilter(MeterRegistry registry, boolean strict, boolean countRows) {
+        this.registry = registry;
+        this.strict = strict;
+        this.countRows = countRows;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlStatistics.Counters counters = SqlStatistics.start();
+        String exceeded;
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            SqlStatistics.stop();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            Tags tags = Tags.of("method", request.getMethod(), "uri", pattern == null ? "UNKNOWN" : pattern.toString());
+            record("http.server.requests.sql.statements", "SQL statements per request", tags, counters.getStatements());
+            if (countRows) {
+                record("http.server.requests.sql.rows", "SQL rows read per request", tags, counters.getRows());
+            }
+            record("http.server.requests.sql.time", "SQL time per request (ms)", tags, counters.getMillis());
+            exceeded = checkBudget(request, tags, counters);
+        }
+        // Not in the finally block, so it never hides an exception of the request
+        if (exceeded != null && strict) {
+            throw new IllegalStateException(exceeded);
+        }
+    }
+
+    /**
+     * <p class="en">Checks the number of statements of a request against the {@link SqlBudget} of its endpoint (the
+     * handler method found by Spring MVC), counting and logging it if it is over.</p>
+     * <p class="fr">Vérifie le nombre de requêtes SQL d'une requête par rapport au {@link SqlBudget} de son point de
+     * terminaison (la méthode trouvée par Spring MVC), en la comptant et la journalisant si elle le dépasse.</p>
+     * @param request <p class="en">The request.</p> <p class="fr">La requête.</p>
+     * @param tags <p class="en">The tags of the endpoint.</p> <p class="fr">Les étiquettes du point de
+     * terminaison.</p>
+     * @param counters <p class="en">The counters of the request.</p> <p class="fr">Les compteurs de la
+     * requête.</p>
+     * @return <p class="en">The description of the excess, or <code>null</code> if the request is within its budget
+     * (or has none).</p>
+     * <p class="fr">La description du dépassement, ou <code>null</code> si la requête respecte son budget (ou n'en a
+     * pas).</p>
+     */
+    private String checkBudget(HttpServletRequest request, Tags tags, SqlStatistics.Counters counters) {
+        Object handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+        SqlBudget budget = handler instanceof HandlerMethod method ? method.getMethodAnnotation(SqlBudget.class) : null;
+        if (budget == null || counters.getStatements() <= budget.value()) {
+            return null;
+        }
+        Counter.builder("http.server.requests.sql.budget.exceeded")
+                .description("Requests over the SQL budget of their endpoint")
+                .tags(tags)
+                .register(registry)
+                .increment();
+        String exceeded = "%s %s executed %d SQL statements (budget %d) in %d ms".formatted(request.getMethod(),
+                request.getRequestURI(), counters.getStatements(), budget.value(), counters.getMillis());
+        LOGGER.warn(exceeded);
+        return exceeded;
+    }
+
+    /**
+     * <p class="en">Records a value in a distribution summary (with a percentile histogram).</p>
+     * <p class="fr">Enregistre une valeur dans une distribution (avec un histogramme de percentiles).</p>
+     * @param name <p class="en">The name of the summary.</p> <p class="fr">Le nom de la distribution.</p>
+     * @param description <p class="en">Its description.</p> <p class="fr">Sa description.</p>
+     * @param tags <p class="en">Its tags.</p> <p class="fr">Ses étiquettes.</p>
+     * @param value <p class="en">The value.</p> <p class="fr">La valeur.</p>
+     */
+    private void record(String name, String description, Tags tags, double value) {
+        DistributionSummary.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(value);
+    }
+
+}
@@ -0,0 +1,186 @@
+package be.cardoeng.example.monitoring;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * <p class="en">Counts the SQL statements executed by the current request (one per round-trip, a JDBC batch counts
+ * once), the time they took and the rows read (only if the proxy also wraps the result sets). It listens to the data
+ * source proxy of {@link be.cardoeng.example.configurations.MonitoringConfiguration} and the counters of a request are
+ * started and read by {@link SqlMetricsFilter}. The statements executed outside of a request are not counted. The
+ * statements slower than a threshold (in or outside of a request) are logged as warnings with the shape of their
+ * parameters (the type of each one, never its value, e.g. <code>[Integer, String, null]</code>, and the number of sets
+ * of a batch), which is enough to find the code issuing them without leaking the data.</p>
+ * <p class="fr">Compte les requêtes SQL exécutées par la requête HTTP actuelle (une par aller-retour, un lot JDBC
+ * compte une fois), le temps qu'elles ont pris et les lignes lues (seulement si le proxy enveloppe aussi les ensembles
+ * de résultats). Il écoute le proxy de la source de données de
+ * {@link be.cardoeng.example.configurations.MonitoringConfiguration} et les compteurs d'une requête sont démarrés et
+ * lus par {@link SqlMetricsFilter}. Les requêtes SQL exécutées en dehors d'une requête HTTP ne sont pas comptées. Les
+ * requêtes SQL plus lentes qu'un seuil (dans une requête HTTP ou non) sont journalisées comme avertissements avec la
+ * forme de leurs paramètres (le type de chacun, jamais sa valeur, par exemple <code>[Integer, String, null]</code>, et
+ * le nombre d'ensembles d'un lot), ce qui suffit pour trouver le code qui les émet sans divulguer les données.</p>
+ */
+public class SqlStatistics implements QueryExecutionListener, MethodExecutionListener {
+
+    /**
+     * <p class="en">The counters of one request.</p>
+     * <p class="fr">Les compteurs d'une requête.</p>
+     */
+    public static final class Counters {
+
+        /**
+         * <p class="en">The number of statements executed.</p>
+         * <p class="fr">Le nombre de requêtes SQL exécutées.</p>
+         */
+        private int statements;
+
+        /**
+         * <p class="en">The number of rows read.</p>
+         * <p class="fr">Le nombre de lignes lues.</p>
+         */
+        private long rows;
+
+        /**
+         * <p class="en">The time spent executing the statements, in milliseconds.</p>
+         * <p class="fr">Le temps passé à exécuter les requêtes SQL, en millisecondes.</p>
+         */
+        private long millis;
+
+        public int getStatements() {
+            return statements;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+    }
+
+    /**
+     * <p class="en">The counters of the request of the current thread, if any.</p>
+     * <p class="fr">Les compteurs de la requête du thread actuel, s'il y en a.</p>
+     */
+    private static final ThreadLocal<Counters> CURRENT = new ThreadLocal<>();
+
+    /**
+     * <p class="en">The logger of the slow statements.</p>
+     * <p class="fr">Le journal des requêtes SQL lentes.</p>
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SqlStatistics.class);
+
+    /**
+     * <p class="en">The duration from which a statement is logged, in milliseconds (0 to log none).</p>
+     * <p class="fr">La durée à partir de laquelle une requête SQL est journalisée, en millisecondes (0 pour n'en
+     * journaliser aucune).</p>
+     */
+    private final long slowQueryMillis;
+
+    /**
+     * <p class="en">Creates the listener.</p>
+     * <p class="fr">Crée l'écouteur.</p>
+     * @param slowQueryThreshold <p class="en">The duration from which a statement is logged (zero to log
+     * none).</p>
+     * <p class="fr">La durée à partir de laquelle une requête SQL est journalisée (zéro pour n'en journaliser
+     * aucune).</p>
+     */
+    public SqlStatistics(Duration slowQueryThreshold) {
+        this.slowQueryMillis = slowQueryThreshold.toMillis();
+    }
+
+    /**
+     * <p class="en">Starts counting for the current thread.</p>
+     * <p class="fr">Commence à compter pour le thread actuel.</p>
+     * @return <p class="en">The counters, updated until {@link #stop()}.</p>
+     * <p class="fr">Les compteurs, mis à jour jusqu'à {@link #stop()}.</p>
+     */
+    public static Counters start() {
+        Counters counters = new Counters();
+        CURRENT.set(counters);
+        return counters;
+    }
+
+    /**
+     * <p class="en">Stops counting for the current thread.</p>
+     * <p class="fr">Arrête de compter pour le thread actuel.</p>
+     */
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    /**
+     * <p class="en">Returns the counters of the current thread.</p>
+     * <p class="fr">Renvoie les compteurs du thread actuel.</p>
+     * @return <p class="en">The counters, <code>null</code> if the thread is not counting.</p>
+     * <p class="fr">Les compteurs, <code>null</code> si le thread ne compte pas.</p>
+     */
+    public static Counters current() {
+        return CURRENT.get();
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        Counters counters = CURRENT.get();
+        if (counters != null) {
+            counters.statements++;
+            counters.millis += execInfo.getElapsedTime();
+        }
+        if (slowQueryMillis > 0 && execInfo.getElapsedTime() >= slowQueryMillis) {
+            LOGGER.warn("Slow SQL statement ({} ms): {}", execInfo.getElapsedTime(), queryInfoList.stream()
+                    .map(SqlStatistics::describe)
+                    .collect(Collectors.joining("; ")));
+        }
+    }
+
+    /**
+     * <p class="en">Describes a statement: its SQL and the shape of its parameters (see the class).</p>
+     * <p class="fr">Décrit une requête SQL : son SQL et la forme de ses paramètres (voir la classe).</p>
+     * @param query <p class="en">The statement.</p> <p class="fr">La requête SQL.</p>
+     * @return <p class="en">The description.</p> <p class="fr">La description.</p>
+     */
+    private static String describe(QueryInfo query) {
+        List<List<ParameterSetOperation>> sets = query.getParametersList();
+        if (sets.isEmpty()) {
+            return query.getQuery();
+        }
+        // The sets of a batch have the same shape, except for the nulls
+        String shape = sets.getFirst().stream()
+                .map(operation -> operation.getMethod().getName().equals("setNull") || operation.getArgs()[1] == null
+                        ? "null" : operation.getArgs()[1].getClass().getSimpleName())
+                .collect(Collectors.joining(", ", "[", "]"));
+        return query.getQuery() + " " + (sets.size() == 1 ? shape : sets.size() + " x " + shape);
+    }
+
+    @Override
+    public void beforeMethod(MethodExecutionContext executionContext) {
+    }
+
+    @Override
+    public void afterMethod(MethodExecutionContext executionContext) {
+        Counters counters = CURRENT.get();
+        if (counters != null && executionContext.getTarget() instanceof ResultSet
+                && executionContext.getMethod().getName().equals("next")
+                && Boolean.TRUE.equals(executionContext.getResult())) {
+            counters.rows++;
+        }
+    }
+
+}
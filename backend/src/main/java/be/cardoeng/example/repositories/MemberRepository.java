@@ -1,11 +1,179 @@
 package be.cardoeng.example.repositories;
 
+import be.cardoeng.example.configurations.CacheConfiguration;
+import be.cardoeng.example.dtos.ArchivedGroup;
 import be.cardoeng.example.entities.Member;
-import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Example;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.ListPagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
- * <p class="en">A simple repository to manage the members. It communicates with the database.</p>
- * <p class="fr">Un simple dépôt pour gérer les membres. Il communique avec la base de données.</p>
+ * <p class="en">A simple repository to manage the members. It communicates with the database. {@link #findById} is
+ * cached in {@link CacheConfiguration#MEMBERS_CACHE} and every write below evicts the members it modifies. The reads
+ * are read-only transactions, so they can be sent to a replica (see
+ * {@link be.cardoeng.example.routing.ReplicaRoutingDataSource}). Only the operations of
+ * {@link org.springframework.data.jpa.repository.JpaRepository} that can also be spread over shards (see
+ * {@link be.cardoeng.example.routing.ShardedMemberRepository}) are exposed: not the lazy references nor the queries
+ * by example returning members.</p>
+ * <p class="fr">Un simple dépôt pour gérer les membres. Il communique avec la base de données. {@link #findById} est
+ * mis en cache dans {@link CacheConfiguration#MEMBERS_CACHE} et chaque écriture ci-dessous évince les membres qu'elle
+ * modifie. Les lectures sont des transactions en lecture seule, donc elles peuvent être envoyées à une réplique (voir
+ * {@link be.cardoeng.example.routing.ReplicaRoutingDataSource}). Seules les opérations de
+ * {@link org.springframework.data.jpa.repository.JpaRepository} qui peuvent aussi être réparties sur des fragments
+ * (voir {@link be.cardoeng.example.routing.ShardedMemberRepository}) sont exposées : ni les références paresseuses ni
+ * les requêtes par exemple renvoyant des membres.</p>
  */
-public interface MemberRepository extends JpaRepository<Member, Integer> {
+public interface MemberRepository extends ListCrudRepository<Member, Integer>,
+        ListPagingAndSortingRepository<Member, Integer>, MemberRepositoryCustom {
+
+    /**
+     * <p class="en">The number of rows fetched by the JDBC driver per round-trip when streaming the members.</p>
+     * <p class="fr">Le nombre de lignes récupérées par le pilote JDBC par aller-retour lors de la diffusion des
+     * membres.</p>
+     */
+    String STREAM_FETCH_SIZE = "1000";
+
+    /**
+     * <p class="en">Streams all the members ordered by id. The rows are fetched from the database
+     * {@value #STREAM_FETCH_SIZE} at a time and are loaded read-only, so the whole table is never in memory. The
+     * stream must be consumed (and closed) inside a transaction.</p>
+     * <p class="fr">Diffuse tous les membres triés par id. Les lignes sont récupérées depuis la base de données
+     * {@value #STREAM_FETCH_SIZE} à la fois et sont chargées en lecture seule, donc la table entière n'est jamais en
+     * mémoire. Le flux doit être consommé (et fermé) dans une transaction.</p>
+     * @return <p class="en">The stream of members.</p> <p class="fr">Le flux de membres.</p>
+     */
+    @Query("SELECT m FROM Member m ORDER BY m.id")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    Stream<Member> streamAll();
+
+    /**
+     * <p class="en">Counts the archived members per status and year of arrival, with a <code>GROUP BY</code> (they
+     * all have an end date).</p>
+     * <p class="fr">Compte les membres archivés par statut et année d'arrivée, avec un <code>GROUP BY</code> (ils ont
+     * tous une date de fin).</p>
+     * @return <p class="en">The number of archived members of each group.</p>
+     * <p class="fr">Le nombre de membres archivés de chaque groupe.</p>
+     */
+    @Query("SELECT new be.cardoeng.example.dtos.ArchivedGroup(a.status, year(a.beginDate), count(a))"
+            + " FROM ArchivedMember a GROUP BY a.status, year(a.beginDate)")
+    List<ArchivedGroup> countArchivedByGroup();
+
+    /**
+     * <p class="en">Returns the version of the member with the given id, without loading the member.</p>
+     * <p class="fr">Renvoie la version du membre avec l'id donné, sans charger le membre.</p>
+     * @param id <p class="en">The id of the member.</p> <p class="fr">L'id du membre.</p>
+     * @return <p class="en">The version, if the member exists.</p> <p class="fr">La version, si le membre
+     * existe.</p>
+     */
+    @Query("SELECT m.version FROM Member m WHERE m.id = :id")
+    @Transactional(readOnly = true)
+    Optional<Long> findVersionById(@Param("id") int id);
+
+    /**
+     * <p class="en">Finds the member with the given id. The result is cached, including the missing ids. The loading
+     * is synchronized per id: concurrent misses share one query, and an eviction waits for the loading in progress,
+     * so a slow read cannot put back a member older than the last eviction. The member is a detached copy (see
+     * {@link MemberRepositoryCustom#findById}), shared by the callers: it must not be modified.</p>
+     * <p class="fr">Trouve le membre avec l'id donné. Le résultat est mis en cache, y compris les ids absents. Le
+     * chargement est synchronisé par id : des absences simultanées partagent une requête, et une éviction attend le
+     * chargement en cours, donc une lecture lente ne peut pas remettre un membre plus ancien que la dernière
+     * éviction. Le membre est une copie détachée (voir {@link MemberRepositoryCustom#findById}), partagée par les
+     * appelants : il ne doit pas être modifié.</p>
+     * @param id <p class="en">The id of the member to find.</p> <p class="fr">L'id du membre à trouver.</p>
+     * @return <p class="en">The member, if found.</p> <p class="fr">Le membre, s'il est trouvé.</p>
+     */
+    @Override
+    @Cacheable(cacheNames = CacheConfiguration.MEMBERS_CACHE, sync = true)
+    Optional<Member> findById(Integer id);
+
+    /**
+     * <p class="en">Counts the members matching an example (implemented by the base repository).</p>
+     * <p class="fr">Compte les membres correspondant à un exemple (implémenté par le dépôt de base).</p>
+     * @param example <p class="en">The example.</p> <p class="fr">L'exemple.</p>
+     * @return <p class="en">The number of members.</p> <p class="fr">Le nombre de membres.</p>
+     * @param <S> <p class="en">The type of the example.</p> <p class="fr">Le type de l'exemple.</p>
+     */
+    <S extends Member> long count(Example<S> example);
+
+    /**
+     * <p class="en">Checks if a member matches an example (implemented by the base repository).</p>
+     * <p class="fr">Vérifie si un membre correspond à un exemple (implémenté par le dépôt de base).</p>
+     * @param example <p class="en">The example.</p> <p class="fr">L'exemple.</p>
+     * @return <p class="en">If a member matches.</p> <p class="fr">Si un membre correspond.</p>
+     * @param <S> <p class="en">The type of the example.</p> <p class="fr">Le type de l'exemple.</p>
+     */
+    <S extends Member> boolean exists(Example<S> example);
+
+    /**
+     * <p class="en">Writes the pending changes of the persistence context (implemented by the base
+     * repository).</p>
+     * <p class="fr">Écrit les modifications en attente du contexte de persistance (implémenté par le dépôt de
+     * base).</p>
+     */
+    void flush();
+
+    /*
+     * The writes inherited from ListCrudRepository, redeclared to evict the cache, and the ones of JpaRepository
+     * (implemented by the base repository).
+     */
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfiguration.MEMBERS_CACHE, key = "#p0.id")
+    <S extends Member> S save(S entity);
+
+    @CacheEvict(cacheNames = CacheConfiguration.MEMBERS_CACHE, key = "#p0.id")
+    <S extends Member> S saveAndFlush(S entity);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfiguration.MEMBERS_CACHE, allEntries = true)
+    <S extends Member> List<S> saveAll(Iterable<S> entities);
+
+    @CacheEvict(cacheNames = CacheConfiguration.MEMBERS_CACHE, allEntries = true)
+    <S extends Member> List<S> saveAllAndFlush(Iterable<S> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfiguration.MEMBERS_CACHE, key = "#p0")
+    void deleteById(Integer id);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfiguration.MEMBERS_CACHE, key = "#p0.id")
+    void delete(Member entity);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfiguration.MEMBERS_CACHE, allEntries = true)
+    void deleteAllById(Iterable<? extends Integer> ids);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfiguration.MEMBERS_CACHE, allEntries = true)
+    void deleteAll(Iterable<? extends Member> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfiguration.MEMBERS_CACHE, allEntries = true)
+    void deleteAll();
+
+    @CacheEvict(cacheNames = CacheConfiguration.MEMBERS_CACHE, allEntries = true)
+    void deleteAllInBatch(Iterable<Member> entities);
+
+    @CacheEvict(cacheNames = CacheConfiguration.MEMBERS_CACHE, allEntries = true)
+    void deleteAllByIdInBatch(Iterable<Integer> ids);
+
+    @CacheEvict(cacheNames = CacheConfiguration.MEMBERS_CACHE, allEntries = true)
+    void deleteAllInBatch();
+
 }
@@ -0,0 +1,199 @@
+package be.cardoeng.example.repositories;
+
+import be.cardoeng.example.dtos.BatchResult;
+import be.cardoeng.example.entities.ArchivedMember;
+import be.cardoeng.example.entities.Member;
+
+import be.cardoeng.example.enums.MemberStatus;
+import jakarta.annotation.Nullable;
+import org.springframework.data.domain.Limit;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * <p class="en">The operations of {@link MemberRepository} that cannot be derived by Spring Data. They are
+ * implemented in {@link MemberRepositoryCustomImpl}.</p>
+ * <p class="fr">Les opérations de {@link MemberRepository} qui ne peuvent pas être dérivées par Spring Data. Elles
+ * sont implémentées dans {@link MemberRepositoryCustomImpl}.</p>
+ */
+public interface MemberRepositoryCustom {
+
+    /**
+     * <p class="en">The fields of {@link Member} that can be modified by {@link #updateFields}, with their type. The
+     * id cannot be modified.</p>
+     * <p class="fr">Les champs de {@link Member} qui peuvent être modifiés par {@link #updateFields}, avec leur type.
+     * L'id ne peut pas être modifié.</p>
+     */
+    Map<String, Class<?>> UPDATABLE_FIELDS = Map.of(
+            "firstName", String.class,
+            "lastName", String.class,
+            "email", String.class,
+            "status", MemberStatus.class,
+            "beginDate", Date.class,
+            "endDate", Date.class);
+
+    /**
+     * <p class="en">Inserts the members whose id is not in the database yet. The existing ids are found with a
+     * single query and the new members are inserted with JDBC batching, without the SELECT done by
+     * {@link MemberRepository#save}. The persistence context is cleared afterwards and the new ids are evicted from
+     * the cache once committed.</p>
+     * <p class="fr">Insère les membres dont l'id n'est pas encore dans la base de données. Les ids existants sont
+     * trouvés avec une seule requête et les nouveaux membres sont insérés par lots JDBC, sans le SELECT fait par
+     * {@link MemberRepository#save}. Le contexte de persistance est vidé ensuite et les nouveaux ids sont évincés du
+     * cache une fois validés.</p>
+     * @param members <p class="en">The members to insert.</p> <p class="fr">Les membres à insérer.</p>
+     * @return <p class="en">For each member (in the same order), if it was created or if its id was already
+     * taken.</p> <p class="fr">Pour chaque membre (dans le même ordre), s'il a été créé ou si son id était déjà
+     * pris.</p>
+     */
+    List<BatchResult> insertAll(List<Member> members);
+
+    /**
+     * <p class="en">Finds the member with the given id, like {@link MemberRepository#findById} but returning a copy
+     * of the entity (see {@link Member#copy}): the member cached by {@link MemberRepository#findById} is then never
+     * the instance managed by the persistence context of the caller, whose changes would reach the cache before they
+     * are committed (or even when they are rolled back).</p>
+     * <p class="fr">Trouve le membre avec l'id donné, comme {@link MemberRepository#findById} mais en renvoyant une
+     * copie de l'entité (voir {@link Member#copy}) : le membre mis en cache par {@link MemberRepository#findById}
+     * n'est alors jamais l'instance gérée par le contexte de persistance de l'appelant, dont les modifications
+     * atteindraient le cache avant d'être validées (ou même en étant annulées).</p>
+     * @param id <p class="en">The id of the member to find.</p> <p class="fr">L'id du membre à trouver.</p>
+     * @return <p class="en">A copy of the member, if found.</p> <p class="fr">Une copie du membre, s'il est
+     * trouvé.</p>
+     */
+    Optional<Member> findById(Integer id);
+
+    /**
+     * <p class="en">Returns the next page of members (ordered by id) whose id is strictly greater than
+     * <code>after</code> (keyset pagination). Every filter is optional and ignored when <code>null</code>
+     * (or <code>false</code> for <code>active</code>): the query is built with only the filters given, so the database
+     * can use the index of the filter (every index ends with the id). As the query seeks on the id instead of using
+     * an offset, its cost does not depend on how deep the cursor is.</p>
+     * <p class="fr">Renvoie la page suivante de membres (triés par id) dont l'id est strictement plus grand que
+     * <code>after</code> (pagination par clé). Chaque filtre est optionnel et ignoré s'il vaut <code>null</code>
+     * (ou <code>false</code> pour <code>active</code>) : la requête est construite avec seulement les filtres donnés,
+     * donc la base de données peut utiliser l'index du filtre (chaque index se termine par l'id). Comme la requête se
+     * positionne sur l'id au lieu d'utiliser un décalage, son coût ne dépend pas de la profondeur du curseur.</p>
+     * @param after <p class="en">The id of the last member of the previous page.</p>
+     * <p class="fr">L'id du dernier membre de la page précédente.</p>
+     * @param status <p class="en">The status of the members.</p> <p class="fr">Le statut des membres.</p>
+     * @param beginFrom <p class="en">The lower bound (inclusive) of the begin date.</p>
+     * <p class="fr">La borne inférieure (incluse) de la date de début.</p>
+     * @param beginTo <p class="en">The upper bound (inclusive) of the begin date.</p>
+     * <p class="fr">La borne supérieure (incluse) de la date de début.</p>
+     * @param endFrom <p class="en">The lower bound (inclusive) of the end date.</p>
+     * <p class="fr">La borne inférieure (incluse) de la date de fin.</p>
+     * @param endTo <p class="en">The upper bound (inclusive) of the end date.</p>
+     * <p class="fr">La borne supérieure (incluse) de la date de fin.</p>
+     * @param active <p class="en">If only the members without end date should be returned.</p>
+     * <p class="fr">Si seuls les membres sans date de fin doivent être renvoyés.</p>
+     * @param limit <p class="en">The maximum number of members to return.</p>
+     * <p class="fr">Le nombre maximum de membres à renvoyer.</p>
+     * @return <p class="en">The members of the page.</p> <p class="fr">Les membres de la page.</p>
+     */
+    List<Member> findPage(int after, @Nullable MemberStatus status, @Nullable Date beginFrom, @Nullable Date beginTo,
+            @Nullable Date endFrom, @Nullable Date endTo, boolean active, Limit limit);
+
+    /**
+     * <p class="en">Returns the next page of archived members (see {@link ArchivedMember}), like {@link #findPage}.
+     * The bounds of the year of the end date should be given along with the bounds of the end date: as the archive is
+     * partitioned by this year, they let the database skip the partitions out of the range (like the other filters,
+     * they only reach the SQL when they are given).</p>
+     * <p class="fr">Renvoie la page suivante de membres archivés (voir {@link ArchivedMember}), comme
+     * {@link #findPage}. Les bornes de l'année de la date de fin devraient être données avec les bornes de la date de
+     * fin : comme l'archive est partitionnée par cette année, elles permettent à la base de données d'ignorer les
+     * partitions hors de l'intervalle (comme les autres filtres, elles n'atteignent le SQL que quand elles sont
+     * données).</p>
+     * @param after <p class="en">The id of the last member of the previous page.</p>
+     * <p class="fr">L'id du dernier membre de la page précédente.</p>
+     * @param status <p class="en">The status of the members.</p> <p class="fr">Le statut des membres.</p>
+     * @param beginFrom <p class="en">The lower bound (inclusive) of the begin date.</p>
+     * <p class="fr">La borne inférieure (incluse) de la date de début.</p>
+     * @param beginTo <p class="en">The upper bound (inclusive) of the begin date.</p>
+     * <p class="fr">La borne supérieure (incluse) de la date de début.</p>
+     * @param endFrom <p class="en">The lower bound (inclusive) of the end date.</p>
+     * <p class="fr">La borne inférieure (incluse) de la date de fin.</p>
+     * @param endTo <p class="en">The upper bound (inclusive) of the end date.</p>
+     * <p class="fr">La borne supérieure (incluse) de la date de fin.</p>
+     * @param fromYear <p class="en">The lower bound (inclusive) of the year of the end date.</p>
+     * <p class="fr">La borne inférieure (incluse) de l'année de la date de fin.</p>
+     * @param toYear <p class="en">The upper bound (inclusive) of the year of the end date.</p>
+     * <p class="fr">La borne supérieure (incluse) de l'année de la date de fin.</p>
+     * @param limit <p class="en">The maximum number of members to return.</p>
+     * <p class="fr">Le nombre maximum de membres à renvoyer.</p>
+     * @return <p class="en">The archived members of the page.</p> <p class="fr">Les membres archivés de la page.</p>
+     */
+    List<ArchivedMember> findArchivedPage(int after, @Nullable MemberStatus status, @Nullable Date beginFrom,
+            @Nullable Date beginTo, @Nullable Date endFrom, @Nullable Date endTo, @Nullable Integer fromYear,
+            @Nullable Integer toYear, Limit limit);
+
+    /**
+     * <p class="en">Modifies the given fields of the member with the given id: the member is read with a lock
+     * (<code>SELECT ... FOR UPDATE</code>), so its state before the modification is the one given by the
+     * {@link be.cardoeng.example.events.MemberChangeEvent}, then written with a single <code>UPDATE</code> if a field
+     * changed, which increments its version.</p>
+     * <p class="fr">Modifie les champs donnés du membre avec l'id donné : le membre est lu avec un verrou
+     * (<code>SELECT ... FOR UPDATE</code>), donc son état avant la modification est celui donné par le
+     * {@link be.cardoeng.example.events.MemberChangeEvent}, puis écrit avec un seul <code>UPDATE</code> si un champ a
+     * changé, ce qui incrémente sa version.</p>
+     * @param id <p class="en">The id of the member to modify.</p> <p class="fr">L'id du membre à modifier.</p>
+     * @param fields <p class="en">The new values, by field. Each field must be in {@link #UPDATABLE_FIELDS} and each
+     * value must have the type of its field (or be <code>null</code>). It must not be empty.</p>
+     * <p class="fr">Les nouvelles valeurs, par champ. Chaque champ doit être dans {@link #UPDATABLE_FIELDS} et
+     * chaque valeur doit avoir le type de son champ (ou être <code>null</code>). Il ne doit pas être vide.</p>
+     * @param expectedVersion <p class="en">If not <code>null</code>, the member is only modified if it has this
+     * version.</p> <p class="fr">Si différent de <code>null</code>, le membre n'est modifié que s'il a cette
+     * version.</p>
+     * @return <p class="en">The member modified (empty if there is no member with this id and version).</p>
+     * <p class="fr">Le membre modifié (vide s'il n'y a pas de membre avec cet id et cette version).</p>
+     */
+    Optional<Member> updateFields(int id, Map<String, Object> fields, @Nullable Long expectedVersion);
+
+    /**
+     * <p class="en">Moves the member with the given id to the archive (soft delete): it is removed from the table of
+     * the members, like with a deletion, but kept in {@link ArchivedMember}. A member without end date gets
+     * the current date as end date. The member is locked while it is copied, so a concurrent modification cannot be
+     * lost, and a previous archive of the same id is replaced.</p>
+     * <p class="fr">Déplace le membre avec l'id donné vers l'archive (suppression douce) : il est retiré de la table
+     * des membres, comme avec une suppression, mais gardé dans {@link ArchivedMember}. Un membre sans date de fin
+     * reçoit la date actuelle comme date de fin. Le membre est verrouillé pendant qu'il est copié, donc une
+     * modification concurrente ne peut pas être perdue, et une archive précédente du même id est remplacée.</p>
+     * @param id <p class="en">The id of the member to archive.</p> <p class="fr">L'id du membre à archiver.</p>
+     * @return <p class="en">The number of members archived (0 if there is no member with this id).</p>
+     * <p class="fr">Le nombre de membres archivés (0 s'il n'y a pas de membre avec cet id).</p>
+     */
+    int archiveById(int id);
+
+    /**
+     * <p class="en">Moves a batch of departed members (whose end date is before the given date) to the archive, like
+     * {@link #archiveById}, with one query per step for the whole batch. The oldest end dates go first.</p>
+     * <p class="fr">Déplace un lot de membres partis (dont la date de fin est avant la date donnée) vers l'archive,
+     * comme {@link #archiveById}, avec une requête par étape pour tout le lot. Les dates de fin les plus anciennes
+     * passent en premier.</p>
+     * @param before <p class="en">The date before which the members are departed.</p>
+     * <p class="fr">La date avant laquelle les membres sont partis.</p>
+     * @param limit <p class="en">The maximum number of members to archive.</p>
+     * <p class="fr">Le nombre maximum de membres à archiver.</p>
+     * @return <p class="en">The number of members archived (less than <code>limit</code> once there is no more).</p>
+     * <p class="fr">Le nombre de membres archivés (moins que <code>limit</code> une fois qu'il n'y en a plus).</p>
+     */
+    int archiveDeparted(Date before, int limit);
+
+    /**
+     * <p class="en">Returns the archived members whose first name, last name or email contain words starting with
+     * the words of the query (ignoring accents and case, like
+     * {@link be.cardoeng.example.services.MemberSearchService}), ordered by id.</p>
+     * <p class="fr">Renvoie les membres archivés dont le prénom, le nom ou l'email contiennent des mots commençant
+     * par les mots de la requête (en ignorant les accents et la casse, comme
+     * {@link be.cardoeng.example.services.MemberSearchService}), triés par id.</p>
+     * @param query <p class="en">The words to search.</p> <p class="fr">Les mots à rechercher.</p>
+     * @param limit <p class="en">The maximum number of members to return.</p>
+     * <p class="fr">Le nombre maximum de membres à renvoyer.</p>
+     * @return <p class="en">The archived members found.</p> <p class="fr">Les membres archivés trouvés.</p>
+     */
+    List<ArchivedMember> searchArchived(String query, int limit);
+
+}
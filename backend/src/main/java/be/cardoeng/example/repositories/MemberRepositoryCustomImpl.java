@@ -0,0 +1,351 @@
+package be.cardoeng.example.repositories;
+
+import be.cardoeng.example.configurations.CacheConfiguration;
+import be.cardoeng.example.dtos.BatchResult;
+import be.cardoeng.example.entities.ArchivedMember;
+import be.cardoeng.example.entities.Member;
+import be.cardoeng.example.enums.BatchStatus;
+import be.cardoeng.example.enums.ChangeType;
+import be.cardoeng.example.enums.MemberStatus;
+import be.cardoeng.example.events.MemberArchivedEvent;
+import be.cardoeng.example.events.MemberChangeEvent;
+import be.cardoeng.example.services.MemberSearchIndex;
+import jakarta.annotation.Nullable;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * <p class="en">The implementation of {@link MemberRepositoryCustom}. Spring Data plugs it into
+ * {@link MemberRepository}.</p>
+ * <p class="fr">L'implémentation de {@link MemberRepositoryCustom}. Spring Data la branche dans
+ * {@link MemberRepository}.</p>
+ */
+public class MemberRepositoryCustomImpl implements MemberRepositoryCustom {
+
+    /**
+     * <p class="en">The entity manager to use to communicate with the database.</p>
+     * <p class="fr">Le gestionnaire d'entités à utiliser pour communiquer avec la base de données.</p>
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * <p class="en">The publisher of the {@link MemberChangeEvent} of the bulk queries (which bypass
+     * {@link be.cardoeng.example.entities.MemberListener}).</p>
+     * <p class="fr">Le diffuseur des {@link MemberChangeEvent} des requêtes en masse (qui contournent
+     * {@link be.cardoeng.example.entities.MemberListener}).</p>
+     */
+    private final ApplicationEventPublisher publisher;
+
+    /**
+     * <p class="en">The cache manager, to evict the members inserted.</p>
+     * <p class="fr">Le gestionnaire de caches, pour évincer les membres insérés.</p>
+     */
+    private final CacheManager cacheManager;
+
+    /**
+     * <p class="en">The constructor of the repository implementation.</p>
+     * <p class="fr">Le constructeur de l'implémentation du dépôt.</p>
+     * @param publisher <p class="en">The publisher of the events.</p> <p class="fr">Le diffuseur des
+     * événements.</p>
+     * @param cacheManager <p class="en">The cache manager.</p> <p class="fr">Le gestionnaire de caches.</p>
+     */
+    public MemberRepositoryCustomImpl(ApplicationEventPublisher publisher, CacheManager cacheManager) {
+        this.publisher = publisher;
+        this.cacheManager = cacheManager;
+    }
+
+    @Override
+    @Transactional
+    public List<BatchResult> insertAll(List<Member> members) {
+        List<Integer> ids = members.stream().map(Member::getId).toList();
+        Set<Integer> taken = new HashSet<>(entityManager
+                .createQuery("SELECT m.id FROM Member m WHERE m.id IN :ids", Integer.class)
+                .setParameter("ids", ids)
+                .getResultList());
+        List<BatchResult> results = new ArrayList<>(members.size());
+        List<Integer> created = new ArrayList<>(members.size());
+        for (Member m : members) {
+            // add() also catches the same id given twice in the batch
+            if (taken.add(m.getId())) {
+                // persist() (unlike merge()) does not SELECT the assigned id first
+                entityManager.persist(m);
+                created.add(m.getId());
+                results.add(new BatchResult(m.getId(), BatchStatus.Created));
+            } else {
+                results.add(new BatchResult(m.getId(), BatchStatus.Conflict));
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        evictAfterCommit(created);
+        return results;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Member> findById(Integer id) {
+        return Optional.ofNullable(entityManager.find(Member.class, id)).map(Member::copy);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Member> findPage(int after, @Nullable MemberStatus status, @Nullable Date beginFrom,
+            @Nullable Date beginTo, @Nullable Date endFrom, @Nullable Date endTo, boolean active, Limit limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Member> select = cb.createQuery(Member.class);
+        Root<Member> root = select.from(Member.class);
+        List<Predicate> where = pageFilters(cb, root, after, status, beginFrom, beginTo, endFrom, endTo);
+        if (active) {
+            where.add(cb.isNull(root.get("endDate")));
+        }
+        return page(select, root, where, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ArchivedMember> findArchivedPage(int after, @Nullable MemberStatus status, @Nullable Date beginFrom,
+            @Nullable Date beginTo, @Nullable Date endFrom, @Nullable Date endTo, @Nullable Integer fromYear,
+            @Nullable Integer toYear, Limit limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ArchivedMember> select = cb.createQuery(ArchivedMember.class);
+        Root<ArchivedMember> root = select.from(ArchivedMember.class);
+        List<Predicate> where = pageFilters(cb, root, after, status, beginFrom, beginTo, endFrom, endTo);
+        if (fromYear != null) {
+            where.add(cb.greaterThanOrEqualTo(root.get("endYear"), fromYear));
+        }
+        if (toYear != null) {
+            where.add(cb.lessThanOrEqualTo(root.get("endYear"), toYear));
+        }
+        return page(select, root, where, limit);
+    }
+
+    @Override
+    @Transactional
+    public Optional<Member> updateFields(int id, Map<String, Object> fields, @Nullable Long expectedVersion) {
+        fields.keySet().forEach(field -> {
+            if (!UPDATABLE_FIELDS.containsKey(field)) {
+                throw new IllegalArgumentException("The field " + field + " cannot be updated");
+            }
+        });
+        // Locked, so no other transaction changes the member between the state read here (the previous state of
+        // the event, see MemberListener) and the UPDATE
+        Member member = entityManager.find(Member.class, id, LockModeType.PESSIMISTIC_WRITE);
+        if (member == null || (expectedVersion != null && expectedVersion.longValue() != member.getVersion())) {
+            return Optional.empty();
+        }
+        BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(member);
+        fields.forEach(wrapper::setPropertyValue);
+        // The UPDATE now, so its version is the one returned
+        entityManager.flush();
+        // Not on return: when the caller has its own transaction, a read before its commit would cache the old row
+        evictAfterCommit(List.of(id));
+        return Optional.of(member);
+    }
+
+    @Override
+    @Transactional
+    public int archiveById(int id) {
+        Member member = entityManager.find(Member.class, id, LockModeType.PESSIMISTIC_WRITE);
+        if (member == null) {
+            return 0;
+        }
+        // Detached first, so the end date set below is archived without an UPDATE of the row about to be deleted
+        entityManager.detach(member);
+        if (member.getEndDate() == null) {
+            member.setEndDate(new Date());
+        }
+        archive(List.of(member));
+        evictAfterCommit(List.of(id));
+        return 1;
+    }
+
+    @Override
+    @Transactional
+    public int archiveDeparted(Date before, int limit) {
+        List<Member> departed = entityManager
+                .createQuery("SELECT m FROM Member m WHERE m.endDate < :before ORDER BY m.endDate, m.id", Member.class)
+                .setParameter("before", before)
+                .setMaxResults(limit)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+        if (departed.isEmpty()) {
+            return 0;
+        }
+        archive(departed);
+        evictAfterCommit(departed.stream().map(Member::getId).toList());
+        return departed.size();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ArchivedMember> searchArchived(String query, int limit) {
+        String[] words = MemberSearchIndex.tokenize(query);
+        if (words.length == 0) {
+            return List.of();
+        }
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ArchivedMember> select = cb.createQuery(ArchivedMember.class);
+        Root<ArchivedMember> root = select.from(ArchivedMember.class);
+        // The tokens contain only letters and digits, so they cannot hold a wildcard of LIKE
+        select.where(Arrays.stream(words)
+                        .map(word -> cb.like(root.get("searchTokens"), "% " + word + "%"))
+                        .toArray(Predicate[]::new))
+                .orderBy(cb.asc(root.get("id")));
+        return entityManager.createQuery(select).setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * <p class="en">Moves members (locked by the current transaction) to the archive: the previous archives of their
+     * ids are read then deleted (if there are any), their archives are inserted with JDBC batching, then they are
+     * deleted from the table of the members with a single query. A {@link ChangeType#Deleted} event is published for
+     * each of them, then a {@link MemberArchivedEvent} for all of them.</p>
+     * <p class="fr">Déplace des membres (verrouillés par la transaction actuelle) vers l'archive : les archives
+     * précédentes de leurs ids sont lues puis supprimées (s'il y en a), leurs archives sont insérées par lots JDBC,
+     * puis ils sont supprimés de la table des membres avec une seule requête. Un événement
+     * {@link ChangeType#Deleted} est diffusé pour chacun d'eux, puis un {@link MemberArchivedEvent} pour tous.</p>
+     * @param members <p class="en">The members, with an end date.</p> <p class="fr">Les membres, avec une date de
+     * fin.</p>
+     */
+    private void archive(List<Member> members) {
+        List<Integer> ids = members.stream().map(Member::getId).toList();
+        // Read instead of only deleted, for the statistics: there is usually none, so it costs no more statements
+        List<ArchivedMember> replaced = entityManager
+                .createQuery("SELECT a FROM ArchivedMember a WHERE a.id IN :ids", ArchivedMember.class)
+                .setParameter("ids", ids)
+                .getResultList();
+        if (!replaced.isEmpty()) {
+            // Detached, so the new archive of the same id and end year can be persisted
+            replaced.forEach(entityManager::detach);
+            entityManager.createQuery("DELETE FROM ArchivedMember a WHERE a.id IN :ids")
+                    .setParameter("ids", ids)
+                    .executeUpdate();
+        }
+        List<ArchivedMember> archived = new ArrayList<>(members.size());
+        for (Member m : members) {
+            ArchivedMember archive = new ArchivedMember(m, MemberSearchIndex.tokensOf(m));
+            entityManager.persist(archive);
+            archived.add(archive);
+        }
+        entityManager.createQuery("DELETE FROM Member m WHERE m.id IN :ids")
+                .setParameter("ids", ids)
+                .executeUpdate();
+        entityManager.flush();
+        entityManager.clear();
+        // The state read before the end date was set, which is where the statistics count the member
+        members.forEach(m -> publisher.publishEvent(
+                new MemberChangeEvent(ChangeType.Deleted, m.getId(), m, m.getPersistedState())));
+        publisher.publishEvent(new MemberArchivedEvent(archived, replaced));
+    }
+
+    /**
+     * <p class="en">Returns the predicates of the filters of a page common to the members and the archive. Only the
+     * filters given reach the SQL: a catch-all <code>? IS NULL OR ...</code> would keep the database from using the
+     * index of the filter.</p>
+     * <p class="fr">Renvoie les prédicats des filtres d'une page communs aux membres et à l'archive. Seuls les filtres
+     * donnés atteignent le SQL : un <code>? IS NULL OR ...</code> fourre-tout empêcherait la base de données
+     * d'utiliser l'index du filtre.</p>
+     * @param cb <p class="en">The criteria builder.</p> <p class="fr">Le constructeur de critères.</p>
+     * @param root <p class="en">The root of the query.</p> <p class="fr">La racine de la requête.</p>
+     * @param after <p class="en">The id of the last member of the previous page.</p>
+     * <p class="fr">L'id du dernier membre de la page précédente.</p>
+     * @param status <p class="en">The status of the members.</p> <p class="fr">Le statut des membres.</p>
+     * @param beginFrom <p class="en">The lower bound of the begin date.</p>
+     * <p class="fr">La borne inférieure de la date de début.</p>
+     * @param beginTo <p class="en">The upper bound of the begin date.</p>
+     * <p class="fr">La borne supérieure de la date de début.</p>
+     * @param endFrom <p class="en">The lower bound of the end date.</p>
+     * <p class="fr">La borne inférieure de la date de fin.</p>
+     * @param endTo <p class="en">The upper bound of the end date.</p>
+     * <p class="fr">La borne supérieure de la date de fin.</p>
+     * @return <p class="en">The predicates (a mutable list).</p> <p class="fr">Les prédicats (une liste
+     * modifiable).</p>
+     */
+    private static List<Predicate> pageFilters(CriteriaBuilder cb, Root<?> root, int after,
+            @Nullable MemberStatus status, @Nullable Date beginFrom, @Nullable Date beginTo, @Nullable Date endFrom,
+            @Nullable Date endTo) {
+        List<Predicate> where = new ArrayList<>();
+        where.add(cb.greaterThan(root.get("id"), after));
+        if (status != null) {
+            where.add(cb.equal(root.get("status"), status));
+        }
+        if (beginFrom != null) {
+            where.add(cb.greaterThanOrEqualTo(root.get("beginDate"), beginFrom));
+        }
+        if (beginTo != null) {
+            where.add(cb.lessThanOrEqualTo(root.get("beginDate"), beginTo));
+        }
+        if (endFrom != null) {
+            where.add(cb.greaterThanOrEqualTo(root.get("endDate"), endFrom));
+        }
+        if (endTo != null) {
+            where.add(cb.lessThanOrEqualTo(root.get("endDate"), endTo));
+        }
+        return where;
+    }
+
+    /**
+     * <p class="en">Runs the query of a page, ordered by id.</p>
+     * <p class="fr">Exécute la requête d'une page, triée par id.</p>
+     * @param select <p class="en">The query.</p> <p class="fr">La requête.</p>
+     * @param root <p class="en">Its root.</p> <p class="fr">Sa racine.</p>
+     * @param where <p class="en">Its predicates.</p> <p class="fr">Ses prédicats.</p>
+     * @param limit <p class="en">The maximum number of results.</p> <p class="fr">Le nombre maximum de
+     * résultats.</p>
+     * @return <p class="en">The page.</p> <p class="fr">La page.</p>
+     * @param <T> <p class="en">The type of the results.</p> <p class="fr">Le type des résultats.</p>
+     */
+    private <T> List<T> page(CriteriaQuery<T> select, Root<T> root, List<Predicate> where, Limit limit) {
+        select.where(where.toArray(Predicate[]::new)).orderBy(entityManager.getCriteriaBuilder().asc(root.get("id")));
+        TypedQuery<T> query = entityManager.createQuery(select);
+        if (limit.isLimited()) {
+            query.setMaxResults(limit.max());
+        }
+        return query.getResultList();
+    }
+
+    /**
+     * <p class="en">Evicts the given ids from the cache of the members once the current transaction is committed (the
+     * absence of these members or their old values may have been cached, even during the transaction).</p>
+     * <p class="fr">Évince les ids donnés du cache des membres une fois la transaction actuelle validée (l'absence de
+     * ces membres ou leurs anciennes valeurs ont pu être mises en cache, même pendant la transaction).</p>
+     * @param ids <p class="en">The ids to evict.</p> <p class="fr">Les ids à évincer.</p>
+     */
+    private void evictAfterCommit(List<Integer> ids) {
+        Cache cache = cacheManager.getCache(CacheConfiguration.MEMBERS_CACHE);
+        if (cache == null || ids.isEmpty()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ids.forEach(cache::evict);
+            }
+        });
+    }
+
+}
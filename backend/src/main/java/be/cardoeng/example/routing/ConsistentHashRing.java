@@ -0,0 +1,108 @@
+package be.cardoeng.example.routing;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * <p class="en">A consistent hashing ring assigning the ids of the members to the shards. Each shard is placed on the
+ * ring at {@link #VIRTUAL_NODES} positions (derived from its index) and an id belongs to the first shard found after
+ * its own hash. When a shard is added at the end, it only takes over the ids just before its positions, about
+ * <code>1 / (n + 1)</code> of them, while a modulo would move almost all of them.</p>
+ * <p class="fr">Un anneau de hachage cohérent attribuant les ids des membres aux fragments. Chaque fragment est placé
+ * sur l'anneau à {@link #VIRTUAL_NODES} positions (dérivées de son index) et un id appartient au premier fragment
+ * trouvé après son propre hachage. Quand un fragment est ajouté à la fin, il ne reprend que les ids juste avant ses
+ * positions, environ <code>1 / (n + 1)</code> d'entre eux, alors qu'un modulo les déplacerait presque tous.</p>
+ */
+public class ConsistentHashRing {
+
+    /**
+     * <p class="en">The number of positions of each shard on the ring (the more, the more even the shards).</p>
+     * <p class="fr">Le nombre de positions de chaque fragment sur l'anneau (plus il y en a, plus les fragments sont
+     * équilibrés).</p>
+     */
+    public static final int VIRTUAL_NODES = 160;
+
+    /**
+     * <p class="en">The shards, by position on the ring.</p>
+     * <p class="fr">Les fragments, par position sur l'anneau.</p>
+     */
+    private final NavigableMap<Long, Integer> ring = new TreeMap<>();
+
+    /**
+     * <p class="en">The number of shards.</p>
+     * <p class="fr">Le nombre de fragments.</p>
+     */
+    private final int shards;
+
+    /**
+     * <p class="en">Creates the ring.</p>
+     * <p class="fr">Crée l'anneau.</p>
+     * @param shards <p class="en">The number of shards (at least 1).</p>
+     * <p class="fr">Le nombre de fragments (au moins 1).</p>
+     */
+    public ConsistentHashRing(int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("At least one shard is needed");
+        }
+        this.shards = shards;
+        MessageDigest md5;
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (int shard = 0; shard < shards; shard++) {
+            for (int node = 0; node < VIRTUAL_NODES; node++) {
+                byte[] digest = md5.digest(("shard-" + shard + "#" + node).getBytes(StandardCharsets.UTF_8));
+                long position = 0;
+                for (int i = 0; i < Long.BYTES; i++) {
+                    position = (position << 8) | (digest[i] & 0xff);
+                }
+                ring.put(position, shard);
+            }
+        }
+    }
+
+    /**
+     * <p class="en">Returns the number of shards.</p>
+     * <p class="fr">Renvoie le nombre de fragments.</p>
+     * @return <p class="en">The number of shards.</p> <p class="fr">Le nombre de fragments.</p>
+     */
+    public int size() {
+        return shards;
+    }
+
+    /**
+     * <p class="en">Returns the shard of a member.</p>
+     * <p class="fr">Renvoie le fragment d'un membre.</p>
+     * @param id <p class="en">The id of the member.</p> <p class="fr">L'id du membre.</p>
+     * @return <p class="en">The index of the shard.</p> <p class="fr">L'index du fragment.</p>
+     */
+    public int shardOf(int id) {
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(hash(id));
+        return (entry == null ? ring.firstEntry() : entry).getValue();
+    }
+
+    /**
+     * <p class="en">Spreads an id over the ring (the finalizer of MurmurHash3), so that consecutive ids do not fall
+     * between the same two positions.</p>
+     * <p class="fr">Étale un id sur l'anneau (la finalisation de MurmurHash3), pour que des ids consécutifs ne
+     * tombent pas entre les deux mêmes positions.</p>
+     * @param id <p class="en">The id.</p> <p class="fr">L'id.</p>
+     * @return <p class="en">The hash.</p> <p class="fr">Le hachage.</p>
+     */
+    private static long hash(int id) {
+        long h = id;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
@@ -0,0 +1,107 @@
+package be.cardoeng.example.routing;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseCookie;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * <p class="en">Gives the read-your-writes consistency to the clients when the reads go to the replicas (see
+ * {@link ReplicaRoutingDataSource}): the modifications (every method but GET, HEAD and OPTIONS) receive a cookie
+ * pinning the next requests of the client to the primary during a short window, longer than the replication lag. A
+ * client reading right after its own modification therefore sees it, while the other clients keep reading from the
+ * replicas. The cookie holds the end of the window, so no state is kept on the server.</p>
+ * <p class="fr">Donne la cohérence « lire ses écritures » aux clients quand les lectures vont aux répliques (voir
+ * {@link ReplicaRoutingDataSource}) : les modifications (toutes les méthodes sauf GET, HEAD et OPTIONS) reçoivent un
+ * cookie épinglant les requêtes suivantes du client au primaire pendant une courte fenêtre, plus longue que le retard
+ * de réplication. Un client lisant juste après sa propre modification la voit donc, tandis que les autres clients
+ * continuent à lire depuis les répliques. Le cookie contient la fin de la fenêtre, donc aucun état n'est gardé sur le
+ * serveur.</p>
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    /**
+     * <p class="en">The name of the cookie, containing the end of the window (in milliseconds since the epoch).</p>
+     * <p class="fr">Le nom du cookie, contenant la fin de la fenêtre (en millisecondes depuis l'epoch).</p>
+     */
+    public static final String COOKIE = "members-primary-until";
+
+    /**
+     * <p class="en">The methods that do not modify anything.</p>
+     * <p class="fr">Les méthodes qui ne modifient rien.</p>
+     */
+    private static final Set<String> SAFE_METHODS =
+            Set.of(HttpMethod.GET.name(), HttpMethod.HEAD.name(), HttpMethod.OPTIONS.name());
+
+    /**
+     * <p class="en">The duration during which a client reads from the primary after a modification.</p>
+     * <p class="fr">La durée pendant laquelle un client lit depuis le primaire après une modification.</p>
+     */
+    private final Duration window;
+
+    /**
+     * <p class="en">Creates the filter.</p>
+     * <p class="fr">Crée le filtre.</p>
+     * @param window <p class="en">The duration during which a client reads from the primary after a
+     * modification.</p>
+     * <p class="fr">La durée pendant laquelle un client lit depuis le primaire après une modification.</p>
+     */
+    public ReadYourWritesFilter(Duration window) {
+        this.window = window;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean modification = !SAFE_METHODS.contains(request.getMethod());
+        if (modification) {
+            // Set before the response is committed
+            long until = System.currentTimeMillis() + window.toMillis();
+            response.addHeader(HttpHeaders.SET_COOKIE, ResponseCookie.from(COOKIE, Long.toString(until))
+                    .path("/api")
+                    .maxAge(window.toSeconds() + 1)
+                    .httpOnly(true)
+                    .sameSite("Strict")
+                    .build().toString());
+        }
+        ReplicaRoutingDataSource.pinToPrimary(modification || withinWindow(request));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReplicaRoutingDataSource.pinToPrimary(false);
+        }
+    }
+
+    /**
+     * <p class="en">Returns if the client made a modification during the window.</p>
+     * <p class="fr">Renvoie si le client a fait une modification pendant la fenêtre.</p>
+     * @param request <p class="en">The request.</p> <p class="fr">La requête.</p>
+     * @return <p class="en">If it must read from the primary.</p> <p class="fr">S'il doit lire depuis le
+     * primaire.</p>
+     */
+    private boolean withinWindow(HttpServletRequest request) {
+        if (request.getCookies() == null) {
+            return false;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue()) > System.currentTimeMillis();
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,150 @@
+package be.cardoeng.example.routing;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p class="en">A {@link DataSource} sending the read-only transactions
+ * (<code>@Transactional(readOnly = true)</code>) to the replicas, in turn, and everything else to the primary. The
+ * current thread can be pinned to the primary with {@link #pinToPrimary} (see {@link ReadYourWritesFilter}). It is a
+ * {@link LazyConnectionDataSourceProxy}: the connection is only requested at the first statement, once the
+ * transaction is declared read-only, and only then is the data source chosen.</p>
+ * <p class="fr">Une {@link DataSource} envoyant les transactions en lecture seule
+ * (<code>@Transactional(readOnly = true)</code>) aux répliques, à tour de rôle, et tout le reste au primaire. Le
+ * thread courant peut être épinglé au primaire avec {@link #pinToPrimary} (voir {@link ReadYourWritesFilter}). C'est
+ * un {@link LazyConnectionDataSourceProxy} : la connexion n'est demandée qu'à la première requête SQL, une fois la
+ * transaction déclarée en lecture seule, et c'est seulement alors que la source de données est choisie.</p>
+ */
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+
+    /**
+     * <p class="en">The key of the primary.</p>
+     * <p class="fr">La clé du primaire.</p>
+     */
+    public static final String PRIMARY = "primary";
+
+    /**
+     * <p class="en">The prefix of the keys of the replicas (followed by their index).</p>
+     * <p class="fr">Le préfixe des clés des répliques (suivi de leur index).</p>
+     */
+    public static final String REPLICA = "replica-";
+
+    /**
+     * <p class="en">If the current thread is pinned to the primary.</p>
+     * <p class="fr">Si le thread courant est épinglé au primaire.</p>
+     */
+    private static final ThreadLocal<Boolean> pinned = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * <p class="en">The data sources (the primary then the replicas).</p>
+     * <p class="fr">Les sources de données (le primaire puis les répliques).</p>
+     */
+    private final List<DataSource> targets = new ArrayList<>();
+
+    /**
+     * <p class="en">The number of replicas.</p>
+     * <p class="fr">Le nombre de répliques.</p>
+     */
+    private final int replicas;
+
+    /**
+     * <p class="en">The number of read-only connections requested, to choose the next replica.</p>
+     * <p class="fr">Le nombre de connexions en lecture seule demandées, pour choisir la prochaine réplique.</p>
+     */
+    private final AtomicInteger reads = new AtomicInteger();
+
+    /**
+     * <p class="en">Creates the data source.</p>
+     * <p class="fr">Crée la source de données.</p>
+     * @param primary <p class="en">The primary, receiving the writes.</p>
+     * <p class="fr">Le primaire, recevant les écritures.</p>
+     * @param replicas <p class="en">The replicas, receiving the read-only transactions (if empty, everything goes to
+     * the primary).</p>
+     * <p class="fr">Les répliques, recevant les transactions en lecture seule (si vide, tout va au primaire).</p>
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas) {
+        this.replicas = replicas.size();
+        Map<Object, Object> byKey = new HashMap<>();
+        byKey.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            byKey.put(REPLICA + i, replicas.get(i));
+        }
+        targets.add(primary);
+        targets.addAll(replicas);
+        AbstractRoutingDataSource router = new AbstractRoutingDataSource() {
+            @Override
+            protected Object determineCurrentLookupKey() {
+                return route();
+            }
+        };
+        router.setTargetDataSources(byKey);
+        router.setDefaultTargetDataSource(primary);
+        router.afterPropertiesSet();
+        setTargetDataSource(router);
+    }
+
+    /**
+     * <p class="en">Pins the current thread to the primary, or unpins it.</p>
+     * <p class="fr">Épingle le thread courant au primaire, ou le désépingle.</p>
+     * @param pin <p class="en">If the thread must use the primary only.</p>
+     * <p class="fr">Si le thread doit utiliser le primaire uniquement.</p>
+     */
+    public static void pinToPrimary(boolean pin) {
+        if (pin) {
+            pinned.set(true);
+        } else {
+            pinned.remove();
+        }
+    }
+
+    /**
+     * <p class="en">Returns if the current thread is pinned to the primary.</p>
+     * <p class="fr">Renvoie si le thread courant est épinglé au primaire.</p>
+     * @return <p class="en">If the thread must use the primary only.</p>
+     * <p class="fr">Si le thread doit utiliser le primaire uniquement.</p>
+     */
+    public static boolean isPinnedToPrimary() {
+        return pinned.get();
+    }
+
+    /**
+     * <p class="en">Returns the data source to use for a new connection: a replica for a read-only transaction of a
+     * thread not pinned to the primary, the primary otherwise.</p>
+     * <p class="fr">Renvoie la source de données à utiliser pour une nouvelle connexion : une réplique pour une
+     * transaction en lecture seule d'un thread non épinglé au primaire, le primaire sinon.</p>
+     * @return <p class="en">The key of the data source ({@link #PRIMARY} or {@link #REPLICA} and an index).</p>
+     * <p class="fr">La clé de la source de données ({@link #PRIMARY} ou {@link #REPLICA} et un index).</p>
+     */
+    public String route() {
+        if (replicas == 0 || pinned.get() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        return REPLICA + Math.floorMod(reads.getAndIncrement(), replicas);
+    }
+
+    /**
+     * <p class="en">Closes the pools of the primary and of the replicas.</p>
+     * <p class="fr">Ferme les pools du primaire et des répliques.</p>
+     * @throws IOException <p class="en">If a pool cannot be closed.</p>
+     * <p class="fr">Si un pool ne peut pas être fermé.</p>
+     */
+    @Override
+    public void close() throws IOException {
+        for (DataSource target : targets) {
+            if (target instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+}
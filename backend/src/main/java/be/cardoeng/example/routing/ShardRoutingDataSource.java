@@ -0,0 +1,97 @@
+package be.cardoeng.example.routing;
+
+import jakarta.annotation.Nullable;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p class="en">A {@link DataSource} giving the connections of the shard chosen for the current thread with
+ * {@link #setCurrentShard} (see {@link ShardedMemberRepository}). Without a shard, the connections are the ones of
+ * the first shard, which is also the one Hibernate uses to read the metadata of the database.</p>
+ * <p class="fr">Une {@link DataSource} donnant les connexions du fragment choisi pour le thread courant avec
+ * {@link #setCurrentShard} (voir {@link ShardedMemberRepository}). Sans fragment, les connexions sont celles du
+ * premier fragment, qui est aussi celui qu'Hibernate utilise pour lire les métadonnées de la base de données.</p>
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    /**
+     * <p class="en">The shard of the current thread.</p>
+     * <p class="fr">Le fragment du thread courant.</p>
+     */
+    private static final ThreadLocal<Integer> currentShard = new ThreadLocal<>();
+
+    /**
+     * <p class="en">The data sources of the shards, by index.</p>
+     * <p class="fr">Les sources de données des fragments, par index.</p>
+     */
+    private final List<DataSource> shards;
+
+    /**
+     * <p class="en">Creates the data source.</p>
+     * <p class="fr">Crée la source de données.</p>
+     * @param shards <p class="en">The data sources of the shards, by index (at least one).</p>
+     * <p class="fr">Les sources de données des fragments, par index (au moins une).</p>
+     */
+    public ShardRoutingDataSource(List<DataSource> shards) {
+        this.shards = List.copyOf(shards);
+        Map<Object, Object> byIndex = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            byIndex.put(i, shards.get(i));
+        }
+        setTargetDataSources(byIndex);
+        setDefaultTargetDataSource(shards.getFirst());
+        afterPropertiesSet();
+    }
+
+    /**
+     * <p class="en">Returns the shard of the current thread.</p>
+     * <p class="fr">Renvoie le fragment du thread courant.</p>
+     * @return <p class="en">The index of the shard, <code>null</code> if none is chosen.</p>
+     * <p class="fr">L'index du fragment, <code>null</code> si aucun n'est choisi.</p>
+     */
+    @Nullable
+    public static Integer currentShard() {
+        return currentShard.get();
+    }
+
+    /**
+     * <p class="en">Chooses the shard of the current thread.</p>
+     * <p class="fr">Choisit le fragment du thread courant.</p>
+     * @param shard <p class="en">The index of the shard, <code>null</code> to go back to the first one.</p>
+     * <p class="fr">L'index du fragment, <code>null</code> pour revenir au premier.</p>
+     */
+    public static void setCurrentShard(@Nullable Integer shard) {
+        if (shard == null) {
+            currentShard.remove();
+        } else {
+            currentShard.set(shard);
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return currentShard.get();
+    }
+
+    /**
+     * <p class="en">Closes the pools of the shards.</p>
+     * <p class="fr">Ferme les pools des fragments.</p>
+     * @throws IOException <p class="en">If a pool cannot be closed.</p>
+     * <p class="fr">Si un pool ne peut pas être fermé.</p>
+     */
+    @Override
+    public void close() throws IOException {
+        for (DataSource shard : shards) {
+            if (shard instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,635 @@
+package be.cardoeng.example.routing;
+
+import be.cardoeng.example.dtos.ArchivedGroup;
+import be.cardoeng.example.dtos.BatchResult;
+import be.cardoeng.example.entities.ArchivedMember;
+import be.cardoeng.example.entities.Member;
+import be.cardoeng.example.enums.MemberStatus;
+import be.cardoeng.example.repositories.MemberRepository;
+import jakarta.annotation.Nullable;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.cache.Cache;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * <p class="en">Spreads the members over several shards ({@link ShardRoutingDataSource}) behind the
+ * {@link MemberRepository} interface, so its users do not know about them. The operations on one member (by id or
+ * entity) go to the shard given by the {@link ConsistentHashRing}; the operations on several members are split per
+ * shard; the others (list, count, export, ...) are sent to all the shards in parallel and their results are merged in
+ * the order of the ids. The export ({@link MemberRepository#streamAll}) is read page by page with the keyset
+ * pagination, as a stream of each shard would need its own transaction open on the same thread. Each operation
+ * runs in its own transaction on its shard (a transaction cannot span several databases): the operations of a
+ * surrounding transaction are no longer rolled back together.</p>
+ * <p class="fr">Répartit les membres sur plusieurs fragments ({@link ShardRoutingDataSource}) derrière l'interface
+ * {@link MemberRepository}, donc ses utilisateurs ne les connaissent pas. Les opérations sur un membre (par id ou
+ * entité) vont au fragment donné par le {@link ConsistentHashRing} ; les opérations sur plusieurs membres sont
+ * découpées par fragment ; les autres (liste, comptage, export, ...) sont envoyées à tous les fragments en parallèle
+ * et leurs résultats sont fusionnés dans l'ordre des ids. L'export ({@link MemberRepository#streamAll}) est lu page
+ * par page avec la pagination par clé, car un flux de chaque fragment aurait besoin de sa propre transaction ouverte
+ * sur le même thread. Chaque opération s'exécute dans sa propre transaction sur son fragment (une transaction ne
+ * peut pas couvrir plusieurs bases de données) : les opérations d'une transaction englobante ne sont plus annulées
+ * ensemble.</p>
+ * <p class="en">{@link MemberRepository#findById} reads the cache of the members first: a member found there is
+ * returned without any transaction on its shard.</p>
+ * <p class="fr">{@link MemberRepository#findById} lit d'abord le cache des membres : un membre qui s'y trouve est
+ * renvoyé sans aucune transaction sur son fragment.</p>
+ * <p class="en">Every operation of {@link MemberRepository} is implemented, so the compiler checks that a new one is
+ * routed: the sorted reads are merged from the shards (a page needs the members up to its end from each shard), the
+ * counts are summed.</p>
+ * <p class="fr">Chaque opération de {@link MemberRepository} est implémentée, donc le compilateur vérifie qu'une
+ * nouvelle est routée : les lectures triées sont fusionnées depuis les fragments (une page a besoin des membres
+ * jusqu'à sa fin de chaque fragment), les comptages sont additionnés.</p>
+ */
+public class ShardedMemberRepository implements MemberRepository {
+
+    /**
+     * <p class="en">The number of members read per shard and per page by {@link MemberRepository#streamAll}.</p>
+     * <p class="fr">Le nombre de membres lus par fragment et par page par {@link MemberRepository#streamAll}.</p>
+     */
+    private static final int PAGE_SIZE = Integer.parseInt(MemberRepository.STREAM_FETCH_SIZE);
+
+    /**
+     * <p class="en">The order of the members.</p>
+     * <p class="fr">L'ordre des membres.</p>
+     */
+    private static final Comparator<Member> BY_ID = Comparator.comparingInt(Member::getId);
+
+    /**
+     * <p class="en">The order of the archived members.</p>
+     * <p class="fr">L'ordre des membres archivés.</p>
+     */
+    private static final Comparator<ArchivedMember> ARCHIVED_BY_ID = Comparator.comparingInt(ArchivedMember::getId);
+
+    /**
+     * <p class="en">The repository of the members of one shard (the one of the current thread).</p>
+     * <p class="fr">Le dépôt des membres d'un fragment (celui du thread courant).</p>
+     */
+    private final MemberRepository target;
+
+    /**
+     * <p class="en">The ring giving the shard of each member.</p>
+     * <p class="fr">L'anneau donnant le fragment de chaque membre.</p>
+     */
+    private final ConsistentHashRing ring;
+
+    /**
+     * <p class="en">The template of the transaction of an operation on a shard.</p>
+     * <p class="fr">Le modèle de la transaction d'une opération sur un fragment.</p>
+     */
+    private final TransactionTemplate transaction;
+
+    /**
+     * <p class="en">The cache of {@link MemberRepository#findById} (filled by the repository of the shards), read
+     * before choosing a shard, or <code>null</code> if there is none.</p>
+     * <p class="fr">Le cache de {@link MemberRepository#findById} (rempli par le dépôt des fragments), lu avant de
+     * choisir un fragment, ou <code>null</code> s'il n'y en a pas.</p>
+     */
+    private final @Nullable Cache cache;
+
+    /**
+     * <p class="en">The threads querying the shards in parallel. There is a fixed number of them, so a burst of
+     * requests queues its queries (each holding a connection) instead of creating a thread per query.</p>
+     * <p class="fr">Les threads interrogeant les fragments en parallèle. Leur nombre est fixe, donc un pic de requêtes
+     * met ses requêtes SQL (tenant chacune une connexion) en file au lieu de créer un thread par requête SQL.</p>
+     */
+    private final ExecutorService executor;
+
+    /**
+     * <p class="en">Creates the repository, spreading the members over the shards.</p>
+     * <p class="fr">Crée le dépôt, répartissant les membres sur les fragments.</p>
+     * @param target <p class="en">The repository of the members of one shard (the one of the current thread).</p>
+     * <p class="fr">Le dépôt des membres d'un fragment (celui du thread courant).</p>
+     * @param ring <p class="en">The ring giving the shard of each member.</p>
+     * <p class="fr">L'anneau donnant le fragment de chaque membre.</p>
+     * @param transactionManager <p class="en">The transaction manager.</p>
+     * <p class="fr">Le gestionnaire de transactions.</p>
+     * @param threads <p class="en">The number of threads querying the shards in parallel (the calling thread
+     * queries one shard itself).</p>
+     * <p class="fr">Le nombre de threads interrogeant les fragments en parallèle (le thread appelant interroge
+     * lui-même un fragment).</p>
+     * @param cache <p class="en">The cache of {@link MemberRepository#findById}, or <code>null</code> if there is
+     * none.</p>
+     * <p class="fr">Le cache de {@link MemberRepository#findById}, ou <code>null</code> s'il n'y en a pas.</p>
+     */
+    public ShardedMemberRepository(MemberRepository target, ConsistentHashRing ring,
+            PlatformTransactionManager transactionManager, int threads, @Nullable Cache cache) {
+        this.target = target;
+        this.ring = ring;
+        this.cache = cache;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.executor = Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().name("member-shard-", 0).daemon().factory());
+    }
+
+    // One member, on its shard
+
+    @Override
+    public Optional<Member> findById(Integer id) {
+        // A hit needs no transaction (nor connection) on the shard; a miss is loaded and cached by the target
+        Cache.ValueWrapper cached = cache == null ? null : cache.get(id);
+        if (cached != null) {
+            return Optional.ofNullable((Member) cached.get());
+        }
+        return inShard(ring.shardOf(id), () -> target.findById(id));
+    }
+
+    @Override
+    public boolean existsById(Integer id) {
+        return inShard(ring.shardOf(id), () -> target.existsById(id));
+    }
+
+    @Override
+    public Optional<Long> findVersionById(int id) {
+        return inShard(ring.shardOf(id), () -> target.findVersionById(id));
+    }
+
+    @Override
+    public <S extends Member> S save(S entity) {
+        return inShard(ring.shardOf(entity.getId()), () -> target.save(entity));
+    }
+
+    @Override
+    public <S extends Member> S saveAndFlush(S entity) {
+        return inShard(ring.shardOf(entity.getId()), () -> target.saveAndFlush(entity));
+    }
+
+    @Override
+    public Optional<Member> updateFields(int id, Map<String, Object> fields, @Nullable Long expectedVersion) {
+        return inShard(ring.shardOf(id), () -> target.updateFields(id, fields, expectedVersion));
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        run(ring.shardOf(id), () -> target.deleteById(id));
+    }
+
+    @Override
+    public void delete(Member entity) {
+        run(ring.shardOf(entity.getId()), () -> target.delete(entity));
+    }
+
+    @Override
+    public int archiveById(int id) {
+        return inShard(ring.shardOf(id), () -> target.archiveById(id));
+    }
+
+    // Several members, split per shard (the results in the order of the arguments)
+
+    @Override
+    public <S extends Member> List<S> saveAll(Iterable<S> entities) {
+        return split(toList(entities), Member::getId, target::saveAll);
+    }
+
+    @Override
+    public <S extends Member> List<S> saveAllAndFlush(Iterable<S> entities) {
+        return split(toList(entities), Member::getId, target::saveAllAndFlush);
+    }
+
+    @Override
+    public List<BatchResult> insertAll(List<Member> members) {
+        return split(members, Member::getId, target::insertAll);
+    }
+
+    @Override
+    public List<Member> findAllById(Iterable<Integer> ids) {
+        return gather(toList(ids), Integer::intValue, target::findAllById).values().stream()
+                .flatMap(List::stream)
+                .sorted(BY_ID)
+                .toList();
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends Member> entities) {
+        gather(toList(entities), Member::getId, part -> {
+            target.deleteAll(part);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAllInBatch(Iterable<Member> entities) {
+        gather(toList(entities), Member::getId, part -> {
+            target.deleteAllInBatch(part);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends Integer> ids) {
+        gather(toList(ids), Integer::intValue, part -> {
+            target.deleteAllById(part);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAllByIdInBatch(Iterable<Integer> ids) {
+        gather(toList(ids), Integer::intValue, part -> {
+            target.deleteAllByIdInBatch(part);
+            return null;
+        });
+    }
+
+    // All the members, on every shard (the results merged in the order of the ids)
+
+    @Override
+    public List<Member> findAll() {
+        return findAll(Sort.unsorted());
+    }
+
+    @Override
+    public long count() {
+        return everywhere(shard -> target.count()).stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public List<Member> findPage(int after, @Nullable MemberStatus status, @Nullable Date beginFrom,
+            @Nullable Date beginTo, @Nullable Date endFrom, @Nullable Date endTo, boolean active, Limit limit) {
+        return merge(everywhere(shard ->
+                target.findPage(after, status, beginFrom, beginTo, endFrom, endTo, active, limit)), BY_ID, limit);
+    }
+
+    @Override
+    public List<ArchivedMember> findArchivedPage(int after, @Nullable MemberStatus status, @Nullable Date beginFrom,
+            @Nullable Date beginTo, @Nullable Date endFrom, @Nullable Date endTo, @Nullable Integer fromYear,
+            @Nullable Integer toYear, Limit limit) {
+        return merge(everywhere(shard -> target.findArchivedPage(after, status, beginFrom, beginTo, endFrom, endTo,
+                fromYear, toYear, limit)), ARCHIVED_BY_ID, limit);
+    }
+
+    @Override
+    public List<ArchivedMember> searchArchived(String query, int limit) {
+        return merge(everywhere(shard -> target.searchArchived(query, limit)), ARCHIVED_BY_ID, Limit.of(limit));
+    }
+
+    @Override
+    public int archiveDeparted(Date before, int limit) {
+        return everywhere(shard -> target.archiveDeparted(before, limit)).stream().mapToInt(Integer::intValue).sum();
+    }
+
+    @Override
+    public void deleteAll() {
+        everywhere(shard -> {
+            target.deleteAll();
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAllInBatch() {
+        everywhere(shard -> {
+            target.deleteAllInBatch();
+            return null;
+        });
+    }
+
+    @Override
+    public List<ArchivedGroup> countArchivedByGroup() {
+        return everywhere(shard -> target.countArchivedByGroup()).stream().flatMap(List::stream).toList();
+    }
+
+    @Override
+    public Stream<Member> streamAll() {
+        Limit limit = Limit.of(PAGE_SIZE);
+        return Stream.iterate(
+                        findPage(Integer.MIN_VALUE, null, null, null, null, null, false, limit),
+                        page -> !page.isEmpty(),
+                        page -> page.size() < PAGE_SIZE ? List.of()
+                                : findPage(page.getLast().getId(), null, null, null, null, null, false, limit))
+                .flatMap(List::stream);
+    }
+
+    @Override
+    public List<Member> findAll(Sort sort) {
+        Sort sorted = withId(sort);
+        return merge(everywhere(shard -> target.findAll(sorted)), comparator(sorted), Limit.unlimited());
+    }
+
+    @Override
+    public Page<Member> findAll(Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(findAll(pageable.getSort()));
+        }
+        // The members of the page can be on any shard: each one gives its members up to the end of the page
+        Sort sorted = withId(pageable.getSort());
+        Pageable head = PageRequest.of(0, Math.toIntExact(pageable.getOffset() + pageable.getPageSize()), sorted);
+        List<Page<Member>> pages = everywhere(shard -> target.findAll(head));
+        List<Member> members = merge(pages.stream().map(Page::getContent).toList(), comparator(sorted),
+                Limit.of(head.getPageSize()));
+        long total = pages.stream().mapToLong(Page::getTotalElements).sum();
+        return new PageImpl<>(members.stream().skip(pageable.getOffset()).toList(), pageable, total);
+    }
+
+    @Override
+    public <S extends Member> long count(Example<S> example) {
+        return everywhere(shard -> target.count(example)).stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public <S extends Member> boolean exists(Example<S> example) {
+        return everywhere(shard -> target.exists(example)).contains(true);
+    }
+
+    @Override
+    public void flush() {
+        // Each operation is committed on its shard, so there is rarely anything left to write
+        everywhere(shard -> {
+            target.flush();
+            return null;
+        });
+    }
+
+    @Override
+    public String toString() {
+        return "Sharded " + target;
+    }
+
+    /**
+     * <p class="en">Merges the results of the shards, each already sorted in the given order, and cuts them to the
+     * limit. Only the heads of the results are compared (a k-way merge), so no more than the limit is read.</p>
+     * <p class="fr">Fusionne les résultats des fragments, chacun déjà trié dans l'ordre donné, et les coupe à la
+     * limite. Seules les têtes des résultats sont comparées (une fusion à k voies), donc pas plus que la limite n'est
+     * lu.</p>
+     * @param results <p class="en">The results of each shard.</p> <p class="fr">Les résultats de chaque
+     * fragment.</p>
+     * @param order <p class="en">The order.</p> <p class="fr">L'ordre.</p>
+     * @param limit <p class="en">The maximum number of results.</p> <p class="fr">Le nombre maximum de
+     * résultats.</p>
+     * @return <p class="en">The merged results.</p> <p class="fr">Les résultats fusionnés.</p>
+     * @param <T> <p class="en">The type of the results.</p> <p class="fr">Le type des résultats.</p>
+     */
+    private static <T> List<T> merge(List<List<T>> results, Comparator<? super T> order, Limit limit) {
+        PriorityQueue<Head<T>> heads = new PriorityQueue<>(Math.max(1, results.size()),
+                Comparator.comparing(Head::value, order));
+        for (List<T> result : results) {
+            Iterator<T> rest = result.iterator();
+            if (rest.hasNext()) {
+                heads.add(new Head<>(rest.next(), rest));
+            }
+        }
+        int max = limit.isLimited() ? limit.max() : Integer.MAX_VALUE;
+        List<T> merged = new ArrayList<>();
+        while (!heads.isEmpty() && merged.size() < max) {
+            Head<T> head = heads.poll();
+            merged.add(head.value());
+            if (head.rest().hasNext()) {
+                heads.add(new Head<>(head.rest().next(), head.rest()));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * <p class="en">Adds the id to a sort (if it is not already in it), so the order of the members is total and
+     * the same on every shard.</p>
+     * <p class="fr">Ajoute l'id à un tri (s'il n'y est pas déjà), pour que l'ordre des membres soit total et le même
+     * sur chaque fragment.</p>
+     * @param sort <p class="en">The sort.</p> <p class="fr">Le tri.</p>
+     * @return <p class="en">The sort ending with the id.</p> <p class="fr">Le tri finissant par l'id.</p>
+     */
+    private static Sort withId(Sort sort) {
+        return sort.getOrderFor("id") == null ? sort.and(Sort.by("id")) : sort;
+    }
+
+    /**
+     * <p class="en">Returns the comparator of a sort, to merge the members sorted by the shards. As in H2 and MySQL,
+     * <code>null</code> is the smallest value unless the sort says otherwise; the enums are compared by ordinal, as
+     * they are stored.</p>
+     * <p class="fr">Renvoie le comparateur d'un tri, pour fusionner les membres triés par les fragments. Comme dans
+     * H2 et MySQL, <code>null</code> est la plus petite valeur sauf si le tri dit autrement ; les énumérations sont
+     * comparées par ordinal, comme elles sont stockées.</p>
+     * @param sort <p class="en">The sort.</p> <p class="fr">Le tri.</p>
+     * @return <p class="en">The comparator.</p> <p class="fr">Le comparateur.</p>
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparator<Member> comparator(Sort sort) {
+        Comparator<Member> comparator = (a, b) -> 0;
+        for (Sort.Order order : sort) {
+            Comparator<Object> values = order.isIgnoreCase()
+                    ? (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(a.toString(), b.toString())
+                    : (a, b) -> ((Comparable) a).compareTo(b);
+            if (order.isDescending()) {
+                values = values.reversed();
+            }
+            boolean nullsFirst = switch (order.getNullHandling()) {
+                case NULLS_FIRST -> true;
+                case NULLS_LAST -> false;
+                case NATIVE -> order.isAscending();
+            };
+            values = nullsFirst ? Comparator.nullsFirst(values) : Comparator.nullsLast(values);
+            comparator = comparator.thenComparing(
+                    member -> new BeanWrapperImpl(member).getPropertyValue(order.getProperty()), values);
+        }
+        return comparator;
+    }
+
+    /**
+     * <p class="en">Splits the members (or ids) of an operation per shard, runs it on each shard in parallel and puts
+     * its results (one element per member) back in the order of the arguments.</p>
+     * <p class="fr">Découpe les membres (ou ids) d'une opération par fragment, l'exécute sur chaque fragment en
+     * parallèle et remet ses résultats (un élément par membre) dans l'ordre des arguments.</p>
+     * @param items <p class="en">The members or ids.</p> <p class="fr">Les membres ou ids.</p>
+     * @param id <p class="en">Gives the id of an item.</p> <p class="fr">Donne l'id d'un élément.</p>
+     * @param operation <p class="en">The operation, given the items of a shard.</p>
+     * <p class="fr">L'opération, recevant les éléments d'un fragment.</p>
+     * @return <p class="en">The results.</p> <p class="fr">Les résultats.</p>
+     * @param <I> <p class="en">The type of the items.</p> <p class="fr">Le type des éléments.</p>
+     * @param <R> <p class="en">The type of the results.</p> <p class="fr">Le type des résultats.</p>
+     */
+    private <I, R> List<R> split(List<I> items, ToIntFunction<? super I> id, Function<List<I>, List<R>> operation) {
+        Map<Integer, List<Integer>> positions = positionsByShard(items, id);
+        Map<Integer, List<R>> results = gather(items, id, operation);
+        List<R> merged = new ArrayList<>(Collections.nCopies(items.size(), null));
+        positions.forEach((shard, indexes) -> {
+            List<R> result = results.get(shard);
+            for (int i = 0; i < indexes.size(); i++) {
+                merged.set(indexes.get(i), result.get(i));
+            }
+        });
+        return merged;
+    }
+
+    /**
+     * <p class="en">Splits the members (or ids) of an operation per shard and runs it on each shard in
+     * parallel.</p>
+     * <p class="fr">Découpe les membres (ou ids) d'une opération par fragment et l'exécute sur chaque fragment en
+     * parallèle.</p>
+     * @param items <p class="en">The members or ids.</p> <p class="fr">Les membres ou ids.</p>
+     * @param id <p class="en">Gives the id of an item.</p> <p class="fr">Donne l'id d'un élément.</p>
+     * @param operation <p class="en">The operation, given the items of a shard.</p>
+     * <p class="fr">L'opération, recevant les éléments d'un fragment.</p>
+     * @return <p class="en">The result of each shard.</p> <p class="fr">Le résultat de chaque fragment.</p>
+     * @param <I> <p class="en">The type of the items.</p> <p class="fr">Le type des éléments.</p>
+     * @param <R> <p class="en">The type of the results.</p> <p class="fr">Le type des résultats.</p>
+     */
+    private <I, R> Map<Integer, R> gather(List<I> items, ToIntFunction<? super I> id, Function<List<I>, R> operation) {
+        Map<Integer, List<Integer>> positions = positionsByShard(items, id);
+        List<Integer> shards = List.copyOf(positions.keySet());
+        List<R> results = parallel(shards.size(), i -> {
+            List<I> part = positions.get(shards.get(i)).stream().map(items::get).toList();
+            return inShard(shards.get(i), () -> operation.apply(part));
+        });
+        Map<Integer, R> byShard = new TreeMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            byShard.put(shards.get(i), results.get(i));
+        }
+        return byShard;
+    }
+
+    /**
+     * <p class="en">Runs an operation on every shard in parallel.</p>
+     * <p class="fr">Exécute une opération sur chaque fragment en parallèle.</p>
+     * @param operation <p class="en">The operation, given the index of the shard.</p>
+     * <p class="fr">L'opération, recevant l'index du fragment.</p>
+     * @return <p class="en">The result of each shard, by index.</p>
+     * <p class="fr">Le résultat de chaque fragment, par index.</p>
+     * @param <T> <p class="en">The type of the results.</p> <p class="fr">Le type des résultats.</p>
+     */
+    private <T> List<T> everywhere(IntFunction<T> operation) {
+        return parallel(ring.size(), shard -> inShard(shard, () -> operation.apply(shard)));
+    }
+
+    /**
+     * <p class="en">Runs tasks in parallel (the last one on the current thread) and waits for them.</p>
+     * <p class="fr">Exécute des tâches en parallèle (la dernière sur le thread courant) et les attend.</p>
+     * @param count <p class="en">The number of tasks.</p> <p class="fr">Le nombre de tâches.</p>
+     * @param task <p class="en">The task, given its index.</p> <p class="fr">La tâche, recevant son index.</p>
+     * @return <p class="en">The results, by index.</p> <p class="fr">Les résultats, par index.</p>
+     * @param <T> <p class="en">The type of the results.</p> <p class="fr">Le type des résultats.</p>
+     */
+    private <T> List<T> parallel(int count, IntFunction<T> task) {
+        List<Future<T>> futures = IntStream.range(0, count - 1)
+                .mapToObj(i -> executor.submit(() -> task.apply(i)))
+                .toList();
+        List<T> results = new ArrayList<>(count);
+        try {
+            T last = count == 0 ? null : task.apply(count - 1);
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            if (count > 0) {
+                results.add(last);
+            }
+            return results;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new UndeclaredThrowableException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying the shards", e);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * <p class="en">Runs an operation on a shard, in a new transaction (a transaction uses a single
+     * connection).</p>
+     * <p class="fr">Exécute une opération sur un fragment, dans une nouvelle transaction (une transaction utilise une
+     * seule connexion).</p>
+     * @param shard <p class="en">The index of the shard.</p> <p class="fr">L'index du fragment.</p>
+     * @param operation <p class="en">The operation.</p> <p class="fr">L'opération.</p>
+     * @return <p class="en">The result of the operation.</p> <p class="fr">Le résultat de l'opération.</p>
+     * @param <T> <p class="en">The type of the result.</p> <p class="fr">Le type du résultat.</p>
+     */
+    private <T> T inShard(int shard, Supplier<T> operation) {
+        Integer previous = ShardRoutingDataSource.currentShard();
+        ShardRoutingDataSource.setCurrentShard(shard);
+        try {
+            return transaction.execute(status -> operation.get());
+        } finally {
+            ShardRoutingDataSource.setCurrentShard(previous);
+        }
+    }
+
+    /**
+     * <p class="en">Runs an operation without result on a shard, in a new transaction.</p>
+     * <p class="fr">Exécute une opération sans résultat sur un fragment, dans une nouvelle transaction.</p>
+     * @param shard <p class="en">The index of the shard.</p> <p class="fr">L'index du fragment.</p>
+     * @param operation <p class="en">The operation.</p> <p class="fr">L'opération.</p>
+     */
+    private void run(int shard, Runnable operation) {
+        inShard(shard, () -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    /**
+     * <p class="en">Returns the positions of the items of each shard.</p>
+     * <p class="fr">Renvoie les positions des éléments de chaque fragment.</p>
+     * @param items <p class="en">The members or ids.</p> <p class="fr">Les membres ou ids.</p>
+     * @param id <p class="en">Gives the id of an item.</p> <p class="fr">Donne l'id d'un élément.</p>
+     * @return <p class="en">The positions, by shard.</p> <p class="fr">Les positions, par fragment.</p>
+     * @param <I> <p class="en">The type of the items.</p> <p class="fr">Le type des éléments.</p>
+     */
+    private <I> Map<Integer, List<Integer>> positionsByShard(List<I> items, ToIntFunction<? super I> id) {
+        Map<Integer, List<Integer>> positions = new TreeMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            positions.computeIfAbsent(ring.shardOf(id.applyAsInt(items.get(i))), s -> new ArrayList<>()).add(i);
+        }
+        return positions;
+    }
+
+    /**
+     * <p class="en">Copies an iterable into a list.</p>
+     * <p class="fr">Copie un itérable dans une liste.</p>
+     * @param items <p class="en">The iterable.</p> <p class="fr">L'itérable.</p>
+     * @return <p class="en">The list.</p> <p class="fr">La liste.</p>
+     * @param <T> <p class="en">The type of the items.</p> <p class="fr">Le type des éléments.</p>
+     */
+    private static <T> List<T> toList(Iterable<? extends T> items) {
+        List<T> list = new ArrayList<>();
+        items.forEach(list::add);
+        return list;
+    }
+
+    /**
+     * <p class="en">The head of the result of a shard during a merge: its next value and the values after it.</p>
+     * <p class="fr">La tête du résultat d'un fragment pendant une fusion : sa prochaine valeur et les valeurs
+     * suivantes.</p>
+     * @param value <p class="en">The next value.</p> <p class="fr">La prochaine valeur.</p>
+     * @param rest <p class="en">The values after it.</p> <p class="fr">Les valeurs suivantes.</p>
+     * @param <T> <p class="en">The type of the values.</p> <p class="fr">Le type des valeurs.</p>
+     */
+    private record Head<T>(T value, Iterator<T> rest) {
+    }
+
+}
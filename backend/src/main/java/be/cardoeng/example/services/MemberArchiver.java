@@ -0,0 +1,70 @@
+package be.cardoeng.example.services;
+
+import be.cardoeng.example.repositories.MemberRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+
+/**
+ * <p class="en">The compaction of the table of the members: periodically (every
+ * <code>members.archive.compaction-interval</code>), the members whose end date has passed are moved to the archive
+ * (see {@link MemberRepository#archiveDeparted}), so the table read by the list, the search and the statistics only
+ * holds the current members. They are moved by batches of <code>members.archive.batch-size</code>, each in its own
+ * transaction, so the rows are never locked for long.</p>
+ * <p class="fr">Le compactage de la table des membres : périodiquement (toutes les
+ * <code>members.archive.compaction-interval</code>), les membres dont la date de fin est passée sont déplacés vers
+ * l'archive (voir {@link MemberRepository#archiveDeparted}), donc la table lue par la liste, la recherche et les
+ * statistiques ne contient que les membres actuels. Ils sont déplacés par lots de
+ * <code>members.archive.batch-size</code>, chacun dans sa propre transaction, donc les lignes ne sont jamais
+ * verrouillées longtemps.</p>
+ */
+@Service
+public class MemberArchiver {
+
+    /**
+     * <p class="en">The repository of the members.</p>
+     * <p class="fr">Le dépôt des membres.</p>
+     */
+    private final MemberRepository repository;
+
+    /**
+     * <p class="en">The maximum number of members moved per transaction.</p>
+     * <p class="fr">Le nombre maximum de membres déplacés par transaction.</p>
+     */
+    private final int batchSize;
+
+    /**
+     * <p class="en">Creates the compaction.</p>
+     * <p class="fr">Crée le compactage.</p>
+     * @param repository <p class="en">The repository of the members.</p> <p class="fr">Le dépôt des membres.</p>
+     * @param batchSize <p class="en">The maximum number of members moved per transaction.</p>
+     * <p class="fr">Le nombre maximum de membres déplacés par transaction.</p>
+     */
+    public MemberArchiver(MemberRepository repository, @Value("${members.archive.batch-size:500}") int batchSize) {
+        this.repository = repository;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * <p class="en">Moves all the departed members to the archive, batch by batch, until a batch is not full.</p>
+     * <p class="fr">Déplace tous les membres partis vers l'archive, lot par lot, jusqu'à ce qu'un lot ne soit pas
+     * plein.</p>
+     * @return <p class="en">The number of members moved.</p> <p class="fr">Le nombre de membres déplacés.</p>
+     */
+    @Scheduled(fixedDelayString = "${members.archive.compaction-interval:PT1H}",
+            initialDelayString = "${members.archive.compaction-interval:PT1H}")
+    public int compact() {
+        // The same date for all the batches, so the members departing meanwhile wait for the next run
+        Date now = new Date();
+        int moved = 0;
+        int batch;
+        do {
+            batch = repository.archiveDeparted(now, batchSize);
+            moved += batch;
+        } while (batch >= batchSize);
+        return moved;
+    }
+
+}
@@ -0,0 +1,416 @@
+package be.cardoeng.example.services;
+
+import be.cardoeng.example.dtos.MemberChange;
+import be.cardoeng.example.enums.ChangeType;
+import be.cardoeng.example.events.MemberChangeEvent;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p class="en">The feed of the changes of the members (GET /api/members/changes), sent as Server-Sent Events. Each
+ * {@link MemberChangeEvent} gets a sequence number once its transaction is committed, is kept in a ring buffer of
+ * the last <code>members.changes.buffer-size</code> changes and is sent to every subscriber. The id of an event is
+ * the launch time of the application (in base 36) and its sequence number, so a client reconnecting with
+ * <code>Last-Event-ID</code> receives the changes it missed, or a <code>reset</code> event if they are no longer in
+ * the buffer (or if the application was restarted) and it must reload the members. An idle subscriber holds no
+ * thread (the request is asynchronous): the events of each subscriber wait in its own outbox, written in order by a
+ * small pool of <code>members.changes.sender-threads</code> threads, so a slow client only delays itself. The outbox
+ * holds at most <code>members.changes.outbox-size</code> events: a subscriber falling further behind is
+ * disconnected, and resumes with <code>Last-Event-ID</code>.</p>
+ * <p class="fr">Le flux des changements des membres (GET /api/members/changes), envoyés en Server-Sent Events.
+ * Chaque {@link MemberChangeEvent} reçoit un numéro de séquence une fois sa transaction validée, est gardé dans un
+ * tampon circulaire des <code>members.changes.buffer-size</code> derniers changements et est envoyé à chaque abonné.
+ * L'id d'un événement est l'heure de lancement de l'application (en base 36) et son numéro de séquence, donc un
+ * client se reconnectant avec <code>Last-Event-ID</code> reçoit les changements qu'il a manqués, ou un événement
+ * <code>reset</code> s'ils ne sont plus dans le tampon (ou si l'application a été redémarrée) et qu'il doit
+ * recharger les membres. Un abonné inactif ne tient aucun thread (la requête est asynchrone) : les événements de
+ * chaque abonné attendent dans sa propre boîte d'envoi, écrits dans l'ordre par un petit pool de
+ * <code>members.changes.sender-threads</code> threads, donc un client lent ne retarde que lui-même. La boîte d'envoi
+ * contient au plus <code>members.changes.outbox-size</code> événements : un abonné prenant plus de retard est
+ * déconnecté, et reprend avec <code>Last-Event-ID</code>.</p>
+ */
+@Service
+public class MemberChangeFeed {
+
+    /**
+     * <p class="en">The name of the event asking the client to reload the members.</p>
+     * <p class="fr">Le nom de l'événement demandant au client de recharger les membres.</p>
+     */
+    public static final String RESET_EVENT = "reset";
+
+    /**
+     * <p class="en">The launch time of the application (in base 36).</p>
+     * <p class="fr">L'heure de lancement de l'application (en base 36).</p>
+     */
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    /**
+     * <p class="en">The last changes, the change <code>n</code> being at the index <code>n % buffer.length</code>.</p>
+     * <p class="fr">Les derniers changements, le changement <code>n</code> étant à l'index
+     * <code>n % buffer.length</code>.</p>
+     */
+    private final MemberChange[] buffer;
+
+    /**
+     * <p class="en">The lock guarding {@link #buffer} and {@link #sequence}, so the changes are numbered and queued
+     * in the outboxes in the same order.</p>
+     * <p class="fr">Le verrou protégeant {@link #buffer} et {@link #sequence}, donc les changements sont numérotés et
+     * mis dans les boîtes d'envoi dans le même ordre.</p>
+     */
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * <p class="en">The sequence number of the last change.</p>
+     * <p class="fr">Le numéro de séquence du dernier changement.</p>
+     */
+    private long sequence;
+
+    /**
+     * <p class="en">The subscribers.</p>
+     * <p class="fr">Les abonnés.</p>
+     */
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * <p class="en">The maximum number of events waiting in the outbox of a subscriber.</p>
+     * <p class="fr">Le nombre maximum d'événements attendant dans la boîte d'envoi d'un abonné.</p>
+     */
+    private final int outboxSize;
+
+    /**
+     * <p class="en">The threads writing the events to the subscribers (each subscriber is written by one of them at
+     * a time).</p>
+     * <p class="fr">Les threads écrivant les événements aux abonnés (chaque abonné est écrit par un seul d'entre eux
+     * à la fois).</p>
+     */
+    private final ExecutorService sender;
+
+    /**
+     * <p class="en">The constructor of the feed.</p>
+     * <p class="fr">Le constructeur du flux.</p>
+     * @param bufferSize <p class="en">The number of changes kept for the clients reconnecting.</p>
+     * <p class="fr">Le nombre de changements gardés pour les clients se reconnectant.</p>
+     * @param outboxSize <p class="en">The maximum number of events waiting for a subscriber.</p>
+     * <p class="fr">Le nombre maximum d'événements attendant pour un abonné.</p>
+     * @param senderThreads <p class="en">The number of threads writing the events.</p>
+     * <p class="fr">Le nombre de threads écrivant les événements.</p>
+     */
+    public MemberChangeFeed(@Value("${members.changes.buffer-size:1000}") int bufferSize,
+            @Value("${members.changes.outbox-size:256}") int outboxSize,
+            @Value("${members.changes.sender-threads:4}") int senderThreads) {
+        this.buffer = new MemberChange[bufferSize];
+        this.outboxSize = outboxSize;
+        this.sender = Executors.newFixedThreadPool(senderThreads,
+                Thread.ofPlatform().name("member-change-feed-", 0).daemon().factory());
+    }
+
+    /**
+     * <p class="en">Subscribes to the changes. The changes following <code>lastEventId</code> are sent first; a new
+     * client, or one whose changes are lost, receives a <code>reset</code> event instead (after which it loads the
+     * members).</p>
+     * <p class="fr">S'abonne aux changements. Les changements suivant <code>lastEventId</code> sont envoyés d'abord ;
+     * un nouveau client, ou un client dont les changements sont perdus, reçoit un événement <code>reset</code> à la
+     * place (après lequel il charge les membres).</p>
+     * @param lastEventId <p class="en">The id of the last event received by the client (<code>null</code> for a new
+     * client).</p>
+     * <p class="fr">L'id du dernier événement reçu par le client (<code>null</code> pour un nouveau client).</p>
+     * @return <p class="en">The emitter of the events.</p> <p class="fr">L'émetteur des événements.</p>
+     */
+    public SseEmitter subscribe(@Nullable String lastEventId) {
+        SseEmitter emitter = new SseEmitter(0L);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+        lock.lock();
+        try {
+            // The replay is not bounded by the outbox: it is bounded by the buffer
+            List<MemberChange> missed = lastEventId == null ? null : missedSince(lastEventId);
+            if (missed == null) {
+                subscriber.offer(SseEmitter.event().name(RESET_EVENT).id(eventId(sequence)).data("").build(), false);
+            } else {
+                for (MemberChange change : missed) {
+                    subscriber.offer(event(change), false);
+                }
+            }
+            subscribers.add(subscriber);
+        } finally {
+            lock.unlock();
+        }
+        return emitter;
+    }
+
+    /**
+     * <p class="en">Numbers a committed change, keeps it and sends it to the subscribers.</p>
+     * <p class="fr">Numérote un changement validé, le garde et l'envoie aux abonnés.</p>
+     * @param event <p class="en">The change.</p> <p class="fr">Le changement.</p>
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void changed(MemberChangeEvent event) {
+        lock.lock();
+        try {
+            MemberChange change = new MemberChange(++sequence, event.type(), event.id(),
+                    event.type() == ChangeType.Deleted ? null : event.member());
+            buffer[(int) (change.sequence() % buffer.length)] = change;
+            broadcast(event(change));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * <p class="en">Sends a comment to the subscribers, so the proxies do not close the idle connections and the
+     * disconnected clients are detected.</p>
+     * <p class="fr">Envoie un commentaire aux abonnés, pour que les proxys ne ferment pas les connexions inactives et
+     * que les clients déconnectés soient détectés.</p>
+     */
+    @Scheduled(fixedRateString = "${members.changes.heartbeat-interval:PT30S}")
+    public void heartbeat() {
+        broadcast(SseEmitter.event().comment("heartbeat").build());
+    }
+
+    /**
+     * <p class="en">Returns the number of subscribers.</p>
+     * <p class="fr">Renvoie le nombre d'abonnés.</p>
+     * @return <p class="en">The number of subscribers.</p> <p class="fr">Le nombre d'abonnés.</p>
+     */
+    public int subscribers() {
+        return subscribers.size();
+    }
+
+    /**
+     * <p class="en">Closes the connections of the subscribers when the application stops.</p>
+     * <p class="fr">Ferme les connexions des abonnés quand l'application s'arrête.</p>
+     */
+    @PreDestroy
+    public void close() {
+        sender.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    /**
+     * <p class="en">Queues an event in the outboxes of all the subscribers, without waiting for it to be sent.</p>
+     * <p class="fr">Met un événement dans les boîtes d'envoi de tous les abonnés, sans attendre qu'il soit
+     * envoyé.</p>
+     * @param event <p class="en">The event.</p> <p class="fr">L'événement.</p>
+     */
+    private void broadcast(Set<DataWithMediaType> event) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(event, true);
+        }
+    }
+
+    /**
+     * <p class="en">Returns the changes following an event, still in the buffer. Must be called with the lock.</p>
+     * <p class="fr">Renvoie les changements suivant un événement, encore dans le tampon. Doit être appelée avec le
+     * verrou.</p>
+     * @param lastEventId <p class="en">The id of the event.</p> <p class="fr">L'id de l'événement.</p>
+     * @return <p class="en">The changes, <code>null</code> if some of them are no longer in the buffer or if the id
+     * is not from this launch.</p>
+     * <p class="fr">Les changements, <code>null</code> si certains ne sont plus dans le tampon ou si l'id n'est pas
+     * de ce lancement.</p>
+     */
+    @Nullable
+    private List<MemberChange> missedSince(String lastEventId) {
+        int separator = lastEventId.indexOf('-');
+        if (separator < 0 || !lastEventId.substring(0, separator).equals(epoch)) {
+            return null;
+        }
+        long last;
+        try {
+            last = Long.parseLong(lastEventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (last > sequence || last < sequence - buffer.length) {
+            return null;
+        }
+        List<MemberChange> missed = new ArrayList<>((int) (sequence - last));
+        for (long n = last + 1; n <= sequence; n++) {
+            missed.add(buffer[(int) (n % buffer.length)]);
+        }
+        return missed;
+    }
+
+    /**
+     * <p class="en">Returns the id of the event of a change.</p>
+     * <p class="fr">Renvoie l'id de l'événement d'un changement.</p>
+     * @param sequence <p class="en">The sequence number of the change.</p>
+     * <p class="fr">Le numéro de séquence du changement.</p>
+     * @return <p class="en">The id.</p> <p class="fr">L'id.</p>
+     */
+    private String eventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    /**
+     * <p class="en">Returns the event of a change, named after its type.</p>
+     * <p class="fr">Renvoie l'événement d'un changement, nommé d'après son type.</p>
+     * @param change <p class="en">The change.</p> <p class="fr">Le changement.</p>
+     * @return <p class="en">The event (built once, shared by the subscribers).</p>
+     * <p class="fr">L'événement (construit une fois, partagé par les abonnés).</p>
+     */
+    private Set<DataWithMediaType> event(MemberChange change) {
+        return SseEmitter.event()
+                .id(eventId(change.sequence()))
+                .name(change.type().name())
+                .data(change, MediaType.APPLICATION_JSON)
+                .build();
+    }
+
+    /**
+     * <p class="en">A subscriber and its outbox. The outbox is drained by a single task of {@link #sender} at a
+     * time, submitted when the first event arrives in the empty outbox, so the events of a subscriber are written in
+     * order and an idle subscriber holds no thread. When the outbox is full, the subscriber is removed and its
+     * connection completed (by the task, which may be blocked on a slow client).</p>
+     * <p class="fr">Un abonné et sa boîte d'envoi. La boîte d'envoi est vidée par une seule tâche de {@link #sender}
+     * à la fois, soumise quand le premier événement arrive dans la boîte vide, donc les événements d'un abonné sont
+     * écrits dans l'ordre et un abonné inactif ne tient aucun thread. Quand la boîte d'envoi est pleine, l'abonné est
+     * retiré et sa connexion terminée (par la tâche, qui peut être bloquée sur un client lent).</p>
+     */
+    private final class Subscriber {
+
+        /**
+         * <p class="en">The emitter of the events of the subscriber.</p>
+         * <p class="fr">L'émetteur des événements de l'abonné.</p>
+         */
+        private final SseEmitter emitter;
+
+        /**
+         * <p class="en">The events waiting to be sent, guarded by the subscriber.</p>
+         * <p class="fr">Les événements attendant d'être envoyés, protégés par l'abonné.</p>
+         */
+        private final ArrayDeque<Set<DataWithMediaType>> outbox = new ArrayDeque<>();
+
+        /**
+         * <p class="en">If a task is draining the outbox (guarded by the subscriber).</p>
+         * <p class="fr">Si une tâche vide la boîte d'envoi (protégé par l'abonné).</p>
+         */
+        private boolean draining;
+
+        /**
+         * <p class="en">If the subscriber is removed, its outbox discarded (guarded by the subscriber).</p>
+         * <p class="fr">Si l'abonné est retiré, sa boîte d'envoi abandonnée (protégé par l'abonné).</p>
+         */
+        private boolean closed;
+
+        /**
+         * <p class="en">If the subscriber was closed because its outbox was full (guarded by the subscriber).</p>
+         * <p class="fr">Si l'abonné a été fermé parce que sa boîte d'envoi était pleine (protégé par
+         * l'abonné).</p>
+         */
+        private boolean overflowed;
+
+        /**
+         * <p class="en">Creates a subscriber.</p>
+         * <p class="fr">Crée un abonné.</p>
+         * @param emitter <p class="en">The emitter of its events.</p> <p class="fr">L'émetteur de ses
+         * événements.</p>
+         */
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        /**
+         * <p class="en">Queues an event, and starts draining the outbox if no task is. If the outbox is full, the
+         * subscriber is closed instead, and its connection completed once the current send (if any) returns.</p>
+         * <p class="fr">Met un événement en file, et commence à vider la boîte d'envoi si aucune tâche ne le fait. Si
+         * la boîte d'envoi est pleine, l'abonné est fermé à la place, et sa connexion terminée une fois l'envoi en
+         * cours (s'il y en a un) revenu.</p>
+         * @param event <p class="en">The event.</p> <p class="fr">L'événement.</p>
+         * @param bounded <p class="en">If the size of the outbox applies (not to the replay of the missed
+         * changes).</p>
+         * <p class="fr">Si la taille de la boîte d'envoi s'applique (pas à la relecture des changements
+         * manqués).</p>
+         */
+        private void offer(Set<DataWithMediaType> event, boolean bounded) {
+            boolean start;
+            boolean overflow = false;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (bounded && outbox.size() >= outboxSize) {
+                    closed = true;
+                    overflowed = true;
+                    overflow = true;
+                    outbox.clear();
+                } else {
+                    outbox.add(event);
+                }
+                start = !draining;
+                draining = true;
+            }
+            if (overflow) {
+                subscribers.remove(this);
+            }
+            if (start) {
+                sender.execute(this::drain);
+            }
+        }
+
+        /**
+         * <p class="en">Sends the events of the outbox, until it is empty, then completes the connection if the
+         * subscriber was closed by an overflow.</p>
+         * <p class="fr">Envoie les événements de la boîte d'envoi, jusqu'à ce qu'elle soit vide, puis termine la
+         * connexion si l'abonné a été fermé par un débordement.</p>
+         */
+        private void drain() {
+            while (true) {
+                Set<DataWithMediaType> next;
+                synchronized (this) {
+                    next = outbox.poll();
+                    if (next == null) {
+                        if (overflowed) {
+                            break;
+                        }
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(next);
+                } catch (IOException | IllegalStateException e) {
+                    close();
+                    emitter.completeWithError(e);
+                    return;
+                }
+            }
+            // The client resumes with Last-Event-ID
+            emitter.complete();
+        }
+
+        /**
+         * <p class="en">Removes the subscriber and discards its outbox (its connection is closed or closing).</p>
+         * <p class="fr">Retire l'abonné et abandonne sa boîte d'envoi (sa connexion est fermée ou se ferme).</p>
+         */
+        private void close() {
+            synchronized (this) {
+                closed = true;
+                outbox.clear();
+            }
+            subscribers.remove(this);
+        }
+
+    }
+
+}
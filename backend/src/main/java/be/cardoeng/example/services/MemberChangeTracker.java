@@ -0,0 +1,61 @@
+package be.cardoeng.example.services;
+
+import be.cardoeng.example.events.MemberChangeEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p class="en">A counter of the changes made to the member table, used as the version (ETag) of the list of members.
+ * The counter is incremented once the transaction of the change is over, so a client reading the version and then
+ * the members can never associate the new version with the old members. It starts again at each launch, hence the
+ * launch time in {@link #version()}. It only sees the changes made by this instance of the application: behind a load
+ * balancer, an instance can keep a version while another instance changes the members. The ETag built from it is
+ * thus weak, and it only holds when all the requests of a client (and all the changes) go to the same instance.</p>
+ * <p class="fr">Un compteur des changements faits à la table des membres, utilisé comme version (ETag) de la liste
+ * des membres. Le compteur est incrémenté une fois la transaction du changement terminée, donc un client lisant la
+ * version puis les membres ne peut jamais associer la nouvelle version aux anciens membres. Il recommence à chaque
+ * lancement, d'où l'heure de lancement dans {@link #version()}. Il ne voit que les changements faits par cette
+ * instance de l'application : derrière un répartiteur de charge, une instance peut garder une version pendant qu'une
+ * autre instance change les membres. L'ETag construit à partir de lui est donc faible, et il n'est valable que quand
+ * toutes les requêtes d'un client (et tous les changements) vont à la même instance.</p>
+ */
+@Service
+public class MemberChangeTracker {
+
+    /**
+     * <p class="en">The launch time of the application (in base 36).</p>
+     * <p class="fr">L'heure de lancement de l'application (en base 36).</p>
+     */
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    /**
+     * <p class="en">The number of changes since the launch.</p>
+     * <p class="fr">Le nombre de changements depuis le lancement.</p>
+     */
+    private final AtomicLong changes = new AtomicLong();
+
+    /**
+     * <p class="en">Returns the current version of the member table.</p>
+     * <p class="fr">Renvoie la version actuelle de la table des membres.</p>
+     * @return <p class="en">The version.</p> <p class="fr">La version.</p>
+     */
+    public String version() {
+        return epoch + "-" + changes.get();
+    }
+
+    /**
+     * <p class="en">Records a change of the member table. If a transaction is active, the change is counted when it
+     * completes.</p>
+     * <p class="fr">Enregistre un changement de la table des membres. Si une transaction est active, le changement
+     * est compté quand elle se termine.</p>
+     * @param event <p class="en">The change.</p> <p class="fr">Le changement.</p>
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void recordChange(MemberChangeEvent event) {
+        changes.incrementAndGet();
+    }
+
+}
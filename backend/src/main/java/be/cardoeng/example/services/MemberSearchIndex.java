@@ -0,0 +1,247 @@
+package be.cardoeng.example.services;
+
+import be.cardoeng.example.entities.Member;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * <p class="en">An in-memory prefix index of the names and emails of the members. Each member is split into tokens
+ * (the words of its first name, of its last name and of the local part of its email), normalized without accents
+ * nor case, and the tokens are kept sorted, so the members having a token starting with a prefix are found with a
+ * single range lookup instead of a scan of the table (a SQL <code>LIKE '%...%'</code> cannot use an index). The
+ * searches do not lock; the modifications are serialized.</p>
+ * <p class="fr">Un index en mémoire des préfixes des noms et des emails des membres. Chaque membre est découpé en
+ * jetons (les mots de son prénom, de son nom et de la partie locale de son email), normalisés sans accents ni casse,
+ * et les jetons sont gardés triés, donc les membres ayant un jeton commençant par un préfixe sont trouvés avec une
+ * seule recherche par intervalle au lieu d'un parcours de la table (un <code>LIKE '%...%'</code> SQL ne peut pas
+ * utiliser d'index). Les recherches ne verrouillent pas ; les modifications sont sérialisées.</p>
+ */
+public class MemberSearchIndex {
+
+    /**
+     * <p class="en">The combining marks (the accents once the text is decomposed).</p>
+     * <p class="fr">Les marques combinantes (les accents une fois le texte décomposé).</p>
+     */
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    /**
+     * <p class="en">The characters separating the tokens (anything but letters and digits).</p>
+     * <p class="fr">Les caractères séparant les jetons (tout sauf les lettres et les chiffres).</p>
+     */
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * <p class="en">The ids of the members, by token (sorted).</p>
+     * <p class="fr">Les ids des membres, par jeton (triés).</p>
+     */
+    private final ConcurrentSkipListMap<String, Set<Integer>> idsByToken = new ConcurrentSkipListMap<>();
+
+    /**
+     * <p class="en">The tokens, by id of member (to remove them when the member changes).</p>
+     * <p class="fr">Les jetons, par id de membre (pour les retirer quand le membre change).</p>
+     */
+    private final ConcurrentHashMap<Integer, String[]> tokensById = new ConcurrentHashMap<>();
+
+    /**
+     * <p class="en">The lock serializing the modifications.</p>
+     * <p class="fr">Le verrou sérialisant les modifications.</p>
+     */
+    private final Lock writeLock = new ReentrantLock();
+
+    /**
+     * <p class="en">Normalizes a text: removes its accents and lower-cases it.</p>
+     * <p class="fr">Normalise un texte : retire ses accents et le met en minuscules.</p>
+     * @param text <p class="en">The text.</p> <p class="fr">Le texte.</p>
+     * @return <p class="en">The normalized text.</p> <p class="fr">Le texte normalisé.</p>
+     */
+    public static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * <p class="en">Splits a text into normalized tokens.</p>
+     * <p class="fr">Découpe un texte en jetons normalisés.</p>
+     * @param text <p class="en">The text.</p> <p class="fr">Le texte.</p>
+     * @return <p class="en">The distinct tokens.</p> <p class="fr">Les jetons distincts.</p>
+     */
+    public static String[] tokenize(String text) {
+        return SEPARATORS.splitAsStream(normalize(text))
+                .filter(token -> !token.isEmpty())
+                .distinct()
+                .toArray(String[]::new);
+    }
+
+    /**
+     * <p class="en">Returns the tokens of a member. The domain of the email is ignored (it is shared by almost all
+     * the members, so it would match everyone).</p>
+     * <p class="fr">Renvoie les jetons d'un membre. Le domaine de l'email est ignoré (il est partagé par presque
+     * tous les membres, donc il correspondrait à tout le monde).</p>
+     * @param member <p class="en">The member.</p> <p class="fr">Le membre.</p>
+     * @return <p class="en">The distinct tokens.</p> <p class="fr">Les jetons distincts.</p>
+     */
+    public static String[] tokensOf(Member member) {
+        String email = member.getEmail();
+        if (email != null && email.indexOf('@') >= 0) {
+            email = email.substring(0, email.indexOf('@'));
+        }
+        return Stream.of(member.getFirstName(), member.getLastName(), email)
+                .filter(text -> text != null)
+                .flatMap(text -> Arrays.stream(tokenize(text)))
+                .distinct()
+                .toArray(String[]::new);
+    }
+
+    /**
+     * <p class="en">Adds a member to the index, or replaces its previous tokens.</p>
+     * <p class="fr">Ajoute un membre à l'index, ou remplace ses jetons précédents.</p>
+     * @param member <p class="en">The member.</p> <p class="fr">Le membre.</p>
+     */
+    public void put(Member member) {
+        int id = member.getId();
+        String[] tokens = tokensOf(member);
+        writeLock.lock();
+        try {
+            String[] previous = tokensById.put(id, tokens);
+            if (previous != null) {
+                unlink(id, Arrays.stream(previous)
+                        .filter(token -> !Arrays.asList(tokens).contains(token))
+                        .toArray(String[]::new));
+            }
+            for (String token : tokens) {
+                idsByToken.computeIfAbsent(token, t -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * <p class="en">Removes a member from the index.</p>
+     * <p class="fr">Retire un membre de l'index.</p>
+     * @param id <p class="en">The id of the member.</p> <p class="fr">L'id du membre.</p>
+     */
+    public void remove(int id) {
+        writeLock.lock();
+        try {
+            String[] previous = tokensById.remove(id);
+            if (previous != null) {
+                unlink(id, previous);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * <p class="en">Removes all the members from the index.</p>
+     * <p class="fr">Retire tous les membres de l'index.</p>
+     */
+    public void clear() {
+        writeLock.lock();
+        try {
+            tokensById.clear();
+            idsByToken.clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * <p class="en">Returns the number of members in the index.</p>
+     * <p class="fr">Renvoie le nombre de membres dans l'index.</p>
+     * @return <p class="en">The number of members.</p> <p class="fr">Le nombre de membres.</p>
+     */
+    public int size() {
+        return tokensById.size();
+    }
+
+    /**
+     * <p class="en">Searches the members matching a query: each word of the query must be the prefix of a token of
+     * the member (ignoring accents and case). The longest word drives the search (it has the fewest candidates) and
+     * the search stops as soon as <code>limit</code> members are found, so its cost does not grow with the number of
+     * members.</p>
+     * <p class="fr">Recherche les membres correspondant à une requête : chaque mot de la requête doit être le préfixe
+     * d'un jeton du membre (en ignorant les accents et la casse). Le mot le plus long guide la recherche (il a le
+     * moins de candidats) et la recherche s'arrête dès que <code>limit</code> membres sont trouvés, donc son coût ne
+     * croît pas avec le nombre de membres.</p>
+     * @param query <p class="en">The query.</p> <p class="fr">La requête.</p>
+     * @param limit <p class="en">The maximum number of members to return.</p>
+     * <p class="fr">Le nombre maximum de membres à renvoyer.</p>
+     * @return <p class="en">The ids of the members found, ordered by matching token.</p>
+     * <p class="fr">Les ids des membres trouvés, triés par jeton correspondant.</p>
+     */
+    public List<Integer> search(String query, int limit) {
+        String[] words = tokenize(query);
+        if (words.length == 0 || limit <= 0) {
+            return List.of();
+        }
+        Arrays.sort(words, Comparator.comparingInt(String::length).reversed());
+        Set<Integer> found = new LinkedHashSet<>();
+        // All the tokens starting with words[0] are between words[0] and words[0] followed by the last character
+        for (Set<Integer> ids : idsByToken.subMap(words[0], words[0] + Character.MAX_VALUE).values()) {
+            for (Integer id : ids) {
+                if (!found.contains(id) && matchesOthers(id, words)) {
+                    found.add(id);
+                    if (found.size() == limit) {
+                        return new ArrayList<>(found);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    /**
+     * <p class="en">Checks that every word of a query but the first is the prefix of a token of a member.</p>
+     * <p class="fr">Vérifie que chaque mot d'une requête sauf le premier est le préfixe d'un jeton d'un membre.</p>
+     * @param id <p class="en">The id of the member.</p> <p class="fr">L'id du membre.</p>
+     * @param words <p class="en">The words of the query.</p> <p class="fr">Les mots de la requête.</p>
+     * @return <p class="en">If the member matches.</p> <p class="fr">Si le membre correspond.</p>
+     */
+    private boolean matchesOthers(int id, String[] words) {
+        String[] tokens = tokensById.get(id);
+        if (tokens == null) {
+            return false; // removed in the meantime
+        }
+        for (int i = 1; i < words.length; i++) {
+            String word = words[i];
+            if (Arrays.stream(tokens).noneMatch(token -> token.startsWith(word))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * <p class="en">Removes a member from the given tokens (and the tokens left without members).</p>
+     * <p class="fr">Retire un membre des jetons donnés (et les jetons laissés sans membres).</p>
+     * @param id <p class="en">The id of the member.</p> <p class="fr">L'id du membre.</p>
+     * @param tokens <p class="en">The tokens.</p> <p class="fr">Les jetons.</p>
+     */
+    private void unlink(int id, String[] tokens) {
+        for (String token : tokens) {
+            Set<Integer> ids = idsByToken.get(token);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    idsByToken.remove(token, ids);
+                }
+            }
+        }
+    }
+
+}
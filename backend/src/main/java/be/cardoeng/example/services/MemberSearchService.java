@@ -0,0 +1,216 @@
+package be.cardoeng.example.services;
+
+import be.cardoeng.example.entities.Member;
+import be.cardoeng.example.events.MemberChangeEvent;
+import be.cardoeng.example.repositories.MemberRepository;
+import jakarta.annotation.Nullable;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * <p class="en">The search of the members by name or email. It keeps a {@link MemberSearchIndex} in sync with the
+ * database: the index is rebuilt from the table once the application is started (in the background, so the
+ * application is ready without waiting for it), then updated by each {@link MemberChangeEvent} once its transaction
+ * is committed (so a rolled back change is never indexed).</p>
+ * <p class="fr">La recherche des membres par nom ou email. Elle garde un {@link MemberSearchIndex} synchronisé avec
+ * la base de données : l'index est reconstruit depuis la table une fois l'application démarrée (en arrière-plan,
+ * donc l'application est prête sans l'attendre), puis mis à jour par chaque {@link MemberChangeEvent} une fois sa
+ * transaction validée (donc un changement annulé n'est jamais indexé).</p>
+ */
+@Service
+public class MemberSearchService {
+
+    /**
+     * <p class="en">The logger of the failed rebuilds.</p>
+     * <p class="fr">Le journal des reconstructions échouées.</p>
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemberSearchService.class);
+
+    /**
+     * <p class="en">The lock guarding {@link #index} and {@link #pending}.</p>
+     * <p class="fr">Le verrou protégeant {@link #index} et {@link #pending}.</p>
+     */
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * <p class="en">The index of the members, replaced at each rebuild.</p>
+     * <p class="fr">L'index des membres, remplacé à chaque reconstruction.</p>
+     */
+    private volatile MemberSearchIndex index = new MemberSearchIndex();
+
+    /**
+     * <p class="en">The changes received during a rebuild (replayed on the new index), <code>null</code> if there is
+     * no rebuild in progress.</p>
+     * <p class="fr">Les changements reçus pendant une reconstruction (rejoués sur le nouvel index), <code>null</code>
+     * s'il n'y a pas de reconstruction en cours.</p>
+     */
+    @Nullable
+    private List<MemberChangeEvent> pending;
+
+    /**
+     * <p class="en">The repository to use to load the members.</p>
+     * <p class="fr">Le dépôt à utiliser pour charger les membres.</p>
+     */
+    private final MemberRepository repository;
+
+    /**
+     * <p class="en">The template of the transaction of the rebuild.</p>
+     * <p class="fr">Le template de la transaction de la reconstruction.</p>
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * <p class="en">The entity manager, used to detach the members once indexed.</p>
+     * <p class="fr">Le gestionnaire d'entités, utilisé pour détacher les membres une fois indexés.</p>
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * <p class="en">The constructor of the service.</p>
+     * <p class="fr">Le constructeur du service.</p>
+     * @param repository <p class="en">The repository to use to load the members.</p>
+     * <p class="fr">Le dépôt à utiliser pour charger les membres.</p>
+     * @param transactionTemplate <p class="en">The template of the transaction of the rebuild.</p>
+     * <p class="fr">Le template de la transaction de la reconstruction.</p>
+     */
+    public MemberSearchService(MemberRepository repository, TransactionTemplate transactionTemplate) {
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * <p class="en">Starts the rebuild of the index on a background thread, once the application is ready. Until it
+     * is over, the search only finds the members changed since the start.</p>
+     * <p class="fr">Démarre la reconstruction de l'index sur un fil d'exécution en arrière-plan, une fois
+     * l'application prête. Jusqu'à ce qu'elle soit terminée, la recherche ne trouve que les membres changés depuis le
+     * démarrage.</p>
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread.ofPlatform().name("member-search-rebuild").daemon().start(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                LOGGER.error("The rebuild of the search index failed", e);
+            }
+        });
+    }
+
+    /**
+     * <p class="en">Rebuilds the index from the table, streaming the members (so they are never all in memory) into
+     * a new index, which replaces the current one once the changes received meanwhile are replayed on it. The
+     * transaction is not read-only, so the members are read from the primary and not from a replica that could be
+     * late (see {@link be.cardoeng.example.routing.ReplicaRoutingDataSource}).</p>
+     * <p class="fr">Reconstruit l'index depuis la table, en diffusant les membres (donc ils ne sont jamais tous en
+     * mémoire) dans un nouvel index, qui remplace l'actuel une fois les changements reçus entre-temps rejoués dessus.
+     * La transaction n'est pas en lecture seule, donc les membres sont lus depuis le primaire et pas depuis une
+     * réplique qui pourrait être en retard (voir {@link be.cardoeng.example.routing.ReplicaRoutingDataSource}).</p>
+     */
+    public void rebuild() {
+        lock.lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+        MemberSearchIndex rebuilt = new MemberSearchIndex();
+        boolean complete = false;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<Member> members = repository.streamAll()) {
+                    members.forEach(m -> {
+                        rebuilt.put(m);
+                        entityManager.detach(m);
+                    });
+                }
+            });
+            complete = true;
+        } finally {
+            lock.lock();
+            try {
+                if (complete) {
+                    pending.forEach(event -> apply(rebuilt, event));
+                    index = rebuilt;
+                }
+                pending = null;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * <p class="en">Updates the index with a committed change.</p>
+     * <p class="fr">Met à jour l'index avec un changement validé.</p>
+     * @param event <p class="en">The change.</p> <p class="fr">Le changement.</p>
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void changed(MemberChangeEvent event) {
+        lock.lock();
+        try {
+            apply(index, event);
+            if (pending != null) {
+                pending.add(event);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * <p class="en">Applies a change to an index.</p>
+     * <p class="fr">Applique un changement à un index.</p>
+     * @param target <p class="en">The index.</p> <p class="fr">L'index.</p>
+     * @param event <p class="en">The change.</p> <p class="fr">Le changement.</p>
+     */
+    private static void apply(MemberSearchIndex target, MemberChangeEvent event) {
+        switch (event.type()) {
+            case Created, Updated -> {
+                if (event.member() != null) {
+                    target.put(event.member());
+                }
+            }
+            case Deleted -> target.remove(event.id());
+        }
+    }
+
+    /**
+     * <p class="en">Searches the members matching a query (see {@link MemberSearchIndex#search}) and loads them with
+     * a single query.</p>
+     * <p class="fr">Recherche les membres correspondant à une requête (voir {@link MemberSearchIndex#search}) et les
+     * charge avec une seule requête.</p>
+     * @param query <p class="en">The query.</p> <p class="fr">La requête.</p>
+     * @param limit <p class="en">The maximum number of members to return.</p>
+     * <p class="fr">Le nombre maximum de membres à renvoyer.</p>
+     * @return <p class="en">The members found, in the order of the index.</p>
+     * <p class="fr">Les membres trouvés, dans l'ordre de l'index.</p>
+     */
+    public List<Member> search(String query, int limit) {
+        List<Integer> ids = index.search(query, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, Member> members = repository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Member::getId, Function.identity()));
+        return ids.stream().map(members::get).filter(Objects::nonNull).toList();
+    }
+
+}
@@ -0,0 +1,170 @@
+package be.cardoeng.example.services;
+
+import be.cardoeng.example.entities.Member;
+import be.cardoeng.example.enums.BatchStatus;
+import be.cardoeng.example.repositories.MemberRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.MappingIterator;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * <p class="en">Fills the database with the members of a fixture file (<code>members.seed.location</code>, NDJSON:
+ * one member per line, empty to disable it) when the application is ready. The file is read as a stream on a
+ * background thread, so a large fixture neither delays the readiness of the application nor is held in memory, and
+ * the members are inserted by chunks of <code>members.seed.batch-size</code> with
+ * {@link MemberRepository#insertAll} (one query to find the existing ids and JDBC batched inserts per chunk). The
+ * members already in the database are kept as they are, so the seed can be loaded at each start.</p>
+ * <p class="fr">Remplit la base de données avec les membres d'un fichier de données (<code>members.seed.location</code>,
+ * NDJSON : un membre par ligne, vide pour le désactiver) quand l'application est prête. Le fichier est lu comme un
+ * flux sur un fil d'exécution en arrière-plan, donc un gros fichier ne retarde pas la disponibilité de l'application
+ * et n'est pas gardé en mémoire, et les membres sont insérés par morceaux de <code>members.seed.batch-size</code> avec
+ * {@link MemberRepository#insertAll} (une requête pour trouver les ids existants et des insertions par lots JDBC par
+ * morceau). Les membres déjà dans la base de données sont gardés tels quels, donc les données peuvent être chargées
+ * à chaque démarrage.</p>
+ */
+@Service
+public class MemberSeedLoader {
+
+    /**
+     * <p class="en">The repository to use to insert the members.</p>
+     * <p class="fr">Le dépôt à utiliser pour insérer les membres.</p>
+     */
+    private final MemberRepository repository;
+
+    /**
+     * <p class="en">The object mapper to use to read the members.</p>
+     * <p class="fr">Le mappeur d'objets à utiliser pour lire les membres.</p>
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * <p class="en">The loader of the fixture file.</p>
+     * <p class="fr">Le chargeur du fichier de données.</p>
+     */
+    private final ResourceLoader resourceLoader;
+
+    /**
+     * <p class="en">The location of the fixture file, empty if there is none.</p>
+     * <p class="fr">L'emplacement du fichier de données, vide s'il n'y en a pas.</p>
+     */
+    private final String location;
+
+    /**
+     * <p class="en">The maximum number of members inserted per transaction.</p>
+     * <p class="fr">Le nombre maximum de membres insérés par transaction.</p>
+     */
+    private final int batchSize;
+
+    /**
+     * <p class="en">The number of members created by the seed, completed once it is loaded.</p>
+     * <p class="fr">Le nombre de membres créés par les données, complété une fois qu'elles sont chargées.</p>
+     */
+    private final CompletableFuture<Integer> seeded = new CompletableFuture<>();
+
+    /**
+     * <p class="en">The constructor of the loader.</p>
+     * <p class="fr">Le constructeur du chargeur.</p>
+     * @param repository <p class="en">The repository to use to insert the members.</p>
+     * <p class="fr">Le dépôt à utiliser pour insérer les membres.</p>
+     * @param objectMapper <p class="en">The object mapper to use to read the members.</p>
+     * <p class="fr">Le mappeur d'objets à utiliser pour lire les membres.</p>
+     * @param resourceLoader <p class="en">The loader of the fixture file.</p>
+     * <p class="fr">Le chargeur du fichier de données.</p>
+     * @param location <p class="en">The location of the fixture file, empty if there is none.</p>
+     * <p class="fr">L'emplacement du fichier de données, vide s'il n'y en a pas.</p>
+     * @param batchSize <p class="en">The maximum number of members inserted per transaction.</p>
+     * <p class="fr">Le nombre maximum de membres insérés par transaction.</p>
+     */
+    public MemberSeedLoader(MemberRepository repository, ObjectMapper objectMapper, ResourceLoader resourceLoader,
+            @Value("${members.seed.location:}") String location,
+            @Value("${members.seed.batch-size:500}") int batchSize) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.resourceLoader = resourceLoader;
+        this.location = location;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * <p class="en">Starts the loading of the fixture file on a background thread, once the application is
+     * ready.</p>
+     * <p class="fr">Démarre le chargement du fichier de données sur un fil d'exécution en arrière-plan, une fois
+     * l'application prête.</p>
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (location.isBlank()) {
+            seeded.complete(0);
+            return;
+        }
+        Thread.ofPlatform().name("member-seed").daemon().start(() -> {
+            try {
+                seeded.complete(load(resourceLoader.getResource(location)));
+            } catch (IOException | RuntimeException e) {
+                seeded.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     * <p class="en">Returns the number of members created by the seed.</p>
+     * <p class="fr">Renvoie le nombre de membres créés par les données.</p>
+     * @return <p class="en">The number of members, completed once the seed is loaded.</p>
+     * <p class="fr">Le nombre de membres, complété une fois les données chargées.</p>
+     */
+    public CompletableFuture<Integer> seeded() {
+        return seeded;
+    }
+
+    /**
+     * <p class="en">Inserts the members of a fixture file, except the ones already in the database.</p>
+     * <p class="fr">Insère les membres d'un fichier de données, sauf ceux déjà dans la base de données.</p>
+     * @param fixture <p class="en">The fixture file (NDJSON or a JSON array).</p>
+     * <p class="fr">Le fichier de données (NDJSON ou un tableau JSON).</p>
+     * @return <p class="en">The number of members created.</p> <p class="fr">Le nombre de membres créés.</p>
+     * @throws IOException <p class="en">If the file cannot be opened.</p>
+     * <p class="fr">Si le fichier ne peut pas être ouvert.</p>
+     */
+    public int load(Resource fixture) throws IOException {
+        int created = 0;
+        List<Member> chunk = new ArrayList<>(batchSize);
+        try (InputStream in = fixture.getInputStream();
+                MappingIterator<Member> members = objectMapper.readerFor(Member.class).readValues(in)) {
+            while (members.hasNextValue()) {
+                chunk.add(members.nextValue());
+                if (chunk.size() == batchSize) {
+                    created += insert(chunk);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            created += insert(chunk);
+        }
+        return created;
+    }
+
+    /**
+     * <p class="en">Inserts a chunk of members.</p>
+     * <p class="fr">Insère un morceau de membres.</p>
+     * @param chunk <p class="en">The members.</p> <p class="fr">Les membres.</p>
+     * @return <p class="en">The number of members created.</p> <p class="fr">Le nombre de membres créés.</p>
+     */
+    private int insert(List<Member> chunk) {
+        return (int) repository.insertAll(chunk).stream()
+                .filter(result -> result.status() == BatchStatus.Created)
+                .count();
+    }
+
+}
@@ -0,0 +1,427 @@
+package be.cardoeng.example.services;
+
+import be.cardoeng.example.dtos.MemberStats;
+import be.cardoeng.example.entities.Member;
+import be.cardoeng.example.enums.ChangeType;
+import be.cardoeng.example.enums.MemberStatus;
+import be.cardoeng.example.events.MemberArchivedEvent;
+import be.cardoeng.example.events.MemberChangeEvent;
+import be.cardoeng.example.events.MemberState;
+import be.cardoeng.example.repositories.MemberRepository;
+import jakarta.annotation.Nullable;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * <p class="en">The statistics of the members (per status, active or departed, per year of arrival), kept in memory
+ * instead of being computed with a <code>GROUP BY</code> at each request. The archived members are counted too, as
+ * departed members. The counters are built from the table and the archive once the application is started (in the
+ * background, so the application is ready without waiting for them), updated by each {@link MemberChangeEvent} and
+ * {@link MemberArchivedEvent} once its transaction is committed, and rebuilt periodically
+ * (<code>members.stats.reconcile-interval</code>) to catch up with the changes made outside of the application. The
+ * events give the state of a member before a modification or a deletion, so the counter to decrement is known
+ * without keeping the group of each member.</p>
+ * <p class="fr">Les statistiques des membres (par statut, actifs ou partis, par année d'arrivée), gardées en mémoire au
+ * lieu d'être calculées avec un <code>GROUP BY</code> à chaque requête. Les membres archivés sont comptés aussi, comme
+ * membres partis. Les compteurs sont construits depuis la table et l'archive une fois l'application démarrée (en
+ * arrière-plan, donc l'application est prête sans les attendre), mis à jour par chaque {@link MemberChangeEvent} et
+ * {@link MemberArchivedEvent} une fois sa transaction validée, et reconstruits périodiquement
+ * (<code>members.stats.reconcile-interval</code>) pour rattraper les changements faits en dehors de l'application. Les
+ * événements donnent l'état d'un membre avant une modification ou une suppression, donc le compteur à décrémenter est
+ * connu sans garder le groupe de chaque membre.</p>
+ */
+@Service
+public class MemberStatistics {
+
+    /**
+     * <p class="en">The logger of the failed rebuilds.</p>
+     * <p class="fr">Le journal des reconstructions échouées.</p>
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemberStatistics.class);
+
+    /**
+     * <p class="en">The group of a member in the statistics.</p>
+     * <p class="fr">Le groupe d'un membre dans les statistiques.</p>
+     * @param status <p class="en">The status of the member.</p> <p class="fr">Le statut du membre.</p>
+     * @param year <p class="en">The year of its begin date.</p> <p class="fr">L'année de sa date de début.</p>
+     * @param active <p class="en">If it has no end date.</p> <p class="fr">S'il n'a pas de date de fin.</p>
+     */
+    private record Group(@Nullable MemberStatus status, @Nullable Integer year, boolean active) {
+
+        /**
+         * <p class="en">Returns the group of a member.</p>
+         * <p class="fr">Renvoie le groupe d'un membre.</p>
+         * @param member <p class="en">The member.</p> <p class="fr">Le membre.</p>
+         * @return <p class="en">The group.</p> <p class="fr">Le groupe.</p>
+         */
+        static Group of(Member member) {
+            return of(member.getStatus(), member.getBeginDate(), member.getEndDate());
+        }
+
+        /**
+         * <p class="en">Returns the group of a member in a previous state.</p>
+         * <p class="fr">Renvoie le groupe d'un membre dans un état précédent.</p>
+         * @param state <p class="en">The state of the member.</p> <p class="fr">L'état du membre.</p>
+         * @return <p class="en">The group.</p> <p class="fr">Le groupe.</p>
+         */
+        static Group of(MemberState state) {
+            return of(state.status(), state.beginDate(), state.endDate());
+        }
+
+        /**
+         * <p class="en">Returns the group of the members with a status and dates.</p>
+         * <p class="fr">Renvoie le groupe des membres avec un statut et des dates.</p>
+         * @param status <p class="en">The status.</p> <p class="fr">Le statut.</p>
+         * @param beginDate <p class="en">The begin date.</p> <p class="fr">La date de début.</p>
+         * @param endDate <p class="en">The end date.</p> <p class="fr">La date de fin.</p>
+         * @return <p class="en">The group.</p> <p class="fr">Le groupe.</p>
+         */
+        private static Group of(@Nullable MemberStatus status, @Nullable Date beginDate, @Nullable Date endDate) {
+            Integer year = beginDate == null ? null
+                    : Instant.ofEpochMilli(beginDate.getTime()).atZone(ZoneId.systemDefault()).getYear();
+            return new Group(status, year, endDate == null);
+        }
+
+    }
+
+    /**
+     * <p class="en">The counters: the number of members of each group. They are only added to, so the changes can be
+     * applied in any order.</p>
+     * <p class="fr">Les compteurs : le nombre de membres de chaque groupe. Ils sont seulement additionnés, donc les
+     * changements peuvent être appliqués dans n'importe quel ordre.</p>
+     */
+    private static final class Counters {
+
+        /**
+         * <p class="en">The number of members of each group (the empty groups are removed).</p>
+         * <p class="fr">Le nombre de membres de chaque groupe (les groupes vides sont retirés).</p>
+         */
+        private final Map<Group, Long> countByGroup = new HashMap<>();
+
+        /**
+         * <p class="en">Applies a change: the member leaves the group of its previous state (if any) and joins the
+         * group of its new one (unless it is deleted). A change whose previous state is unknown is left to the next
+         * rebuild.</p>
+         * <p class="fr">Applique un changement : le membre quitte le groupe de son état précédent (s'il y en a un) et
+         * rejoint le groupe de son nouvel état (sauf s'il est supprimé). Un changement dont l'état précédent est
+         * inconnu est laissé à la prochaine reconstruction.</p>
+         * @param event <p class="en">The change.</p> <p class="fr">Le changement.</p>
+         */
+        void apply(MemberChangeEvent event) {
+            if (event.type() != ChangeType.Created && event.previous() == null) {
+                return;
+            }
+            if (event.previous() != null) {
+                add(Group.of(event.previous()), -1);
+            }
+            if (event.type() != ChangeType.Deleted && event.member() != null) {
+                add(Group.of(event.member()), 1);
+            }
+        }
+
+        /**
+         * <p class="en">Applies a move to the archive: the archived members join their group (their deletion from
+         * the table of the members is a {@link MemberChangeEvent} of its own), and the archives they replace leave
+         * theirs.</p>
+         * <p class="fr">Applique un déplacement vers l'archive : les membres archivés rejoignent leur groupe (leur
+         * suppression de la table des membres est un {@link MemberChangeEvent} à part), et les archives qu'ils
+         * remplacent quittent le leur.</p>
+         * @param event <p class="en">The move.</p> <p class="fr">Le déplacement.</p>
+         */
+        void apply(MemberArchivedEvent event) {
+            event.archived().forEach(a -> add(Group.of(a.toMember()), 1));
+            event.replaced().forEach(a -> add(Group.of(a.toMember()), -1));
+        }
+
+        /**
+         * <p class="en">Adds members to a group.</p>
+         * <p class="fr">Ajoute des membres à un groupe.</p>
+         * @param group <p class="en">The group.</p> <p class="fr">Le groupe.</p>
+         * @param count <p class="en">The number of members (negative to remove them).</p>
+         * <p class="fr">Le nombre de membres (négatif pour les retirer).</p>
+         */
+        void add(Group group, long count) {
+            countByGroup.merge(group, count, (previous, added) -> previous + added == 0 ? null : previous + added);
+        }
+
+        /**
+         * <p class="en">Sums the groups into statistics.</p>
+         * <p class="fr">Additionne les groupes en statistiques.</p>
+         * @return <p class="en">The statistics.</p> <p class="fr">Les statistiques.</p>
+         */
+        MemberStats toStats() {
+            long total = 0;
+            long active = 0;
+            Map<MemberStatus, Long> byStatus = new EnumMap<>(MemberStatus.class);
+            for (MemberStatus status : MemberStatus.values()) {
+                byStatus.put(status, 0L);
+            }
+            TreeMap<Integer, Long> byBeginYear = new TreeMap<>();
+            for (Map.Entry<Group, Long> entry : countByGroup.entrySet()) {
+                Group group = entry.getKey();
+                long count = entry.getValue();
+                total += count;
+                if (group.active()) {
+                    active += count;
+                }
+                if (group.status() != null) {
+                    byStatus.merge(group.status(), count, Long::sum);
+                }
+                if (group.year() != null) {
+                    byBeginYear.merge(group.year(), count, Long::sum);
+                }
+            }
+            return new MemberStats(total, byStatus, active, total - active, byBeginYear);
+        }
+
+    }
+
+    /**
+     * <p class="en">The repository to use to read the members.</p>
+     * <p class="fr">Le dépôt à utiliser pour lire les membres.</p>
+     */
+    private final MemberRepository repository;
+
+    /**
+     * <p class="en">The template of the transaction of the rebuild.</p>
+     * <p class="fr">Le template de la transaction de la reconstruction.</p>
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * <p class="en">The entity manager, used to detach the members once counted.</p>
+     * <p class="fr">Le gestionnaire d'entités, utilisé pour détacher les membres une fois comptés.</p>
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * <p class="en">The lock guarding {@link #counters}, {@link #pendingChanges}, {@link #pendingArchives} and the
+     * computation of {@link #snapshot}.</p>
+     * <p class="fr">Le verrou protégeant {@link #counters}, {@link #pendingChanges}, {@link #pendingArchives} et le
+     * calcul de {@link #snapshot}.</p>
+     */
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * <p class="en">The current counters.</p>
+     * <p class="fr">Les compteurs actuels.</p>
+     */
+    private Counters counters = new Counters();
+
+    /**
+     * <p class="en">The changes of the members received since a rebuild started to read the table (replayed on the
+     * new counters), <code>null</code> if there is no such read in progress.</p>
+     * <p class="fr">Les changements des membres reçus depuis qu'une reconstruction a commencé à lire la table (rejoués
+     * sur les nouveaux compteurs), <code>null</code> s'il n'y a pas de telle lecture en cours.</p>
+     */
+    @Nullable
+    private List<Consumer<Counters>> pendingChanges;
+
+    /**
+     * <p class="en">The moves to the archive received since a rebuild started to read the archive (replayed on the
+     * new counters), <code>null</code> if there is no such read in progress.</p>
+     * <p class="fr">Les déplacements vers l'archive reçus depuis qu'une reconstruction a commencé à lire l'archive
+     * (rejoués sur les nouveaux compteurs), <code>null</code> s'il n'y a pas de telle lecture en cours.</p>
+     */
+    @Nullable
+    private List<Consumer<Counters>> pendingArchives;
+
+    /**
+     * <p class="en">The statistics computed from the counters, <code>null</code> if they changed since.</p>
+     * <p class="fr">Les statistiques calculées depuis les compteurs, <code>null</code> s'ils ont changé depuis.</p>
+     */
+    @Nullable
+    private volatile MemberStats snapshot;
+
+    /**
+     * <p class="en">The constructor of the service.</p>
+     * <p class="fr">Le constructeur du service.</p>
+     * @param repository <p class="en">The repository to use to read the members.</p>
+     * <p class="fr">Le dépôt à utiliser pour lire les membres.</p>
+     * @param transactionTemplate <p class="en">The template of the transaction of the rebuild.</p>
+     * <p class="fr">Le template de la transaction de la reconstruction.</p>
+     */
+    public MemberStatistics(MemberRepository repository, TransactionTemplate transactionTemplate) {
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * <p class="en">Returns the statistics. They are only recomputed (from the groups, not from the members) after
+     * a change, so the polling of the statistics costs nothing.</p>
+     * <p class="fr">Renvoie les statistiques. Elles ne sont recalculées (depuis les groupes, pas depuis les membres)
+     * qu'après un changement, donc l'interrogation régulière des statistiques ne coûte rien.</p>
+     * @return <p class="en">The statistics.</p> <p class="fr">Les statistiques.</p>
+     */
+    public MemberStats stats() {
+        MemberStats stats = snapshot;
+        if (stats != null) {
+            return stats;
+        }
+        lock.lock();
+        try {
+            if (snapshot == null) {
+                snapshot = counters.toStats();
+            }
+            return snapshot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * <p class="en">Updates the counters with a committed change.</p>
+     * <p class="fr">Met à jour les compteurs avec un changement validé.</p>
+     * @param event <p class="en">The change.</p> <p class="fr">Le changement.</p>
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void changed(MemberChangeEvent event) {
+        update(c -> c.apply(event), false);
+    }
+
+    /**
+     * <p class="en">Updates the counters with a committed move to the archive.</p>
+     * <p class="fr">Met à jour les compteurs avec un déplacement vers l'archive validé.</p>
+     * @param event <p class="en">The move.</p> <p class="fr">Le déplacement.</p>
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void archived(MemberArchivedEvent event) {
+        update(c -> c.apply(event), true);
+    }
+
+    /**
+     * <p class="en">Applies a change to the current counters, and keeps it to replay it if a rebuild is in
+     * progress.</p>
+     * <p class="fr">Applique un changement aux compteurs actuels, et le garde pour le rejouer si une reconstruction
+     * est en cours.</p>
+     * @param change <p class="en">The change.</p> <p class="fr">Le changement.</p>
+     * @param archive <p class="en">If the change is a move to the archive.</p>
+     * <p class="fr">Si le changement est un déplacement vers l'archive.</p>
+     */
+    private void update(Consumer<Counters> change, boolean archive) {
+        lock.lock();
+        try {
+            change.accept(counters);
+            List<Consumer<Counters>> pending = archive ? pendingArchives : pendingChanges;
+            if (pending != null) {
+                pending.add(change);
+            }
+            snapshot = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * <p class="en">Starts the first rebuild of the counters on a background thread, once the application is ready.
+     * Until it is over, the statistics only count the changes made since the start.</p>
+     * <p class="fr">Démarre la première reconstruction des compteurs sur un fil d'exécution en arrière-plan, une fois
+     * l'application prête. Jusqu'à ce qu'elle soit terminée, les statistiques ne comptent que les changements faits
+     * depuis le démarrage.</p>
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread.ofPlatform().name("member-stats-reconcile").daemon().start(() -> {
+            try {
+                reconcile();
+            } catch (RuntimeException e) {
+                LOGGER.error("The rebuild of the statistics failed", e);
+            }
+        });
+    }
+
+    /**
+     * <p class="en">Rebuilds the counters from the table and the archive, once the application is started then
+     * periodically. The archive is counted with a <code>GROUP BY</code>, then the members are streamed, without holding
+     * the lock. Each kind of change is collected from just before the read it affects: a change received before it is
+     * committed, so it is in the read (except in the short time between a commit and its event), and the changes
+     * received after are replayed on the new counters before they replace the current ones. The transaction is not
+     * read-only, so the members are read from the primary and not from a replica that could be late.</p>
+     * <p class="fr">Reconstruit les compteurs depuis la table et l'archive, une fois l'application démarrée puis
+     * périodiquement. L'archive est comptée avec un <code>GROUP BY</code>, puis les membres sont diffusés, sans tenir
+     * le verrou. Chaque type de changement est collecté depuis juste avant la lecture qu'il affecte : un changement
+     * reçu avant est validé, donc il est dans la lecture (sauf dans le court moment entre une validation et son
+     * événement), et les changements reçus après sont rejoués sur les nouveaux compteurs avant qu'ils ne remplacent
+     * les actuels. La transaction n'est pas en lecture seule, donc les membres sont lus depuis le primaire et pas
+     * depuis une réplique qui pourrait être en retard.</p>
+     */
+    @Scheduled(fixedDelayString = "${members.stats.reconcile-interval:PT15M}",
+            initialDelayString = "${members.stats.reconcile-interval:PT15M}")
+    public void reconcile() {
+        Counters rebuilt = new Counters();
+        boolean complete = false;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                // The archive first: a member archived between the two reads is in neither, and its event counts it
+                collect(true);
+                repository.countArchivedByGroup()
+                        .forEach(g -> rebuilt.add(new Group(g.status(), g.beginYear(), false), g.count()));
+                collect(false);
+                try (Stream<Member> members = repository.streamAll()) {
+                    members.forEach(m -> {
+                        rebuilt.add(Group.of(m), 1);
+                        entityManager.detach(m);
+                    });
+                }
+            });
+            complete = true;
+        } finally {
+            lock.lock();
+            try {
+                if (complete) {
+                    pendingArchives.forEach(change -> change.accept(rebuilt));
+                    pendingChanges.forEach(change -> change.accept(rebuilt));
+                    counters = rebuilt;
+                    snapshot = null;
+                }
+                pendingArchives = null;
+                pendingChanges = null;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * <p class="en">Starts to collect a kind of change for the rebuild in progress.</p>
+     * <p class="fr">Commence à collecter un type de changement pour la reconstruction en cours.</p>
+     * @param archive <p class="en">If the changes are the moves to the archive.</p>
+     * <p class="fr">Si les changements sont les déplacements vers l'archive.</p>
+     */
+    private void collect(boolean archive) {
+        lock.lock();
+        try {
+            if (archive) {
+                pendingArchives = new ArrayList<>();
+            } else {
+                pendingChanges = new ArrayList<>();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
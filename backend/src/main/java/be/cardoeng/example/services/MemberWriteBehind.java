@@ -0,0 +1,601 @@
+package be.cardoeng.example.services;
+
+import be.cardoeng.example.dtos.BatchResult;
+import be.cardoeng.example.dtos.Operation;
+import be.cardoeng.example.entities.Member;
+import be.cardoeng.example.enums.BatchStatus;
+import be.cardoeng.example.enums.ChangeType;
+import be.cardoeng.example.enums.OperationStatus;
+import be.cardoeng.example.repositories.MemberRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * <p class="en">A write-behind queue of the modifications of the members. The requests asking for it
+ * (<code>Prefer: respond-async</code>) only queue their modification and return at once with an {@link Operation};
+ * a background thread applies the queued modifications by batches of
+ * <code>members.write-behind.batch-size</code>, each batch in a single transaction. The successive PATCH of a member
+ * without <code>If-Match</code> are merged while they wait (the last value of each field wins), and the queue holds at
+ * most <code>members.write-behind.capacity</code> modifications: beyond, the new ones are refused, like once the
+ * queue is stopped. The queue stops after the web server, so the requests still being served are queued and applied
+ * before the shutdown, but it waits at most <code>members.write-behind.shutdown-timeout</code> for them (a slow or
+ * unavailable database must not block the shutdown): the modifications still queued then are dropped, their
+ * operations failed with 503 and their number logged. The operations are kept 10 minutes after their completion.</p>
+ * <p class="fr">Une file d'écriture différée des modifications des membres. Les requêtes qui la demandent
+ * (<code>Prefer: respond-async</code>) ne font que mettre leur modification en file et reviennent aussitôt avec une
+ * {@link Operation} ; un fil d'exécution en arrière-plan applique les modifications en file par lots de
+ * <code>members.write-behind.batch-size</code>, chaque lot dans une seule transaction. Les PATCH successifs d'un
+ * membre sans <code>If-Match</code> sont fusionnés pendant qu'ils attendent (la dernière valeur de chaque champ
+ * l'emporte), et la file contient au plus <code>members.write-behind.capacity</code> modifications : au-delà, les
+ * nouvelles sont refusées, comme une fois la file arrêtée. La file s'arrête après le serveur web, donc les requêtes
+ * encore en cours de traitement sont mises en file et appliquées avant l'arrêt, mais elle les attend au plus
+ * <code>members.write-behind.shutdown-timeout</code> (une base de données lente ou indisponible ne doit pas bloquer
+ * l'arrêt) : les modifications encore en file sont alors abandonnées, leurs opérations échouent avec 503 et leur nombre
+ * est journalisé. Les opérations sont gardées 10 minutes après leur fin.</p>
+ */
+@Service
+public class MemberWriteBehind implements SmartLifecycle {
+
+    /**
+     * <p class="en">A queued modification.</p>
+     * <p class="fr">Une modification en file.</p>
+     */
+    private sealed interface Command {
+
+        /**
+         * <p class="en">Returns the ids of the operations waiting for this modification.</p>
+         * <p class="fr">Renvoie les ids des opérations attendant cette modification.</p>
+         * @return <p class="en">The ids.</p> <p class="fr">Les ids.</p>
+         */
+        List<Long> operations();
+
+    }
+
+    /**
+     * <p class="en">The creation of a member.</p>
+     * <p class="fr">La création d'un membre.</p>
+     * @param member <p class="en">The member.</p> <p class="fr">Le membre.</p>
+     * @param operations <p class="en">The ids of the operations.</p> <p class="fr">Les ids des opérations.</p>
+     */
+    private record Create(Member member, List<Long> operations) implements Command {
+    }
+
+    /**
+     * <p class="en">The modification of a member (its fields and operations grow when PATCH are merged).</p>
+     * <p class="fr">La modification d'un membre (ses champs et opérations grandissent quand des PATCH sont
+     * fusionnés).</p>
+     * @param id <p class="en">The id of the member.</p> <p class="fr">L'id du membre.</p>
+     * @param fields <p class="en">The new values, by field.</p> <p class="fr">Les nouvelles valeurs, par champ.</p>
+     * @param expectedVersion <p class="en">The version the member must have (optional).</p>
+     * <p class="fr">La version que le membre doit avoir (optionnelle).</p>
+     * @param operations <p class="en">The ids of the operations.</p> <p class="fr">Les ids des opérations.</p>
+     */
+    private record Patch(int id, Map<String, Object> fields, @Nullable Long expectedVersion, List<Long> operations)
+            implements Command {
+    }
+
+    /**
+     * <p class="en">The deletion of a member.</p>
+     * <p class="fr">La suppression d'un membre.</p>
+     * @param id <p class="en">The id of the member.</p> <p class="fr">L'id du membre.</p>
+     * @param operations <p class="en">The ids of the operations.</p> <p class="fr">Les ids des opérations.</p>
+     */
+    private record Delete(int id, List<Long> operations) implements Command {
+    }
+
+    /**
+     * <p class="en">The logger of the modifications dropped at the shutdown.</p>
+     * <p class="fr">Le journal des modifications abandonnées à l'arrêt.</p>
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemberWriteBehind.class);
+
+    /**
+     * <p class="en">The repository to use to apply the modifications.</p>
+     * <p class="fr">Le dépôt à utiliser pour appliquer les modifications.</p>
+     */
+    private final MemberRepository repository;
+
+    /**
+     * <p class="en">The template of the transactions of the batches.</p>
+     * <p class="fr">Le modèle des transactions des lots.</p>
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * <p class="en">The maximum number of modifications in the queue.</p>
+     * <p class="fr">Le nombre maximum de modifications dans la file.</p>
+     */
+    private final int capacity;
+
+    /**
+     * <p class="en">The maximum number of modifications per transaction.</p>
+     * <p class="fr">Le nombre maximum de modifications par transaction.</p>
+     */
+    private final int batchSize;
+
+    /**
+     * <p class="en">The maximum time to wait for the queued modifications when the queue is stopped.</p>
+     * <p class="fr">Le temps maximum d'attente des modifications en file quand la file est arrêtée.</p>
+     */
+    private final Duration shutdownTimeout;
+
+    /**
+     * <p class="en">The queued modifications, in order.</p>
+     * <p class="fr">Les modifications en file, dans l'ordre.</p>
+     */
+    private final ArrayDeque<Command> queue = new ArrayDeque<>();
+
+    /**
+     * <p class="en">The queued PATCH (without <code>If-Match</code>) that the next PATCH of the same member can join,
+     * by id of member. A PATCH leaves this map as soon as another modification of the member is queued after it, so
+     * the order of the modifications of a member is kept.</p>
+     * <p class="fr">Les PATCH en file (sans <code>If-Match</code>) que le prochain PATCH du même membre peut
+     * rejoindre, par id de membre. Un PATCH quitte cette map dès qu'une autre modification du membre est mise en file
+     * après lui, donc l'ordre des modifications d'un membre est gardé.</p>
+     */
+    private final Map<Integer, Patch> mergeablePatches = new HashMap<>();
+
+    /**
+     * <p class="en">The lock guarding {@link #queue} and {@link #mergeablePatches}.</p>
+     * <p class="fr">Le verrou protégeant {@link #queue} et {@link #mergeablePatches}.</p>
+     */
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * <p class="en">Signaled when a modification is queued (or when the queue is stopped).</p>
+     * <p class="fr">Signalée quand une modification est mise en file (ou quand la file est arrêtée).</p>
+     */
+    private final Condition queued = lock.newCondition();
+
+    /**
+     * <p class="en">The operations, by id.</p>
+     * <p class="fr">Les opérations, par id.</p>
+     */
+    private final Cache<Long, Operation> operations = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .maximumSize(1_000_000)
+            .build();
+
+    /**
+     * <p class="en">The id of the last operation.</p>
+     * <p class="fr">L'id de la dernière opération.</p>
+     */
+    private final AtomicLong lastOperation = new AtomicLong();
+
+    /**
+     * <p class="en">If the queue is started (once stopped, the background thread ends when the queue is empty).</p>
+     * <p class="fr">Si la file est démarrée (une fois arrêtée, le fil d'exécution en arrière-plan se termine quand la
+     * file est vide).</p>
+     */
+    private volatile boolean running;
+
+    /**
+     * <p class="en">The thread applying the modifications.</p>
+     * <p class="fr">Le fil d'exécution appliquant les modifications.</p>
+     */
+    @Nullable
+    private Thread flusher;
+
+    /**
+     * <p class="en">The constructor of the queue.</p>
+     * <p class="fr">Le constructeur de la file.</p>
+     * @param repository <p class="en">The repository to use to apply the modifications.</p>
+     * <p class="fr">Le dépôt à utiliser pour appliquer les modifications.</p>
+     * @param transactionTemplate <p class="en">The template of the transactions.</p>
+     * <p class="fr">Le modèle des transactions.</p>
+     * @param capacity <p class="en">The maximum number of modifications in the queue.</p>
+     * <p class="fr">Le nombre maximum de modifications dans la file.</p>
+     * @param batchSize <p class="en">The maximum number of modifications per transaction.</p>
+     * <p class="fr">Le nombre maximum de modifications par transaction.</p>
+     * @param shutdownTimeout <p class="en">The maximum time to wait for the queued modifications when the queue is
+     * stopped.</p>
+     * <p class="fr">Le temps maximum d'attente des modifications en file quand la file est arrêtée.</p>
+     */
+    public MemberWriteBehind(MemberRepository repository, TransactionTemplate transactionTemplate,
+            @Value("${members.write-behind.capacity:10000}") int capacity,
+            @Value("${members.write-behind.batch-size:500}") int batchSize,
+            @Value("${members.write-behind.shutdown-timeout:PT20S}") Duration shutdownTimeout) {
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    /**
+     * <p class="en">Queues the creation of a member.</p>
+     * <p class="fr">Met en file la création d'un membre.</p>
+     * @param member <p class="en">The member to create.</p> <p class="fr">Le membre à créer.</p>
+     * @return <p class="en">The operation, or empty if the queue is full or stopped.</p>
+     * <p class="fr">L'opération, ou vide si la file est pleine ou arrêtée.</p>
+     */
+    public Optional<Operation> create(Member member) {
+        return submit(ChangeType.Created, member.getId(), operation -> new Create(member, operations(operation)));
+    }
+
+    /**
+     * <p class="en">Queues the modification of a member, merged into the previous one if possible.</p>
+     * <p class="fr">Met en file la modification d'un membre, fusionnée avec la précédente si possible.</p>
+     * @param id <p class="en">The id of the member to modify.</p> <p class="fr">L'id du membre à modifier.</p>
+     * @param fields <p class="en">The new values, by field (see
+     * {@link be.cardoeng.example.repositories.MemberRepositoryCustom#updateFields}).</p>
+     * <p class="fr">Les nouvelles valeurs, par champ (voir
+     * {@link be.cardoeng.example.repositories.MemberRepositoryCustom#updateFields}).</p>
+     * @param expectedVersion <p class="en">The version the member must have (optional). A conditional PATCH is
+     * never merged.</p> <p class="fr">La version que le membre doit avoir (optionnelle). Un PATCH conditionnel
+     * n'est jamais fusionné.</p>
+     * @return <p class="en">The operation, or empty if the queue is full or stopped.</p>
+     * <p class="fr">L'opération, ou vide si la file est pleine ou arrêtée.</p>
+     */
+    public Optional<Operation> patch(int id, Map<String, Object> fields, @Nullable Long expectedVersion) {
+        if (expectedVersion == null) {
+            lock.lock();
+            try {
+                Patch previous = mergeablePatches.get(id);
+                if (previous != null && running) {
+                    Operation operation = register(ChangeType.Updated, id);
+                    previous.fields().putAll(fields);
+                    previous.operations().add(operation.id());
+                    return Optional.of(operation);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return submit(ChangeType.Updated, id,
+                operation -> new Patch(id, new HashMap<>(fields), expectedVersion, operations(operation)));
+    }
+
+    /**
+     * <p class="en">Queues the deletion of a member (moved to the archive, see
+     * {@link MemberRepository#archiveById}).</p>
+     * <p class="fr">Met en file la suppression d'un membre (déplacé vers l'archive, voir
+     * {@link MemberRepository#archiveById}).</p>
+     * @param id <p class="en">The id of the member to delete.</p> <p class="fr">L'id du membre à supprimer.</p>
+     * @return <p class="en">The operation, or empty if the queue is full or stopped.</p>
+     * <p class="fr">L'opération, ou vide si la file est pleine ou arrêtée.</p>
+     */
+    public Optional<Operation> delete(int id) {
+        return submit(ChangeType.Deleted, id, operation -> new Delete(id, operations(operation)));
+    }
+
+    /**
+     * <p class="en">Returns an operation.</p>
+     * <p class="fr">Renvoie une opération.</p>
+     * @param id <p class="en">The id of the operation.</p> <p class="fr">L'id de l'opération.</p>
+     * @return <p class="en">The operation, or empty if it is unknown (or expired).</p>
+     * <p class="fr">L'opération, ou vide si elle est inconnue (ou expirée).</p>
+     */
+    public Optional<Operation> find(long id) {
+        return Optional.ofNullable(operations.getIfPresent(id));
+    }
+
+    /**
+     * <p class="en">Queues a modification, if the queue is running and not full.</p>
+     * <p class="fr">Met une modification en file, si la file est démarrée et n'est pas pleine.</p>
+     * @param type <p class="en">The kind of modification.</p> <p class="fr">Le type de modification.</p>
+     * @param memberId <p class="en">The id of the member.</p> <p class="fr">L'id du membre.</p>
+     * @param command <p class="en">Creates the modification from the id of its operation.</p>
+     * <p class="fr">Crée la modification à partir de l'id de son opération.</p>
+     * @return <p class="en">The operation, or empty if the queue is full or stopped.</p>
+     * <p class="fr">L'opération, ou vide si la file est pleine ou arrêtée.</p>
+     */
+    private Optional<Operation> submit(ChangeType type, int memberId,
+            LongFunction<Command> command) {
+        lock.lock();
+        try {
+            // Once stopped, the background thread may have ended: a new modification would never be applied
+            if (!running || queue.size() >= capacity) {
+                return Optional.empty();
+            }
+            Operation operation = register(type, memberId);
+            Command c = command.apply(operation.id());
+            queue.add(c);
+            if (c instanceof Patch p && p.expectedVersion() == null) {
+                mergeablePatches.put(memberId, p);
+            } else {
+                mergeablePatches.remove(memberId);
+            }
+            queued.signal();
+            return Optional.of(operation);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * <p class="en">Creates a pending operation.</p>
+     * <p class="fr">Crée une opération en attente.</p>
+     * @param type <p class="en">The kind of modification.</p> <p class="fr">Le type de modification.</p>
+     * @param memberId <p class="en">The id of the member.</p> <p class="fr">L'id du membre.</p>
+     * @return <p class="en">The operation.</p> <p class="fr">L'opération.</p>
+     */
+    private Operation register(ChangeType type, int memberId) {
+        Operation operation = new Operation(lastOperation.incrementAndGet(), type, memberId,
+                OperationStatus.Pending, null);
+        operations.put(operation.id(), operation);
+        return operation;
+    }
+
+    /**
+     * <p class="en">Creates the (growable) list of the operations of a new modification.</p>
+     * <p class="fr">Crée la liste (extensible) des opérations d'une nouvelle modification.</p>
+     * @param operation <p class="en">The id of the first operation.</p>
+     * <p class="fr">L'id de la première opération.</p>
+     * @return <p class="en">The list.</p> <p class="fr">La liste.</p>
+     */
+    private static List<Long> operations(long operation) {
+        List<Long> operations = new ArrayList<>();
+        operations.add(operation);
+        return operations;
+    }
+
+    /**
+     * <p class="en">The loop of the background thread: takes the next batch and applies it, until the queue is
+     * stopped and empty.</p>
+     * <p class="fr">La boucle du fil d'exécution en arrière-plan : prend le prochain lot et l'applique, jusqu'à ce
+     * que la file soit arrêtée et vide.</p>
+     */
+    private void run() {
+        List<Command> batch;
+        while (!(batch = take()).isEmpty()) {
+            flush(batch);
+        }
+    }
+
+    /**
+     * <p class="en">Takes the next batch, waiting for a modification if the queue is empty.</p>
+     * <p class="fr">Prend le prochain lot, en attendant une modification si la file est vide.</p>
+     * @return <p class="en">The batch (empty only if the queue is stopped and empty).</p>
+     * <p class="fr">Le lot (vide seulement si la file est arrêtée et vide).</p>
+     */
+    private List<Command> take() {
+        lock.lock();
+        try {
+            while (queue.isEmpty() && running) {
+                queued.awaitUninterruptibly();
+            }
+            List<Command> batch = new ArrayList<>(Math.min(queue.size(), batchSize));
+            while (batch.size() < batchSize && !queue.isEmpty()) {
+                Command command = queue.poll();
+                if (command instanceof Patch p) {
+                    // It is being applied: the next PATCH of the member cannot join it anymore
+                    mergeablePatches.remove(p.id(), p);
+                }
+                batch.add(command);
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * <p class="en">Applies a batch in a single transaction. If the transaction fails, the modifications are applied
+     * again one by one, so a failing modification does not fail the others.</p>
+     * <p class="fr">Applique un lot dans une seule transaction. Si la transaction échoue, les modifications sont
+     * appliquées à nouveau une par une, donc une modification en échec ne fait pas échouer les autres.</p>
+     * @param batch <p class="en">The batch.</p> <p class="fr">Le lot.</p>
+     */
+    private void flush(List<Command> batch) {
+        try {
+            complete(batch, transactionTemplate.execute(status -> apply(batch)));
+        } catch (RuntimeException e) {
+            for (Command command : batch) {
+                try {
+                    complete(List.of(command), transactionTemplate.execute(status -> apply(List.of(command))));
+                } catch (RuntimeException failure) {
+                    complete(List.of(command), null);
+                }
+            }
+        }
+    }
+
+    /**
+     * <p class="en">Applies modifications, in order. The successive creations are inserted together.</p>
+     * <p class="fr">Applique des modifications, dans l'ordre. Les créations successives sont insérées
+     * ensemble.</p>
+     * @param batch <p class="en">The modifications.</p> <p class="fr">Les modifications.</p>
+     * @return <p class="en">The status code of each modification.</p>
+     * <p class="fr">Le code d'état de chaque modification.</p>
+     */
+    private List<Integer> apply(List<Command> batch) {
+        List<Integer> codes = new ArrayList<>(batch.size());
+        List<Member> creations = new ArrayList<>();
+        for (Command command : batch) {
+            if (command instanceof Create create) {
+                creations.add(create.member());
+                continue;
+            }
+            insert(creations, codes);
+            codes.add(switch (command) {
+                case Patch p -> update(p);
+                case Delete d -> repository.archiveById(d.id()) == 0 ? HttpStatus.NOT_FOUND.value()
+                        : HttpStatus.NO_CONTENT.value();
+                case Create c -> throw new IllegalStateException();
+            });
+        }
+        insert(creations, codes);
+        return codes;
+    }
+
+    /**
+     * <p class="en">Inserts the pending creations and clears them.</p>
+     * <p class="fr">Insère les créations en attente et les vide.</p>
+     * @param creations <p class="en">The members to create.</p> <p class="fr">Les membres à créer.</p>
+     * @param codes <p class="en">The status codes, completed with the ones of the creations.</p>
+     * <p class="fr">Les codes d'état, complétés avec ceux des créations.</p>
+     */
+    private void insert(List<Member> creations, List<Integer> codes) {
+        if (creations.isEmpty()) {
+            return;
+        }
+        for (BatchResult result : repository.insertAll(creations)) {
+            codes.add(result.status() == BatchStatus.Created ? HttpStatus.CREATED.value()
+                    : HttpStatus.CONFLICT.value());
+        }
+        creations.clear();
+    }
+
+    /**
+     * <p class="en">Applies a PATCH, with the status codes of the synchronous PATCH.</p>
+     * <p class="fr">Applique un PATCH, avec les codes d'état du PATCH synchrone.</p>
+     * @param patch <p class="en">The PATCH.</p> <p class="fr">Le PATCH.</p>
+     * @return <p class="en">The status code.</p> <p class="fr">Le code d'état.</p>
+     */
+    private int update(Patch patch) {
+        if (repository.updateFields(patch.id(), patch.fields(), patch.expectedVersion()).isPresent()) {
+            return HttpStatus.OK.value();
+        }
+        Optional<Long> version = repository.findVersionById(patch.id());
+        if (version.isEmpty()) {
+            return HttpStatus.NOT_FOUND.value();
+        }
+        if (patch.expectedVersion() != null && patch.expectedVersion().longValue() != version.get()) {
+            return HttpStatus.PRECONDITION_FAILED.value();
+        }
+        return HttpStatus.CONFLICT.value();
+    }
+
+    /**
+     * <p class="en">Completes the operations of modifications.</p>
+     * <p class="fr">Termine les opérations de modifications.</p>
+     * @param batch <p class="en">The modifications.</p> <p class="fr">Les modifications.</p>
+     * @param codes <p class="en">The status code of each modification, or <code>null</code> if they failed.</p>
+     * <p class="fr">Le code d'état de chaque modification, ou <code>null</code> si elles ont échoué.</p>
+     */
+    private void complete(List<Command> batch, @Nullable List<Integer> codes) {
+        for (int i = 0; i < batch.size(); i++) {
+            complete(batch.get(i), codes == null ? OperationStatus.Failed : OperationStatus.Done,
+                    codes == null ? HttpStatus.INTERNAL_SERVER_ERROR.value() : codes.get(i));
+        }
+    }
+
+    /**
+     * <p class="en">Completes the operations of a modification.</p>
+     * <p class="fr">Termine les opérations d'une modification.</p>
+     * @param command <p class="en">The modification.</p> <p class="fr">La modification.</p>
+     * @param status <p class="en">The final status of the operations.</p>
+     * <p class="fr">Le statut final des opérations.</p>
+     * @param code <p class="en">The status code of the modification.</p>
+     * <p class="fr">Le code d'état de la modification.</p>
+     */
+    private void complete(Command command, OperationStatus status, int code) {
+        for (long id : command.operations()) {
+            operations.asMap().computeIfPresent(id,
+                    (k, operation) -> new Operation(id, operation.type(), operation.memberId(), status, code));
+        }
+    }
+
+    /**
+     * <p class="en">Starts the background thread.</p>
+     * <p class="fr">Démarre le fil d'exécution en arrière-plan.</p>
+     */
+    @Override
+    public void start() {
+        running = true;
+        flusher = Thread.ofPlatform().name("member-write-behind").daemon().start(this::run);
+    }
+
+    /**
+     * <p class="en">Stops the background thread, once the queued modifications are applied or after the shutdown
+     * timeout: the modifications still queued then are dropped (see {@link #drop()}). The batch being applied is not
+     * interrupted.</p>
+     * <p class="fr">Arrête le fil d'exécution en arrière-plan, une fois les modifications en file appliquées ou après
+     * le délai d'arrêt : les modifications encore en file sont alors abandonnées (voir {@link #drop()}). Le lot en
+     * cours d'application n'est pas interrompu.</p>
+     */
+    @Override
+    public void stop() {
+        Thread thread = flusher;
+        lock.lock();
+        try {
+            running = false;
+            queued.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (thread == null) {
+            return;
+        }
+        try {
+            if (thread.join(shutdownTimeout)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drop();
+    }
+
+    /**
+     * <p class="en">Drops the queued modifications (the background thread then ends after its current batch): their
+     * operations fail with 503 and their number is logged as a warning, by kind.</p>
+     * <p class="fr">Abandonne les modifications en file (le fil d'exécution en arrière-plan se termine alors après
+     * son lot actuel) : leurs opérations échouent avec 503 et leur nombre est journalisé comme avertissement, par
+     * type.</p>
+     */
+    private void drop() {
+        List<Command> dropped;
+        lock.lock();
+        try {
+            dropped = new ArrayList<>(queue);
+            queue.clear();
+            mergeablePatches.clear();
+        } finally {
+            lock.unlock();
+        }
+        if (dropped.isEmpty()) {
+            return;
+        }
+        for (Command command : dropped) {
+            complete(command, OperationStatus.Failed, HttpStatus.SERVICE_UNAVAILABLE.value());
+        }
+        LOGGER.warn("Write-behind queue not drained within {}: {} queued modifications dropped {}", shutdownTimeout,
+                dropped.size(), dropped.stream().collect(Collectors.groupingBy(
+                        command -> command.getClass().getSimpleName(), TreeMap::new, Collectors.counting())));
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * <p class="en">Returns the phase of the queue, below the one of the web server: the queue starts before it and
+     * stops after it (and after its graceful shutdown), once no request can queue a modification anymore.</p>
+     * <p class="fr">Renvoie la phase de la file, en dessous de celle du serveur web : la file démarre avant lui et
+     * s'arrête après lui (et après son arrêt en douceur), une fois qu'aucune requête ne peut plus mettre de
+     * modification en file.</p>
+     * @return <p class="en">The phase.</p> <p class="fr">La phase.</p>
+     */
+    @Override
+    public int getPhase() {
+        // The web server stops in the phase DEFAULT_PHASE - 2048, after its graceful shutdown (DEFAULT_PHASE - 1024)
+        return DEFAULT_PHASE - 4096;
+    }
+
+}
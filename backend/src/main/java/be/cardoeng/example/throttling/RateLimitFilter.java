@@ -0,0 +1,161 @@
+package be.cardoeng.example.throttling;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p class="en">Limits the requests of each client with a {@link TokenBucket}: <code>rate</code> requests per second
+ * on average, with bursts of <code>burst</code> requests. A client is identified by its API key (the header
+ * {@link #API_KEY_HEADER}) if it is one of the configured keys, or else by its IP address: an unknown key is ignored,
+ * so a client cannot get a fresh bucket by sending a new key with each request. A rejected request gets a 429 with a
+ * <code>Retry-After</code> header (in seconds) and never reaches the controller. The buckets are kept in a Caffeine
+ * cache (lock-free reads, striped writes), forgotten once idle long enough to be full again, so a client coming back
+ * later gets a full bucket as if it had been kept. The requests are counted in
+ * <code>members.rate-limit.requests</code> (by outcome) and the tracked clients in
+ * <code>members.rate-limit.clients</code>.</p>
+ * <p class="fr">Limite les requêtes de chaque client avec un {@link TokenBucket} : <code>rate</code> requêtes par
+ * seconde en moyenne, avec des rafales de <code>burst</code> requêtes. Un client est identifié par sa clé d'API
+ * (l'en-tête {@link #API_KEY_HEADER}) si c'est une des clés configurées, ou sinon par son adresse IP : une clé
+ * inconnue est ignorée, donc un client ne peut pas obtenir un seau neuf en envoyant une nouvelle clé à chaque
+ * requête. Une requête rejetée reçoit un
+ * 429 avec un en-tête <code>Retry-After</code> (en secondes) et n'atteint jamais le contrôleur. Les seaux sont gardés
+ * dans un cache Caffeine (lectures sans verrou, écritures réparties), oubliés une fois inactifs assez longtemps pour
+ * être à nouveau pleins, donc un client revenant plus tard reçoit un seau plein comme s'il avait été gardé. Les
+ * requêtes sont comptées dans <code>members.rate-limit.requests</code> (par résultat) et les clients suivis dans
+ * <code>members.rate-limit.clients</code>.</p>
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    /**
+     * <p class="en">The header holding the API key of the client.</p>
+     * <p class="fr">L'en-tête contenant la clé d'API du client.</p>
+     */
+    public static final String API_KEY_HEADER = "X-API-Key";
+
+    /**
+     * <p class="en">The number of requests added per second to each bucket.</p>
+     * <p class="fr">Le nombre de requêtes ajoutées par seconde à chaque seau.</p>
+     */
+    private final double rate;
+
+    /**
+     * <p class="en">The maximum number of requests in a bucket.</p>
+     * <p class="fr">Le nombre maximum de requêtes dans un seau.</p>
+     */
+    private final int burst;
+
+    /**
+     * <p class="en">The API keys identifying their clients.</p>
+     * <p class="fr">Les clés d'API identifiant leurs clients.</p>
+     */
+    private final Set<String> apiKeys;
+
+    /**
+     * <p class="en">The buckets, by client.</p>
+     * <p class="fr">Les seaux, par client.</p>
+     */
+    private final Cache<String, TokenBucket> buckets;
+
+    /**
+     * <p class="en">The number of requests let through.</p>
+     * <p class="fr">Le nombre de requêtes laissées passer.</p>
+     */
+    private final Counter allowed;
+
+    /**
+     * <p class="en">The number of requests rejected.</p>
+     * <p class="fr">Le nombre de requêtes rejetées.</p>
+     */
+    private final Counter rejected;
+
+    /**
+     * <p class="en">Creates the filter.</p>
+     * <p class="fr">Crée le filtre.</p>
+     * @param rate <p class="en">The number of requests per second allowed to each client on average.</p>
+     * <p class="fr">Le nombre de requêtes par seconde permises à chaque client en moyenne.</p>
+     * @param burst <p class="en">The number of requests a client can send at once.</p>
+     * <p class="fr">Le nombre de requêtes qu'un client peut envoyer d'un coup.</p>
+     * @param apiKeys <p class="en">The API keys identifying their clients (the other keys are ignored).</p>
+     * <p class="fr">Les clés d'API identifiant leurs clients (les autres clés sont ignorées).</p>
+     * @param maxClients <p class="en">The maximum number of clients tracked (the least recent ones are
+     * forgotten).</p>
+     * <p class="fr">Le nombre maximum de clients suivis (les moins récents sont oubliés).</p>
+     * @param registry <p class="en">The registry of the metrics.</p> <p class="fr">Le registre des métriques.</p>
+     */
+    public RateLimitFilter(double rate, int burst, Collection<String> apiKeys, long maxClients,
+            MeterRegistry registry) {
+        this.rate = rate;
+        this.burst = burst;
+        this.apiKeys = Set.copyOf(apiKeys);
+        this.buckets = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofNanos(new TokenBucket(rate, burst).refillTime()))
+                .maximumSize(maxClients)
+                .build();
+        this.allowed = requests(registry, "allowed");
+        this.rejected = requests(registry, "rejected");
+        Gauge.builder("members.rate-limit.clients", buckets, Cache::estimatedSize)
+                .description("Clients tracked by the rate limit")
+                .register(registry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long wait = buckets.get(client(request), client -> new TokenBucket(rate, burst)).tryAcquire();
+        if (wait > 0) {
+            rejected.increment();
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            // Rounded up, so the client never comes back too early
+            response.setHeader(HttpHeaders.RETRY_AFTER,
+                    String.valueOf((wait + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1)));
+            return;
+        }
+        allowed.increment();
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * <p class="en">Returns the identity of the client of a request. Behind a reverse proxy, its IP address is the
+     * one forwarded by the proxy (see <code>server.forward-headers-strategy</code>).</p>
+     * <p class="fr">Renvoie l'identité du client d'une requête. Derrière un proxy inverse, son adresse IP est celle
+     * transmise par le proxy (voir <code>server.forward-headers-strategy</code>).</p>
+     * @param request <p class="en">The request.</p> <p class="fr">La requête.</p>
+     * @return <p class="en">The API key of the client if it is a configured one, or else its IP address.</p>
+     * <p class="fr">La clé d'API du client si c'est une clé configurée, ou sinon son adresse IP.</p>
+     */
+    private String client(HttpServletRequest request) {
+        String key = request.getHeader(API_KEY_HEADER);
+        return key != null && apiKeys.contains(key) ? "key:" + key : "ip:" + request.getRemoteAddr();
+    }
+
+    /**
+     * <p class="en">Registers the counter of the requests with an outcome.</p>
+     * <p class="fr">Enregistre le compteur des requêtes avec un résultat.</p>
+     * @param registry <p class="en">The registry of the metrics.</p> <p class="fr">Le registre des métriques.</p>
+     * @param outcome <p class="en">The outcome.</p> <p class="fr">Le résultat.</p>
+     * @return <p class="en">The counter.</p> <p class="fr">Le compteur.</p>
+     */
+    private static Counter requests(MeterRegistry registry, String outcome) {
+        return Counter.builder("members.rate-limit.requests")
+                .description("Requests checked by the rate limit")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+}
@@ -0,0 +1,64 @@
+package be.cardoeng.example.throttling;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * <p class="en">Coalesces the concurrent loads of the same key: the first caller runs the load and the callers
+ * arriving before it ends wait for it and share its result (or its exception), so N concurrent requests cost a
+ * single query. Nothing is kept once the load ends: a caller arriving after it runs a new one. The key must
+ * therefore hold everything the result depends on.</p>
+ * <p class="fr">Fusionne les chargements concurrents d'une même clé : le premier appelant exécute le chargement et
+ * les appelants arrivant avant qu'il se termine l'attendent et partagent son résultat (ou son exception), donc N
+ * requêtes concurrentes coûtent une seule requête. Rien n'est gardé une fois le chargement terminé : un appelant
+ * arrivant après en exécute un nouveau. La clé doit donc contenir tout ce dont le résultat dépend.</p>
+ * @param <K> <p class="en">The type of the keys.</p> <p class="fr">Le type des clés.</p>
+ * @param <V> <p class="en">The type of the results.</p> <p class="fr">Le type des résultats.</p>
+ */
+public class SingleFlight<K, V> {
+
+    /**
+     * <p class="en">The loads in progress, by key.</p>
+     * <p class="fr">Les chargements en cours, par clé.</p>
+     */
+    private final ConcurrentMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * <p class="en">Returns the result of the load of a key, running it unless it is already in progress.</p>
+     * <p class="fr">Renvoie le résultat du chargement d'une clé, en l'exécutant sauf s'il est déjà en cours.</p>
+     * @param key <p class="en">The key.</p> <p class="fr">La clé.</p>
+     * @param loader <p class="en">The load.</p> <p class="fr">Le chargement.</p>
+     * @return <p class="en">The result of the load.</p> <p class="fr">Le résultat du chargement.</p>
+     */
+    public V run(K key, Supplier<V> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> leader = flights.putIfAbsent(key, flight);
+        if (leader != null) {
+            try {
+                return leader.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof Error cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        try {
+            V value = loader.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+}
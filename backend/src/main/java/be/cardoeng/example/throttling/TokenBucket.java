@@ -0,0 +1,84 @@
+package be.cardoeng.example.throttling;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p class="en">A token bucket holding at most <code>burst</code> tokens and refilled with <code>rate</code> tokens
+ * per second. Instead of a number of tokens and the time of the last refill, it only keeps the time at which it will
+ * be full again (the generic cell rate algorithm): taking a token pushes this time one interval further, which is
+ * allowed as long as it stays within <code>burst</code> intervals from now. This single value is updated with a
+ * compare-and-set, so the concurrent requests of a client never block each other.</p>
+ * <p class="fr">Un seau à jetons contenant au plus <code>burst</code> jetons et rempli de <code>rate</code> jetons par
+ * seconde. Au lieu d'un nombre de jetons et de l'heure du dernier remplissage, il ne garde que l'heure à laquelle il
+ * sera à nouveau plein (l'algorithme générique de débit de cellules) : prendre un jeton repousse cette heure d'un
+ * intervalle, ce qui est permis tant qu'elle reste à moins de <code>burst</code> intervalles de maintenant. Cette
+ * seule valeur est mise à jour avec un compare-and-set, donc les requêtes concurrentes d'un client ne se bloquent
+ * jamais.</p>
+ */
+public class TokenBucket {
+
+    /**
+     * <p class="en">The time to refill one token (in nanoseconds).</p>
+     * <p class="fr">Le temps pour remplir un jeton (en nanosecondes).</p>
+     */
+    private final long interval;
+
+    /**
+     * <p class="en">The time to refill the whole bucket (in nanoseconds).</p>
+     * <p class="fr">Le temps pour remplir tout le seau (en nanosecondes).</p>
+     */
+    private final long capacity;
+
+    /**
+     * <p class="en">The time at which the bucket is full again (from {@link System#nanoTime}).</p>
+     * <p class="fr">L'heure à laquelle le seau est à nouveau plein (depuis {@link System#nanoTime}).</p>
+     */
+    private final AtomicLong fullAt = new AtomicLong(System.nanoTime());
+
+    /**
+     * <p class="en">Creates a full bucket.</p>
+     * <p class="fr">Crée un seau plein.</p>
+     * @param rate <p class="en">The number of tokens added per second.</p>
+     * <p class="fr">Le nombre de jetons ajoutés par seconde.</p>
+     * @param burst <p class="en">The maximum number of tokens.</p> <p class="fr">Le nombre maximum de jetons.</p>
+     */
+    public TokenBucket(double rate, int burst) {
+        if (rate <= 0 || burst < 1) {
+            throw new IllegalArgumentException("The rate and the burst must be positive");
+        }
+        this.interval = (long) (1e9 / rate);
+        this.capacity = interval * burst;
+    }
+
+    /**
+     * <p class="en">Takes a token, if there is one.</p>
+     * <p class="fr">Prend un jeton, s'il y en a un.</p>
+     * @return <p class="en">0 if a token was taken, otherwise the time until the next one (in nanoseconds).</p>
+     * <p class="fr">0 si un jeton a été pris, sinon le temps jusqu'au prochain (en nanosecondes).</p>
+     */
+    public long tryAcquire() {
+        while (true) {
+            long now = System.nanoTime();
+            long current = fullAt.get();
+            // A bucket full since a while is full now (the tokens do not pile up over the burst)
+            long next = (current - now > 0 ? current : now) + interval;
+            long excess = next - now - capacity;
+            if (excess > 0) {
+                return excess;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * <p class="en">Returns the time to refill the whole bucket.</p>
+     * <p class="fr">Renvoie le temps pour remplir tout le seau.</p>
+     * @return <p class="en">The time (in nanoseconds).</p> <p class="fr">Le temps (en nanosecondes).</p>
+     */
+    public long refillTime() {
+        return capacity;
+    }
+
+}
@@ -0,0 +1,19 @@
+-- Partitions of the archive of the departed members (MySQL), by year of the end date.
+-- Run once after the table archived_member is created (spring.jpa.hibernate.ddl-auto creates it unpartitioned):
+-- the primary key (id, end_year) contains the key of the partitions, as MySQL requires.
+-- A query bounded on end_year (GET /api/members?includeArchived=true&endFrom=...&endTo=...) only reads the
+-- partitions of its years, and a year can be dropped at once with ALTER TABLE ... DROP PARTITION.
+ALTER TABLE archived_member
+    PARTITION BY RANGE (end_year) (
+        PARTITION p2023 VALUES LESS THAN (2024),
+        PARTITION p2024 VALUES LESS THAN (2025),
+        PARTITION p2025 VALUES LESS THAN (2026),
+        PARTITION p2026 VALUES LESS THAN (2027),
+        PARTITION pfuture VALUES LESS THAN MAXVALUE
+    );
+
+-- Each year, split the last partition before the members of the next year are archived, e.g. for 2027:
+-- ALTER TABLE archived_member REORGANIZE PARTITION pfuture INTO (
+--     PARTITION p2027 VALUES LESS THAN (2028),
+--     PARTITION pfuture VALUES LESS THAN MAXVALUE
+-- );
@@ -0,0 +1,52 @@
+package be.cardoeng.example.load;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p class="en">A filter counting the requests being served, to know how many requests the server handles at the
+ * same time. It is added to the context of a test with <code>@Import</code>.</p>
+ * <p class="fr">Un filtre comptant les requêtes en cours de traitement, pour savoir combien de requêtes le serveur
+ * traite en même temps. Il est ajouté au contexte d'un test avec <code>@Import</code>.</p>
+ */
+public class InFlightRequests extends OncePerRequestFilter {
+
+    /**
+     * <p class="en">The number of requests being served.</p>
+     * <p class="fr">Le nombre de requêtes en cours de traitement.</p>
+     */
+    private final AtomicInteger current = new AtomicInteger();
+
+    /**
+     * <p class="en">The maximum number of requests served at the same time.</p>
+     * <p class="fr">Le nombre maximum de requêtes traitées en même temps.</p>
+     */
+    private final AtomicInteger max = new AtomicInteger();
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        max.accumulateAndGet(current.incrementAndGet(), Math::max);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            current.decrementAndGet();
+        }
+    }
+
+    /**
+     * <p class="en">Returns the maximum number of requests served at the same time, and resets it.</p>
+     * <p class="fr">Renvoie le nombre maximum de requêtes traitées en même temps, et le réinitialise.</p>
+     * @return <p class="en">The maximum.</p> <p class="fr">Le maximum.</p>
+     */
+    public int resetMax() {
+        return max.getAndSet(current.get());
+    }
+
+}
@@ -0,0 +1,433 @@
+package be.cardoeng.example.load;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import be.cardoeng.example.entities.Member;
+import be.cardoeng.example.enums.MemberStatus;
+import be.cardoeng.example.repositories.MemberRepository;
+
+/**
+ * <p class="en">The performance regression test, run with <code>./gradlew performanceTest</code>: the application is
+ * started on H2 with <code>load.members</code> members, then receives a mix of requests (<code>load.mix</code>, the
+ * weights of the requests of {@link be.cardoeng.example.requests.HttpRequestsTest}: list, get, post, patch and
+ * delete) at a fixed rate of <code>load.rate</code> requests per second during <code>load.duration</code>, after a
+ * warmup of <code>load.warmup</code>. The requests are sent at their time whether the previous ones are answered or not (open
+ * model) and their latency is measured from this time, so a slow server is not hidden by fewer requests. The
+ * throughput and the p50/p99/p999 latency, overall and per request, are written to
+ * <code>build/load/mixed.json</code>; the test fails when a latency exceeds the one of the baseline
+ * (<code>load/baseline.json</code>, or the file <code>load.baseline</code>) by more than <code>load.tolerance</code>,
+ * or when too many requests fail.</p>
+ * <p class="fr">Le test de régression des performances, lancé avec <code>./gradlew performanceTest</code> :
+ * l'application est démarrée sur H2 avec <code>load.members</code> membres, puis reçoit un mélange de requêtes
+ * (<code>load.mix</code>, les poids des requêtes de {@link be.cardoeng.example.requests.HttpRequestsTest} : liste,
+ * lecture, création, modification et suppression) à un débit fixe de <code>load.rate</code> requêtes par seconde pendant
+ * <code>load.duration</code>, après un échauffement de <code>load.warmup</code>. Les requêtes sont envoyées à leur
+ * heure, que les précédentes aient reçu une réponse ou non (modèle ouvert) et leur latence est mesurée depuis cette
+ * heure, donc un serveur lent n'est pas caché par moins de requêtes. Le débit et la latence p50/p99/p999, globaux et
+ * par requête, sont écrits dans <code>build/load/mixed.json</code> ; le test échoue quand une latence dépasse celle
+ * de la référence (<code>load/baseline.json</code>, ou le fichier <code>load.baseline</code>) de plus de
+ * <code>load.tolerance</code>, ou quand trop de requêtes échouent.</p>
+ */
+@Tag("performance")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class MixedLoadTest {
+
+    /**
+     * <p class="en">The requests of the mix, with their expected status code.</p>
+     * <p class="fr">Les requêtes du mélange, avec leur code d'état attendu.</p>
+     */
+    private enum Action {
+        list(200), get(200), post(201), patch(200), delete(204);
+
+        /**
+         * <p class="en">The expected status code.</p>
+         * <p class="fr">Le code d'état attendu.</p>
+         */
+        private final int status;
+
+        Action(int status) {
+            this.status = status;
+        }
+    }
+
+    /**
+     * <p class="en">The number of members in the database.</p>
+     * <p class="fr">Le nombre de membres dans la base de données.</p>
+     */
+    private static final int MEMBERS = Integer.getInteger("load.members", 10_000);
+
+    /**
+     * <p class="en">The number of requests sent per second.</p>
+     * <p class="fr">Le nombre de requêtes envoyées par seconde.</p>
+     */
+    private static final int RATE = Integer.getInteger("load.rate", 200);
+
+    /**
+     * <p class="en">The duration of the measure.</p>
+     * <p class="fr">La durée de la mesure.</p>
+     */
+    private static final Duration DURATION = Duration.parse(System.getProperty("load.duration", "PT30S"));
+
+    /**
+     * <p class="en">The duration of the warmup, not measured.</p>
+     * <p class="fr">La durée de l'échauffement, non mesuré.</p>
+     */
+    private static final Duration WARMUP = Duration.parse(System.getProperty("load.warmup", "PT5S"));
+
+    /**
+     * <p class="en">The weight of each request in the mix.</p>
+     * <p class="fr">Le poids de chaque requête dans le mélange.</p>
+     */
+    private static final String MIX = System.getProperty("load.mix", "list=40,get=40,post=10,patch=5,delete=5");
+
+    /**
+     * <p class="en">The margin allowed over the latencies of the baseline (0.2 for 20%).</p>
+     * <p class="fr">La marge permise au-dessus des latences de la référence (0.2 pour 20%).</p>
+     */
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("load.tolerance", "0.2"));
+
+    /**
+     * <p class="en">The port of the application.</p>
+     * <p class="fr">Le port de l'application.</p>
+     */
+    @LocalServerPort
+    private int port;
+
+    /**
+     * <p class="en">The repository to use to manage the members.</p>
+     * <p class="fr">Le dépôt à utiliser pour gérer les membres.</p>
+     */
+    @Autowired
+    private MemberRepository memberRepository;
+
+    /**
+     * <p class="en">The id of the next member created.</p>
+     * <p class="fr">L'id du prochain membre créé.</p>
+     */
+    private final AtomicInteger nextCreated = new AtomicInteger(MEMBERS + 1);
+
+    /**
+     * <p class="en">The id of the next member deleted (the members are deleted from the last one, the first half is
+     * kept for the other requests).</p>
+     * <p class="fr">L'id du prochain membre supprimé (les membres sont supprimés à partir du dernier, la première
+     * moitié est gardée pour les autres requêtes).</p>
+     */
+    private final AtomicInteger nextDeleted = new AtomicInteger(MEMBERS);
+
+    /**
+     * <p class="en">Empty the database after the test.</p>
+     * <p class="fr">Vide la base de données après le test.</p>
+     */
+    @AfterEach
+    public void teardown() {
+        memberRepository.deleteAllInBatch();
+    }
+
+    /**
+     * <p class="en">Runs the load, reports the measures and compares them to the baseline.</p>
+     * <p class="fr">Lance la charge, rapporte les mesures et les compare à la référence.</p>
+     * @throws Exception <p class="en">If the load cannot be run.</p> <p class="fr">Si la charge ne peut pas être
+     * lancée.</p>
+     */
+    @Test
+    public void testLoad() throws Exception {
+        List<Member> chunk = new ArrayList<>();
+        for (int i = 1; i <= MEMBERS; i++) {
+            chunk.add(new Member(i, "First" + i, "Last" + i, "member" + i + "@umons.ac.be",
+                MemberStatus.PhD, new Date(), null));
+            if (chunk.size() == 500) {
+                memberRepository.insertAll(chunk);
+                chunk = new ArrayList<>();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            memberRepository.insertAll(chunk);
+        }
+
+        Action[] mix = mix();
+        try (HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()) {
+            run(http, mix, WARMUP);
+            Result result = run(http, mix, DURATION);
+            String report = result.report();
+            System.out.print(report);
+            Path output = Path.of("build", "load", "mixed.json");
+            Files.createDirectories(output.getParent());
+            Files.writeString(output, report);
+            compare(result);
+        }
+    }
+
+    /**
+     * <p class="en">Sends the requests at a fixed rate during a duration.</p>
+     * <p class="fr">Envoie les requêtes à un débit fixe pendant une durée.</p>
+     * @param http <p class="en">The HTTP client.</p> <p class="fr">Le client HTTP.</p>
+     * @param mix <p class="en">The requests to draw from.</p> <p class="fr">Les requêtes à tirer.</p>
+     * @param duration <p class="en">The duration.</p> <p class="fr">La durée.</p>
+     * @return <p class="en">The measures.</p> <p class="fr">Les mesures.</p>
+     */
+    private Result run(HttpClient http, Action[] mix, Duration duration) {
+        int total = (int) (RATE * duration.toMillis() / 1000);
+        long interval = 1_000_000_000L / RATE;
+        Result result = new Result(total);
+        long start = System.nanoTime();
+        // The requests are awaited before the end of the measure
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < total; i++) {
+                long due = start + i * interval;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                Action action = mix[ThreadLocalRandom.current().nextInt(mix.length)];
+                int index = i;
+                clients.submit(() -> {
+                    int status;
+                    try {
+                        status = http.send(request(action), HttpResponse.BodyHandlers.discarding()).statusCode();
+                    } catch (Exception e) {
+                        status = -1;
+                    }
+                    result.record(index, action, System.nanoTime() - due, status == action.status);
+                });
+            }
+        }
+        result.duration = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * <p class="en">Builds a request of the mix.</p>
+     * <p class="fr">Construit une requête du mélange.</p>
+     * @param action <p class="en">The request to build.</p> <p class="fr">La requête à construire.</p>
+     * @return <p class="en">The request.</p> <p class="fr">La requête.</p>
+     */
+    private HttpRequest request(Action action) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // The members read and modified are in the first half, which is never deleted
+        int id = random.nextInt(1, MEMBERS / 2 + 1);
+        String members = "http://localhost:%d/api/members".formatted(port);
+        return switch (action) {
+            case list -> HttpRequest.newBuilder(URI.create(members + "?limit=20&after=" + id)).build();
+            case get -> HttpRequest.newBuilder(URI.create(members + "/" + id)).build();
+            case post -> {
+                int created = nextCreated.getAndIncrement();
+                yield HttpRequest.newBuilder(URI.create(members))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("""
+                        {"id": %d, "firstName": "First%d", "lastName": "Last%d", "email": "member%d@umons.ac.be", \
+                        "status": "PhD", "beginDate": "2024-09-15"}""".formatted(created, created, created, created)))
+                    .build();
+            }
+            case patch -> HttpRequest.newBuilder(URI.create(members + "/" + id))
+                .header("Content-Type", "application/json")
+                .method("PATCH", HttpRequest.BodyPublishers.ofString(
+                    "{\"firstName\": \"Patched%d\"}".formatted(random.nextInt())))
+                .build();
+            case delete -> HttpRequest.newBuilder(URI.create(members + "/" + nextDeleted.getAndDecrement()))
+                .DELETE()
+                .build();
+        };
+    }
+
+    /**
+     * <p class="en">Reads the mix of requests: each request appears as many times as its weight.</p>
+     * <p class="fr">Lit le mélange de requêtes : chaque requête apparaît autant de fois que son poids.</p>
+     * @return <p class="en">The requests to draw from.</p> <p class="fr">Les requêtes à tirer.</p>
+     */
+    private static Action[] mix() {
+        List<Action> mix = new ArrayList<>();
+        for (String weight : MIX.split(",")) {
+            String[] parts = weight.trim().split("=");
+            for (int i = 0; i < Integer.parseInt(parts[1].trim()); i++) {
+                mix.add(Action.valueOf(parts[0].trim()));
+            }
+        }
+        return mix.toArray(Action[]::new);
+    }
+
+    /**
+     * <p class="en">Compares the measures to the baseline.</p>
+     * <p class="fr">Compare les mesures à la référence.</p>
+     * @param result <p class="en">The measures.</p> <p class="fr">Les mesures.</p>
+     * @throws Exception <p class="en">If the baseline cannot be read.</p>
+     * <p class="fr">Si la référence ne peut pas être lue.</p>
+     */
+    private static void compare(Result result) throws Exception {
+        String file = System.getProperty("load.baseline");
+        JsonNode baseline;
+        try (InputStream in = file == null
+                ? MixedLoadTest.class.getResourceAsStream("/load/baseline.json")
+                : Files.newInputStream(Path.of(file))) {
+            baseline = new ObjectMapper().readTree(in);
+        }
+        double[] latencies = result.latencies(result.all());
+        String[] names = {"p50Ms", "p99Ms", "p999Ms"};
+        List<String> regressions = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            double limit = baseline.get(names[i]).asDouble() * (1 + TOLERANCE);
+            if (latencies[i] > limit) {
+                regressions.add("%s %.2f > %.2f".formatted(names[i], latencies[i], limit));
+            }
+        }
+        double errorRate = (double) result.errors.get() / result.total;
+        if (errorRate > baseline.get("maxErrorRate").asDouble()) {
+            regressions.add("error rate %.4f > %s".formatted(errorRate, baseline.get("maxErrorRate")));
+        }
+        assertTrue(regressions.isEmpty(), "Performance regression: " + regressions);
+    }
+
+    /**
+     * <p class="en">The measures of a run.</p>
+     * <p class="fr">Les mesures d'une exécution.</p>
+     */
+    private static final class Result {
+
+        /**
+         * <p class="en">The number of requests.</p>
+         * <p class="fr">Le nombre de requêtes.</p>
+         */
+        private final int total;
+
+        /**
+         * <p class="en">The latency of each request (in nanoseconds).</p>
+         * <p class="fr">La latence de chaque requête (en nanosecondes).</p>
+         */
+        private final long[] latencies;
+
+        /**
+         * <p class="en">The kind of each request.</p>
+         * <p class="fr">Le type de chaque requête.</p>
+         */
+        private final Action[] actions;
+
+        /**
+         * <p class="en">The number of requests without the expected status code.</p>
+         * <p class="fr">Le nombre de requêtes sans le code d'état attendu.</p>
+         */
+        private final AtomicInteger errors = new AtomicInteger();
+
+        /**
+         * <p class="en">The duration of the run (in nanoseconds).</p>
+         * <p class="fr">La durée de l'exécution (en nanosecondes).</p>
+         */
+        private long duration;
+
+        /**
+         * <p class="en">Creates the measures.</p>
+         * <p class="fr">Crée les mesures.</p>
+         * @param total <p class="en">The number of requests.</p> <p class="fr">Le nombre de requêtes.</p>
+         */
+        private Result(int total) {
+            this.total = total;
+            this.latencies = new long[total];
+            this.actions = new Action[total];
+        }
+
+        /**
+         * <p class="en">Records a request (each index is written by a single thread, and read after all of them
+         * ended).</p>
+         * <p class="fr">Enregistre une requête (chaque index est écrit par un seul thread, et lu après qu'ils se
+         * soient tous terminés).</p>
+         * @param index <p class="en">The index of the request.</p> <p class="fr">L'index de la requête.</p>
+         * @param action <p class="en">The kind of the request.</p> <p class="fr">Le type de la requête.</p>
+         * @param latency <p class="en">The latency (in nanoseconds).</p>
+         * <p class="fr">La latence (en nanosecondes).</p>
+         * @param success <p class="en">If the request got the expected status code.</p>
+         * <p class="fr">Si la requête a reçu le code d'état attendu.</p>
+         */
+        private void record(int index, Action action, long latency, boolean success) {
+            latencies[index] = latency;
+            actions[index] = action;
+            if (!success) {
+                errors.incrementAndGet();
+            }
+        }
+
+        /**
+         * <p class="en">Returns the latencies of all the requests.</p>
+         * <p class="fr">Renvoie les latences de toutes les requêtes.</p>
+         * @return <p class="en">The latencies, sorted.</p> <p class="fr">Les latences, triées.</p>
+         */
+        private long[] all() {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        /**
+         * <p class="en">Returns the percentiles of latencies.</p>
+         * <p class="fr">Renvoie les percentiles de latences.</p>
+         * @param sorted <p class="en">The latencies, sorted.</p> <p class="fr">Les latences, triées.</p>
+         * @return <p class="en">The p50, p99 and p999 (in milliseconds).</p>
+         * <p class="fr">Les p50, p99 et p999 (en millisecondes).</p>
+         */
+        private double[] latencies(long[] sorted) {
+            if (sorted.length == 0) {
+                return new double[] {0, 0, 0};
+            }
+            return new double[] {
+                sorted[(int) (sorted.length * 0.5)] / 1e6,
+                sorted[(int) (sorted.length * 0.99)] / 1e6,
+                sorted[(int) (sorted.length * 0.999)] / 1e6
+            };
+        }
+
+        /**
+         * <p class="en">Returns the report of the measures, as JSON.</p>
+         * <p class="fr">Renvoie le rapport des mesures, en JSON.</p>
+         * @return <p class="en">The report.</p> <p class="fr">Le rapport.</p>
+         */
+        private String report() {
+            Map<Action, List<Long>> byAction = new EnumMap<>(Action.class);
+            for (int i = 0; i < total; i++) {
+                byAction.computeIfAbsent(actions[i], action -> new ArrayList<>()).add(latencies[i]);
+            }
+            StringJoiner actionReports = new StringJoiner(", ");
+            byAction.forEach((action, values) -> {
+                double[] percentiles = latencies(values.stream().mapToLong(Long::longValue).sorted().toArray());
+                actionReports.add("""
+                    "%s": {"requests": %d, "p50Ms": %.2f, "p99Ms": %.2f, "p999Ms": %.2f}""".formatted(
+                        action, values.size(), percentiles[0], percentiles[1], percentiles[2]));
+            });
+            double[] percentiles = latencies(all());
+            return """
+                {"name": "mixed", "rate": %d, "requests": %d, "errors": %d, "throughput": %.1f, "p50Ms": %.2f, \
+                "p99Ms": %.2f, "p999Ms": %.2f, "requestsByType": {%s}}
+                """.formatted(RATE, total, errors.get(), total / (duration / 1e9), percentiles[0], percentiles[1],
+                    percentiles[2], actionReports);
+        }
+
+    }
+
+}
@@ -0,0 +1,20 @@
+package be.cardoeng.example.load;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+/**
+ * <p class="en">The load test with the default thread model (the bounded pool of platform threads of Tomcat).</p>
+ * <p class="fr">Le test de charge avec le modèle de threads par défaut (le pool borné de threads de plateforme de
+ * Tomcat).</p>
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(InFlightRequests.class)
+public class PlatformThreadsLoadTest extends ThreadModelLoadTest {
+
+    @Override
+    protected String name() {
+        return "platform-threads";
+    }
+
+}
@@ -0,0 +1,162 @@
+package be.cardoeng.example.load;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import be.cardoeng.example.entities.Member;
+import be.cardoeng.example.enums.MemberStatus;
+import be.cardoeng.example.repositories.MemberRepository;
+
+/**
+ * <p class="en">A load test of GET /api/members (which queries the database): many clients send requests at the same
+ * time, then the p50/p99 latency and the maximum number of requests served at the same time are reported (printed
+ * and written to <code>build/load/&lt;name&gt;.json</code>). It is run once per thread model, see
+ * {@link PlatformThreadsLoadTest} and {@link VirtualThreadsLoadTest}, with <code>./gradlew loadTest</code>.</p>
+ * <p class="fr">Un test de charge de GET /api/members (qui interroge la base de données) : de nombreux clients
+ * envoient des requêtes en même temps, puis la latence p50/p99 et le nombre maximum de requêtes traitées en même
+ * temps sont rapportés (affichés et écrits dans <code>build/load/&lt;nom&gt;.json</code>). Il est lancé une fois par
+ * modèle de threads, voir {@link PlatformThreadsLoadTest} et {@link VirtualThreadsLoadTest}, avec
+ * <code>./gradlew loadTest</code>.</p>
+ */
+@Tag("load")
+abstract class ThreadModelLoadTest {
+
+    /**
+     * <p class="en">The number of members in the database.</p>
+     * <p class="fr">Le nombre de membres dans la base de données.</p>
+     */
+    private static final int MEMBERS = 10_000;
+
+    /**
+     * <p class="en">The number of clients sending requests at the same time.</p>
+     * <p class="fr">Le nombre de clients envoyant des requêtes en même temps.</p>
+     */
+    private static final int CLIENTS = 1_000;
+
+    /**
+     * <p class="en">The number of requests sent by each client.</p>
+     * <p class="fr">Le nombre de requêtes envoyées par chaque client.</p>
+     */
+    private static final int REQUESTS_PER_CLIENT = 20;
+
+    /**
+     * <p class="en">The port of the server.</p>
+     * <p class="fr">Le port du serveur.</p>
+     */
+    @LocalServerPort
+    private int port;
+
+    /**
+     * <p class="en">The repository to use to manage the members.</p>
+     * <p class="fr">Le dépôt à utiliser pour gérer les membres.</p>
+     */
+    @Autowired
+    private MemberRepository memberRepository;
+
+    /**
+     * <p class="en">The filter counting the requests being served.</p>
+     * <p class="fr">Le filtre comptant les requêtes en cours de traitement.</p>
+     */
+    @Autowired
+    private InFlightRequests inFlightRequests;
+
+    /**
+     * <p class="en">The name of the thread model, used in the report.</p>
+     * <p class="fr">Le nom du modèle de threads, utilisé dans le rapport.</p>
+     * @return <p class="en">The name.</p> <p class="fr">Le nom.</p>
+     */
+    protected abstract String name();
+
+    /**
+     * <p class="en">Teardown the tests. Executed after each test.</p>
+     * <p class="fr">Déconfigure les tests. Exécuté après chaque test.</p>
+     */
+    @AfterEach
+    public void teardown() {
+        memberRepository.deleteAllInBatch();
+    }
+
+    /**
+     * <p class="en">Runs the load and reports the measures.</p>
+     * <p class="fr">Lance la charge et rapporte les mesures.</p>
+     * @throws Exception <p class="en">If the load cannot be run.</p> <p class="fr">Si la charge ne peut pas être
+     * lancée.</p>
+     */
+    @Test
+    public void testLoad() throws Exception {
+        List<Member> members = new ArrayList<>(MEMBERS);
+        for (int i = 1; i <= MEMBERS; i++) {
+            members.add(new Member(i, "First" + i, "Last" + i, "member" + i + "@umons.ac.be",
+                MemberStatus.PhD, new Date(), null));
+        }
+        memberRepository.insertAll(members);
+
+        long[] latencies = new long[CLIENTS * REQUESTS_PER_CLIENT];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        inFlightRequests.resetMax();
+        long start = System.nanoTime();
+        // The clients are closed (and awaited) before the HTTP client
+        try (HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < CLIENTS; c++) {
+                clients.submit(() -> {
+                    for (int r = 0; r < REQUESTS_PER_CLIENT; r++) {
+                        int after = ThreadLocalRandom.current().nextInt(MEMBERS);
+                        HttpRequest request = HttpRequest.newBuilder(
+                            URI.create("http://localhost:%d/api/members?limit=20&after=%d".formatted(port, after)))
+                            .build();
+                        long begin = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            // A refused or reset connection is an error of the load, not of the test
+                            errors.incrementAndGet();
+                        }
+                        latencies[next.getAndIncrement()] = System.nanoTime() - begin;
+                    }
+                    return null;
+                });
+            }
+        }
+        long duration = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        String report = """
+            {"name": "%s", "requests": %d, "errors": %d, "throughput": %.1f, "p50Ms": %.2f, "p99Ms": %.2f, \
+            "maxConcurrentRequests": %d}
+            """.formatted(name(), latencies.length, errors.get(), latencies.length / (duration / 1e9),
+                latencies[latencies.length / 2] / 1e6, latencies[(int) (latencies.length * 0.99)] / 1e6,
+                inFlightRequests.resetMax());
+        System.out.print(report);
+        Path output = Path.of("build", "load", name() + ".json");
+        Files.createDirectories(output.getParent());
+        Files.writeString(output, report);
+        assertEquals(0, errors.get());
+    }
+
+}
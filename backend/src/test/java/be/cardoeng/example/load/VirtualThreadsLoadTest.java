@@ -0,0 +1,21 @@
+package be.cardoeng.example.load;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * <p class="en">The load test with the profile <code>virtual</code> (a virtual thread per request).</p>
+ * <p class="fr">Le test de charge avec le profil <code>virtual</code> (un thread virtuel par requête).</p>
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("virtual")
+@Import(InFlightRequests.class)
+public class VirtualThreadsLoadTest extends ThreadModelLoadTest {
+
+    @Override
+    protected String name() {
+        return "virtual-threads";
+    }
+
+}
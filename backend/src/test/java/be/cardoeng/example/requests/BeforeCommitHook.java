@@ -0,0 +1,51 @@
+package be.cardoeng.example.requests;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import be.cardoeng.example.events.MemberChangeEvent;
+
+/**
+ * <p class="en">A listener running an action once, just before the commit of the next transaction changing a member,
+ * to do something while the change is written but not committed yet. It is added to the context of a test with
+ * <code>@Import</code>.</p>
+ * <p class="fr">Un écouteur exécutant une action une fois, juste avant la validation de la prochaine transaction
+ * modifiant un membre, pour faire quelque chose pendant que le changement est écrit mais pas encore validé. Il est
+ * ajouté au contexte d'un test avec <code>@Import</code>.</p>
+ */
+public class BeforeCommitHook {
+
+    /**
+     * <p class="en">The action to run before the next commit, or <code>null</code> if there is none.</p>
+     * <p class="fr">L'action à exécuter avant la prochaine validation, ou <code>null</code> s'il n'y en a pas.</p>
+     */
+    private final AtomicReference<Runnable> action = new AtomicReference<>();
+
+    /**
+     * <p class="en">Runs the given action just before the commit of the next transaction changing a member.</p>
+     * <p class="fr">Exécute l'action donnée juste avant la validation de la prochaine transaction modifiant un
+     * membre.</p>
+     * @param action <p class="en">The action, run in the thread of the transaction.</p>
+     * <p class="fr">L'action, exécutée dans le thread de la transaction.</p>
+     */
+    public void beforeNextCommit(Runnable action) {
+        this.action.set(action);
+    }
+
+    /**
+     * <p class="en">Runs the pending action, if any, before the commit of the transaction of the change.</p>
+     * <p class="fr">Exécute l'action en attente, s'il y en a une, avant la validation de la transaction du
+     * changement.</p>
+     * @param event <p class="en">The change.</p> <p class="fr">Le changement.</p>
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onChange(MemberChangeEvent event) {
+        Runnable pending = action.getAndSet(null);
+        if (pending != null) {
+            pending.run();
+        }
+    }
+
+}
@@ -2,32 +2,78 @@ package be.cardoeng.example.requests;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import jakarta.persistence.EntityManagerFactory;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import tools.jackson.databind.JsonNode;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import be.cardoeng.example.configurations.WireFormatConfiguration;
+import be.cardoeng.example.controllers.MemberController;
+import be.cardoeng.example.dtos.Operation;
 import be.cardoeng.example.entities.Member;
+import be.cardoeng.example.enums.BatchStatus;
 import be.cardoeng.example.enums.MemberStatus;
+import be.cardoeng.example.enums.OperationStatus;
+import be.cardoeng.example.monitoring.SqlMetricsFilter;
 import be.cardoeng.example.repositories.MemberRepository;
+import be.cardoeng.example.services.MemberArchiver;
+import be.cardoeng.example.services.MemberSeedLoader;
+import be.cardoeng.example.services.MemberStatistics;
+import be.cardoeng.example.services.MemberWriteBehind;
 
 /**
  * <p class="en">A test class to test the HTTP requests.</p>
@@ -35,6 +81,7 @@ import be.cardoeng.example.repositories.MemberRepository;
  */
 @SpringBootTest
 @AutoConfigureMockMvc
+@Import(BeforeCommitHook.class)
 public class HttpRequestsTest {
 
     /**
@@ -51,6 +98,62 @@ public class HttpRequestsTest {
     @Autowired
     private MockMvc mockMvc;
 
+    /**
+     * <p class="en">The entity manager factory, used to read the Hibernate statistics.</p>
+     * <p class="fr">La fabrique de gestionnaires d'entités, utilisée pour lire les statistiques d'Hibernate.</p>
+     */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * <p class="en">The registry of the metrics.</p>
+     * <p class="fr">Le registre des métriques.</p>
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * <p class="en">The statistics of the members.</p>
+     * <p class="fr">Les statistiques des membres.</p>
+     */
+    @Autowired
+    private MemberStatistics memberStatistics;
+
+    /**
+     * <p class="en">The loader of the fixture file.</p>
+     * <p class="fr">Le chargeur du fichier de données.</p>
+     */
+    @Autowired
+    private MemberSeedLoader memberSeedLoader;
+
+    /**
+     * <p class="en">The compaction moving the departed members to the archive.</p>
+     * <p class="fr">Le compactage déplaçant les membres partis vers l'archive.</p>
+     */
+    @Autowired
+    private MemberArchiver memberArchiver;
+
+    /**
+     * <p class="en">The JDBC template, to empty the archive.</p>
+     * <p class="fr">Le template JDBC, pour vider l'archive.</p>
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * <p class="en">The controller of the members, whose endpoints have a SQL budget.</p>
+     * <p class="fr">Le contrôleur des membres, dont les points de terminaison ont un budget SQL.</p>
+     */
+    @Autowired
+    private MemberController memberController;
+
+    /**
+     * <p class="en">The write-behind queue of the asynchronous modifications.</p>
+     * <p class="fr">La file d'écriture différée des modifications asynchrones.</p>
+     */
+    @Autowired
+    private MemberWriteBehind memberWriteBehind;
+
     /**
      * <p class="en">The object mapper to use to map the JSON to the {@link Member} object (and vice versa).</p>
      * <p class="fr">Le mappeur d'objets à utiliser pour mapper le JSON vers l'objet {@link Member} (et vice versa).</p>
@@ -58,6 +161,20 @@ public class HttpRequestsTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    /**
+     * <p class="en">The transaction manager, to modify a member in a transaction rolled back.</p>
+     * <p class="fr">Le gestionnaire de transactions, pour modifier un membre dans une transaction annulée.</p>
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * <p class="en">The listener running an action before the commit of a change.</p>
+     * <p class="fr">L'écouteur exécutant une action avant la validation d'un changement.</p>
+     */
+    @Autowired
+    private BeforeCommitHook beforeCommitHook;
+
     /**
      * <p class="en">The first member to use in the tests.</p>
      * <p class="fr">Le premier membre à utiliser dans les tests.</p>
@@ -104,6 +221,7 @@ public class HttpRequestsTest {
     @AfterEach
     public void teardown() {
         memberRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM archived_member");
     }
     
     /**
@@ -127,6 +245,56 @@ public class HttpRequestsTest {
         assertEquals(member2, members[1]);
     }
 
+    /**
+     * <p class="en">Test the GET request to get the members page by page, with a filter.</p>
+     * <p class="fr">Teste la requête GET pour obtenir les membres page par page, avec un filtre.</p>
+     * @throws Exception <p class="en">If the request fails.</p>
+     * <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testGetMembersPaginated() throws Exception {
+        memberRepository.save(member1);
+        memberRepository.save(member2);
+        this.mockMvc.perform(get("/api/members").param("limit", "1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(MemberController.NEXT_CURSOR_HEADER, String.valueOf(member1.getId())))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].id").value(member1.getId()));
+        this.mockMvc.perform(get("/api/members").param("limit", "1").param("after", String.valueOf(member1.getId())))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].id").value(member2.getId()));
+        this.mockMvc.perform(get("/api/members").param("active", "true"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(MemberController.NEXT_CURSOR_HEADER))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].id").value(member2.getId()));
+        this.mockMvc.perform(get("/api/members").param("status", "Assistant"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].id").value(member1.getId()));
+    }
+
+    /**
+     * <p class="en">Test the GET request to export all the members as NDJSON.</p>
+     * <p class="fr">Teste la requête GET pour exporter tous les membres en NDJSON.</p>
+     * @throws Exception <p class="en">If the request fails.</p>
+     * <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testExportMembers() throws Exception {
+        memberRepository.save(member1);
+        memberRepository.save(member2);
+        String s = this.mockMvc.perform(get("/api/members/export"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MemberController.NDJSON_VALUE))
+            .andReturn().getResponse().getContentAsString();
+        String[] lines = s.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(member1, fromJson(lines[0]));
+        assertEquals(member2, fromJson(lines[1]));
+    }
+
     /**
      * <p class="en">Transform a {@link Member} object to a JSON string.</p>
      * <p class="fr">Transforme un objet {@link Member} en une chaîne JSON.</p>
@@ -196,6 +364,35 @@ public class HttpRequestsTest {
 
     }
 
+    /**
+     * <p class="en">Test the POST request to add many members at once, as a JSON array and as NDJSON.</p>
+     * <p class="fr">Teste la requête POST pour ajouter plusieurs membres à la fois, en tableau JSON et en NDJSON.</p>
+     * @throws Exception <p class="en">If the request fails.</p>
+     */
+    @Test
+    public void testAddMembersBatch() throws Exception {
+        memberRepository.save(member1);
+        this.mockMvc.perform(
+            post("/api/members/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[" + toJson(member1) + "," + toJson(member2) + "]"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$[0].status").value(BatchStatus.Conflict.name()))
+            .andExpect(jsonPath("$[1].status").value(BatchStatus.Created.name()));
+        assertEquals(member2, memberRepository.findById(member2.getId()).orElseThrow());
+
+        memberRepository.deleteAll();
+        this.mockMvc.perform(
+            post("/api/members/batch")
+                .contentType(MemberController.NDJSON_VALUE)
+                .content(toJson(member1) + "\n" + toJson(member2) + "\n"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].status").value(BatchStatus.Created.name()))
+            .andExpect(jsonPath("$[1].status").value(BatchStatus.Created.name()));
+        assertEquals(2, memberRepository.count());
+    }
+
     /**
      * <p class="en">Test the PATCH request to update a member.</p>
      * <p class="fr">Teste la requête PATCH pour mettre à jour un membre.</p>
@@ -236,6 +433,887 @@ public class HttpRequestsTest {
         assertEquals(member2, memberRepository.findAll().get(0));
     }
 
+    /**
+     * <p class="en">Test the number of statements of the PATCH and DELETE requests: a PATCH does not load the member
+     * before modifying it (an UPDATE and the SELECT of the returned member) and a DELETE is the SELECT ... FOR UPDATE
+     * of the member, the replacement of its archive (DELETE and INSERT) and its DELETE.</p>
+     * <p class="fr">Teste le nombre de requêtes des requêtes PATCH et DELETE : un PATCH ne charge pas le membre avant
+     * de le modifier (un UPDATE et le SELECT du membre renvoyé) et un DELETE est le SELECT ... FOR UPDATE du membre,
+     * le remplacement de son archive (DELETE et INSERT) et son DELETE.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testWriteStatementCount() throws Exception {
+        memberRepository.save(member1);
+        memberRepository.save(member2);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        this.mockMvc.perform(
+            patch("/api/members/%d".formatted(member1.getId()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"Professor\",\"endDate\":null}"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value(MemberStatus.Professor.name()))
+            .andExpect(jsonPath("$.endDate").isEmpty());
+        assertEquals(2, statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        this.mockMvc.perform(
+            delete("/api/members/%d".formatted(member1.getId())))
+            .andExpect(status().isNoContent());
+        assertEquals(4, statistics.getPrepareStatementCount());
+
+        this.mockMvc.perform(
+            delete("/api/members/%d".formatted(member1.getId())))
+            .andExpect(status().isNotFound());
+        this.mockMvc.perform(
+            patch("/api/members/%d".formatted(member1.getId()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"Professor\"}"))
+            .andExpect(status().isNotFound());
+    }
+
+    /**
+     * <p class="en">Test that the GET request of a member is cached and that the cache does not return stale members
+     * after a PATCH or a DELETE.</p>
+     * <p class="fr">Teste que la requête GET d'un membre est mise en cache et que le cache ne renvoie pas de membres
+     * périmés après un PATCH ou un DELETE.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testGetMemberCache() throws Exception {
+        memberRepository.save(member1);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        String url = "/api/members/%d".formatted(member1.getId());
+
+        this.mockMvc.perform(get(url))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value(MemberStatus.Assistant.name()));
+        statistics.clear();
+        this.mockMvc.perform(get(url))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value(MemberStatus.Assistant.name()));
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        this.mockMvc.perform(
+            patch(url)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"Professor\"}"))
+            .andExpect(status().isOk());
+        this.mockMvc.perform(get(url))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value(MemberStatus.Professor.name()));
+
+        this.mockMvc.perform(delete(url))
+            .andExpect(status().isNoContent());
+        this.mockMvc.perform(get(url))
+            .andExpect(status().isNotFound());
+    }
+
+    /**
+     * <p class="en">Test that the cached member is not the instance managed by the transaction which loaded it: a
+     * modification of that instance rolled back must not reach the cache.</p>
+     * <p class="fr">Teste que le membre mis en cache n'est pas l'instance gérée par la transaction qui l'a chargé : une
+     * modification de cette instance annulée ne doit pas atteindre le cache.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testGetMemberCacheDetached() throws Exception {
+        memberRepository.save(member1);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(transaction -> {
+            Member cached = memberRepository.findById(member1.getId()).orElseThrow();
+            Member managed = memberRepository.findAllById(List.of(member1.getId())).getFirst();
+            assertNotSame(cached, managed);
+            managed.setStatus(MemberStatus.Professor);
+            transaction.setRollbackOnly();
+        });
+        this.mockMvc.perform(get("/api/members/%d".formatted(member1.getId())))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value(MemberStatus.Assistant.name()));
+    }
+
+    /**
+     * <p class="en">Test that modifying the fields of a member keeps the other entities of the transaction managed (so
+     * their later changes are saved) and returns the member already loaded, refreshed.</p>
+     * <p class="fr">Teste que modifier les champs d'un membre garde les autres entités de la transaction gérées (donc
+     * leurs modifications ultérieures sont enregistrées) et renvoie le membre déjà chargé, rafraîchi.</p>
+     */
+    @Test
+    public void testUpdateFieldsKeepsTransaction() {
+        memberRepository.save(member1);
+        memberRepository.save(member2);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(transaction -> {
+            Member loaded = memberRepository.findAllById(List.of(member1.getId())).getFirst();
+            Member other = memberRepository.findAllById(List.of(member2.getId())).getFirst();
+            Member updated = memberRepository.updateFields(member1.getId(),
+                    Map.of("status", MemberStatus.Professor), null).orElseThrow();
+            assertSame(loaded, updated);
+            assertEquals(MemberStatus.Professor, updated.getStatus());
+            other.setLastName("Changed");
+        });
+        assertEquals("Changed", memberRepository.findAllById(List.of(member2.getId())).getFirst().getLastName());
+    }
+
+    /**
+     * <p class="en">Test the conditional GET requests (ETag and If-None-Match) of the list and of a member.</p>
+     * <p class="fr">Teste les requêtes GET conditionnelles (ETag et If-None-Match) de la liste et d'un membre.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testConditionalGet() throws Exception {
+        memberRepository.save(member1);
+        memberRepository.save(member2);
+        String url = "/api/members/%d".formatted(member1.getId());
+
+        String listEtag = this.mockMvc.perform(get("/api/members"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        // The version of the list only holds for this instance
+        assertTrue(listEtag.startsWith("W/"));
+        String memberEtag = this.mockMvc.perform(get(url))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        this.mockMvc.perform(get("/api/members").header(HttpHeaders.IF_NONE_MATCH, listEtag))
+            .andExpect(status().isNotModified());
+        this.mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, memberEtag))
+            .andExpect(status().isNotModified());
+
+        this.mockMvc.perform(
+            patch(url)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"Professor\"}"))
+            .andExpect(status().isOk());
+        this.mockMvc.perform(get("/api/members").header(HttpHeaders.IF_NONE_MATCH, listEtag))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].status").value(MemberStatus.Professor.name()));
+        this.mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, memberEtag))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value(MemberStatus.Professor.name()));
+    }
+
+    /**
+     * <p class="en">Test that the ETags of the list and of a member depend on the negotiated format, and that the
+     * responses vary by <code>Accept</code>: an ETag of one format never gives a 304 in another one, and the version
+     * given by an ETag of any format can be used in an <code>If-Match</code>.</p>
+     * <p class="fr">Teste que les ETags de la liste et d'un membre dépendent du format négocié, et que les réponses
+     * varient selon <code>Accept</code> : un ETag d'un format ne donne jamais de 304 dans un autre, et la version
+     * donnée par un ETag de n'importe quel format peut être utilisée dans un <code>If-Match</code>.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testEtagPerFormat() throws Exception {
+        memberRepository.save(member1);
+        String url = "/api/members/%d".formatted(member1.getId());
+
+        for (String path : List.of("/api/members", url)) {
+            MockHttpServletResponse response = this.mockMvc.perform(get(path))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+            assertTrue(response.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT));
+            String json = response.getHeader(HttpHeaders.ETAG);
+            String smile = this.mockMvc.perform(get(path).accept(WireFormatConfiguration.SMILE_VALUE))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+            String cbor = this.mockMvc.perform(get(path).accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+            assertEquals(3, Set.of(json, smile, cbor).size());
+
+            this.mockMvc.perform(
+                get(path).accept(MediaType.APPLICATION_CBOR).header(HttpHeaders.IF_NONE_MATCH, json))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR));
+            response = this.mockMvc.perform(
+                get(path).accept(MediaType.APPLICATION_CBOR).header(HttpHeaders.IF_NONE_MATCH, cbor))
+                .andExpect(status().isNotModified())
+                .andReturn().getResponse();
+            assertTrue(response.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT));
+        }
+
+        String smile = this.mockMvc.perform(get(url).accept(WireFormatConfiguration.SMILE_VALUE))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        this.mockMvc.perform(
+            patch(url)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, smile)
+                .content("{\"status\":\"Professor\"}"))
+            .andExpect(status().isOk());
+    }
+
+    /**
+     * <p class="en">Test the PATCH request with an If-Match header: a stale version is refused with 412.</p>
+     * <p class="fr">Teste la requête PATCH avec un en-tête If-Match : une version périmée est refusée avec 412.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testUpdateMemberIfMatch() throws Exception {
+        memberRepository.save(member1);
+        String url = "/api/members/%d".formatted(member1.getId());
+        String etag = this.mockMvc.perform(get(url))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        String newEtag = this.mockMvc.perform(
+            patch(url)
+                .header(HttpHeaders.IF_MATCH, etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"Professor\"}"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        this.mockMvc.perform(
+            patch(url)
+                .header(HttpHeaders.IF_MATCH, etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"PhD\"}"))
+            .andExpect(status().isPreconditionFailed());
+        this.mockMvc.perform(get(url))
+            .andExpect(header().string(HttpHeaders.ETAG, newEtag))
+            .andExpect(jsonPath("$.status").value(MemberStatus.Professor.name()));
+    }
+
+    /**
+     * <p class="en">Test many concurrent read-modify-write cycles (GET then PATCH with If-Match, retried on 412) on
+     * the same member: no update is lost and, as no lock is taken, every thread finishes quickly.</p>
+     * <p class="fr">Teste de nombreux cycles lecture-modification-écriture concurrents (GET puis PATCH avec If-Match,
+     * réessayé en cas de 412) sur le même membre : aucune modification n'est perdue et, comme aucun verrou n'est
+     * pris, chaque thread termine rapidement.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testConcurrentUpdatesAreNotLost() throws Exception {
+        int threads = 8;
+        int increments = 20;
+        member1.setFirstName("0");
+        long initialVersion = memberRepository.save(member1).getVersion();
+        String url = "/api/members/%d".formatted(member1.getId());
+        AtomicInteger refused = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < increments; i++) {
+                    while (true) {
+                        MockHttpServletResponse read = this.mockMvc.perform(get(url)).andReturn().getResponse();
+                        int value = Integer.parseInt(fromJson(read.getContentAsString()).getFirstName());
+                        int status = this.mockMvc.perform(
+                            patch(url)
+                                .header(HttpHeaders.IF_MATCH, read.getHeader(HttpHeaders.ETAG))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"firstName\":\"%d\"}".formatted(value + 1)))
+                            .andReturn().getResponse().getStatus();
+                        if (status == HttpStatus.OK.value()) {
+                            break;
+                        }
+                        assertEquals(HttpStatus.PRECONDITION_FAILED.value(), status);
+                        refused.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+        for (Future<?> f : futures) {
+            f.get(); // rethrows the failures of the threads
+        }
+
+        Member saved = memberRepository.findById(member1.getId()).orElseThrow();
+        assertEquals(String.valueOf(threads * increments), saved.getFirstName());
+        assertEquals(initialVersion + threads * increments, saved.getVersion());
+        // A PATCH is only refused if another thread updated the member since its GET: each update refuses at most
+        // one attempt of each other thread
+        assertTrue(refused.get() <= (threads - 1) * threads * increments);
+    }
+
+    /**
+     * <p class="en">Test that the number of SQL statements and rows of a request are recorded for its endpoint.</p>
+     * <p class="fr">Teste que le nombre de requêtes SQL et de lignes d'une requête sont enregistrés pour son point de
+     * terminaison.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testSqlMetrics() throws Exception {
+        memberRepository.save(member1);
+        memberRepository.save(member2);
+        // The summaries are shared with the other tests: only what this request adds to them is checked
+        double[] statements = membersSummary("http.server.requests.sql.statements");
+        double[] rows = membersSummary("http.server.requests.sql.rows");
+        this.mockMvc.perform(get("/api/members"))
+            .andExpect(status().isOk());
+        assertArrayEquals(new double[] {statements[0] + 1, statements[1] + 1},
+            membersSummary("http.server.requests.sql.statements"));
+        assertArrayEquals(new double[] {rows[0] + 1, rows[1] + 2}, membersSummary("http.server.requests.sql.rows"));
+    }
+
+    /**
+     * <p class="en">Returns the number of values and their total in a summary of the requests to GET /api/members.</p>
+     * <p class="fr">Renvoie le nombre de valeurs et leur total dans une distribution des requêtes à GET
+     * /api/members.</p>
+     * @param name <p class="en">The name of the summary.</p> <p class="fr">Le nom de la distribution.</p>
+     * @return <p class="en">The count and the total amount (zeros if nothing was recorded yet).</p>
+     * <p class="fr">Le nombre et le total (des zéros si rien n'a encore été enregistré).</p>
+     */
+    private double[] membersSummary(String name) {
+        DistributionSummary summary = meterRegistry.find(name).tags("method", "GET", "uri", "/api/members").summary();
+        return summary == null ? new double[2] : new double[] {summary.count(), summary.totalAmount()};
+    }
+
+    /**
+     * <p class="en">Test the SQL budgets of the endpoints: a GET by id is a single statement, like a PATCH without
+     * modification (every request of these tests also fails if it exceeds the budget of its endpoint), and a request
+     * over its budget is counted and fails in strict mode.</p>
+     * <p class="fr">Teste les budgets SQL des points de terminaison : un GET par id est une seule requête SQL, comme un
+     * PATCH sans modification (chaque requête de ces tests échoue aussi si elle dépasse le budget de son point de
+     * terminaison), et une requête au-delà de son budget est comptée et échoue en mode strict.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testSqlBudget() throws Exception {
+        memberRepository.save(member1);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        this.mockMvc.perform(get("/api/members/%d".formatted(member1.getId())))
+            .andExpect(status().isOk());
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        memberRepository.save(member1);
+        statistics.clear();
+        this.mockMvc.perform(
+            patch("/api/members/%d".formatted(member1.getId()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"id\":42}"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(member1.getId()));
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        // GET /api/members/stats has a budget of 0 statements
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/members/stats");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE,
+            new HandlerMethod(memberController, MemberController.class.getMethod("getStats")));
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/members/stats");
+        double exceeded = meterRegistry.counter("http.server.requests.sql.budget.exceeded",
+            "method", "GET", "uri", "/api/members/stats").count();
+        assertThrows(IllegalStateException.class, () -> new SqlMetricsFilter(meterRegistry, true, true)
+            .doFilter(request, new MockHttpServletResponse(),
+                (req, res) -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM member", Long.class)));
+        assertEquals(exceeded + 1, meterRegistry.counter("http.server.requests.sql.budget.exceeded",
+            "method", "GET", "uri", "/api/members/stats").count());
+    }
+
+    /**
+     * <p class="en">Test the search of the members by name or email, ignoring accents and case, and that the index
+     * follows the PATCH and DELETE requests.</p>
+     * <p class="fr">Teste la recherche des membres par nom ou email, en ignorant les accents et la casse, et que
+     * l'index suit les requêtes PATCH et DELETE.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testSearchMembers() throws Exception {
+        Member member3 = new Member(10, "Éloïse", "Lefèvre-Dupré", "Eloise.LEFEVRE@umons.ac.be",
+            MemberStatus.PhD, member1.getBeginDate(), null);
+        memberRepository.save(member1);
+        memberRepository.save(member2);
+        memberRepository.save(member3);
+        this.mockMvc.perform(get("/api/members/search").param("q", "elo"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].id").value(member3.getId()));
+        this.mockMvc.perform(get("/api/members/search").param("q", "DUPRE lefe"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].id").value(member3.getId()));
+        this.mockMvc.perform(get("/api/members/search").param("q", "guillaume.card"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].id").value(member1.getId()));
+        this.mockMvc.perform(get("/api/members/search").param("q", "umons"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(0));
+
+        this.mockMvc.perform(
+            patch("/api/members/%d".formatted(member2.getId()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"lastName\":\"Çelik\",\"email\":\"Tom.CELIK@umons.ac.be\"}"))
+            .andExpect(status().isOk());
+        this.mockMvc.perform(get("/api/members/search").param("q", "mens"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(0));
+        this.mockMvc.perform(get("/api/members/search").param("q", "celik"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].id").value(member2.getId()));
+
+        this.mockMvc.perform(delete("/api/members/%d".formatted(member3.getId())))
+            .andExpect(status().isNoContent());
+        this.mockMvc.perform(get("/api/members/search").param("q", "elo"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    /**
+     * <p class="en">Test the archive: the compaction and the DELETE requests move the departed members out of the
+     * members table, the list and the search only return them with <code>includeArchived=true</code>, and a member
+     * created again with an archived id replaces its archive in the list.</p>
+     * <p class="fr">Teste l'archive : le compactage et les requêtes DELETE déplacent les membres partis hors de la
+     * table des membres, la liste et la recherche ne les renvoient qu'avec <code>includeArchived=true</code>, et un
+     * membre créé à nouveau avec un id archivé remplace son archive dans la liste.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testArchivedMembers() throws Exception {
+        Member member3 = new Member(10, "Éloïse", "Lefèvre-Dupré", "Eloise.LEFEVRE@umons.ac.be",
+            MemberStatus.PhD, member2.getBeginDate(), new SimpleDateFormat("dd/MM/yyyy").parse("30/06/2020"));
+        memberRepository.save(member1);
+        memberRepository.save(member2);
+        memberRepository.save(member3);
+
+        // Only member3 has left: member1 leaves in 2029
+        assertEquals(1, memberArchiver.compact());
+        assertEquals(0, memberArchiver.compact());
+        this.mockMvc.perform(get("/api/members"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2));
+        this.mockMvc.perform(get("/api/members").param("includeArchived", "true"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(3))
+            .andExpect(jsonPath("$[2].id").value(member3.getId()))
+            .andExpect(jsonPath("$[2].lastName").value(member3.getLastName()));
+        this.mockMvc.perform(get("/api/members").param("includeArchived", "true").param("endTo", "2021-01-01"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].id").value(member3.getId()));
+        this.mockMvc.perform(get("/api/members/search").param("q", "elo"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(0));
+        this.mockMvc.perform(get("/api/members/search").param("q", "elo").param("includeArchived", "true"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].id").value(member3.getId()));
+
+        // A deleted member is archived with the date of its deletion as end date
+        this.mockMvc.perform(delete("/api/members/%d".formatted(member2.getId())))
+            .andExpect(status().isNoContent());
+        this.mockMvc.perform(get("/api/members/%d".formatted(member2.getId())))
+            .andExpect(status().isNotFound());
+        this.mockMvc.perform(get("/api/members").param("includeArchived", "true").param("limit", "2"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(MemberController.NEXT_CURSOR_HEADER, String.valueOf(member2.getId())))
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$[1].id").value(member2.getId()))
+            .andExpect(jsonPath("$[1].endDate").isNotEmpty());
+        // member1 has an end date (in 2029), it is not active
+        this.mockMvc.perform(get("/api/members").param("includeArchived", "true").param("active", "true"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(0));
+
+        // The current member hides the archive of the same id
+        memberRepository.save(new Member(member3.getId(), "Éloïse", "Lefèvre", "Eloise.LEFEVRE@umons.ac.be",
+            MemberStatus.Professor, member1.getBeginDate(), null));
+        this.mockMvc.perform(get("/api/members").param("includeArchived", "true")
+                .param("after", String.valueOf(member2.getId())))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].status").value(MemberStatus.Professor.name()))
+            .andExpect(jsonPath("$[0].endDate").isEmpty());
+        this.mockMvc.perform(get("/api/members").param("includeArchived", "true").param("active", "true"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].id").value(member3.getId()));
+    }
+
+    /**
+     * <p class="en">Test that the statistics follow the POST, PATCH and DELETE requests without querying the
+     * database, and that the reconciliation catches up with a change made behind the application.</p>
+     * <p class="fr">Teste que les statistiques suivent les requêtes POST, PATCH et DELETE sans interroger la base de
+     * données, et que la réconciliation rattrape un changement fait dans le dos de l'application.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testMemberStats() throws Exception {
+        // The archives emptied after the previous tests are still counted
+        memberStatistics.reconcile();
+        memberRepository.save(member1);
+        this.mockMvc.perform(post("/api/members")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(member2)))
+            .andExpect(status().isCreated());
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        this.mockMvc.perform(get("/api/members/stats"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.total").value(2))
+            .andExpect(jsonPath("$.byStatus.Assistant").value(1))
+            .andExpect(jsonPath("$.byStatus.Professor").value(1))
+            .andExpect(jsonPath("$.byStatus.PhD").value(0))
+            .andExpect(jsonPath("$.active").value(1))
+            .andExpect(jsonPath("$.departed").value(1))
+            .andExpect(jsonPath("$.byBeginYear.2003").value(1))
+            .andExpect(jsonPath("$.byBeginYear.2023").value(1));
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        this.mockMvc.perform(
+            patch("/api/members/%d".formatted(member2.getId()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"PhD\",\"endDate\":\"2024-09-15T00:00:00.000+00:00\"}"))
+            .andExpect(status().isOk());
+        // The deleted member is archived: it is still counted, as departed
+        this.mockMvc.perform(delete("/api/members/%d".formatted(member1.getId())))
+            .andExpect(status().isNoContent());
+        this.mockMvc.perform(get("/api/members/stats"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.total").value(2))
+            .andExpect(jsonPath("$.byStatus.Assistant").value(1))
+            .andExpect(jsonPath("$.byStatus.Professor").value(0))
+            .andExpect(jsonPath("$.byStatus.PhD").value(1))
+            .andExpect(jsonPath("$.active").value(0))
+            .andExpect(jsonPath("$.departed").value(2))
+            .andExpect(jsonPath("$.byBeginYear.2023").value(1));
+
+        // Archived again once created again: the previous archive is replaced
+        memberRepository.save(member1);
+        this.mockMvc.perform(delete("/api/members/%d".formatted(member1.getId())))
+            .andExpect(status().isNoContent());
+        this.mockMvc.perform(get("/api/members/stats"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.total").value(2))
+            .andExpect(jsonPath("$.departed").value(2));
+
+        // A bulk delete does not go through the application events, and the archive is counted from the table
+        memberRepository.deleteAllInBatch();
+        memberStatistics.reconcile();
+        this.mockMvc.perform(get("/api/members/stats"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.total").value(1))
+            .andExpect(jsonPath("$.byStatus.Assistant").value(1))
+            .andExpect(jsonPath("$.departed").value(1))
+            .andExpect(jsonPath("$.byBeginYear.2023").value(1))
+            .andExpect(jsonPath("$.byBeginYear.2003").doesNotExist());
+    }
+
+    /**
+     * <p class="en">Test that the members can be read and written in Smile and CBOR, with the dates as epoch
+     * milliseconds, and that the binary formats are smaller than JSON.</p>
+     * <p class="fr">Teste que les membres peuvent être lus et écrits en Smile et en CBOR, avec les dates en
+     * millisecondes depuis l'époque, et que les formats binaires sont plus petits que le JSON.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testBinaryFormats() throws Exception {
+        memberRepository.save(member1);
+        this.mockMvc.perform(post("/api/members")
+                .contentType(MediaType.APPLICATION_CBOR)
+                .accept(MediaType.APPLICATION_CBOR)
+                .content(WireFormatConfiguration.cborMapper().writeValueAsBytes(member2)))
+            .andExpect(status().isCreated())
+            .andExpect(content().contentType(MediaType.APPLICATION_CBOR));
+        assertEquals(member2, memberRepository.findById(member2.getId()).orElseThrow());
+
+        int json = this.mockMvc.perform(get("/api/members"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+            .andReturn().getResponse().getContentAsByteArray().length;
+        byte[] smile = this.mockMvc.perform(get("/api/members").accept(WireFormatConfiguration.SMILE_VALUE))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(WireFormatConfiguration.SMILE_VALUE))
+            .andReturn().getResponse().getContentAsByteArray();
+        byte[] cbor = this.mockMvc.perform(get("/api/members").accept(MediaType.APPLICATION_CBOR))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+            .andReturn().getResponse().getContentAsByteArray();
+        assertTrue(smile.length < json);
+        assertTrue(cbor.length < json);
+
+        Member[] members = WireFormatConfiguration.smileMapper().readValue(smile, Member[].class);
+        assertEquals(member1, members[0]);
+        assertEquals(member2, members[1]);
+        JsonNode first = WireFormatConfiguration.cborMapper().readTree(cbor).get(0);
+        assertTrue(first.get("beginDate").isNumber());
+        assertEquals(member1.getBeginDate().getTime(), first.get("beginDate").asLong());
+    }
+
+    /**
+     * <p class="en">Test the asynchronous modifications: the requests return 202 with an operation, and the
+     * operations end with the status codes of the synchronous requests.</p>
+     * <p class="fr">Teste les modifications asynchrones : les requêtes renvoient 202 avec une opération, et les
+     * opérations se terminent avec les codes d'état des requêtes synchrones.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testAsyncWrites() throws Exception {
+        memberRepository.save(member1);
+        String created = this.mockMvc.perform(post("/api/members")
+                .header(MemberController.PREFER_HEADER, MemberController.RESPOND_ASYNC)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(member2)))
+            .andExpect(status().isAccepted())
+            .andExpect(header().string(MemberController.PREFERENCE_APPLIED_HEADER, MemberController.RESPOND_ASYNC))
+            .andExpect(jsonPath("$.status").value("Pending"))
+            .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+        String conflict = this.mockMvc.perform(post("/api/members")
+                .header(MemberController.PREFER_HEADER, MemberController.RESPOND_ASYNC)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(member1)))
+            .andExpect(status().isAccepted())
+            .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+        // Two PATCH of the same member, probably merged in the queue
+        String firstPatch = this.mockMvc.perform(patch("/api/members/%d".formatted(member1.getId()))
+                .header(MemberController.PREFER_HEADER, MemberController.RESPOND_ASYNC)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"firstName\":\"Guy\"}"))
+            .andExpect(status().isAccepted())
+            .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+        String secondPatch = this.mockMvc.perform(patch("/api/members/%d".formatted(member1.getId()))
+                .header(MemberController.PREFER_HEADER, MemberController.RESPOND_ASYNC)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"lastName\":\"Card\"}"))
+            .andExpect(status().isAccepted())
+            .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+        String missing = this.mockMvc.perform(delete("/api/members/%d".formatted(42))
+                .header(MemberController.PREFER_HEADER, MemberController.RESPOND_ASYNC))
+            .andExpect(status().isAccepted())
+            .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+
+        assertEquals(HttpStatus.CREATED.value(), awaitOperation(created));
+        assertEquals(HttpStatus.CONFLICT.value(), awaitOperation(conflict));
+        assertEquals(HttpStatus.OK.value(), awaitOperation(firstPatch));
+        assertEquals(HttpStatus.OK.value(), awaitOperation(secondPatch));
+        assertEquals(HttpStatus.NOT_FOUND.value(), awaitOperation(missing));
+        assertEquals(member2, memberRepository.findById(member2.getId()).orElseThrow());
+        Member patched = memberRepository.findById(member1.getId()).orElseThrow();
+        assertEquals("Guy", patched.getFirstName());
+        assertEquals("Card", patched.getLastName());
+
+        this.mockMvc.perform(get("/api/operations/%d".formatted(Long.MAX_VALUE)))
+            .andExpect(status().isNotFound());
+    }
+
+    /**
+     * <p class="en">Test that the asynchronous modifications are refused with 429 once the queue is stopped, as they
+     * would never be applied.</p>
+     * <p class="fr">Teste que les modifications asynchrones sont refusées avec 429 une fois la file arrêtée, comme
+     * elles ne seraient jamais appliquées.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testAsyncWritesRefusedOnceStopped() throws Exception {
+        memberWriteBehind.stop();
+        try {
+            this.mockMvc.perform(post("/api/members")
+                    .header(MemberController.PREFER_HEADER, MemberController.RESPOND_ASYNC)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(member1)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+        } finally {
+            memberWriteBehind.start();
+        }
+        assertTrue(memberRepository.findById(member1.getId()).isEmpty());
+    }
+
+    /**
+     * <p class="en">Test that stopping the queue does not wait for a batch stuck in the database beyond the shutdown
+     * timeout: the modifications still queued are dropped and their operations fail with 503.</p>
+     * <p class="fr">Teste qu'arrêter la file n'attend pas un lot bloqué dans la base de données au-delà du délai
+     * d'arrêt : les modifications encore en file sont abandonnées et leurs opérations échouent avec 503.</p>
+     * @throws Exception <p class="en">If the test is interrupted.</p> <p class="fr">Si le test est interrompu.</p>
+     */
+    @Test
+    public void testAsyncWritesDroppedOnShutdownTimeout() throws Exception {
+        MemberWriteBehind queue = new MemberWriteBehind(memberRepository, new TransactionTemplate(transactionManager),
+            10, 1, Duration.ofMillis(200));
+        CountDownLatch committing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // The first batch is stuck before its commit, like with a slow database
+        beforeCommitHook.beforeNextCommit(() -> {
+            committing.countDown();
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        queue.start();
+        Operation first = queue.create(member1).orElseThrow();
+        try {
+            assertTrue(committing.await(10, TimeUnit.SECONDS));
+            Operation second = queue.create(member2).orElseThrow();
+            long start = System.nanoTime();
+            queue.stop();
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+            Operation dropped = queue.find(second.id()).orElseThrow();
+            assertEquals(OperationStatus.Failed, dropped.status());
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), dropped.code());
+            assertEquals(OperationStatus.Pending, queue.find(first.id()).orElseThrow().status());
+        } finally {
+            release.countDown();
+        }
+        // The batch being applied is not interrupted: it ends before the next test
+        for (int i = 0; i < 500 && queue.find(first.id()).orElseThrow().status() == OperationStatus.Pending; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(HttpStatus.CREATED.value(), queue.find(first.id()).orElseThrow().code());
+    }
+
+    /**
+     * <p class="en">Test that a GET served while an asynchronous PATCH is written but not committed yet does not leave
+     * the old member in the cache: the cache is evicted after the commit of the write-behind queue.</p>
+     * <p class="fr">Teste qu'un GET servi pendant qu'un PATCH asynchrone est écrit mais pas encore validé ne laisse pas
+     * l'ancien membre dans le cache : le cache est évincé après la validation de la file d'écriture différée.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testAsyncPatchDuringGet() throws Exception {
+        memberRepository.save(member1);
+        String uri = "/api/members/%d".formatted(member1.getId());
+        AtomicReference<String> inFlight = new AtomicReference<>();
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            // The GET runs on another thread, so it reads (and caches) the committed member, i.e. the old one
+            beforeCommitHook.beforeNextCommit(() -> {
+                try {
+                    inFlight.set(reader.submit(() -> this.mockMvc.perform(get(uri))
+                            .andExpect(status().isOk())
+                            .andReturn().getResponse().getContentAsString())
+                        .get(5, TimeUnit.SECONDS));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            String patch = this.mockMvc.perform(patch(uri)
+                    .header(MemberController.PREFER_HEADER, MemberController.RESPOND_ASYNC)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"firstName\":\"Guy\"}"))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+            assertEquals(HttpStatus.OK.value(), awaitOperation(patch));
+        } finally {
+            reader.shutdownNow();
+        }
+        assertEquals("Guillaume", objectMapper.readValue(inFlight.get(), Member.class).getFirstName());
+        this.mockMvc.perform(get(uri))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.firstName").value("Guy"));
+    }
+
+    /**
+     * <p class="en">Waits for the end of an asynchronous operation.</p>
+     * <p class="fr">Attend la fin d'une opération asynchrone.</p>
+     * @param location <p class="en">The location of the operation.</p>
+     * <p class="fr">L'emplacement de l'opération.</p>
+     * @return <p class="en">The status code of the operation.</p> <p class="fr">Le code d'état de l'opération.</p>
+     * @throws Exception <p class="en">If the request fails or the operation does not end.</p>
+     * <p class="fr">Si la requête échoue ou que l'opération ne se termine pas.</p>
+     */
+    private int awaitOperation(String location) throws Exception {
+        for (int i = 0; i < 500; i++) {
+            String s = this.mockMvc.perform(get(location))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+            Operation operation = objectMapper.readValue(s, Operation.class);
+            if (operation.status() != OperationStatus.Pending) {
+                assertEquals(OperationStatus.Done, operation.status());
+                return operation.code();
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("The operation " + location + " did not end");
+    }
+
+    /**
+     * <p class="en">Test the feed of the changes: a new subscriber receives a <code>reset</code> event then the
+     * committed changes, and a subscriber reconnecting with <code>Last-Event-ID</code> receives the changes it
+     * missed.</p>
+     * <p class="fr">Teste le flux des changements : un nouvel abonné reçoit un événement <code>reset</code> puis les
+     * changements validés, et un abonné se reconnectant avec <code>Last-Event-ID</code> reçoit les changements qu'il
+     * a manqués.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testChangeFeed() throws Exception {
+        MockHttpServletResponse feed = this.mockMvc.perform(get("/api/members/changes"))
+            .andExpect(request().asyncStarted())
+            .andReturn().getResponse();
+        String reset = awaitEvent(feed, "event:reset");
+        String resetId = reset.substring(reset.indexOf("id:") + 3, reset.indexOf('\n', reset.indexOf("id:")));
+
+        this.mockMvc.perform(post("/api/members")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(member1)))
+            .andExpect(status().isCreated());
+        this.mockMvc.perform(delete("/api/members/%d".formatted(member1.getId())))
+            .andExpect(status().isNoContent());
+        String events = awaitEvent(feed, "event:Deleted");
+        assertTrue(events.indexOf("event:Created") < events.indexOf("event:Deleted"));
+        assertTrue(events.contains("\"firstName\":\"Guillaume\""));
+
+        // Reconnection after the reset: the two changes are replayed
+        MockHttpServletResponse resumed = this.mockMvc.perform(get("/api/members/changes")
+                .header("Last-Event-ID", resetId))
+            .andExpect(request().asyncStarted())
+            .andReturn().getResponse();
+        String replayed = awaitEvent(resumed, "event:Deleted");
+        assertTrue(replayed.contains("event:Created"));
+        assertTrue(!replayed.contains("event:reset"));
+
+        // Unknown id (e.g. from a previous launch): the client must reload the members
+        MockHttpServletResponse unknown = this.mockMvc.perform(get("/api/members/changes")
+                .header("Last-Event-ID", "0-1"))
+            .andExpect(request().asyncStarted())
+            .andReturn().getResponse();
+        awaitEvent(unknown, "event:reset");
+    }
+
+    /**
+     * <p class="en">Test the seed loader: the members of the fixture file are inserted, and loading it again keeps
+     * the members already in the database.</p>
+     * <p class="fr">Teste le chargeur de données : les membres du fichier de données sont insérés, et le charger à
+     * nouveau garde les membres déjà dans la base de données.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testSeedLoader() throws Exception {
+        ClassPathResource fixture = new ClassPathResource("seed/members.ndjson");
+        assertEquals(4, memberSeedLoader.load(fixture));
+        this.mockMvc.perform(get("/api/members/2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.firstName").value("Guillaume"))
+            .andExpect(jsonPath("$.lastName").value("Cardoen"));
+
+        this.mockMvc.perform(patch("/api/members/2")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"firstName\":\"Guillaume2\"}"))
+            .andExpect(status().isOk());
+        assertEquals(0, memberSeedLoader.load(fixture));
+        assertEquals(4, memberRepository.count());
+        this.mockMvc.perform(get("/api/members/2"))
+            .andExpect(jsonPath("$.firstName").value("Guillaume2"));
+    }
+
+    /**
+     * <p class="en">Waits for an event of a feed of changes.</p>
+     * <p class="fr">Attend un événement d'un flux de changements.</p>
+     * @param feed <p class="en">The response of the feed.</p> <p class="fr">La réponse du flux.</p>
+     * @param expected <p class="en">The text expected in the response.</p>
+     * <p class="fr">Le texte attendu dans la réponse.</p>
+     * @return <p class="en">The content of the response.</p> <p class="fr">Le contenu de la réponse.</p>
+     * @throws Exception <p class="en">If the event is not received.</p>
+     * <p class="fr">Si l'événement n'est pas reçu.</p>
+     */
+    private String awaitEvent(MockHttpServletResponse feed, String expected) throws Exception {
+        for (int i = 0; i < 500; i++) {
+            String content = feed.getContentAsString();
+            if (content.contains(expected)) {
+                return content;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("The event " + expected + " was not received");
+    }
+
     /*
      * There are obviously other tests to do (delete on a non existing member, patch on a non existing member, ...)
      * However, this is just an example.
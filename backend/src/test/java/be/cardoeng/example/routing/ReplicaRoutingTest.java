@@ -0,0 +1,210 @@
+package be.cardoeng.example.routing;
+
+import java.sql.SQLException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.servlet.http.Cookie;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import be.cardoeng.example.entities.Member;
+import be.cardoeng.example.enums.MemberStatus;
+import be.cardoeng.example.repositories.MemberRepository;
+
+/**
+ * <p class="en">A test class to test the routing of the requests between the primary and a replica (profile
+ * <code>replicas</code>), with two H2 databases. Nothing replicates the primary to the replica, so a member only
+ * present in the primary shows where a read went.</p>
+ * <p class="fr">Une classe de test pour tester l'aiguillage des requêtes entre le primaire et une réplique (profil
+ * <code>replicas</code>), avec deux bases de données H2. Rien ne réplique le primaire vers la réplique, donc un membre
+ * présent uniquement dans le primaire montre où une lecture est allée.</p>
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=" + ReplicaRoutingTest.PRIMARY_URL,
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "members.datasource.replicas.urls=" + ReplicaRoutingTest.REPLICA_URL,
+    "members.datasource.read-your-writes=PT1M",
+    "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@ActiveProfiles("replicas")
+@AutoConfigureMockMvc
+public class ReplicaRoutingTest {
+
+    /**
+     * <p class="en">The URL of the primary.</p>
+     * <p class="fr">L'URL du primaire.</p>
+     */
+    static final String PRIMARY_URL = "jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1";
+
+    /**
+     * <p class="en">The URL of the replica.</p>
+     * <p class="fr">L'URL de la réplique.</p>
+     */
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1";
+
+    /**
+     * <p class="en">The repository to use to manage the members.</p>
+     * <p class="fr">Le dépôt à utiliser pour gérer les membres.</p>
+     */
+    @Autowired
+    private MemberRepository memberRepository;
+
+    /**
+     * <p class="en">The mock MVC to use to test the HTTP requests.</p>
+     * <p class="fr">Le mock MVC à utiliser pour tester les requêtes HTTP.</p>
+     */
+    @Autowired
+    private MockMvc mockMvc;
+
+    /**
+     * <p class="en">The data source of the application.</p>
+     * <p class="fr">La source de données de l'application.</p>
+     */
+    @Autowired
+    private DataSource dataSource;
+
+    /**
+     * <p class="en">The transaction manager.</p>
+     * <p class="fr">Le gestionnaire de transactions.</p>
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * <p class="en">Direct access to the replica.</p>
+     * <p class="fr">Accès direct à la réplique.</p>
+     */
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    /**
+     * <p class="en">The member to use in the tests.</p>
+     * <p class="fr">Le membre à utiliser dans les tests.</p>
+     */
+    private Member member;
+
+    /**
+     * <p class="en">Setup the tests: the primary only contains {@link #member}, the replica has the same (empty)
+     * tables.</p>
+     * <p class="fr">Configure les tests : le primaire contient uniquement {@link #member}, la réplique a les mêmes
+     * tables (vides).</p>
+     * @throws ParseException <p class="en">If the date cannot be parsed.</p>
+     * <p class="fr">Si la date ne peut pas être parsée.</p>
+     */
+    @BeforeEach
+    public void setup() throws ParseException {
+        JdbcTemplate primary = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "sa", ""));
+        replica.execute("DROP ALL OBJECTS");
+        for (String statement : primary.queryForList("SCRIPT NODATA", String.class)) {
+            if (!statement.startsWith("--")) {
+                replica.execute(statement);
+            }
+        }
+        memberRepository.deleteAll();
+        member = new Member(
+            1,
+            "Guillaume",
+            "Cardoen",
+            "Guillaume.CARDOEN@umons.ac.be",
+            MemberStatus.Assistant,
+            new SimpleDateFormat("dd/MM/yyyy").parse("15/09/2023"),
+            null
+        );
+        memberRepository.save(member);
+    }
+
+    /**
+     * <p class="en">Test the routing decisions: the read-only transactions go to the replica, unless the thread is
+     * pinned to the primary, and the other transactions go to the primary.</p>
+     * <p class="fr">Teste les décisions d'aiguillage : les transactions en lecture seule vont à la réplique, sauf si
+     * le thread est épinglé au primaire, et les autres transactions vont au primaire.</p>
+     * @throws SQLException <p class="en">If the data source cannot be unwrapped.</p>
+     * <p class="fr">Si la source de données ne peut pas être déballée.</p>
+     */
+    @Test
+    public void testRoutingDecisions() throws SQLException {
+        ReplicaRoutingDataSource routing = dataSource.unwrap(ReplicaRoutingDataSource.class);
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        assertEquals(ReplicaRoutingDataSource.PRIMARY, routing.route());
+        assertEquals(ReplicaRoutingDataSource.PRIMARY, readWrite.execute(status -> routing.route()));
+        assertEquals(ReplicaRoutingDataSource.REPLICA + 0, readOnly.execute(status -> routing.route()));
+        // The data really comes from there
+        assertEquals(1L, (long) readWrite.execute(status -> memberRepository.count()));
+        assertEquals(0L, (long) readOnly.execute(status -> memberRepository.count()));
+
+        ReplicaRoutingDataSource.pinToPrimary(true);
+        try {
+            assertEquals(ReplicaRoutingDataSource.PRIMARY, readOnly.execute(status -> routing.route()));
+            assertEquals(1L, (long) readOnly.execute(status -> memberRepository.count()));
+        } finally {
+            ReplicaRoutingDataSource.pinToPrimary(false);
+        }
+    }
+
+    /**
+     * <p class="en">Test the reads of the API: they go to the replica, except for a client that just modified a
+     * member, which reads its own write from the primary.</p>
+     * <p class="fr">Teste les lectures de l'API : elles vont à la réplique, sauf pour un client qui vient de modifier
+     * un membre, qui lit sa propre écriture depuis le primaire.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testReadYourWrites() throws Exception {
+        this.mockMvc.perform(get("/api/members"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(0));
+        this.mockMvc.perform(get("/api/members/%d".formatted(member.getId())))
+            .andExpect(status().isNotFound());
+
+        String setCookie = this.mockMvc.perform(patch("/api/members/%d".formatted(member.getId()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"firstName\":\"Guy\"}"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader(HttpHeaders.SET_COOKIE);
+        assertTrue(setCookie.startsWith(ReadYourWritesFilter.COOKIE + "="));
+        Cookie cookie = new Cookie(ReadYourWritesFilter.COOKIE,
+                setCookie.substring(setCookie.indexOf('=') + 1, setCookie.indexOf(';')));
+
+        // The client that modified the member reads from the primary
+        this.mockMvc.perform(get("/api/members/%d".formatted(member.getId())).cookie(cookie))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.firstName").value("Guy"));
+        this.mockMvc.perform(get("/api/members").cookie(cookie))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1));
+        // The others still read from the replica
+        this.mockMvc.perform(get("/api/members"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(0));
+        // Once the window is over, the client reads from the replica again
+        Cookie expired = new Cookie(ReadYourWritesFilter.COOKIE, Long.toString(System.currentTimeMillis() - 1));
+        this.mockMvc.perform(get("/api/members").cookie(expired))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(0));
+    }
+
+}
@@ -0,0 +1,290 @@
+package be.cardoeng.example.routing;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import be.cardoeng.example.controllers.MemberController;
+import be.cardoeng.example.entities.Member;
+import be.cardoeng.example.enums.MemberStatus;
+import be.cardoeng.example.repositories.MemberRepository;
+
+/**
+ * <p class="en">A test class to test the members spread over several shards (profile <code>shards</code>), with
+ * three H2 databases.</p>
+ * <p class="fr">Une classe de test pour tester les membres répartis sur plusieurs fragments (profil
+ * <code>shards</code>), avec trois bases de données H2.</p>
+ */
+@SpringBootTest(properties = {
+    "members.datasource.shards.urls=" + ShardingTest.SHARD_0_URL + "," + ShardingTest.SHARD_1_URL + ","
+        + ShardingTest.SHARD_2_URL,
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.hibernate.ddl-auto=none",
+    "members.datasource.shards.create-schema=true"
+})
+@ActiveProfiles("shards")
+@AutoConfigureMockMvc
+public class ShardingTest {
+
+    /**
+     * <p class="en">The URL of the first shard.</p>
+     * <p class="fr">L'URL du premier fragment.</p>
+     */
+    static final String SHARD_0_URL = "jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1";
+
+    /**
+     * <p class="en">The URL of the second shard.</p>
+     * <p class="fr">L'URL du deuxième fragment.</p>
+     */
+    static final String SHARD_1_URL = "jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1";
+
+    /**
+     * <p class="en">The URL of the third shard.</p>
+     * <p class="fr">L'URL du troisième fragment.</p>
+     */
+    static final String SHARD_2_URL = "jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1";
+
+    /**
+     * <p class="en">The number of shards.</p>
+     * <p class="fr">Le nombre de fragments.</p>
+     */
+    private static final int SHARDS = 3;
+
+    /**
+     * <p class="en">The number of members used by the tests.</p>
+     * <p class="fr">Le nombre de membres utilisés par les tests.</p>
+     */
+    private static final int MEMBERS = 30;
+
+    /**
+     * <p class="en">The repository to use to manage the members.</p>
+     * <p class="fr">Le dépôt à utiliser pour gérer les membres.</p>
+     */
+    @Autowired
+    private MemberRepository memberRepository;
+
+    /**
+     * <p class="en">The mock MVC to use to test the HTTP requests.</p>
+     * <p class="fr">Le mock MVC à utiliser pour tester les requêtes HTTP.</p>
+     */
+    @Autowired
+    private MockMvc mockMvc;
+
+    /**
+     * <p class="en">The object mapper to use to map the {@link Member} objects to JSON.</p>
+     * <p class="fr">Le mappeur d'objets à utiliser pour mapper les objets {@link Member} en JSON.</p>
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * <p class="en">The entity manager factory, to count the transactions.</p>
+     * <p class="fr">La fabrique de gestionnaires d'entités, pour compter les transactions.</p>
+     */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * <p class="en">The ring of the application (the same number of shards gives the same ring).</p>
+     * <p class="fr">L'anneau de l'application (le même nombre de fragments donne le même anneau).</p>
+     */
+    private final ConsistentHashRing ring = new ConsistentHashRing(SHARDS);
+
+    /**
+     * <p class="en">Setup the tests: the shards are emptied.</p>
+     * <p class="fr">Configure les tests : les fragments sont vidés.</p>
+     */
+    @BeforeEach
+    public void setup() {
+        memberRepository.deleteAll();
+    }
+
+    /**
+     * <p class="en">Test that the members are stored on their shard only, and that the API works as without
+     * shards.</p>
+     * <p class="fr">Teste que les membres sont stockés uniquement sur leur fragment, et que l'API fonctionne comme
+     * sans fragments.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testShardedMembers() throws Exception {
+        List<Member> members = new ArrayList<>();
+        for (int id = 1; id <= MEMBERS; id++) {
+            members.add(new Member(id, "First" + id, "Last" + id, "member" + id + "@umons.ac.be",
+                MemberStatus.Assistant, new Date(1_700_000_000_000L), null));
+        }
+        this.mockMvc.perform(post("/api/members/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(members)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(MEMBERS))
+            .andExpect(jsonPath("$[0].id").value(1))
+            .andExpect(jsonPath("$[29].id").value(MEMBERS));
+
+        // Each member is on its shard, and only there
+        int stored = 0;
+        int used = 0;
+        for (int shard = 0; shard < SHARDS; shard++) {
+            List<Integer> ids = shard(shard).queryForList("SELECT id FROM member", Integer.class);
+            for (int id : ids) {
+                assertEquals(shard, ring.shardOf(id));
+            }
+            stored += ids.size();
+            used += ids.isEmpty() ? 0 : 1;
+        }
+        assertEquals(MEMBERS, stored);
+        assertTrue(used > 1);
+        assertEquals(MEMBERS, memberRepository.count());
+
+        // The pages are merged in the order of the ids
+        this.mockMvc.perform(get("/api/members").param("limit", "10"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(10))
+            .andExpect(jsonPath("$[0].id").value(1))
+            .andExpect(jsonPath("$[9].id").value(10))
+            .andExpect(header().string(MemberController.NEXT_CURSOR_HEADER, "10"));
+        this.mockMvc.perform(get("/api/members").param("limit", "10").param("after", "10"))
+            .andExpect(jsonPath("$[0].id").value(11))
+            .andExpect(jsonPath("$[9].id").value(20));
+
+        // The operations on one member go to its shard
+        this.mockMvc.perform(get("/api/members/7"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.firstName").value("First7"));
+        // Now cached, the member is read without any transaction on its shard
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long transactions = statistics.getTransactionCount();
+        assertEquals("First7", memberRepository.findById(7).orElseThrow().getFirstName());
+        assertEquals(transactions, statistics.getTransactionCount());
+        this.mockMvc.perform(patch("/api/members/7")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"firstName\":\"Seven\"}"))
+            .andExpect(status().isOk());
+        assertEquals("Seven", shard(ring.shardOf(7))
+            .queryForObject("SELECT first_name FROM member WHERE id = 7", String.class));
+        this.mockMvc.perform(delete("/api/members/8"))
+            .andExpect(status().isNoContent());
+        this.mockMvc.perform(get("/api/members/8"))
+            .andExpect(status().isNotFound());
+        assertEquals(MEMBERS - 1, memberRepository.count());
+
+        // The export is merged in the order of the ids
+        String[] lines = this.mockMvc.perform(get("/api/members/export"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString().split("\n");
+        List<Integer> expected = IntStream.rangeClosed(1, MEMBERS).filter(id -> id != 8).boxed().toList();
+        List<Integer> exported = new ArrayList<>();
+        for (String line : lines) {
+            exported.add(objectMapper.readValue(line, Member.class).getId());
+        }
+        assertEquals(expected, exported);
+        assertEquals(List.of(1, 2, 3), memberRepository.findAllById(List.of(3, 1, 2)).stream()
+            .map(Member::getId).toList());
+    }
+
+    /**
+     * <p class="en">Test the sorted reads, the pages and the queries by example, merged from the shards.</p>
+     * <p class="fr">Teste les lectures triées, les pages et les requêtes par exemple, fusionnées depuis les
+     * fragments.</p>
+     */
+    @Test
+    public void testShardedSortAndPages() {
+        List<Member> members = new ArrayList<>();
+        for (int id = 1; id <= MEMBERS; id++) {
+            members.add(new Member(id, "First" + id, "Last" + id % 7, "member" + id + "@umons.ac.be",
+                MemberStatus.Assistant, new Date(1_700_000_000_000L), null));
+        }
+        memberRepository.saveAll(members);
+        Sort sort = Sort.by(Sort.Order.desc("lastName"));
+        List<Integer> expected = members.stream()
+            .sorted(Comparator.comparing(Member::getLastName).reversed().thenComparingInt(Member::getId))
+            .map(Member::getId)
+            .toList();
+
+        assertEquals(expected, memberRepository.findAll(sort).stream().map(Member::getId).toList());
+        Page<Member> page = memberRepository.findAll(PageRequest.of(2, 4, sort));
+        assertEquals(expected.subList(8, 12), page.map(Member::getId).getContent());
+        assertEquals(MEMBERS, page.getTotalElements());
+
+        Member probe = new Member();
+        probe.setLastName("Last3");
+        ExampleMatcher matcher = ExampleMatcher.matching().withIgnorePaths("id", "version");
+        assertEquals(members.stream().filter(m -> m.getLastName().equals("Last3")).count(),
+            memberRepository.count(Example.of(probe, matcher)));
+        assertTrue(memberRepository.exists(Example.of(probe, matcher)));
+        probe.setLastName("Nobody");
+        assertFalse(memberRepository.exists(Example.of(probe, matcher)));
+    }
+
+    /**
+     * <p class="en">Test the consistent hashing: the shards are balanced and a new shard only takes over about a
+     * quarter of the members (a modulo would move three quarters of them).</p>
+     * <p class="fr">Teste le hachage cohérent : les fragments sont équilibrés et un nouveau fragment ne reprend
+     * qu'environ un quart des membres (un modulo en déplacerait les trois quarts).</p>
+     */
+    @Test
+    public void testConsistentHashing() {
+        ConsistentHashRing larger = new ConsistentHashRing(SHARDS + 1);
+        int ids = 100_000;
+        int moved = 0;
+        int[] sizes = new int[SHARDS + 1];
+        for (int id = 0; id < ids; id++) {
+            int shard = larger.shardOf(id);
+            sizes[shard]++;
+            if (shard != ring.shardOf(id)) {
+                // A member only moves to the new shard
+                assertEquals(SHARDS, shard);
+                moved++;
+            }
+        }
+        assertTrue(moved < ids * 0.35, moved + " members moved");
+        for (int size : sizes) {
+            assertTrue(Math.abs(size - ids / (SHARDS + 1)) < ids / (SHARDS + 1) * 0.3, "Unbalanced shards");
+        }
+    }
+
+    /**
+     * <p class="en">Returns a direct access to a shard.</p>
+     * <p class="fr">Renvoie un accès direct à un fragment.</p>
+     * @param shard <p class="en">The index of the shard.</p> <p class="fr">L'index du fragment.</p>
+     * @return <p class="en">The access to the shard.</p> <p class="fr">L'accès au fragment.</p>
+     */
+    private JdbcTemplate shard(int shard) {
+        String url = List.of(SHARD_0_URL, SHARD_1_URL, SHARD_2_URL).get(shard);
+        return new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""));
+    }
+
+}
@@ -0,0 +1,130 @@
+package be.cardoeng.example.startup;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.event.EventListener;
+
+import be.cardoeng.example.repositories.MemberRepository;
+
+/**
+ * <p class="en">Holds the full reads of the members (the rebuilds of the search index and of the statistics) until
+ * the application accepts traffic, to check that the readiness does not wait for them: a read still held after
+ * {@link #TIMEOUT} means the readiness waited for it. It is added to the context of a test with
+ * <code>@Import</code>.</p>
+ * <p class="fr">Retient les lectures complètes des membres (les reconstructions de l'index de recherche et des
+ * statistiques) jusqu'à ce que l'application accepte le trafic, pour vérifier que la disponibilité ne les attend pas :
+ * une lecture encore retenue après {@link #TIMEOUT} signifie que la disponibilité l'a attendue. Il est ajouté au
+ * contexte d'un test avec <code>@Import</code>.</p>
+ */
+public class ReadinessGate implements BeanPostProcessor {
+
+    /**
+     * <p class="en">The maximum time a read is held.</p>
+     * <p class="fr">Le temps maximum pendant lequel une lecture est retenue.</p>
+     */
+    static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * <p class="en">The methods of the repository reading all the members or all the archive.</p>
+     * <p class="fr">Les méthodes du dépôt lisant tous les membres ou toute l'archive.</p>
+     */
+    private static final Set<String> FULL_READS = Set.of("streamAll", "countArchivedByGroup");
+
+    /**
+     * <p class="en">Released once the application accepts traffic.</p>
+     * <p class="fr">Libéré une fois que l'application accepte le trafic.</p>
+     */
+    private final CountDownLatch ready = new CountDownLatch(1);
+
+    /**
+     * <p class="en">Whether a read was held until the timeout.</p>
+     * <p class="fr">Si une lecture a été retenue jusqu'au délai.</p>
+     */
+    private final AtomicBoolean timedOut = new AtomicBoolean();
+
+    /**
+     * <p class="en">The number of reads let through.</p>
+     * <p class="fr">Le nombre de lectures laissées passer.</p>
+     */
+    private final AtomicInteger reads = new AtomicInteger();
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof MemberRepository)) {
+            return bean;
+        }
+        return Proxy.newProxyInstance(MemberRepository.class.getClassLoader(), new Class<?>[] {MemberRepository.class},
+            (proxy, method, args) -> {
+                if (FULL_READS.contains(method.getName())) {
+                    if (!ready.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                        timedOut.set(true);
+                    }
+                    synchronized (reads) {
+                        reads.incrementAndGet();
+                        reads.notifyAll();
+                    }
+                }
+                try {
+                    return method.invoke(bean, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+    }
+
+    /**
+     * <p class="en">Releases the reads once the application accepts traffic.</p>
+     * <p class="fr">Libère les lectures une fois que l'application accepte le trafic.</p>
+     * @param event <p class="en">The change of readiness.</p> <p class="fr">Le changement de disponibilité.</p>
+     */
+    @EventListener
+    public void onReadiness(AvailabilityChangeEvent<ReadinessState> event) {
+        if (event.getState() == ReadinessState.ACCEPTING_TRAFFIC) {
+            ready.countDown();
+        }
+    }
+
+    /**
+     * <p class="en">Waits until a number of reads are let through.</p>
+     * <p class="fr">Attend qu'un nombre de lectures soient laissées passer.</p>
+     * @param count <p class="en">The number of reads.</p> <p class="fr">Le nombre de lectures.</p>
+     * @param timeout <p class="en">The maximum time to wait.</p> <p class="fr">Le temps maximum à attendre.</p>
+     * @return <p class="en">Whether the reads were let through in time.</p>
+     * <p class="fr">Si les lectures ont été laissées passer à temps.</p>
+     * @throws InterruptedException <p class="en">If the thread is interrupted.</p>
+     * <p class="fr">Si le fil d'exécution est interrompu.</p>
+     */
+    public boolean awaitReads(int count, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (reads) {
+            while (reads.get() < count) {
+                long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (left <= 0) {
+                    return false;
+                }
+                reads.wait(left);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * <p class="en">Returns whether a read was held until the timeout, so whether the readiness waited for it.</p>
+     * <p class="fr">Renvoie si une lecture a été retenue jusqu'au délai, donc si la disponibilité l'a attendue.</p>
+     * @return <p class="en">Whether a read timed out.</p> <p class="fr">Si une lecture a expiré.</p>
+     */
+    public boolean timedOut() {
+        return timedOut.get();
+    }
+
+}
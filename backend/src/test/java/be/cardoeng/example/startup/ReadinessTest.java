@@ -0,0 +1,57 @@
+package be.cardoeng.example.startup;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <p class="en">A test class to test that the application is ready without waiting for the rebuilds of the search
+ * index and of the statistics, which are held by a {@link ReadinessGate} until it is.</p>
+ * <p class="fr">Une classe de test pour tester que l'application est prête sans attendre les reconstructions de
+ * l'index de recherche et des statistiques, qui sont retenues par un {@link ReadinessGate} jusqu'à ce qu'elle le
+ * soit.</p>
+ */
+@SpringBootTest
+@Import(ReadinessGate.class)
+public class ReadinessTest {
+
+    /**
+     * <p class="en">The gate holding the reads of the rebuilds.</p>
+     * <p class="fr">La barrière retenant les lectures des reconstructions.</p>
+     */
+    @Autowired
+    private ReadinessGate gate;
+
+    /**
+     * <p class="en">The availability of the application.</p>
+     * <p class="fr">La disponibilité de l'application.</p>
+     */
+    @Autowired
+    private ApplicationAvailability availability;
+
+    /**
+     * <p class="en">Tests that the application accepts traffic before the rebuilds read the members: the search
+     * index and the statistics each stream the members, and the statistics count the archive first.</p>
+     * <p class="fr">Teste que l'application accepte le trafic avant que les reconstructions lisent les membres :
+     * l'index de recherche et les statistiques diffusent chacun les membres, et les statistiques comptent d'abord
+     * l'archive.</p>
+     * @throws InterruptedException <p class="en">If the test is interrupted.</p>
+     * <p class="fr">Si le test est interrompu.</p>
+     */
+    @Test
+    public void testReadyBeforeRebuilds() throws InterruptedException {
+        assertEquals(ReadinessState.ACCEPTING_TRAFFIC, availability.getReadinessState());
+        assertTrue(gate.awaitReads(3, Duration.ofSeconds(30)));
+        assertFalse(gate.timedOut());
+    }
+
+}
@@ -0,0 +1,168 @@
+package be.cardoeng.example.startup;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * <p class="en">Measures the startup of the packaged application (run by <code>./gradlew startupReport
+ * -Pstartup</code>, which builds the jar given in <code>startup.jar</code>): the time from the launch of the JVM to
+ * the first successful request and the resident memory (RSS, read in <code>/proc</code>, so on Linux only) just
+ * after it, without the startup optimizations and with them (profile <code>startup</code>, context prepared ahead of
+ * time and Class Data Sharing archive). Each one is the median of <code>startup.runs</code> launches.</p>
+ * <p class="fr">Mesure le démarrage de l'application empaquetée (lancé par <code>./gradlew startupReport
+ * -Pstartup</code>, qui construit le jar donné dans <code>startup.jar</code>) : le temps entre le lancement de la
+ * JVM et la première requête réussie et la mémoire résidente (RSS, lue dans <code>/proc</code>, donc sur Linux
+ * uniquement) juste après, sans les optimisations du démarrage et avec elles (profil <code>startup</code>, contexte
+ * préparé à l'avance et archive Class Data Sharing). Chacun est la médiane de <code>startup.runs</code>
+ * lancements.</p>
+ */
+@Tag("startup")
+public class StartupReportTest {
+
+    /**
+     * <p class="en">The maximum time to wait for the first request.</p>
+     * <p class="fr">Le temps maximum à attendre pour la première requête.</p>
+     */
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+    /**
+     * <p class="en">The HTTP client sending the first request.</p>
+     * <p class="fr">Le client HTTP envoyant la première requête.</p>
+     */
+    private final HttpClient http = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(1))
+        .build();
+
+    /**
+     * <p class="en">Measures the startup with and without the optimizations and reports the measures.</p>
+     * <p class="fr">Mesure le démarrage avec et sans les optimisations et rapporte les mesures.</p>
+     * @throws Exception <p class="en">If the application cannot be started.</p>
+     * <p class="fr">Si l'application ne peut pas être démarrée.</p>
+     */
+    @Test
+    public void testStartup() throws Exception {
+        Path jar = Path.of(System.getProperty("startup.jar"));
+        int runs = Integer.getInteger("startup.runs", 3);
+        String java = ProcessHandle.current().info().command().orElse("java");
+        report("baseline", jar, runs, List.of(java, "-jar", jar.toString()));
+        report("optimized", jar, runs, List.of(java,
+            "-XX:SharedArchiveFile=" + jar.resolveSibling("app.jsa"),
+            "-Dspring.aot.enabled=true",
+            "-Dspring.profiles.active=startup",
+            "-jar", jar.toString()));
+    }
+
+    /**
+     * <p class="en">Launches the application several times with a command and reports the medians.</p>
+     * <p class="fr">Lance l'application plusieurs fois avec une commande et rapporte les médianes.</p>
+     * @param name <p class="en">The name of the measure.</p> <p class="fr">Le nom de la mesure.</p>
+     * @param jar <p class="en">The jar of the application.</p> <p class="fr">Le jar de l'application.</p>
+     * @param runs <p class="en">The number of launches.</p> <p class="fr">Le nombre de lancements.</p>
+     * @param command <p class="en">The command launching the application.</p>
+     * <p class="fr">La commande lançant l'application.</p>
+     * @throws Exception <p class="en">If the application cannot be started.</p>
+     * <p class="fr">Si l'application ne peut pas être démarrée.</p>
+     */
+    private void report(String name, Path jar, int runs, List<String> command) throws Exception {
+        long[] times = new long[runs];
+        long[] rss = new long[runs];
+        Path log = Path.of("build", "startup", name + ".log");
+        Files.createDirectories(log.getParent());
+        for (int run = 0; run < runs; run++) {
+            int port;
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            }
+            List<String> arguments = new ArrayList<>(command);
+            arguments.add("--server.port=" + port);
+            long start = System.nanoTime();
+            Process process = new ProcessBuilder(arguments)
+                .directory(jar.getParent().toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+            try {
+                awaitFirstRequest(process, port);
+                times[run] = System.nanoTime() - start;
+                rss[run] = residentMemory(process.pid());
+            } finally {
+                process.destroy();
+                process.waitFor();
+            }
+        }
+        Arrays.sort(times);
+        Arrays.sort(rss);
+        String report = """
+            {"name": "%s", "runs": %d, "timeToFirstRequestMs": %.0f, "rssMb": %s}
+            """.formatted(name, runs, times[runs / 2] / 1e6,
+                rss[runs / 2] < 0 ? "null" : "%.1f".formatted(rss[runs / 2] / 1024.0));
+        System.out.print(report);
+        Files.writeString(Path.of("build", "startup", name + ".json"), report);
+    }
+
+    /**
+     * <p class="en">Sends requests to the application until one succeeds.</p>
+     * <p class="fr">Envoie des requêtes à l'application jusqu'à ce qu'une réussisse.</p>
+     * @param process <p class="en">The process of the application.</p> <p class="fr">Le processus de
+     * l'application.</p>
+     * @param port <p class="en">The port of the application.</p> <p class="fr">Le port de l'application.</p>
+     * @throws Exception <p class="en">If the application stops or does not answer in time.</p>
+     * <p class="fr">Si l'application s'arrête ou ne répond pas à temps.</p>
+     */
+    private void awaitFirstRequest(Process process, int port) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(
+            URI.create("http://localhost:%d/api/members?limit=1".formatted(port))).build();
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new AssertionError("The application stopped, see build/startup");
+            }
+            try {
+                if (http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("The application did not answer in " + TIMEOUT);
+    }
+
+    /**
+     * <p class="en">Returns the resident memory of a process.</p>
+     * <p class="fr">Renvoie la mémoire résidente d'un processus.</p>
+     * @param pid <p class="en">The id of the process.</p> <p class="fr">L'id du processus.</p>
+     * @return <p class="en">The resident memory in KB, -1 if it is unknown (not on Linux).</p>
+     * <p class="fr">La mémoire résidente en Ko, -1 si elle est inconnue (pas sur Linux).</p>
+     * @throws IOException <p class="en">If the memory cannot be read.</p>
+     * <p class="fr">Si la mémoire ne peut pas être lue.</p>
+     */
+    private long residentMemory(long pid) throws IOException {
+        Path status = Path.of("/proc", String.valueOf(pid), "status");
+        if (!Files.exists(status)) {
+            return -1;
+        }
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("\\D", ""));
+            }
+        }
+        return -1;
+    }
+
+}
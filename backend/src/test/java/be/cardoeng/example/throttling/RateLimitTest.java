@@ -0,0 +1,149 @@
+package be.cardoeng.example.throttling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * <p class="en">A test class to test the rate limit of the members API (with a burst of 3 requests and 1 request
+ * per second) and the coalescing of the concurrent loads.</p>
+ * <p class="fr">Une classe de test pour tester la limite de débit de l'API des membres (avec une rafale de 3
+ * requêtes et 1 requête par seconde) et la fusion des chargements concurrents.</p>
+ */
+@SpringBootTest(properties = {
+    "members.rate-limit.enabled=true",
+    "members.rate-limit.rate=1",
+    "members.rate-limit.burst=3",
+    "members.rate-limit.api-keys=greedy,polite"
+})
+@AutoConfigureMockMvc
+public class RateLimitTest {
+
+    /**
+     * <p class="en">The mock MVC to use to test the HTTP requests.</p>
+     * <p class="fr">Le mock MVC à utiliser pour tester les requêtes HTTP.</p>
+     */
+    @Autowired
+    private MockMvc mockMvc;
+
+    /**
+     * <p class="en">The registry of the metrics.</p>
+     * <p class="fr">Le registre des métriques.</p>
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * <p class="en">Test that a client is limited to its burst, gets a 429 with a <code>Retry-After</code> once it
+     * is exceeded, and does not limit the other clients, and that the unknown API keys share the bucket of their IP
+     * address.</p>
+     * <p class="fr">Teste qu'un client est limité à sa rafale, reçoit un 429 avec un <code>Retry-After</code> une
+     * fois qu'elle est dépassée, et ne limite pas les autres clients, et que les clés d'API inconnues partagent le
+     * seau de leur adresse IP.</p>
+     * @throws Exception <p class="en">If the request fails.</p> <p class="fr">Si la requête échoue.</p>
+     */
+    @Test
+    public void testRateLimit() throws Exception {
+        double rejected = meterRegistry.counter("members.rate-limit.requests", "outcome", "rejected").count();
+        for (int i = 0; i < 3; i++) {
+            this.mockMvc.perform(get("/api/members").header(RateLimitFilter.API_KEY_HEADER, "greedy"))
+                .andExpect(status().isOk());
+        }
+        this.mockMvc.perform(get("/api/members/1").header(RateLimitFilter.API_KEY_HEADER, "greedy"))
+            .andExpect(status().isTooManyRequests())
+            .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+        assertEquals(rejected + 1,
+            meterRegistry.counter("members.rate-limit.requests", "outcome", "rejected").count());
+
+        // Another API key has its own bucket
+        this.mockMvc.perform(get("/api/members").header(RateLimitFilter.API_KEY_HEADER, "polite"))
+            .andExpect(status().isOk());
+
+        // A new unknown key per request does not give a new bucket: they are all limited by the IP address
+        for (int i = 0; i < 3; i++) {
+            this.mockMvc.perform(get("/api/members").header(RateLimitFilter.API_KEY_HEADER, "forged-" + i))
+                .andExpect(status().isOk());
+        }
+        this.mockMvc.perform(get("/api/members").header(RateLimitFilter.API_KEY_HEADER, "forged-3"))
+            .andExpect(status().isTooManyRequests());
+
+        // The other APIs are not limited
+        this.mockMvc.perform(get("/actuator/health").header(RateLimitFilter.API_KEY_HEADER, "greedy"))
+            .andExpect(status().isOk());
+    }
+
+    /**
+     * <p class="en">Test the token bucket: the burst is allowed at once, then the tokens come back with the
+     * rate.</p>
+     * <p class="fr">Teste le seau à jetons : la rafale est permise d'un coup, puis les jetons reviennent avec le
+     * débit.</p>
+     * @throws Exception <p class="en">If the test is interrupted.</p> <p class="fr">Si le test est
+     * interrompu.</p>
+     */
+    @Test
+    public void testTokenBucket() throws Exception {
+        TokenBucket bucket = new TokenBucket(20, 2);
+        assertEquals(0, bucket.tryAcquire());
+        assertEquals(0, bucket.tryAcquire());
+        long wait = bucket.tryAcquire();
+        assertTrue(wait > 0 && wait <= 50_000_000L, "Wait of " + wait + " ns");
+        Thread.sleep(wait / 1_000_000 + 1);
+        assertEquals(0, bucket.tryAcquire());
+    }
+
+    /**
+     * <p class="en">Test that the concurrent loads of the same key run once and share their result, while a load
+     * after them runs again.</p>
+     * <p class="fr">Teste que les chargements concurrents d'une même clé s'exécutent une fois et partagent leur
+     * résultat, tandis qu'un chargement après eux s'exécute à nouveau.</p>
+     * @throws Exception <p class="en">If a load fails.</p> <p class="fr">Si un chargement échoue.</p>
+     */
+    @Test
+    public void testSingleFlight() throws Exception {
+        SingleFlight<Integer, List<Integer>> flights = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<List<Integer>>> results = new ArrayList<>();
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 10; i++) {
+                results.add(callers.submit(() -> flights.run(42, () -> {
+                    loads.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return List.of(42);
+                })));
+            }
+            // Leave the callers the time to join the first load
+            Thread.sleep(200);
+            release.countDown();
+        }
+        assertEquals(1, loads.get());
+        for (Future<List<Integer>> result : results) {
+            assertSame(results.getFirst().get(), result.get());
+        }
+        flights.run(42, () -> List.of(loads.incrementAndGet()));
+        assertEquals(2, loads.get());
+    }
+
+}
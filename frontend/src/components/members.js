@@ -1,6 +1,27 @@
 import { toast } from 'vue3-toastify';
 import { ref } from 'vue'
 
+/* The number of times a request refused with 429 (Too Many Requests) is sent again */
+const MAX_RETRIES = 3
+
+/**
+ * Fetch a URL, sending the request again when the server refuses it with 429 (Too Many Requests),
+ * once the delay of its Retry-After header (in seconds) has passed
+ * @param {String} url The URL
+ * @param {Object} options The options of fetch (optional)
+ * @returns The response (still a 429 after MAX_RETRIES retries)
+ */
+async function fetchRetrying(url, options = {}) {
+    for (let retry = 0; ; retry++) {
+        const response = await fetch(url, options)
+        if (response.status != 429 || retry == MAX_RETRIES) {
+            return response
+        }
+        const seconds = parseInt(response.headers.get('Retry-After'))
+        await new Promise(resolve => setTimeout(resolve, (isNaN(seconds) ? 1 : seconds) * 1000))
+    }
+}
+
 /**
  * Make a request to the server
  * @param {String} url The URL
@@ -10,14 +31,16 @@ import { ref } from 'vue'
  * @param {String | null} successMessage The message to show on success
  * @param {String | null} errorMessage The message to show on error
  * @param {String | null} conflictMessage The message to show on conflict
+ * @param {Object} headers Additional headers to send (optional)
  * @returns 
  */
 async function makeRequest(url, member, method, loadingMessage, successMessage,
-    errorMessage, conflictMessage) {
+    errorMessage, conflictMessage, headers = {}) {
     const options = {
         method: method,
         headers: {
-            'Content-Type': 'application/json'
+            'Content-Type': 'application/json',
+            ...headers
         },
         body: JSON.stringify(member)
     }
@@ -30,7 +53,7 @@ async function makeRequest(url, member, method, loadingMessage, successMessage,
 
     try {
         // make the request
-        const response = await fetch(url, options)
+        const response = await fetchRetrying(url, options)
 
         if (response.ok) {
 
@@ -45,7 +68,8 @@ async function makeRequest(url, member, method, loadingMessage, successMessage,
             return response.status == 204 ? true : await response.json()
         } else {
             var error = errorMessage
-            if (response.status == 409) {
+            // 412: the member was modified by someone else since we read it
+            if (response.status == 409 || response.status == 412) {
                 error = conflictMessage
             }
             toast(error, {
@@ -65,26 +89,50 @@ async function makeRequest(url, member, method, loadingMessage, successMessage,
 
 }
 
+/* The number of members loaded per page (the MAX_PAGE_SIZE of the server) */
+const PAGE_SIZE = 1000
+
 /**
- * 
- * @returns The list of members
+ * Get a page of the members, ordered by id
+ * @param {number | null} after The id of the last member of the previous page (null for the first page)
+ * @returns The page ({ members, next }, next being the id to give to get the next page or null
+ * if it is the last one), or null if an error occurred
  */
-async function getMembers() {
+async function getMembers(after = null) {
     try {
+        const fetchPage = async () => {
+            const url = '/api/members?limit=' + PAGE_SIZE + (after == null ? '' : '&after=' + after)
+            const response = await fetchRetrying(url)
+            if (!response.ok) {
+                throw new Error(response.statusText)
+            }
+            /* The server gives the cursor of the next page when the page is full */
+            const next = response.headers.get('X-Next-Cursor')
+            /* Parse the data from JSON to a dictionary / map */
+            return { members: await response.json(), next: next == null ? null : Number(next) }
+        }
+        if (after != null) {
+            /* The next pages are loaded while scrolling, without a toast */
+            return await fetchPage()
+        }
         /* Add a toast (the notification shown on top of the page) */
-        const response = await toast.promise(fetch('/api/members'), {
+        const data = await toast.promise(fetchPage(), {
             pending: 'Chargement...',
             error: 'Erreur du chargement de la liste des membres'
         }, {
             position: toast.POSITION.BOTTOM_RIGHT
         });
-        /* Parse the data from JSON to a dictionary / map */
-        const data = await response.json();
 
-        /* Set the value of our list */
         return data
     } catch (error) {
         console.log(error);
+        if (after != null) {
+            toast('Erreur du chargement de la suite de la liste des membres', {
+                type: toast.TYPE.ERROR,
+                autoClose: 10000,
+                position: toast.POSITION.BOTTOM_RIGHT
+            });
+        }
     }
     return null;
 
@@ -127,9 +175,12 @@ async function editMember(old_member, member) {
         return true
     }
 
+    // Only modify the member if it is still the version we read (otherwise the server answers 412)
     return makeRequest('/api/members/' + member.id, modified,
         'PATCH', 'Modification du membre...', 'Membre modifié avec succès',
-        "Erreur lors de la modification du membre", "Un conflit est survenu lors de la modification du membre")
+        "Erreur lors de la modification du membre",
+        "Le membre a été modifié entre-temps, rafraîchissez la liste",
+        { 'If-Match': '"' + old_member.version + '"' })
 }
 
 /**
@@ -143,4 +194,22 @@ async function deleteMember(member) {
         "Erreur lors de la suppression du membre", "Un conflit est survenu lors de la suppression du membre")
 }
 
-export { getMembers, addMember, editMember, deleteMember }
\ No newline at end of file
+/**
+ * Listen to the changes of the members made by everyone (Server-Sent Events), once they are saved.
+ * The browser reconnects by itself and the server then sends the changes we missed (or a reset).
+ * @param {Function} onChange Called with each change ({ sequence, type, id, member }), type being
+ * 'Created', 'Updated' or 'Deleted' (member is null for a deletion)
+ * @param {Function} onReset Called when the list must be (re)loaded: at the beginning, and when
+ * the changes we missed are no longer known by the server
+ * @returns The EventSource, to close once we are no longer interested
+ */
+function watchChanges(onChange, onReset) {
+    const source = new EventSource('/api/members/changes')
+    for (const type of ['Created', 'Updated', 'Deleted']) {
+        source.addEventListener(type, event => onChange(JSON.parse(event.data)))
+    }
+    source.addEventListener('reset', () => onReset())
+    return source
+}
+
+export { getMembers, addMember, editMember, deleteMember, watchChanges }
\ No newline at end of file